@@ -0,0 +1,14 @@
+package com.zhangjian.tomcatmanager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+class AppConfig {
+    @Value("${tomcat.home.path}")
+    private String tomcatHomePath;
+
+    public String getTomcatHomePath() {
+        return tomcatHomePath;
+    }
+}
@@ -0,0 +1,155 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.LeakCheckResult;
+import com.zhangjian.tomcatmanager.dto.WebappSessionStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 部署或卸载 webapp 一段时间后，用 jcmd GC.class_histogram（会触发 Full GC）统计仍存活的 webapp 类加载器。
+ * 每个运行中的 context 恰好有一个类加载器，多出来的就是已卸载 context 泄漏的类加载器，它们会让 Metaspace 持续增长。
+ */
+@Service
+public class ClassLoaderLeakMonitor {
+
+    private static final int HISTORY_SIZE = 20;
+    // " 123:     5     400  org.apache.catalina.loader.ParallelWebappClassLoader"
+    private static final Pattern HISTOGRAM_LINE = Pattern.compile("^\\s*\\d+:\\s+(\\d+)\\s+\\d+\\s+(\\S+)");
+    private static final Pattern WEBAPP_LOADER = Pattern.compile("org\\.apache\\.catalina\\.loader\\.(Parallel)?WebappClassLoader");
+    private static final Pattern METASPACE_USED = Pattern.compile("Metaspace\\s+used (\\d+)K");
+
+    private final TomcatService tomcatService;
+    private final DiagnosticsService diagnosticsService;
+    private final JobSchedulerService jobSchedulerService;
+    private final LatencyValveService latencyValveService;
+    private final int checkDelaySeconds;
+    private final int warnThreshold;
+    private final boolean restartInWindow;
+    private final Deque<LeakCheckResult> history = new ArrayDeque<>();
+    private final ScheduledExecutorService checkExecutor = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> pendingCheck;
+
+    ClassLoaderLeakMonitor(TomcatService tomcatService, DiagnosticsService diagnosticsService,
+                           JobSchedulerService jobSchedulerService, LatencyValveService latencyValveService,
+                           @Value("${tomcat.leak.check-delay-seconds:120}") int checkDelaySeconds,
+                           @Value("${tomcat.leak.warn-threshold:1}") int warnThreshold,
+                           @Value("${tomcat.leak.restart-in-window:false}") boolean restartInWindow) {
+        this.tomcatService = tomcatService;
+        this.diagnosticsService = diagnosticsService;
+        this.jobSchedulerService = jobSchedulerService;
+        this.latencyValveService = latencyValveService;
+        this.checkDelaySeconds = checkDelaySeconds;
+        this.warnThreshold = warnThreshold;
+        this.restartInWindow = restartInWindow;
+    }
+
+    @PostConstruct
+    public void init() {
+        tomcatService.addDeploymentListener(this::scheduleCheck);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkExecutor.shutdownNow();
+    }
+
+    /**
+     * 部署变更后延迟检查，给 Tomcat 自动部署和卸载留出时间；连续多次变更只检查一次。
+     */
+    private synchronized void scheduleCheck(String appName) {
+        if (checkDelaySeconds < 0) {
+            return;
+        }
+        if (pendingCheck != null) {
+            pendingCheck.cancel(false);
+        }
+        pendingCheck = checkExecutor.schedule(() -> check("deploy:" + appName), checkDelaySeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized List<LeakCheckResult> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    public LeakCheckResult check(String trigger) {
+        LeakCheckResult result = new LeakCheckResult();
+        result.setCheckedAt(LocalDateTime.now());
+        result.setTrigger(trigger);
+        String pid = tomcatService.findTomcatPid();
+        result.setPid(pid);
+        if (pid == null) {
+            result.setMessage("未找到 Tomcat 进程，跳过检查。");
+            return record(result);
+        }
+        try {
+            String histogram = diagnosticsService.runCommand(pid, 60_000, "GC.class_histogram");
+            int loaders = 0;
+            for (String line : histogram.split("\n")) {
+                Matcher m = HISTOGRAM_LINE.matcher(line);
+                if (m.find() && WEBAPP_LOADER.matcher(m.group(2)).matches()) {
+                    loaders += Integer.parseInt(m.group(1));
+                }
+            }
+            result.setWebappClassLoaders(loaders);
+            result.setMetaspaceUsedKb(readMetaspaceUsedKb(pid));
+        } catch (IOException e) {
+            result.setMessage("执行 jcmd 失败: " + e.getMessage());
+            return record(result);
+        }
+
+        // Contexts reported by the valve are the running ones; without it count ROOT and every deployed context on disk
+        List<WebappSessionStats> contexts = latencyValveService.getSessionStats();
+        int expected = contexts != null && !contexts.isEmpty() ? contexts.size() : tomcatService.getDeployedContexts().size();
+        result.setExpectedContexts(expected);
+        result.setSurvivingLoaders(Math.max(0, result.getWebappClassLoaders() - expected));
+
+        if (warnThreshold > 0 && result.getSurvivingLoaders() >= warnThreshold) {
+            result.setWarning(true);
+            StringBuilder message = new StringBuilder(String.format("Full GC 后仍有 %d 个已卸载应用的类加载器存活（共 %d 个，运行中 context %d 个）",
+                    result.getSurvivingLoaders(), result.getWebappClassLoaders(), expected));
+            if (result.getMetaspaceUsedKb() != null) {
+                message.append("，Metaspace 已用 ").append(result.getMetaspaceUsedKb() / 1024).append(" MB");
+            }
+            if (restartInWindow) {
+                LocalDateTime window = jobSchedulerService.requestRestartInWindow("类加载器泄漏");
+                message.append(window != null ? "，已请求在 " + window + " 的维护窗口重启" : "，但未配置 RESTART 定时任务，请手动重启");
+            }
+            result.setMessage(message.toString());
+            tomcatService.broadcastLog("[System] 疑似类加载器泄漏: " + result.getMessage(), "error");
+        } else {
+            result.setMessage("未发现泄漏的类加载器。");
+        }
+        return record(result);
+    }
+
+    private Long readMetaspaceUsedKb(String pid) {
+        try {
+            Matcher m = METASPACE_USED.matcher(diagnosticsService.runCommand(pid, 15_000, "GC.heap_info"));
+            return m.find() ? Long.valueOf(m.group(1)) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private synchronized LeakCheckResult record(LeakCheckResult result) {
+        history.addLast(result);
+        while (history.size() > HISTORY_SIZE) {
+            history.removeFirst();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,257 @@
+package com.zhangjian.tomcatmanager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * 查询结果表头使用的列元数据缓存（表 -> 列名、类型、注释），按连接分别缓存。
+ *
+ * <p>缺少的表在一次数据字典查询中批量读取（Oracle 查 ALL_TAB_COLUMNS/ALL_COL_COMMENTS，MySQL 查 information_schema，
+ * 其他数据库使用 JDBC 元数据）。超过 TTL 的 Oracle 表先比较 LAST_DDL_TIME，未变化时继续使用；
+ * MySQL 没有随 ALTER（包括只改注释）变化的 DDL 时间，和其他数据库一样超过 TTL 即重新读取。
+ * 连接配置修改、删除或前端刷新查询时丢弃相应的缓存。</p>
+ */
+@Component
+public class ColumnMetadataCache {
+
+    static final class Column {
+        final String name;
+        final String type;
+        final String comment;
+
+        Column(String name, String type, String comment) {
+            this.name = name;
+            this.type = type;
+            this.comment = comment;
+        }
+    }
+
+    private static final class TableMetadata {
+        final Map<String, Column> columns; // keyed by upper-case column name, empty when the table was not found
+        final String ddlStamp;             // null when the database does not expose a DDL time
+        volatile long validatedAt = System.currentTimeMillis();
+
+        TableMetadata(Map<String, Column> columns, String ddlStamp) {
+            this.columns = columns;
+            this.ddlStamp = ddlStamp;
+        }
+    }
+
+    private static final class TableRef {
+        final String key;
+        final String schema;
+        final String table;
+
+        TableRef(String key, String schema, String table) {
+            this.key = key;
+            this.schema = schema;
+            this.table = table;
+        }
+    }
+
+    private final long ttlMillis;
+    private final Map<String, TableMetadata> tables;
+
+    ColumnMetadataCache(@Value("${db.column-metadata.ttl-seconds:600}") int ttlSeconds,
+                        @Value("${db.column-metadata.max-tables:2000}") int maxTables) {
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.tables = Collections.synchronizedMap(new LinkedHashMap<String, TableMetadata>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TableMetadata> eldest) {
+                return size() > maxTables;
+            }
+        });
+    }
+
+    /**
+     * 返回 SQL 中引用的各表的列（键为大写列名），按 tableNames 的顺序排列。
+     * 缓存有效时不访问数据库；读取失败的表只记录日志，不影响查询本身。
+     */
+    List<Map<String, Column>> lookup(String connectionId, Connection conn, Collection<String> tableNames) {
+        List<String> keys = new ArrayList<>();
+        List<String> stale = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (String tableName : tableNames) {
+            String key = connectionId + "\u0000" + tableName;
+            keys.add(key);
+            TableMetadata cached = tables.get(key);
+            if (cached == null) {
+                missing.add(tableName);
+            } else if (now - cached.validatedAt > ttlMillis) {
+                (cached.ddlStamp != null ? stale : missing).add(tableName);
+            }
+        }
+        if (!stale.isEmpty() || !missing.isEmpty()) {
+            try {
+                String product = conn.getMetaData().getDatabaseProductName();
+                if (!stale.isEmpty()) {
+                    Map<String, String> stamps = ddlStamps(conn, product, resolve(conn, product, stale));
+                    for (String tableName : stale) {
+                        TableMetadata cached = tables.get(connectionId + "\u0000" + tableName);
+                        if (cached != null && cached.ddlStamp.equals(stamps.get(tableName))) {
+                            cached.validatedAt = now;
+                        } else {
+                            missing.add(tableName);
+                        }
+                    }
+                }
+                if (!missing.isEmpty()) {
+                    for (Map.Entry<String, TableMetadata> loaded : load(conn, product, resolve(conn, product, missing)).entrySet()) {
+                        tables.put(connectionId + "\u0000" + loaded.getKey(), loaded.getValue());
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Could not retrieve column metadata for tables " + missing + stale + ". Error: " + e.getMessage());
+            }
+        }
+        List<Map<String, Column>> result = new ArrayList<>();
+        for (String key : keys) {
+            TableMetadata metadata = tables.get(key);
+            result.add(metadata != null ? metadata.columns : Collections.<String, Column>emptyMap());
+        }
+        return result;
+    }
+
+    /**
+     * 丢弃一个连接的所有缓存（连接配置被修改或删除时）。
+     */
+    void invalidate(String connectionId) {
+        synchronized (tables) {
+            tables.keySet().removeIf(key -> key.startsWith(connectionId + "\u0000"));
+        }
+    }
+
+    /**
+     * 丢弃一个连接中指定表的缓存（前端刷新查询时）。
+     */
+    void invalidate(String connectionId, Collection<String> tableNames) {
+        for (String tableName : tableNames) {
+            tables.remove(connectionId + "\u0000" + tableName);
+        }
+    }
+
+    private static boolean isOracle(String product) {
+        return "Oracle".equalsIgnoreCase(product);
+    }
+
+    private static boolean isMySql(String product) {
+        return "MySQL".equalsIgnoreCase(product) || "MariaDB".equalsIgnoreCase(product);
+    }
+
+    private static List<TableRef> resolve(Connection conn, String product, List<String> tableNames) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        String defaultSchema = isOracle(product) ? md.getUserName() : isMySql(product) ? conn.getCatalog() : conn.getSchema();
+        List<TableRef> refs = new ArrayList<>();
+        for (String tableName : tableNames) {
+            int dot = tableName.lastIndexOf('.');
+            String schema = dot > 0 ? tableName.substring(0, dot) : defaultSchema;
+            String table = tableName.substring(dot + 1);
+            if (isOracle(product) || (!isMySql(product) && md.storesUpperCaseIdentifiers())) {
+                schema = schema != null ? schema.toUpperCase() : null;
+                table = table.toUpperCase();
+            } else if (!isMySql(product) && md.storesLowerCaseIdentifiers()) {
+                schema = schema != null ? schema.toLowerCase() : null;
+                table = table.toLowerCase();
+            }
+            refs.add(new TableRef(tableName, schema, table));
+        }
+        return refs;
+    }
+
+    private static Map<String, List<TableRef>> bySchema(List<TableRef> refs) {
+        Map<String, List<TableRef>> grouped = new LinkedHashMap<>();
+        for (TableRef ref : refs) {
+            grouped.computeIfAbsent(ref.schema, k -> new ArrayList<>()).add(ref);
+        }
+        return grouped;
+    }
+
+    private static Map<String, TableMetadata> load(Connection conn, String product, List<TableRef> refs) throws SQLException {
+        Map<String, TableMetadata> loaded = new HashMap<>();
+        if (!isOracle(product) && !isMySql(product)) {
+            DatabaseMetaData md = conn.getMetaData();
+            for (TableRef ref : refs) {
+                Map<String, Column> columns = new LinkedHashMap<>();
+                try (ResultSet rs = md.getColumns(conn.getCatalog(), ref.schema, ref.table, null)) {
+                    while (rs.next()) {
+                        String name = rs.getString("COLUMN_NAME");
+                        columns.putIfAbsent(name.toUpperCase(), new Column(name, rs.getString("TYPE_NAME"), rs.getString("REMARKS")));
+                    }
+                }
+                loaded.put(ref.key, new TableMetadata(columns, null));
+            }
+            return loaded;
+        }
+        String sql = isOracle(product)
+                ? "SELECT c.table_name, c.column_name, c.data_type, m.comments, o.last_ddl_time FROM all_tab_columns c"
+                + " LEFT JOIN all_col_comments m ON m.owner = c.owner AND m.table_name = c.table_name AND m.column_name = c.column_name"
+                + " LEFT JOIN all_objects o ON o.owner = c.owner AND o.object_name = c.table_name AND o.object_type IN ('TABLE', 'VIEW')"
+                + " WHERE c.owner = ? AND c.table_name IN (%s) ORDER BY c.table_name, c.column_id"
+                // information_schema.tables.create_time survives comment-only ALTERs and is cached by
+                // information_schema_stats_expiry, so MySQL tables carry no stamp and reload after the TTL
+                : "SELECT c.table_name, c.column_name, c.column_type, c.column_comment, NULL FROM information_schema.columns c"
+                + " WHERE c.table_schema = ? AND c.table_name IN (%s) ORDER BY c.table_name, c.ordinal_position";
+        for (Map.Entry<String, List<TableRef>> group : bySchema(refs).entrySet()) {
+            Map<String, Map<String, Column>> columnsByTable = new HashMap<>();
+            Map<String, String> stamps = new HashMap<>();
+            try (ResultSet rs = queryByTables(conn, sql, group.getKey(), group.getValue())) {
+                while (rs.next()) {
+                    String table = rs.getString(1);
+                    String name = rs.getString(2);
+                    columnsByTable.computeIfAbsent(table.toUpperCase(), k -> new LinkedHashMap<>())
+                            .putIfAbsent(name.toUpperCase(), new Column(name, rs.getString(3), rs.getString(4)));
+                    stamps.putIfAbsent(table.toUpperCase(), rs.getString(5));
+                }
+            }
+            for (TableRef ref : group.getValue()) {
+                Map<String, Column> columns = columnsByTable.get(ref.table.toUpperCase());
+                loaded.put(ref.key, new TableMetadata(columns != null ? columns : Collections.<String, Column>emptyMap(),
+                        stamps.get(ref.table.toUpperCase())));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 读取各表当前的 DDL 时间（Oracle LAST_DDL_TIME），用于判断过期的缓存是否仍然有效。
+     */
+    private static Map<String, String> ddlStamps(Connection conn, String product, List<TableRef> refs) throws SQLException {
+        Map<String, String> stamps = new HashMap<>();
+        if (!isOracle(product)) {
+            return stamps;
+        }
+        String sql = "SELECT object_name, last_ddl_time FROM all_objects WHERE owner = ? AND object_type IN ('TABLE', 'VIEW') AND object_name IN (%s)";
+        for (Map.Entry<String, List<TableRef>> group : bySchema(refs).entrySet()) {
+            Map<String, String> byTable = new HashMap<>();
+            try (ResultSet rs = queryByTables(conn, sql, group.getKey(), group.getValue())) {
+                while (rs.next()) {
+                    byTable.put(rs.getString(1).toUpperCase(), rs.getString(2));
+                }
+            }
+            for (TableRef ref : group.getValue()) {
+                stamps.put(ref.key, byTable.get(ref.table.toUpperCase()));
+            }
+        }
+        return stamps;
+    }
+
+    private static ResultSet queryByTables(Connection conn, String sqlTemplate, String schema, List<TableRef> refs) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(refs.size(), "?"));
+        PreparedStatement ps = conn.prepareStatement(String.format(sqlTemplate, placeholders));
+        try {
+            ps.closeOnCompletion();
+            ps.setString(1, schema);
+            for (int i = 0; i < refs.size(); i++) {
+                ps.setString(i + 2, refs.get(i).table);
+            }
+            return ps.executeQuery();
+        } catch (SQLException e) {
+            ps.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zhangjian.tomcatmanager.dto.ConnectionPoolSettings;
+import com.zhangjian.tomcatmanager.dto.ConnectionPoolStats;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 为每个已保存的数据库连接配置维护一个 HikariCP 连接池。连接池在首次使用时创建；
+ * 连接参数（地址、账号、连接池设置）变化后，下一次借用时关闭旧池并按新参数重建。
+ */
+@Component
+public class ConnectionPoolManager {
+
+    private final Map<String, PoolEntry> pools = new ConcurrentHashMap<>();
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    private static final class PoolEntry {
+        final String signature;
+        final String name;
+        final HikariDataSource dataSource;
+        final PoolMetrics metrics;
+        final long createdAt = System.currentTimeMillis();
+
+        PoolEntry(String signature, String name, HikariDataSource dataSource, PoolMetrics metrics) {
+            this.signature = signature;
+            this.name = name;
+            this.dataSource = dataSource;
+            this.metrics = metrics;
+        }
+    }
+
+    /**
+     * 记录借用等待时间、建连耗时、占用时长和借用超时次数。
+     */
+    private static final class PoolMetrics implements IMetricsTracker {
+        final LongAdder acquireCount = new LongAdder();
+        final LongAdder acquireNanos = new LongAdder();
+        final AtomicLong maxAcquireNanos = new AtomicLong();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder created = new LongAdder();
+        final LongAdder createMillis = new LongAdder();
+        final LongAdder usageCount = new LongAdder();
+        final LongAdder usageMillis = new LongAdder();
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquireCount.increment();
+            acquireNanos.add(elapsedAcquiredNanos);
+            maxAcquireNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+            created.increment();
+            createMillis.add(connectionCreatedMillis);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageCount.increment();
+            usageMillis.add(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (PoolEntry entry : pools.values()) {
+            entry.dataSource.close();
+        }
+        pools.clear();
+    }
+
+    /**
+     * 从连接配置对应的连接池借出一个连接，调用方负责 close() 归还。
+     */
+    public Connection getConnection(DatabaseConnection dbConn) throws SQLException {
+        return dataSource(dbConn).getConnection();
+    }
+
+    /**
+     * 关闭指定连接配置的连接池（删除配置或修改参数后调用），正在使用的连接归还后才会真正断开。
+     */
+    public void close(String connectionId) {
+        PoolEntry entry = pools.remove(connectionId);
+        if (entry != null) {
+            entry.dataSource.close();
+        }
+    }
+
+    /**
+     * 连接参数变化时立即关闭旧连接池，否则保留。
+     *
+     * @return 是否关闭了旧连接池
+     */
+    public boolean refresh(DatabaseConnection dbConn) {
+        PoolEntry entry = pools.get(dbConn.getId());
+        if (entry != null && !entry.signature.equals(signature(dbConn))) {
+            close(dbConn.getId());
+            return true;
+        }
+        return false;
+    }
+
+    public List<ConnectionPoolStats> getStats() {
+        List<ConnectionPoolStats> result = new ArrayList<>();
+        for (Map.Entry<String, PoolEntry> e : pools.entrySet()) {
+            PoolEntry entry = e.getValue();
+            PoolMetrics m = entry.metrics;
+            ConnectionPoolStats stats = new ConnectionPoolStats();
+            stats.setConnectionId(e.getKey());
+            stats.setConnectionName(entry.name);
+            stats.setMaxPoolSize(entry.dataSource.getMaximumPoolSize());
+            HikariPoolMXBean pool = entry.dataSource.getHikariPoolMXBean();
+            if (pool != null) {
+                stats.setActive(pool.getActiveConnections());
+                stats.setIdle(pool.getIdleConnections());
+                stats.setTotal(pool.getTotalConnections());
+                stats.setThreadsAwaiting(pool.getThreadsAwaitingConnection());
+            }
+            long acquires = m.acquireCount.sum();
+            stats.setAcquireCount(acquires);
+            stats.setAvgWaitMs(acquires == 0 ? 0 : m.acquireNanos.sum() / 1_000_000d / acquires);
+            stats.setMaxWaitMs(m.maxAcquireNanos.get() / 1_000_000d);
+            stats.setTimeouts(m.timeouts.sum());
+            long created = m.created.sum();
+            stats.setConnectionsCreated(created);
+            stats.setAvgCreateMs(created == 0 ? 0 : (double) m.createMillis.sum() / created);
+            long usages = m.usageCount.sum();
+            stats.setAvgUsageMs(usages == 0 ? 0 : (double) m.usageMillis.sum() / usages);
+            stats.setCreatedAt(entry.createdAt);
+            result.add(stats);
+        }
+        result.sort(Comparator.comparing(ConnectionPoolStats::getConnectionName, Comparator.nullsLast(String::compareTo)));
+        return result;
+    }
+
+    private HikariDataSource dataSource(DatabaseConnection dbConn) throws SQLException {
+        String signature = signature(dbConn);
+        PoolEntry entry = pools.get(dbConn.getId());
+        if (entry != null && entry.signature.equals(signature)) {
+            return entry.dataSource;
+        }
+        synchronized (locks.computeIfAbsent(dbConn.getId(), k -> new Object())) {
+            entry = pools.get(dbConn.getId());
+            if (entry != null && entry.signature.equals(signature)) {
+                return entry.dataSource;
+            }
+            if (entry != null) {
+                close(dbConn.getId());
+            }
+            PoolMetrics metrics = new PoolMetrics();
+            HikariDataSource dataSource;
+            try {
+                dataSource = new HikariDataSource(buildConfig(dbConn, metrics));
+            } catch (RuntimeException e) {
+                // PoolInitializationException: the first connection attempt failed
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause.getMessage(), cause);
+            }
+            pools.put(dbConn.getId(), new PoolEntry(signature, dbConn.getName(), dataSource, metrics));
+            return dataSource;
+        }
+    }
+
+    private static HikariConfig buildConfig(DatabaseConnection dbConn, PoolMetrics metrics) throws SQLException {
+        ConnectionPoolSettings settings = dbConn.getPool();
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("db-" + (dbConn.getName() != null ? dbConn.getName() : dbConn.getId()));
+        config.setDriverClassName(driverClass(dbConn));
+        config.setJdbcUrl(jdbcUrl(dbConn));
+        config.setUsername(dbConn.getUsername());
+        config.setPassword(dbConn.getPassword());
+        if ("oracle".equalsIgnoreCase(dbConn.getType())) {
+            config.addDataSourceProperty("remarksReporting", "true");
+        }
+        config.setMaximumPoolSize(Math.max(1, settings.getMaxPoolSize()));
+        config.setMinimumIdle(Math.max(0, Math.min(settings.getMinIdle(), settings.getMaxPoolSize())));
+        config.setConnectionTimeout(Math.max(1, settings.getConnectionTimeoutSeconds()) * 1000L);
+        // Hikari's lower bounds: idleTimeout 10s, maxLifetime 30s, validationTimeout 250ms, leak detection 2s
+        config.setIdleTimeout(Math.max(10, settings.getIdleTimeoutSeconds()) * 1000L);
+        config.setMaxLifetime(Math.max(30, settings.getMaxLifetimeSeconds()) * 1000L);
+        config.setValidationTimeout(Math.max(1, settings.getValidationTimeoutSeconds()) * 1000L);
+        if (settings.getValidationQuery() != null && !settings.getValidationQuery().trim().isEmpty()) {
+            config.setConnectionTestQuery(settings.getValidationQuery().trim());
+        }
+        if (settings.getLeakDetectionSeconds() > 0) {
+            config.setLeakDetectionThreshold(Math.max(2, settings.getLeakDetectionSeconds()) * 1000L);
+        }
+        config.setMetricsTrackerFactory((poolName, poolStats) -> metrics);
+        return config;
+    }
+
+    /**
+     * 不经过连接池直接建立一个物理连接，用于测试尚未保存的连接配置。
+     */
+    static Connection openDirect(DatabaseConnection dbConn) throws SQLException {
+        String driverClass = driverClass(dbConn);
+        try {
+            Class.forName(driverClass);
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("JDBC Driver not found: " + driverClass);
+        }
+        Properties props = new Properties();
+        props.put("user", dbConn.getUsername());
+        props.put("password", dbConn.getPassword());
+        if ("oracle".equalsIgnoreCase(dbConn.getType())) {
+            props.put("remarksReporting", "true");
+        }
+        return DriverManager.getConnection(jdbcUrl(dbConn), props);
+    }
+
+    static String jdbcUrl(DatabaseConnection dbConn) throws SQLException {
+        if ("mysql".equalsIgnoreCase(dbConn.getType())) {
+            // useCursorFetch lets statements with a fetch size read through a server-side cursor
+            // instead of buffering the whole result set in the manager's heap
+            return String.format("jdbc:mysql://%s:%d/%s?serverTimezone=UTC&useSSL=false&useCursorFetch=true",
+                    dbConn.getHost(), dbConn.getPort(), dbConn.getDatabaseName());
+        } else if ("oracle".equalsIgnoreCase(dbConn.getType())) {
+            return String.format("jdbc:oracle:thin:@%s:%d:%s",
+                    dbConn.getHost(), dbConn.getPort(), dbConn.getDatabaseName());
+        }
+        throw new SQLException("不支持的数据库类型: " + dbConn.getType());
+    }
+
+    private static String driverClass(DatabaseConnection dbConn) throws SQLException {
+        if ("mysql".equalsIgnoreCase(dbConn.getType())) {
+            return "com.mysql.cj.jdbc.Driver";
+        } else if ("oracle".equalsIgnoreCase(dbConn.getType())) {
+            return "oracle.jdbc.OracleDriver";
+        }
+        throw new SQLException("不支持的数据库类型: " + dbConn.getType());
+    }
+
+    private static String signature(DatabaseConnection dbConn) {
+        ConnectionPoolSettings p = dbConn.getPool();
+        return String.join("\u0000", String.valueOf(dbConn.getType()), String.valueOf(dbConn.getHost()),
+                String.valueOf(dbConn.getPort()), String.valueOf(dbConn.getDatabaseName()),
+                String.valueOf(dbConn.getUsername()), String.valueOf(dbConn.getPassword()),
+                p.getMaxPoolSize() + "/" + p.getMinIdle() + "/" + p.getConnectionTimeoutSeconds() + "/"
+                        + p.getIdleTimeoutSeconds() + "/" + p.getMaxLifetimeSeconds() + "/"
+                        + p.getValidationTimeoutSeconds() + "/" + p.getLeakDetectionSeconds() + "/" + p.getValidationQuery());
+    }
+}
@@ -0,0 +1,67 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.ConnectorAdvice;
+import com.zhangjian.tomcatmanager.dto.ConnectorConfig;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/connectors")
+public class ConnectorController {
+
+    private final ConnectorService connectorService;
+    private final JobSchedulerService jobSchedulerService;
+
+    ConnectorController(ConnectorService connectorService, JobSchedulerService jobSchedulerService) {
+        this.connectorService = connectorService;
+        this.jobSchedulerService = jobSchedulerService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getConnectors() {
+        try {
+            return ResponseEntity.ok(connectorService.getConnectors());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("message", "解析 server.xml 失败: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/advice")
+    public ResponseEntity<?> getAdvice() {
+        try {
+            List<ConnectorAdvice> advice = connectorService.advise();
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("load", connectorService.getLoadObservation());
+            body.put("advice", advice);
+            return ResponseEntity.ok(body);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("message", "生成调优建议失败: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{port}")
+    public ResponseEntity<?> updateConnector(@PathVariable int port,
+                                             @RequestBody ConnectorConfig changes,
+                                             @RequestParam(defaultValue = "none") String restart) {
+        try {
+            ConnectorConfig updated = connectorService.updateConnector(port, changes);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("connector", updated);
+            body.put("message", jobSchedulerService.applyRestart(restart, "端口 " + port + " 的 Connector 配置变更"));
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("message", "更新 server.xml 失败: " + e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.ConnectorAdvice;
+import com.zhangjian.tomcatmanager.dto.ConnectorConfig;
+import com.zhangjian.tomcatmanager.dto.ProcessSample;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 读取和修改 server.xml 中的 Connector 配置，并根据采样到的负载给出调优建议。
+ */
+@Service
+public class ConnectorService {
+
+    private static final Map<String, String> PROTOCOL_CLASSES = new LinkedHashMap<>();
+    static {
+        PROTOCOL_CLASSES.put("BIO", "org.apache.coyote.http11.Http11Protocol");
+        PROTOCOL_CLASSES.put("NIO", "org.apache.coyote.http11.Http11NioProtocol");
+        PROTOCOL_CLASSES.put("NIO2", "org.apache.coyote.http11.Http11Nio2Protocol");
+        PROTOCOL_CLASSES.put("APR", "org.apache.coyote.http11.Http11AprProtocol");
+    }
+
+    // Tomcat defaults when the attribute is absent
+    private static final int DEFAULT_MAX_THREADS = 200;
+    private static final int DEFAULT_ACCEPT_COUNT = 100;
+    private static final int DEFAULT_CONNECTION_TIMEOUT = 60000;
+
+    private final AppConfig appConfig;
+    private final TomcatService tomcatService;
+    private final ProcessMetricsSampler processMetricsSampler;
+    private final LatencyValveService latencyValveService;
+    private final int baselineThreads;
+    private final long slowLatencyMs;
+
+    ConnectorService(AppConfig appConfig, TomcatService tomcatService, ProcessMetricsSampler processMetricsSampler,
+                     LatencyValveService latencyValveService,
+                     @Value("${tomcat.connector.advisor.baseline-threads:40}") int baselineThreads,
+                     @Value("${tomcat.connector.advisor.slow-latency-ms:1000}") long slowLatencyMs) {
+        this.appConfig = appConfig;
+        this.tomcatService = tomcatService;
+        this.processMetricsSampler = processMetricsSampler;
+        this.latencyValveService = latencyValveService;
+        this.baselineThreads = baselineThreads;
+        this.slowLatencyMs = slowLatencyMs;
+    }
+
+    public List<ConnectorConfig> getConnectors() throws Exception {
+        Document doc = ServerXmlSupport.parse(ServerXmlSupport.serverXml(appConfig));
+        List<ConnectorConfig> result = new ArrayList<>();
+        NodeList connectors = doc.getElementsByTagName("Connector");
+        for (int i = 0; i < connectors.getLength(); i++) {
+            result.add(toConfig(doc, (Element) connectors.item(i)));
+        }
+        return result;
+    }
+
+    /**
+     * 修改指定端口的 Connector，只写入 changes 中非空的字段，然后原子替换 server.xml。
+     * 只改动相关属性在原文中的文字，文件的其余部分（注释、缩进、属性顺序）保持不变。
+     * 如果 Connector 引用了共享 Executor，maxThreads 会写到对应的 Executor 上。
+     */
+    public ConnectorConfig updateConnector(int port, ConnectorConfig changes) throws Exception {
+        File serverXml = ServerXmlSupport.serverXml(appConfig);
+        ServerXmlSupport.Edit edit = ServerXmlSupport.Edit.open(serverXml);
+        Document doc = edit.getDocument();
+        Element connector = findConnector(doc, port);
+        if (connector == null) {
+            throw new IllegalArgumentException("server.xml 中未找到端口为 " + port + " 的 Connector。");
+        }
+
+        if (changes.getProtocolType() != null) {
+            String protocolClass = PROTOCOL_CLASSES.get(changes.getProtocolType().toUpperCase());
+            if (protocolClass == null) {
+                throw new IllegalArgumentException("不支持的协议类型: " + changes.getProtocolType());
+            }
+            edit.setAttribute(connector, "protocol", protocolClass);
+        } else if (changes.getProtocol() != null) {
+            edit.setAttribute(connector, "protocol", changes.getProtocol());
+        }
+        if (changes.getMaxThreads() != null) {
+            Element executor = findExecutor(doc, connector.getAttribute("executor"));
+            setPositive(edit, executor != null ? executor : connector, "maxThreads", changes.getMaxThreads());
+        }
+        setPositive(edit, connector, "acceptCount", changes.getAcceptCount());
+        setPositive(edit, connector, "maxConnections", changes.getMaxConnections());
+        setPositive(edit, connector, "connectionTimeout", changes.getConnectionTimeout());
+        if (changes.getCompression() != null) {
+            String compression = changes.getCompression().trim();
+            if (!compression.matches("on|off|force|\\d+")) {
+                throw new IllegalArgumentException("compression 只能是 on、off、force 或最小压缩字节数。");
+            }
+            edit.setAttribute(connector, "compression", compression);
+        }
+
+        Path backup = edit.writeAtomically();
+        tomcatService.broadcastLog("[System] 已更新端口 " + port + " 的 Connector 配置，原文件备份为 " + backup.getFileName(), "system");
+        return toConfig(doc, connector);
+    }
+
+    /**
+     * 采样到的负载：最近的进程线程数（Linux）、健康检查探测的耗时分位数，
+     * 以及安装了请求耗时 Valve 时的进行中请求数和真实请求 p99。
+     */
+    public Map<String, Object> getLoadObservation() {
+        Map<String, Object> load = new LinkedHashMap<>();
+        ProcessSample latest = processMetricsSampler.getLatestSample();
+        load.put("peakThreads", peakThreads());
+        load.put("currentThreads", latest != null ? latest.getThreads() : null);
+        LatencySamples probes = tomcatService.getHealthProbeLatencies();
+        load.put("probeCount", probes.size());
+        load.put("probeP50Ms", probes.percentile(0.5));
+        load.put("probeP95Ms", probes.percentile(0.95));
+        load.put("valvePeakInFlight", latencyValveService.getWindowPeakInFlight());
+        load.put("valveP99Ms", latencyValveService.getWindowP99Ms());
+        return load;
+    }
+
+    public List<ConnectorAdvice> advise() throws Exception {
+        List<ConnectorAdvice> advice = new ArrayList<>();
+        Integer peakThreads = peakThreads();
+        Integer peakInFlight = latencyValveService.getWindowPeakInFlight();
+        long valveP99 = latencyValveService.getWindowP99Ms();
+        // Real request latency from the valve is preferred over the health probe
+        String latencyLabel = valveP99 >= 0 ? "请求 p99" : "探测 p95";
+        long latency = valveP99 >= 0 ? valveP99 : tomcatService.getHealthProbeLatencies().percentile(0.95);
+
+        for (ConnectorConfig c : getConnectors()) {
+            if ("AJP".equals(c.getProtocolType()) || c.getPort() == null) {
+                continue;
+            }
+            int port = c.getPort();
+            int maxThreads = c.getMaxThreads() != null ? c.getMaxThreads() : DEFAULT_MAX_THREADS;
+            int acceptCount = c.getAcceptCount() != null ? c.getAcceptCount() : DEFAULT_ACCEPT_COUNT;
+            int timeout = c.getConnectionTimeout() != null ? c.getConnectionTimeout() : DEFAULT_CONNECTION_TIMEOUT;
+
+            if (peakInFlight != null || peakThreads != null) {
+                // In-flight requests counted by the valve are exact; otherwise request threads are estimated
+                // as process threads minus JVM/Tomcat housekeeping threads
+                int busyThreads = peakInFlight != null ? peakInFlight : Math.max(0, peakThreads - baselineThreads);
+                double saturation = busyThreads / (double) maxThreads;
+                if (saturation >= 0.9) {
+                    int suggested = Math.min(maxThreads + maxThreads / 2, 800);
+                    String reason = String.format("线程池接近饱和（%s %.0f%%）", peakInFlight != null ? "实测" : "估算", saturation * 100)
+                            + (latency >= slowLatencyMs ? "，且" + latencyLabel + " 延迟 " + latency + " ms 偏高" : "");
+                    advice.add(new ConnectorAdvice(port, "maxThreads", String.valueOf(maxThreads), String.valueOf(suggested), reason));
+                    if (acceptCount < suggested / 2) {
+                        advice.add(new ConnectorAdvice(port, "acceptCount", String.valueOf(acceptCount), String.valueOf(suggested / 2),
+                                "线程池饱和时新连接在 accept 队列中排队，队列过短会直接拒绝连接"));
+                    }
+                    if ("BIO".equals(c.getProtocolType())) {
+                        advice.add(new ConnectorAdvice(port, "protocol", c.getProtocol(), PROTOCOL_CLASSES.get("NIO"),
+                                "BIO 每个连接占用一个线程，NIO 可用少量线程处理空闲的长连接"));
+                    }
+                } else if (saturation < 0.25 && maxThreads > DEFAULT_MAX_THREADS) {
+                    advice.add(new ConnectorAdvice(port, "maxThreads", String.valueOf(maxThreads), String.valueOf(DEFAULT_MAX_THREADS),
+                            String.format("线程池利用率较低（%s %.0f%%），过大的线程池会浪费内存", peakInFlight != null ? "实测" : "估算", saturation * 100)));
+                }
+            } else if (latency >= slowLatencyMs) {
+                advice.add(new ConnectorAdvice(port, "maxThreads", String.valueOf(maxThreads), null,
+                        latencyLabel + " 延迟 " + latency + " ms 偏高，但缺少线程采样（仅 Linux 支持），无法判断是否为线程池瓶颈"));
+            }
+
+            if (timeout > 60000) {
+                advice.add(new ConnectorAdvice(port, "connectionTimeout", String.valueOf(timeout), "20000",
+                        "过长的连接超时会让慢客户端长期占用连接"));
+            }
+            if (c.getCompression() == null || "off".equals(c.getCompression())) {
+                advice.add(new ConnectorAdvice(port, "compression", c.getCompression(), "on",
+                        "开启 gzip 压缩可减少文本响应的传输量"));
+            }
+        }
+        return advice;
+    }
+
+    private Integer peakThreads() {
+        List<ProcessSample> samples = processMetricsSampler.getSamples(System.currentTimeMillis() - 15 * 60 * 1000L);
+        return samples.isEmpty() ? null : samples.stream().mapToInt(ProcessSample::getThreads).max().getAsInt();
+    }
+
+    private ConnectorConfig toConfig(Document doc, Element connector) {
+        ConnectorConfig config = new ConnectorConfig();
+        config.setPort(intAttribute(connector, "port"));
+        config.setProtocol(connector.hasAttribute("protocol") ? connector.getAttribute("protocol") : null);
+        config.setProtocolType(protocolType(config.getProtocol()));
+        config.setExecutor(connector.hasAttribute("executor") ? connector.getAttribute("executor") : null);
+        Element executor = findExecutor(doc, config.getExecutor());
+        config.setMaxThreads(intAttribute(executor != null ? executor : connector, "maxThreads"));
+        config.setAcceptCount(intAttribute(connector, "acceptCount"));
+        config.setMaxConnections(intAttribute(connector, "maxConnections"));
+        config.setConnectionTimeout(intAttribute(connector, "connectionTimeout"));
+        config.setCompression(connector.hasAttribute("compression") ? connector.getAttribute("compression") : null);
+        return config;
+    }
+
+    private static String protocolType(String protocol) {
+        if (protocol == null || protocol.isEmpty() || "HTTP/1.1".equals(protocol)) {
+            return "DEFAULT";
+        }
+        if (protocol.toUpperCase().contains("AJP")) {
+            return "AJP";
+        }
+        for (Map.Entry<String, String> entry : PROTOCOL_CLASSES.entrySet()) {
+            if (entry.getValue().equals(protocol)) {
+                return entry.getKey();
+            }
+        }
+        return "DEFAULT";
+    }
+
+    private static Element findConnector(Document doc, int port) {
+        NodeList connectors = doc.getElementsByTagName("Connector");
+        for (int i = 0; i < connectors.getLength(); i++) {
+            Element connector = (Element) connectors.item(i);
+            if (String.valueOf(port).equals(connector.getAttribute("port"))) {
+                return connector;
+            }
+        }
+        return null;
+    }
+
+    private static Element findExecutor(Document doc, String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        NodeList executors = doc.getElementsByTagName("Executor");
+        for (int i = 0; i < executors.getLength(); i++) {
+            Element executor = (Element) executors.item(i);
+            if (name.equals(executor.getAttribute("name"))) {
+                return executor;
+            }
+        }
+        return null;
+    }
+
+    private static Integer intAttribute(Element element, String name) {
+        if (!element.hasAttribute(name)) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(element.getAttribute(name).trim());
+        } catch (NumberFormatException e) {
+            // Property placeholders such as ${port.http} are left as unknown
+            return null;
+        }
+    }
+
+    private static void setPositive(ServerXmlSupport.Edit edit, Element element, String name, Integer value) {
+        if (value == null) {
+            return;
+        }
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " 必须为正整数。");
+        }
+        edit.setAttribute(element, name, String.valueOf(value));
+    }
+}
@@ -1,5 +1,7 @@
 package com.zhangjian.tomcatmanager;
 
+import com.zhangjian.tomcatmanager.dto.ConnectionPoolSettings;
+
 public class DatabaseConnection {
     private String id;
     private String name;
@@ -10,6 +12,11 @@ public class DatabaseConnection {
     private String username;
     private String password;
     private boolean syncEnabled = true; // 新增字段，默认为true
+    private ConnectionPoolSettings pool = new ConnectionPoolSettings();
+    private boolean pageCacheEnabled = true;
+    private String pageCacheBypass; // 正则，匹配的 SQL 不缓存结果页（例如经常变化的表）
+    private Integer queryTimeoutSeconds; // 控制台查询的超时，为空时使用全局默认值，0 表示不限制
+    private Integer exportTimeoutSeconds; // 导出的超时，为空时使用全局默认值，0 表示不限制
 
     // Getters and Setters
     public String getId() { return id; }
@@ -30,4 +37,14 @@ public class DatabaseConnection {
     public void setPassword(String password) { this.password = password; }
     public boolean isSyncEnabled() { return syncEnabled; }
     public void setSyncEnabled(boolean syncEnabled) { this.syncEnabled = syncEnabled; }
+    public ConnectionPoolSettings getPool() { return pool; }
+    public void setPool(ConnectionPoolSettings pool) { this.pool = pool != null ? pool : new ConnectionPoolSettings(); }
+    public boolean isPageCacheEnabled() { return pageCacheEnabled; }
+    public void setPageCacheEnabled(boolean pageCacheEnabled) { this.pageCacheEnabled = pageCacheEnabled; }
+    public String getPageCacheBypass() { return pageCacheBypass; }
+    public void setPageCacheBypass(String pageCacheBypass) { this.pageCacheBypass = pageCacheBypass; }
+    public Integer getQueryTimeoutSeconds() { return queryTimeoutSeconds; }
+    public void setQueryTimeoutSeconds(Integer queryTimeoutSeconds) { this.queryTimeoutSeconds = queryTimeoutSeconds; }
+    public Integer getExportTimeoutSeconds() { return exportTimeoutSeconds; }
+    public void setExportTimeoutSeconds(Integer exportTimeoutSeconds) { this.exportTimeoutSeconds = exportTimeoutSeconds; }
 }
@@ -1,16 +1,16 @@
 package com.zhangjian.tomcatmanager;
 
 import com.zhangjian.tomcatmanager.dto.*;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.ByteArrayOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Collections;
@@ -61,6 +61,11 @@ public class DatabaseController {
         return ResponseEntity.status(status).body(Collections.singletonMap("message", result));
     }
 
+    @GetMapping("/pools")
+    public List<ConnectionPoolStats> getConnectionPools() {
+        return databaseService.getConnectionPoolStats();
+    }
+
     @GetMapping("/connections/{id}/object-types")
     public ResponseEntity<List<DatabaseObjectTypeSummary>> getDatabaseObjectTypes(@PathVariable String id) {
         try {
@@ -78,9 +83,10 @@ public class DatabaseController {
             @PathVariable String type,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "50") int size,
-            @RequestParam(required = false) String filter) {
+            @RequestParam(required = false) String filter,
+            @RequestParam(required = false) String cursor) {
         try {
-            PaginatedResult<DatabaseObject> result = databaseService.getPaginatedObjects(id, type, page, size, filter);
+            PaginatedResult<DatabaseObject> result = databaseService.getPaginatedObjects(id, type, page, size, filter, cursor);
             return ResponseEntity.ok(result);
         } catch (SQLException e) {
             e.printStackTrace();
@@ -103,32 +109,141 @@ public class DatabaseController {
     }
 
     @PostMapping("/connections/{id}/query")
-    public ResponseEntity<QueryResult> executeQuery(@PathVariable String id, @RequestBody Map<String, String> payload, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "100") int size) {
+    public ResponseEntity<QueryResult> executeQuery(@PathVariable String id, @RequestBody Map<String, String> payload,
+                                                    @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "100") int size,
+                                                    @RequestParam(required = false) String sessionId,
+                                                    @RequestParam(defaultValue = "offset") String pagination,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "false") boolean refresh,
+                                                    @RequestParam(defaultValue = QueryResult.FORMAT_OBJECTS) String format,
+                                                    HttpServletRequest request) {
         String sql = payload.get("sql");
-        QueryResult result = databaseService.executePaginatedQuery(id, sql, page, size);
+        QueryResult result = databaseService.executeConsoleQuery(id, sql, page, size, "keyset".equalsIgnoreCase(pagination),
+                cursor, sessionId, request.getRemoteAddr(), refresh, format);
         return ResponseEntity.ok(result);
     }
 
-    @PostMapping("/connections/{id}/export")
-    public ResponseEntity<Resource> exportToExcel(@PathVariable String id, @RequestBody Map<String, String> payload) {
-        try {
-            String sql = payload.get("sql");
-            Workbook workbook = databaseService.exportQueryToExcel(id, sql);
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            workbook.write(bos);
-            workbook.close();
+    @DeleteMapping("/query-sessions/{sessionId}")
+    public ResponseEntity<Void> closeQuerySession(@PathVariable String sessionId) {
+        return databaseService.closeQuerySession(sessionId) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/fetch-size")
+    public FetchSizeStats getFetchSizeStats() {
+        return databaseService.getFetchSizeStats();
+    }
+
+    @GetMapping("/statements")
+    public List<RunningStatement> getRunningStatements() {
+        return databaseService.getRunningStatements();
+    }
+
+    /**
+     * 取消正在执行的语句（id 可以是语句 id 或前端发送的查询 id）。使用 POST 以便页面关闭时通过 navigator.sendBeacon 调用。
+     */
+    @PostMapping("/statements/{id}/cancel")
+    public ResponseEntity<?> cancelStatement(@PathVariable String id) {
+        int cancelled = databaseService.cancelStatements(id);
+        if (cancelled == 0) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("message", "没有正在执行的语句: " + id));
+        }
+        return ResponseEntity.ok(Collections.singletonMap("message", "已取消 " + cancelled + " 条语句。"));
+    }
+
+    @GetMapping("/page-cache")
+    public PageCacheStats getPageCacheStats() {
+        return databaseService.getPageCacheStats();
+    }
+
+    @DeleteMapping("/page-cache")
+    public ResponseEntity<Void> clearPageCache() {
+        databaseService.clearPageCache();
+        return ResponseEntity.ok().build();
+    }
 
-            ByteArrayResource resource = new ByteArrayResource(bos.toByteArray());
+    @GetMapping("/row-counts/{countId}")
+    public ResponseEntity<RowCountStatus> getRowCount(@PathVariable String countId) {
+        RowCountStatus status = databaseService.getRowCountStatus(countId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=query_result.xlsx")
-                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .body(resource);
+    @GetMapping("/row-counts/{countId}/events")
+    public SseEmitter subscribeRowCount(@PathVariable String countId) {
+        return databaseService.subscribeRowCount(countId);
+    }
+
+    /**
+     * 流式查询：以 NDJSON 返回全部结果（可用 maxRows 限制行数），边从数据库读取边写出，适合大结果集和数据导出。
+     */
+    @PostMapping("/connections/{id}/query/stream")
+    public ResponseEntity<?> streamQuery(@PathVariable String id, @RequestBody Map<String, String> payload,
+                                         @RequestParam(defaultValue = "0") long maxRows,
+                                         HttpServletResponse response) {
+        String sql = payload.get("sql");
+        if (sql == null || sql.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", "SQL 不能为空。"));
+        }
+        if (!databaseService.hasConnection(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("message", "未找到ID为 " + id + " 的连接配置。"));
+        }
+        response.setContentType("application/x-ndjson;charset=UTF-8");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        try {
+            databaseService.streamQuery(id, sql, maxRows, response.getOutputStream());
+        } catch (IOException e) {
+            System.err.println("Streaming query for connection " + id + " aborted: " + e.getMessage());
+        } catch (SQLException e) {
+            // Already reported to the client as the last line of the stream
+        }
+        // The body has already been written to the response
+        return null;
+    }
 
+    @PostMapping("/connections/{id}/export")
+    public ResponseEntity<?> exportToExcel(@PathVariable String id, @RequestBody Map<String, String> payload,
+                                           @RequestParam(defaultValue = "xlsx") String format,
+                                           HttpServletResponse response) {
+        if (DelimitedExportWriter.CSV.equals(format) || DelimitedExportWriter.TSV.equals(format)) {
+            return exportDelimited(id, payload.get("sql"), format, response);
+        }
+        SXSSFWorkbook workbook;
+        try {
+            workbook = databaseService.exportQueryToExcel(id, payload.get("sql"));
         } catch (Exception e) {
             e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Collections.singletonMap("message", "导出失败: " + e.getMessage()));
+        }
+        // Rows are spooled to temporary files; the workbook is zipped straight into the response
+        try {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=query_result.xlsx");
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            workbook.write(response.getOutputStream());
+        } catch (IOException e) {
+            System.err.println("Excel export for connection " + id + " aborted: " + e.getMessage());
+        } finally {
+            workbook.dispose();
+        }
+        return null;
+    }
+
+    /**
+     * CSV/TSV 导出：边读取边写入 gzip 压缩的响应流。SQL 执行失败时响应尚未提交，返回错误信息。
+     */
+    private ResponseEntity<?> exportDelimited(String id, String sql, String format, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=query_result." + format + ".gz");
+        response.setContentType("application/gzip");
+        try {
+            databaseService.exportQueryToDelimited(id, sql, format, response.getOutputStream(), rows -> { });
+        } catch (SQLException | IllegalArgumentException e) {
+            e.printStackTrace();
+            if (!response.isCommitted()) {
+                response.reset();
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Collections.singletonMap("message", "导出失败: " + e.getMessage()));
+            }
+        } catch (IOException e) {
+            System.err.println("CSV export for connection " + id + " aborted: " + e.getMessage());
         }
+        return null;
     }
 
     // --- Layout Management ---
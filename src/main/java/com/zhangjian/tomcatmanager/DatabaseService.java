@@ -1,41 +1,74 @@
 package com.zhangjian.tomcatmanager;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zhangjian.tomcatmanager.dto.*;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.annotation.PostConstruct;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.LongConsumer;
 
 @Service
 public class DatabaseService {
 
+    // Rows used to estimate Excel column widths; measuring every cell (autoSizeColumn) does not scale
+    private static final int EXCEL_WIDTH_SAMPLE_ROWS = 500;
+    static final int PROGRESS_INTERVAL_ROWS = 1000;
+
     private final ObjectMapper objectMapper;
+    private final ConnectionPoolManager connectionPoolManager;
+    private final QuerySessionManager querySessionManager;
+    private final RowCountService rowCountService;
+    private final QueryPageCache queryPageCache;
+    private final ColumnMetadataCache columnMetadataCache;
+    private final FetchSizeAdvisor fetchSizeAdvisor;
+    private final StatementRegistry statementRegistry;
+    private final int excelRowWindow;
     private final File connectionsFile = new File("db_connections.json");
     private final File layoutsFile = new File("query_layouts.json");
     private final Map<String, DatabaseConnection> connections = new ConcurrentHashMap<>();
     private final List<QueryLayout> layouts = new ArrayList<>();
-
-    private static final Pattern TABLE_NAME_PATTERN = Pattern.compile(
-            "\\b(?:FROM|JOIN)\\s+([a-zA-Z0-9_.\"]+)", Pattern.CASE_INSENSITIVE);
+    // connectionId + SQL -> keyset plan; analysing a query costs several metadata round trips
+    private final Map<String, KeysetPagination.Plan> keysetPlans = Collections.synchronizedMap(
+            new LinkedHashMap<String, KeysetPagination.Plan>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, KeysetPagination.Plan> eldest) {
+                    return size() > 128;
+                }
+            });
 
 
-    public DatabaseService(ObjectMapper objectMapper) {
+    public DatabaseService(ObjectMapper objectMapper, ConnectionPoolManager connectionPoolManager,
+                           QuerySessionManager querySessionManager, RowCountService rowCountService,
+                           QueryPageCache queryPageCache, ColumnMetadataCache columnMetadataCache,
+                           FetchSizeAdvisor fetchSizeAdvisor, StatementRegistry statementRegistry,
+                           @Value("${db.export.excel-row-window:100}") int excelRowWindow) {
         this.objectMapper = objectMapper;
+        this.connectionPoolManager = connectionPoolManager;
+        this.querySessionManager = querySessionManager;
+        this.rowCountService = rowCountService;
+        this.queryPageCache = queryPageCache;
+        this.columnMetadataCache = columnMetadataCache;
+        this.fetchSizeAdvisor = fetchSizeAdvisor;
+        this.statementRegistry = statementRegistry;
+        this.excelRowWindow = excelRowWindow;
     }
 
     @PostConstruct
@@ -54,12 +87,25 @@ public class DatabaseService {
         }
         connections.put(connection.getId(), connection);
         persistConnections();
+        if (connectionPoolManager.refresh(connection)) {
+            querySessionManager.closeAll(connection.getId());
+        }
+        evictKeysetPlans(connection.getId());
+        rowCountService.invalidate(connection.getId());
+        queryPageCache.invalidate(connection.getId());
+        columnMetadataCache.invalidate(connection.getId());
         return connection;
     }
 
     public void deleteConnection(String id) throws IOException {
         connections.remove(id);
         persistConnections();
+        querySessionManager.closeAll(id);
+        evictKeysetPlans(id);
+        rowCountService.invalidate(id);
+        queryPageCache.invalidate(id);
+        columnMetadataCache.invalidate(id);
+        connectionPoolManager.close(id);
     }
 
     // 新增方法: 更新同步开关状态
@@ -72,54 +118,38 @@ public class DatabaseService {
         persistConnections();
     }
 
+    public boolean hasConnection(String connectionId) {
+        return connections.containsKey(connectionId);
+    }
+
+    public DatabaseConnection getConnectionById(String connectionId) {
+        return connections.get(connectionId);
+    }
 
+    /**
+     * 从该连接配置的连接池借出一个连接，使用完毕后 close() 即归还连接池。
+     */
     public Connection getConnection(String connectionId) throws SQLException {
         DatabaseConnection dbConn = connections.get(connectionId);
         if (dbConn == null) {
             throw new SQLException("未找到ID为 " + connectionId + " 的连接配置。");
         }
-        String url;
-        String driverClass;
-        Properties props = new Properties();
-        props.put("user", dbConn.getUsername());
-        props.put("password", dbConn.getPassword());
-
-        if ("mysql".equalsIgnoreCase(dbConn.getType())) {
-            driverClass = "com.mysql.cj.jdbc.Driver";
-            url = String.format("jdbc:mysql://%s:%d/%s?serverTimezone=UTC&useSSL=false",
-                    dbConn.getHost(), dbConn.getPort(), dbConn.getDatabaseName());
-        } else if ("oracle".equalsIgnoreCase(dbConn.getType())) {
-            driverClass = "oracle.jdbc.OracleDriver";
-            url = String.format("jdbc:oracle:thin:@%s:%d:%s",
-                    dbConn.getHost(), dbConn.getPort(), dbConn.getDatabaseName());
-            props.put("remarksReporting", "true");
-        } else {
-            throw new SQLException("不支持的数据库类型: " + dbConn.getType());
-        }
-
-        try {
-            Class.forName(driverClass);
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("JDBC Driver not found: " + driverClass);
-        }
-
-        return DriverManager.getConnection(url, props);
+        return connectionPoolManager.getConnection(dbConn);
     }
 
     public String testConnection(DatabaseConnection connection) {
-        try {
-            String tempId = UUID.randomUUID().toString();
-            connections.put(tempId, connection);
-            try (Connection conn = getConnection(tempId)) {
-                return "连接成功！";
-            } finally {
-                connections.remove(tempId);
-            }
+        // Unsaved settings are tested with a direct connection so no pool is created for them
+        try (Connection conn = ConnectionPoolManager.openDirect(connection)) {
+            return "连接成功！";
         } catch (SQLException e) {
             return "连接失败: " + e.getMessage();
         }
     }
 
+    public List<ConnectionPoolStats> getConnectionPoolStats() {
+        return connectionPoolManager.getStats();
+    }
+
     public List<DatabaseObjectTypeSummary> getDatabaseObjectTypes(String connectionId) throws SQLException {
         List<DatabaseObjectTypeSummary> summaries = new ArrayList<>();
         DatabaseConnection dbConn = connections.get(connectionId);
@@ -173,12 +203,23 @@ public class DatabaseService {
     }
 
     public PaginatedResult<DatabaseObject> getPaginatedObjects(String connectionId, String type, int page, int size, String filter) throws SQLException {
+        return getPaginatedObjects(connectionId, type, page, size, filter, null);
+    }
+
+    /**
+     * 分页列出数据库对象。cursor 为上一页返回的 nextCursor 时按对象名定位（键集分页），
+     * 不再用 OFFSET/ROWNUM 跳过前面的行，也不再重复统计总数。
+     */
+    public PaginatedResult<DatabaseObject> getPaginatedObjects(String connectionId, String type, int page, int size, String filter, String cursor) throws SQLException {
         List<DatabaseObject> objects = new ArrayList<>();
         long totalElements = 0;
         DatabaseConnection dbConn = connections.get(connectionId);
         if (dbConn == null) throw new SQLException("Connection not found");
 
         String filterClause = (filter != null && !filter.isEmpty()) ? "%" + filter.toUpperCase() + "%" : null;
+        String fingerprint = KeysetPagination.fingerprint(connectionId + "/" + type + "/" + filterClause);
+        KeysetPagination.Cursor position = page > 0 ? KeysetPagination.decodeCursor(objectMapper, fingerprint, cursor) : null;
+        String seekName = position != null ? (String) position.values[0] : null;
 
         try (Connection conn = getConnection(connectionId)) {
             String countQuery;
@@ -190,7 +231,11 @@ public class DatabaseService {
                     baseQuery += " AND (UPPER(UO.OBJECT_NAME) LIKE ? OR ATC.COMMENTS LIKE ?)";
                 }
                 countQuery = "SELECT count(*)" + baseQuery;
-                dataQuery = "SELECT * FROM (SELECT a.*, ROWNUM rnum FROM (SELECT UO.OBJECT_NAME, ATC.COMMENTS" + baseQuery + " ORDER BY UO.OBJECT_NAME) a WHERE ROWNUM <= ?) WHERE rnum > ?";
+                if (seekName != null) {
+                    dataQuery = "SELECT * FROM (SELECT UO.OBJECT_NAME, ATC.COMMENTS" + baseQuery + " AND UO.OBJECT_NAME > ? ORDER BY UO.OBJECT_NAME) WHERE ROWNUM <= ?";
+                } else {
+                    dataQuery = "SELECT * FROM (SELECT a.*, ROWNUM rnum FROM (SELECT UO.OBJECT_NAME, ATC.COMMENTS" + baseQuery + " ORDER BY UO.OBJECT_NAME) a WHERE ROWNUM <= ?) WHERE rnum > ?";
+                }
 
             } else { // MySQL
                 if ("PROCEDURE".equalsIgnoreCase(type)) {
@@ -199,7 +244,8 @@ public class DatabaseService {
                         baseQuery += " AND (UPPER(routine_name) LIKE ? OR UPPER(routine_comment) LIKE ?)";
                     }
                     countQuery = "SELECT count(*)" + baseQuery;
-                    dataQuery = "SELECT routine_name, routine_comment" + baseQuery + " ORDER BY routine_name LIMIT ? OFFSET ?";
+                    dataQuery = "SELECT routine_name, routine_comment" + baseQuery
+                            + (seekName != null ? " AND routine_name > ? ORDER BY routine_name LIMIT ?" : " ORDER BY routine_name LIMIT ? OFFSET ?");
                 } else {
                     String tableType = "TABLE".equalsIgnoreCase(type) ? "BASE TABLE" : "VIEW";
                     String baseQuery = " FROM information_schema.tables WHERE table_schema = ? AND table_type = ?";
@@ -207,35 +253,40 @@ public class DatabaseService {
                         baseQuery += " AND (UPPER(table_name) LIKE ? OR UPPER(table_comment) LIKE ?)";
                     }
                     countQuery = "SELECT count(*)" + baseQuery;
-                    dataQuery = "SELECT table_name, table_comment" + baseQuery + " ORDER BY table_name LIMIT ? OFFSET ?";
+                    dataQuery = "SELECT table_name, table_comment" + baseQuery
+                            + (seekName != null ? " AND table_name > ? ORDER BY table_name LIMIT ?" : " ORDER BY table_name LIMIT ? OFFSET ?");
                 }
             }
 
-            try (PreparedStatement ps = conn.prepareStatement(countQuery)) {
-                int paramIndex = 1;
-                if ("oracle".equalsIgnoreCase(dbConn.getType())) {
-                    ps.setString(paramIndex++, type);
-                    if(filterClause != null) {
-                        ps.setString(paramIndex++, filterClause);
-                        ps.setString(paramIndex, filterClause);
-                    }
-                } else {
-                    if ("PROCEDURE".equalsIgnoreCase(type)) {
-                        if (filterClause != null) {
+            if (position != null) {
+                totalElements = position.totalRows;
+            } else {
+                try (PreparedStatement ps = conn.prepareStatement(countQuery)) {
+                    int paramIndex = 1;
+                    if ("oracle".equalsIgnoreCase(dbConn.getType())) {
+                        ps.setString(paramIndex++, type);
+                        if(filterClause != null) {
                             ps.setString(paramIndex++, filterClause);
                             ps.setString(paramIndex, filterClause);
                         }
                     } else {
-                        ps.setString(paramIndex++, conn.getCatalog());
-                        ps.setString(paramIndex++, "TABLE".equalsIgnoreCase(type) ? "BASE TABLE" : "VIEW");
-                        if(filterClause != null) {
-                            ps.setString(paramIndex++, filterClause);
-                            ps.setString(paramIndex, filterClause);
+                        if ("PROCEDURE".equalsIgnoreCase(type)) {
+                            if (filterClause != null) {
+                                ps.setString(paramIndex++, filterClause);
+                                ps.setString(paramIndex, filterClause);
+                            }
+                        } else {
+                            ps.setString(paramIndex++, conn.getCatalog());
+                            ps.setString(paramIndex++, "TABLE".equalsIgnoreCase(type) ? "BASE TABLE" : "VIEW");
+                            if(filterClause != null) {
+                                ps.setString(paramIndex++, filterClause);
+                                ps.setString(paramIndex, filterClause);
+                            }
                         }
                     }
-                }
-                try(ResultSet rs = ps.executeQuery()) {
-                    if(rs.next()) totalElements = rs.getLong(1);
+                    try(ResultSet rs = ps.executeQuery()) {
+                        if(rs.next()) totalElements = rs.getLong(1);
+                    }
                 }
             }
 
@@ -247,25 +298,28 @@ public class DatabaseService {
                         ps.setString(paramIndex++, filterClause);
                         ps.setString(paramIndex++, filterClause);
                     }
-                    ps.setInt(paramIndex++, (page + 1) * size);
-                    ps.setInt(paramIndex, page * size);
+                    if (seekName != null) {
+                        ps.setString(paramIndex++, seekName);
+                        ps.setInt(paramIndex, size);
+                    } else {
+                        ps.setInt(paramIndex++, (page + 1) * size);
+                        ps.setInt(paramIndex, page * size);
+                    }
                 } else {
                     if ("PROCEDURE".equalsIgnoreCase(type)) {
                         if (filterClause != null) {
                             ps.setString(paramIndex++, filterClause);
                             ps.setString(paramIndex++, filterClause);
                         }
-                        ps.setInt(paramIndex++, size);
-                        ps.setInt(paramIndex, page * size);
+                        bindObjectPage(ps, paramIndex, seekName, page, size);
                     } else {
                         ps.setString(paramIndex++, conn.getCatalog());
                         ps.setString(paramIndex++, "TABLE".equalsIgnoreCase(type) ? "BASE TABLE" : "VIEW");
                         if(filterClause != null) {
                             ps.setString(paramIndex++, filterClause);
-                            ps.setString(paramIndex, filterClause);
+                            ps.setString(paramIndex++, filterClause);
                         }
-                        ps.setInt(paramIndex++, size);
-                        ps.setInt(paramIndex, page * size);
+                        bindObjectPage(ps, paramIndex, seekName, page, size);
                     }
                 }
 
@@ -277,7 +331,22 @@ public class DatabaseService {
             }
         }
         int totalPages = (int) Math.ceil((double) totalElements / size);
-        return new PaginatedResult<>(objects, totalPages, totalElements, page);
+        PaginatedResult<DatabaseObject> result = new PaginatedResult<>(objects, totalPages, totalElements, page);
+        if (objects.size() == size) {
+            String lastName = objects.get(objects.size() - 1).getName();
+            result.setNextCursor(KeysetPagination.encodeCursor(objectMapper, fingerprint, new Object[]{lastName}, totalElements));
+        }
+        return result;
+    }
+
+    private void bindObjectPage(PreparedStatement ps, int paramIndex, String seekName, int page, int size) throws SQLException {
+        if (seekName != null) {
+            ps.setString(paramIndex++, seekName);
+            ps.setInt(paramIndex, size);
+        } else {
+            ps.setInt(paramIndex++, size);
+            ps.setInt(paramIndex, page * size);
+        }
     }
 
     public ObjectDetails getObjectDetails(String connectionId, String objectType, String objectName) throws SQLException {
@@ -332,7 +401,7 @@ public class DatabaseService {
             }
 
             // 2. Get DDL
-            details.setDdl(getObjectDefinition(connectionId, objectType, objectName));
+            details.setDdl(getObjectDefinition(conn, dbConn, objectType, objectName));
 
             // 3. Get Related Objects
             List<RelatedObjectGroup> relatedGroups = new ArrayList<>();
@@ -401,71 +470,143 @@ public class DatabaseService {
     }
 
 
-    private String getObjectDefinition(String connectionId, String objectType, String objectName) throws SQLException {
-        DatabaseConnection dbConn = connections.get(connectionId);
-        if (dbConn == null) throw new SQLException("Connection not found");
-
-        try (Connection conn = getConnection(connectionId)) {
-            if ("mysql".equalsIgnoreCase(dbConn.getType())) {
-                String sql = String.format("SHOW CREATE %s `%s`", "VIEW".equalsIgnoreCase(objectType) ? "VIEW" : "TABLE", objectName);
-                try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-                    if (rs.next()) {
-                        return rs.getString(2);
-                    }
+    private String getObjectDefinition(Connection conn, DatabaseConnection dbConn, String objectType, String objectName) throws SQLException {
+        if ("mysql".equalsIgnoreCase(dbConn.getType())) {
+            String sql = String.format("SHOW CREATE %s `%s`", "VIEW".equalsIgnoreCase(objectType) ? "VIEW" : "TABLE", objectName);
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+                if (rs.next()) {
+                    return rs.getString(2);
                 }
-            } else if ("oracle".equalsIgnoreCase(dbConn.getType())) {
-                if ("VIEW".equalsIgnoreCase(objectType)) {
-                    try (PreparedStatement ps = conn.prepareStatement("SELECT TEXT FROM USER_VIEWS WHERE VIEW_NAME = ?")) {
-                        ps.setString(1, objectName);
-                        try (ResultSet rs = ps.executeQuery()) {
-                            if (rs.next()) return "CREATE OR REPLACE VIEW " + objectName + " AS\n" + rs.getString("TEXT");
-                        }
-                    }
-                } else if ("PROCEDURE".equalsIgnoreCase(objectType) || "FUNCTION".equalsIgnoreCase(objectType)) {
-                    StringBuilder ddl = new StringBuilder();
-                    try (PreparedStatement ps = conn.prepareStatement("SELECT TEXT FROM USER_SOURCE WHERE NAME = ? ORDER BY LINE")) {
-                        ps.setString(1, objectName);
-                        try(ResultSet rs = ps.executeQuery()) {
-                            while(rs.next()) {
-                                ddl.append(rs.getString("TEXT"));
-                            }
-                        }
-                        return ddl.toString();
+            }
+        } else if ("oracle".equalsIgnoreCase(dbConn.getType())) {
+            if ("VIEW".equalsIgnoreCase(objectType)) {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT TEXT FROM USER_VIEWS WHERE VIEW_NAME = ?")) {
+                    ps.setString(1, objectName);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) return "CREATE OR REPLACE VIEW " + objectName + " AS\n" + rs.getString("TEXT");
                     }
-                } else if ("SEQUENCE".equalsIgnoreCase(objectType)) {
-                    try (PreparedStatement ps = conn.prepareStatement("SELECT LAST_NUMBER FROM USER_SEQUENCES WHERE SEQUENCE_NAME = ?")) {
-                        ps.setString(1, objectName);
-                        try(ResultSet rs = ps.executeQuery()) {
-                            if(rs.next()) return "Next Value: " + rs.getString("LAST_NUMBER");
+                }
+            } else if ("PROCEDURE".equalsIgnoreCase(objectType) || "FUNCTION".equalsIgnoreCase(objectType)) {
+                StringBuilder ddl = new StringBuilder();
+                try (PreparedStatement ps = conn.prepareStatement("SELECT TEXT FROM USER_SOURCE WHERE NAME = ? ORDER BY LINE")) {
+                    ps.setString(1, objectName);
+                    try(ResultSet rs = ps.executeQuery()) {
+                        while(rs.next()) {
+                            ddl.append(rs.getString("TEXT"));
                         }
                     }
+                    return ddl.toString();
                 }
-                else { // Assume TABLE
-                    // This is a simplified DDL generation, for complex cases a dedicated library might be better
-                    StringBuilder ddl = new StringBuilder(String.format("CREATE TABLE \"%s\" (\n", objectName));
-                    try (ResultSet columns = conn.getMetaData().getColumns(null, null, objectName, null)) {
-                        while (columns.next()) {
-                            ddl.append(String.format("    \"%s\" %s(%s)%s,\n",
-                                    columns.getString("COLUMN_NAME"),
-                                    columns.getString("TYPE_NAME"),
-                                    columns.getInt("COLUMN_SIZE"),
-                                    "NO".equals(columns.getString("IS_NULLABLE")) ? " NOT NULL" : ""
-                            ));
-                        }
+            } else if ("SEQUENCE".equalsIgnoreCase(objectType)) {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT LAST_NUMBER FROM USER_SEQUENCES WHERE SEQUENCE_NAME = ?")) {
+                    ps.setString(1, objectName);
+                    try(ResultSet rs = ps.executeQuery()) {
+                        if(rs.next()) return "Next Value: " + rs.getString("LAST_NUMBER");
                     }
-                    if (ddl.toString().contains(",")) {
-                        ddl.setLength(ddl.length() - 2);
+                }
+            }
+            else { // Assume TABLE
+                // This is a simplified DDL generation, for complex cases a dedicated library might be better
+                StringBuilder ddl = new StringBuilder(String.format("CREATE TABLE \"%s\" (\n", objectName));
+                try (ResultSet columns = conn.getMetaData().getColumns(null, null, objectName, null)) {
+                    while (columns.next()) {
+                        ddl.append(String.format("    \"%s\" %s(%s)%s,\n",
+                                columns.getString("COLUMN_NAME"),
+                                columns.getString("TYPE_NAME"),
+                                columns.getInt("COLUMN_SIZE"),
+                                "NO".equals(columns.getString("IS_NULLABLE")) ? " NOT NULL" : ""
+                        ));
                     }
-                    ddl.append("\n);");
-                    return ddl.toString();
                 }
+                if (ddl.toString().contains(",")) {
+                    ddl.setLength(ddl.length() - 2);
+                }
+                ddl.append("\n);");
+                return ddl.toString();
             }
         }
         return String.format("-- Could not retrieve DDL for %s %s", objectType, objectName);
     }
     // New and Refactored methods start here
 
+    /**
+     * SQL 控制台的查询入口。只读查询的结果页先查页缓存，未命中时按分页方式执行并写入缓存；
+     * refresh 为 true 时先丢弃这条 SQL 已缓存的所有页和总行数，再重新执行。format 为返回的行格式，见 QueryResult.FORMAT_*。
+     */
+    public QueryResult executeConsoleQuery(String connectionId, String sql, int page, int size, boolean keyset,
+                                           String cursor, String sessionId, String owner, boolean refresh, String format) {
+        DatabaseConnection dbConn = connections.get(connectionId);
+        String cleanedSql = sql != null ? sql.trim().replaceAll(";$", "") : null;
+        boolean cacheable = dbConn != null && cleanedSql != null && queryPageCache.isCacheable(dbConn, cleanedSql);
+        String sqlKey = null;
+        String pageKey = null;
+        if (dbConn != null && cleanedSql != null) {
+            sqlKey = RowCountService.countId(connectionId, cleanedSql);
+            pageKey = sqlKey + "/" + (keyset ? "keyset" : "offset") + "/" + page + "/" + size;
+            if (refresh) {
+                queryPageCache.invalidateSql(sqlKey);
+                rowCountService.forget(sqlKey);
+                columnMetadataCache.invalidate(connectionId, tableNames(SqlParser.parse(cleanedSql)));
+            }
+        }
+        if (cacheable && !refresh) {
+            QueryResult cached = queryPageCache.get(pageKey);
+            if (cached != null) {
+                long exact = cached.isTotalRowsExact() ? -1 : rowCountService.exact(sqlKey);
+                if (exact >= 0) {
+                    cached.setTotalRows(exact);
+                    cached.setTotalPages((int) Math.ceil((double) exact / size));
+                    cached.setTotalRowsExact(true);
+                }
+                cached.setFromCache(true);
+                cached.setFormat(QueryResult.normalizeFormat(format));
+                return cached;
+            }
+        }
+        QueryResult result = keyset
+                ? executeKeysetQuery(connectionId, sql, page, size, cursor, sessionId, owner)
+                : executePaginatedQuery(connectionId, sql, page, size, sessionId, owner);
+        if (cacheable && result.getError() == null) {
+            queryPageCache.put(pageKey, connectionId, sqlKey, result);
+        }
+        result.setFormat(QueryResult.normalizeFormat(format));
+        return result;
+    }
+
+    public FetchSizeStats getFetchSizeStats() {
+        return fetchSizeAdvisor.getStats();
+    }
+
+    public List<RunningStatement> getRunningStatements() {
+        return statementRegistry.list();
+    }
+
+    /**
+     * 取消语句 id 或请求 id（前端的查询 id、导出任务 id）为 id 的所有语句，返回取消的条数。
+     */
+    public int cancelStatements(String id) {
+        return statementRegistry.cancel(id);
+    }
+
+    public PageCacheStats getPageCacheStats() {
+        return queryPageCache.getStats();
+    }
+
+    public void clearPageCache() {
+        queryPageCache.clear();
+    }
+
     public QueryResult executePaginatedQuery(String connectionId, String sql, int page, int size) {
+        return executePaginatedQuery(connectionId, sql, page, size, null, "local");
+    }
+
+    /**
+     * 分页执行查询。首次执行时打开一个游标会话并在结果中返回 sessionId，之后带上 sessionId 的翻页请求
+     * 直接从会话读取，不再重新执行 SQL 和 COUNT。会话已过期或 SQL 已变化时自动打开新会话。
+     *
+     * @param owner 会话所属的用户（客户端地址），用于限制每个用户的会话数
+     */
+    public QueryResult executePaginatedQuery(String connectionId, String sql, int page, int size, String sessionId, String owner) {
         if (sql == null || sql.trim().isEmpty()) {
             return QueryResult.error("SQL query cannot be empty.");
         }
@@ -474,41 +615,319 @@ public class DatabaseService {
             return QueryResult.error("Connection not found");
         }
         String cleanedSql = sql.trim().replaceAll(";$", "");
+        int from = page * size;
+        int to = from + size;
 
-        try (Connection conn = getConnection(connectionId)) {
-            long totalRows = 0;
-            String countQuery = "SELECT COUNT(*) FROM (" + cleanedSql + ")";
-            if (!"oracle".equalsIgnoreCase(dbConn.getType())) {
-                countQuery += " AS count_alias";
+        try {
+            QuerySession session = querySessionManager.get(sessionId);
+            if (session == null || !session.matches(connectionId, cleanedSql)) {
+                session = openQuerySession(dbConn, cleanedSql, owner, to);
             }
-            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(countQuery)) {
-                if (rs.next()) totalRows = rs.getLong(1);
+            List<Object[]> rows = fetchSessionPage(dbConn, session, cleanedSql, from, to);
+            if (rows == null) {
+                // Beyond the spooled rows and the cursor has been released
+                rows = fetchPage(connectionId, cleanedSql, page, size, dbConn.getType(), session.getColumns().size());
+            }
+            String countId = RowCountService.countId(connectionId, cleanedSql);
+            long totalRows = session.getTotalRows();
+            boolean exact = session.isExhausted();
+            if (exact) {
+                if (rowCountService.exact(countId) != totalRows) {
+                    rowCountService.recordExact(countId, connectionId, totalRows);
+                }
+            } else if (rowCountService.exact(countId) >= 0) {
+                totalRows = rowCountService.exact(countId);
+                exact = true;
             }
-
             int totalPages = (int) Math.ceil((double) totalRows / size);
-            String paginatedQuery = buildPaginatedQuery(cleanedSql, page, size, dbConn.getType());
+            QueryResult result = QueryResult.ofValues(session.getColumns(), rows, page, totalPages, totalRows);
+            result.setSessionId(session.getId());
+            result.setCountId(countId);
+            result.setTotalRowsExact(exact);
+            return result;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return QueryResult.error(e.getMessage());
+        }
+    }
 
-            List<Map<String, Object>> rows = new ArrayList<>();
-            List<QueryColumnInfo> columnInfoList;
+    /**
+     * 从会话游标读取一页。读取期间登记语句以便取消；读取失败（包括被取消）的会话随即关闭，游标状态已不可用。
+     */
+    private List<Object[]> fetchSessionPage(DatabaseConnection dbConn, QuerySession session, String cleanedSql,
+                                            int from, int to) throws SQLException {
+        Statement stmt = session.getStatement();
+        if (stmt == null) {
+            return session.page(from, to, querySessionManager.getMaxSpooledRows());
+        }
+        StatementRegistry.Handle running = statementRegistry.register(dbConn, stmt, cleanedSql, StatementRegistry.Kind.FETCH);
+        try {
+            return session.page(from, to, querySessionManager.getMaxSpooledRows());
+        } catch (SQLException e) {
+            querySessionManager.close(session.getId());
+            throw running.explain(e);
+        } finally {
+            running.close();
+        }
+    }
 
-            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(paginatedQuery)) {
-                ResultSetMetaData metaData = rs.getMetaData();
-                columnInfoList = getColumnInfoWithComments(conn, cleanedSql, metaData);
-                while (rs.next()) {
-                    Map<String, Object> row = new LinkedHashMap<>();
-                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
-                        row.put(metaData.getColumnLabel(i), rs.getObject(i));
+    /**
+     * 键集分页执行查询。带有效游标时从上一页最后一行之后直接定位，否则按页码取页（第一页或跳页）；
+     * 每页都返回下一页的游标。查询不满足键集分页条件时退回普通分页，并在 paginationNote 中说明原因。
+     */
+    public QueryResult executeKeysetQuery(String connectionId, String sql, int page, int size, String cursor,
+                                          String sessionId, String owner) {
+        if (sql == null || sql.trim().isEmpty()) {
+            return QueryResult.error("SQL query cannot be empty.");
+        }
+        DatabaseConnection dbConn = connections.get(connectionId);
+        if (dbConn == null) {
+            return QueryResult.error("Connection not found");
+        }
+        String cleanedSql = sql.trim().replaceAll(";$", "");
+        try {
+            KeysetPagination.Plan plan = keysetPlan(connectionId, cleanedSql);
+            if (!plan.isSupported()) {
+                QueryResult result = executePaginatedQuery(connectionId, sql, page, size, sessionId, owner);
+                result.setPaginationMode("offset");
+                result.setPaginationNote(plan.getReason());
+                return result;
+            }
+            KeysetPagination.Cursor position = page > 0
+                    ? KeysetPagination.decodeCursor(objectMapper, plan.getFingerprint(), cursor) : null;
+            try (Connection conn = getConnection(connectionId)) {
+                String query = position != null ? plan.seekQuery(size) : plan.offsetQuery(page, size);
+                try (PreparedStatement ps = conn.prepareStatement(query)) {
+                    FetchSizeAdvisor.Fetch fetch = fetchSizeAdvisor.start(ps, connectionId, FetchSizeAdvisor.Mode.PAGE, size);
+                    if (position != null) {
+                        List<Object> params = plan.seekParameters(position.values);
+                        for (int i = 0; i < params.size(); i++) {
+                            ps.setObject(i + 1, params.get(i));
+                        }
+                    }
+                    StatementRegistry.Handle running = statementRegistry.register(dbConn, ps, cleanedSql, StatementRegistry.Kind.QUERY);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        fetch.adapt(rs);
+                        ResultSetMetaData metaData = rs.getMetaData();
+                        List<QueryColumnInfo> columnInfoList = getColumnInfoWithComments(connectionId, conn, cleanedSql, metaData);
+                        List<Object[]> rows = new ArrayList<>();
+                        Object[] lastKey = null;
+                        while (fetch.next(rs)) {
+                            Object[] row = new Object[columnInfoList.size()];
+                            for (int i = 0; i < row.length; i++) {
+                                row[i] = rs.getObject(i + 1);
+                            }
+                            rows.add(row);
+                            lastKey = plan.readKey(rs);
+                        }
+                        fetch.finish();
+                        long knownRows = (long) page * size + rows.size() + (rows.size() == size ? 1 : 0);
+                        RowCountStatus count;
+                        if (position != null) {
+                            // Seek pages reuse the total carried in the cursor unless the exact count has arrived since
+                            String countId = RowCountService.countId(connectionId, cleanedSql);
+                            long exact = rowCountService.exact(countId);
+                            count = exact >= 0
+                                    ? new RowCountStatus(countId, RowCountStatus.Status.DONE, exact, true)
+                                    : new RowCountStatus(countId, RowCountStatus.Status.PENDING, Math.max(position.totalRows, knownRows), false);
+                        } else {
+                            count = resolveRowCount(dbConn, conn, cleanedSql, knownRows);
+                        }
+                        long totalRows = count.getTotalRows();
+                        int totalPages = (int) Math.ceil((double) totalRows / size);
+                        QueryResult result = QueryResult.ofValues(columnInfoList, rows, page, totalPages, totalRows);
+                        result.setPaginationMode("keyset");
+                        result.setCountId(count.getCountId());
+                        result.setTotalRowsExact(count.isExact());
+                        if (rows.size() == size && lastKey != null) {
+                            result.setNextCursor(KeysetPagination.encodeCursor(objectMapper, plan.getFingerprint(), lastKey, totalRows));
+                        }
+                        return result;
+                    } catch (SQLException e) {
+                        throw running.explain(e);
+                    } finally {
+                        running.close();
                     }
-                    rows.add(row);
                 }
             }
-            return QueryResult.success(columnInfoList, rows, page, totalPages, totalRows);
         } catch (SQLException e) {
             e.printStackTrace();
             return QueryResult.error(e.getMessage());
         }
     }
 
+    private KeysetPagination.Plan keysetPlan(String connectionId, String cleanedSql) throws SQLException {
+        String key = connectionId + "\u0000" + cleanedSql;
+        KeysetPagination.Plan plan = keysetPlans.get(key);
+        if (plan == null) {
+            try (Connection conn = getConnection(connectionId)) {
+                plan = KeysetPagination.plan(conn, cleanedSql);
+            }
+            keysetPlans.put(key, plan);
+        }
+        return plan;
+    }
+
+    private void evictKeysetPlans(String connectionId) {
+        keysetPlans.keySet().removeIf(key -> key.startsWith(connectionId + "\u0000"));
+    }
+
+    public boolean closeQuerySession(String sessionId) {
+        return querySessionManager.close(sessionId);
+    }
+
+    private QuerySession openQuerySession(DatabaseConnection dbConn, String cleanedSql, String owner, int firstRows) throws SQLException {
+        Connection conn = getConnection(dbConn.getId());
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            FetchSizeAdvisor.Fetch fetch = fetchSizeAdvisor.start(stmt, dbConn.getId(), FetchSizeAdvisor.Mode.PAGE, firstRows);
+            QuerySession session;
+            StatementRegistry.Handle running = statementRegistry.register(dbConn, stmt, cleanedSql, StatementRegistry.Kind.QUERY);
+            try {
+                ResultSet rs = stmt.executeQuery(cleanedSql);
+                fetch.adapt(rs);
+                List<QueryColumnInfo> columnInfoList = getColumnInfoWithComments(dbConn.getId(), conn, cleanedSql, rs.getMetaData());
+                session = new QuerySession(UUID.randomUUID().toString(), owner, dbConn.getId(), cleanedSql,
+                        columnInfoList, conn, stmt, rs, fetch);
+                session.fetchUntil(firstRows, querySessionManager.getMaxSpooledRows());
+            } catch (SQLException e) {
+                throw running.explain(e);
+            } finally {
+                running.close();
+            }
+            if (!session.isExhausted()) {
+                // The whole result did not fit in the first page: start with an estimate, the exact COUNT runs in the background
+                Connection cursorConn = session.getCursorConnection();
+                if (cursorConn != null) {
+                    session.setTotalRows(resolveRowCount(dbConn, cursorConn, cleanedSql, session.getSpooledRows() + 1).getTotalRows());
+                } else {
+                    try (Connection countConn = getConnection(dbConn.getId())) {
+                        session.setTotalRows(resolveRowCount(dbConn, countConn, cleanedSql, session.getSpooledRows() + 1).getTotalRows());
+                    }
+                }
+            }
+            querySessionManager.register(session);
+            return session;
+        } catch (SQLException | RuntimeException e) {
+            if (stmt != null) {
+                try { stmt.close(); } catch (SQLException ignored) { }
+            }
+            conn.close();
+            throw e;
+        }
+    }
+
+    private long countRows(DatabaseConnection dbConn, Connection conn, String cleanedSql, int timeoutSeconds) throws SQLException {
+        String countQuery = "SELECT COUNT(*) FROM (" + cleanedSql + ")";
+        if (!"oracle".equalsIgnoreCase(dbConn.getType())) {
+            countQuery += " AS count_alias";
+        }
+        try (Statement stmt = conn.createStatement()) {
+            StatementRegistry.Handle running = statementRegistry.register(dbConn, stmt, countQuery, StatementRegistry.Kind.COUNT, timeoutSeconds);
+            try (ResultSet rs = stmt.executeQuery(countQuery)) {
+                return rs.next() ? rs.getLong(1) : 0;
+            } catch (SQLException e) {
+                throw running.explain(e);
+            } finally {
+                running.close();
+            }
+        }
+    }
+
+    /**
+     * 总行数：已缓存精确值时直接使用；否则立即返回估算值（不低于已知的行数 knownRows），
+     * 精确 COUNT 在后台执行，完成后推送给订阅了 countId 的前端。
+     */
+    private RowCountStatus resolveRowCount(DatabaseConnection dbConn, Connection conn, String cleanedSql, long knownRows) {
+        String countId = RowCountService.countId(dbConn.getId(), cleanedSql);
+        RowCountStatus current = rowCountService.getStatus(countId);
+        if (current != null && current.getStatus() != RowCountStatus.Status.FAILED) {
+            current.setTotalRows(Math.max(current.getTotalRows(), current.isExact() ? 0 : knownRows));
+            return current;
+        }
+        long estimate = Math.max(rowCountService.estimate(conn, cleanedSql, dbConn.getType()), knownRows);
+        // The COUNT runs on a background thread; it is listed under the user and query id of the request that started it
+        String[] context = statementRegistry.currentContext();
+        rowCountService.countAsync(countId, dbConn.getId(), estimate, () -> {
+            StatementRegistry.Scope scope = statementRegistry.withContext(context[0], context[1]);
+            try (Connection countConn = getConnection(dbConn.getId())) {
+                return countRows(dbConn, countConn, cleanedSql, rowCountService.getTimeoutSeconds());
+            } finally {
+                scope.close();
+            }
+        });
+        return new RowCountStatus(countId, RowCountStatus.Status.PENDING, estimate, false);
+    }
+
+    /**
+     * 导出任务计算剩余时间用的总行数：已有精确 COUNT 时使用精确值，否则为统计信息或执行计划的估算值，无法估算时返回 -1。
+     */
+    public long estimateRowCount(String connectionId, String sql) {
+        DatabaseConnection dbConn = connections.get(connectionId);
+        if (dbConn == null || sql == null || sql.trim().isEmpty()) {
+            return -1;
+        }
+        String cleanedSql = sql.trim().replaceAll(";$", "");
+        long exact = rowCountService.exact(RowCountService.countId(connectionId, cleanedSql));
+        if (exact >= 0) {
+            return exact;
+        }
+        try (Connection conn = getConnection(connectionId)) {
+            return rowCountService.estimate(conn, cleanedSql, dbConn.getType());
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    public RowCountStatus getRowCountStatus(String countId) {
+        return rowCountService.getStatus(countId);
+    }
+
+    public SseEmitter subscribeRowCount(String countId) {
+        return rowCountService.subscribe(countId);
+    }
+
+    /**
+     * 不经过会话，直接执行分页 SQL 读取一页（只取前 columns 列，Oracle 分页外层的 RNUM 不返回）。
+     */
+    private List<Object[]> fetchPage(String connectionId, String cleanedSql, int page, int size, String dbType, int columns) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Connection conn = getConnection(connectionId);
+             Statement stmt = conn.createStatement()) {
+            FetchSizeAdvisor.Fetch fetch = fetchSizeAdvisor.start(stmt, connectionId, FetchSizeAdvisor.Mode.PAGE, size);
+            StatementRegistry.Handle running = track(connectionId, stmt, cleanedSql, StatementRegistry.Kind.QUERY);
+            try (ResultSet rs = stmt.executeQuery(buildPaginatedQuery(cleanedSql, page, size, dbType))) {
+                fetch.adapt(rs);
+                int count = Math.min(columns, rs.getMetaData().getColumnCount());
+                while (fetch.next(rs)) {
+                    Object[] row = new Object[count];
+                    for (int i = 0; i < count; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    rows.add(row);
+                }
+                fetch.finish();
+            } catch (SQLException e) {
+                throw running.explain(e);
+            } finally {
+                running.close();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 登记语句（设置超时、可以取消），连接配置已被删除时抛出 SQLException。
+     */
+    private StatementRegistry.Handle track(String connectionId, Statement stmt, String sql, StatementRegistry.Kind kind) throws SQLException {
+        DatabaseConnection dbConn = connections.get(connectionId);
+        if (dbConn == null) {
+            throw new SQLException("未找到ID为 " + connectionId + " 的连接配置。");
+        }
+        return statementRegistry.register(dbConn, stmt, sql, kind);
+    }
+
     private String buildPaginatedQuery(String sql, int page, int size, String dbType) {
         if ("mysql".equalsIgnoreCase(dbType)) {
             return sql + " LIMIT " + size + " OFFSET " + (page * size);
@@ -517,76 +936,316 @@ public class DatabaseService {
         }
     }
 
-    public Workbook exportQueryToExcel(String connectionId, String sql) throws SQLException, IOException {
+    /**
+     * 把查询结果导出为 Excel。使用 SXSSFWorkbook：内存中只保留最近 excelRowWindow 行，更早的行写入（压缩的）临时文件，
+     * 调用方把工作簿写到响应后必须 dispose() 删除临时文件。列宽按前 EXCEL_WIDTH_SAMPLE_ROWS 行估算，
+     * 超过单个工作表的行数上限（1,048,576 行，含表头）时续写到新的工作表。
+     */
+    public SXSSFWorkbook exportQueryToExcel(String connectionId, String sql) throws SQLException {
+        return exportQueryToExcel(connectionId, sql, rows -> { });
+    }
+
+    /**
+     * 同上，每读取 PROGRESS_INTERVAL_ROWS 行和结束时把已导出的行数交给 progress；progress 抛出异常时导出中止。
+     */
+    public SXSSFWorkbook exportQueryToExcel(String connectionId, String sql, LongConsumer progress) throws SQLException {
         if (sql == null || sql.trim().isEmpty()) {
             throw new IllegalArgumentException("SQL query cannot be empty.");
         }
         String cleanedSql = sql.trim().replaceAll(";$", "");
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("Query Result");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(excelRowWindow);
+        workbook.setCompressTempFiles(true);
         try (Connection conn = getConnection(connectionId);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(cleanedSql)) {
-            ResultSetMetaData metaData = rs.getMetaData();
-            List<QueryColumnInfo> columnInfos = getColumnInfoWithComments(conn, cleanedSql, metaData);
-            Row headerRow = sheet.createRow(0);
-            for (int i = 0; i < columnInfos.size(); i++) {
-                Cell cell = headerRow.createCell(i);
-                QueryColumnInfo info = columnInfos.get(i);
-                String headerText = info.getName() + (info.getComment() != null && !info.getComment().isEmpty() ? " (" + info.getComment() + ")" : "");
-                cell.setCellValue(headerText);
-            }
-            int rowNum = 1;
-            while (rs.next()) {
-                Row row = sheet.createRow(rowNum++);
-                for (int i = 0; i < columnInfos.size(); i++) {
-                    Object value = rs.getObject(columnInfos.get(i).getName());
-                    Cell cell = row.createCell(i);
-                    if (value != null) {
-                        if (value instanceof Number) cell.setCellValue(((Number) value).doubleValue());
-                        else if (value instanceof java.util.Date) cell.setCellValue((java.util.Date) value);
-                        else cell.setCellValue(value.toString());
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            FetchSizeAdvisor.Fetch fetch = fetchSizeAdvisor.start(stmt, connectionId, FetchSizeAdvisor.Mode.EXPORT, 0);
+            StatementRegistry.Handle running = track(connectionId, stmt, cleanedSql, StatementRegistry.Kind.EXPORT);
+            try (ResultSet rs = stmt.executeQuery(cleanedSql)) {
+                fetch.adapt(rs);
+                ResultSetMetaData metaData = rs.getMetaData();
+                List<QueryColumnInfo> columnInfos = getColumnInfoWithComments(connectionId, conn, cleanedSql, metaData);
+                int columns = columnInfos.size();
+                String[] headers = new String[columns];
+                int[] widths = new int[columns];
+                for (int i = 0; i < columns; i++) {
+                    QueryColumnInfo info = columnInfos.get(i);
+                    headers[i] = info.getName() + (info.getComment() != null && !info.getComment().isEmpty() ? " (" + info.getComment() + ")" : "");
+                    widths[i] = headers[i].length();
+                }
+                CellStyle dateStyle = workbook.createCellStyle();
+                dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+                int maxDataRows = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+
+                Sheet sheet = null;
+                int rowNum = 0;
+                long exported = 0;
+                while (fetch.next(rs)) {
+                    if (sheet == null || rowNum > maxDataRows) {
+                        sheet = createExportSheet(workbook, headers, exported > 0 ? widths : null);
+                        rowNum = 1;
+                    }
+                    Row row = sheet.createRow(rowNum++);
+                    for (int i = 0; i < columns; i++) {
+                        Object value = rs.getObject(i + 1);
+                        if (value == null) {
+                            continue;
+                        }
+                        Cell cell = row.createCell(i);
+                        int length = setExportCellValue(cell, value, dateStyle);
+                        if (exported < EXCEL_WIDTH_SAMPLE_ROWS && length > widths[i]) {
+                            widths[i] = length;
+                        }
                     }
+                    if (++exported == EXCEL_WIDTH_SAMPLE_ROWS) {
+                        applyColumnWidths(sheet, widths);
+                    }
+                    if (exported % PROGRESS_INTERVAL_ROWS == 0) {
+                        progress.accept(exported);
+                    }
+                }
+                fetch.finish();
+                progress.accept(exported);
+                if (sheet == null) {
+                    sheet = createExportSheet(workbook, headers, null);
+                }
+                if (exported < EXCEL_WIDTH_SAMPLE_ROWS) {
+                    applyColumnWidths(sheet, widths);
                 }
+            } catch (SQLException e) {
+                throw running.explain(e);
+            } finally {
+                running.close();
             }
-            for (int i = 0; i < columnInfos.size(); i++) sheet.autoSizeColumn(i);
+        } catch (SQLException | RuntimeException e) {
+            workbook.dispose();
+            throw e;
         }
         return workbook;
     }
 
+    /**
+     * 把查询结果写成 gzip 压缩的 CSV 或 TSV（format 为 csv/tsv，见 DelimitedExportWriter），返回写出的行数。
+     * SQL 执行成功后才开始写 out，执行失败时 out 保持不变。
+     */
+    public long exportQueryToDelimited(String connectionId, String sql, String format, OutputStream out,
+                                       LongConsumer progress) throws SQLException, IOException {
+        if (sql == null || sql.trim().isEmpty()) {
+            throw new IllegalArgumentException("SQL query cannot be empty.");
+        }
+        String cleanedSql = sql.trim().replaceAll(";$", "");
+        try (Connection conn = getConnection(connectionId);
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            FetchSizeAdvisor.Fetch fetch = fetchSizeAdvisor.start(stmt, connectionId, FetchSizeAdvisor.Mode.EXPORT, 0);
+            StatementRegistry.Handle running = track(connectionId, stmt, cleanedSql, StatementRegistry.Kind.EXPORT);
+            try (ResultSet rs = stmt.executeQuery(cleanedSql)) {
+                fetch.adapt(rs);
+                DelimitedExportWriter writer = new DelimitedExportWriter(out, format);
+                long rows = writer.writeAll(rs, fetch, progress, PROGRESS_INTERVAL_ROWS);
+                writer.close();
+                fetch.finish();
+                progress.accept(rows);
+                return rows;
+            } catch (SQLException e) {
+                throw running.explain(e);
+            } finally {
+                running.close();
+            }
+        }
+    }
 
-    private List<QueryColumnInfo> getColumnInfoWithComments(Connection conn, String sql, ResultSetMetaData metaData) throws SQLException {
-        Map<String, String> allColumnComments = new HashMap<>();
-        DatabaseMetaData dbMetaData = conn.getMetaData();
-        boolean isOracle = "Oracle".equalsIgnoreCase(dbMetaData.getDatabaseProductName());
-        Matcher matcher = TABLE_NAME_PATTERN.matcher(sql);
+    private static Sheet createExportSheet(SXSSFWorkbook workbook, String[] headers, int[] widths) {
+        int number = workbook.getNumberOfSheets();
+        Sheet sheet = workbook.createSheet(number == 0 ? "Query Result" : "Query Result (" + (number + 1) + ")");
+        Row headerRow = sheet.createRow(0);
+        for (int i = 0; i < headers.length; i++) {
+            headerRow.createCell(i).setCellValue(headers[i]);
+        }
+        if (widths != null) {
+            applyColumnWidths(sheet, widths);
+        }
+        return sheet;
+    }
+
+    private static void applyColumnWidths(Sheet sheet, int[] widths) {
+        for (int i = 0; i < widths.length; i++) {
+            // Column width is in 1/256 of a character; Excel caps it at 255 characters
+            sheet.setColumnWidth(i, Math.min(widths[i] + 2, 100) * 256);
+        }
+    }
+
+    /**
+     * 写入一个单元格并返回显示长度（字符数），用于估算列宽。
+     */
+    private static int setExportCellValue(Cell cell, Object value, CellStyle dateStyle) {
+        if (value instanceof Number) {
+            cell.setCellValue(((Number) value).doubleValue());
+            return value.toString().length();
+        }
+        if (value instanceof java.util.Date) {
+            cell.setCellValue((java.util.Date) value);
+            cell.setCellStyle(dateStyle);
+            return 19;
+        }
+        if (value instanceof java.time.LocalDateTime) {
+            cell.setCellValue((java.time.LocalDateTime) value);
+            cell.setCellStyle(dateStyle);
+            return 19;
+        }
+        String text = value.toString();
+        if (text.length() > SpreadsheetVersion.EXCEL2007.getMaxTextLength()) {
+            text = text.substring(0, SpreadsheetVersion.EXCEL2007.getMaxTextLength());
+        }
+        cell.setCellValue(text);
+        return text.length();
+    }
 
-        while (matcher.find()) {
-            String tableName = matcher.group(1).replace("\"", "");
-            if (isOracle) tableName = tableName.toUpperCase();
 
-            try (ResultSet columns = dbMetaData.getColumns(conn.getCatalog(), isOracle ? dbMetaData.getUserName() : conn.getSchema(), tableName, null)) {
-                while (columns.next()) {
-                    String columnName = columns.getString("COLUMN_NAME").toUpperCase();
-                    String remarks = columns.getString("REMARKS");
-                    if (remarks != null && !remarks.isEmpty()) {
-                        allColumnComments.putIfAbsent(columnName, remarks);
+    /**
+     * 流式执行查询，按 NDJSON（每行一个 JSON）边读取 ResultSet 边写出，不在内存中保留结果集。
+     * 第一行是列信息 {"type":"columns"}，之后每行是一条记录的值数组（顺序与列信息一致），
+     * 最后一行是 {"type":"end"}，或在数据库报错时是 {"type":"error"}（写出后抛出 SQLException）。maxRows 大于 0 时最多输出这么多行。
+     *
+     * <p>语句只进只读，fetch size 由 FetchSizeAdvisor 按行宽决定，MySQL（useCursorFetch）和 Oracle 都按批从服务器取行；
+     * 列信息写出后立即 flush，之后每取完一批 flush 一次，首字节时间与结果集大小无关。
+     * 写出失败（客户端断开）时抛出 IOException，语句和连接随之关闭。</p>
+     */
+    public void streamQuery(String connectionId, String sql, long maxRows, OutputStream out) throws IOException, SQLException {
+        streamQuery(connectionId, sql, maxRows, out, rows -> { });
+    }
+
+    /**
+     * 同上，每写出 PROGRESS_INTERVAL_ROWS 行和结束时把已写出的行数交给 progress；progress 抛出异常时输出中止。
+     */
+    public void streamQuery(String connectionId, String sql, long maxRows, OutputStream out, LongConsumer progress)
+            throws IOException, SQLException {
+        long startedAt = System.currentTimeMillis();
+        long rows = 0;
+        boolean truncated = false;
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null); // lines are separated by explicit newlines instead of spaces
+        try {
+            String cleanedSql = sql.trim().replaceAll(";$", "");
+            try (Connection conn = getConnection(connectionId);
+                 Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                FetchSizeAdvisor.Fetch fetch = fetchSizeAdvisor.start(stmt, connectionId, FetchSizeAdvisor.Mode.EXPORT, 0);
+                StatementRegistry.Handle running = track(connectionId, stmt, cleanedSql, StatementRegistry.Kind.EXPORT);
+                try (ResultSet rs = stmt.executeQuery(cleanedSql)) {
+                    fetch.adapt(rs);
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    int columns = metaData.getColumnCount();
+                    generator.writeStartObject();
+                    generator.writeStringField("type", "columns");
+                    generator.writeObjectField("columns", getColumnInfoWithComments(connectionId, conn, cleanedSql, metaData));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    generator.flush();
+                    // Values are read before anything is written so a failing getObject never leaves half a row
+                    Object[] values = new Object[columns];
+                    while ((maxRows <= 0 || rows < maxRows) && fetch.next(rs)) {
+                        for (int i = 0; i < columns; i++) {
+                            values[i] = rs.getObject(i + 1);
+                        }
+                        generator.writeStartArray();
+                        for (Object value : values) {
+                            generator.writeObject(value);
+                        }
+                        generator.writeEndArray();
+                        generator.writeRaw('\n');
+                        if (++rows % fetch.getFetchSize() == 0) {
+                            generator.flush();
+                        }
+                        if (rows % PROGRESS_INTERVAL_ROWS == 0) {
+                            progress.accept(rows);
+                        }
                     }
+                    truncated = maxRows > 0 && rows >= maxRows && rs.next();
+                    fetch.finish();
+                    progress.accept(rows);
+                } catch (SQLException e) {
+                    throw running.explain(e);
+                } finally {
+                    running.close();
                 }
-            } catch (SQLException e) {
-                System.err.println("Could not retrieve metadata for table: " + tableName + ". Error: " + e.getMessage());
             }
+            generator.writeStartObject();
+            generator.writeStringField("type", "end");
+            generator.writeNumberField("rows", rows);
+            generator.writeBooleanField("truncated", truncated);
+            generator.writeNumberField("elapsedMs", System.currentTimeMillis() - startedAt);
+            generator.writeEndObject();
+        } catch (SQLException e) {
+            System.err.println("Streaming query failed after " + rows + " rows: " + e.getMessage());
+            generator.writeStartObject();
+            generator.writeStringField("type", "error");
+            generator.writeStringField("message", e.getMessage());
+            generator.writeNumberField("rows", rows);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.close();
+            throw e;
+        }
+        generator.writeRaw('\n');
+        generator.close();
+    }
+
+    /**
+     * 结果列名加上表中的列注释和类型。按 SqlParser 分析出的列血缘找到每个结果列来自哪张表的哪一列，
+     * 列元数据来自按连接缓存的 ColumnMetadataCache，同一条 SQL 翻页、导出时不再查询数据字典。
+     */
+    private List<QueryColumnInfo> getColumnInfoWithComments(String connectionId, Connection conn, String sql, ResultSetMetaData metaData) throws SQLException {
+        SqlParser.Statement statement = SqlParser.parse(sql);
+        List<String> tableNames = tableNames(statement);
+        List<Map<String, ColumnMetadataCache.Column>> tableColumns = columnMetadataCache.lookup(connectionId, conn, tableNames);
+        Map<String, Map<String, ColumnMetadataCache.Column>> byTable = new HashMap<>();
+        for (int i = 0; i < tableNames.size(); i++) {
+            byTable.put(tableNames.get(i), tableColumns.get(i));
         }
 
+        // Result columns not listed explicitly come from "*"; without a parsed select list, match by name in any table
+        List<SqlParser.Origin> starOrigins = new ArrayList<>();
+        for (SqlParser.OutputColumn output : statement.getColumns()) {
+            if (output.label == null) {
+                starOrigins.addAll(output.origins);
+            }
+        }
+        if (statement.getColumns().isEmpty()) {
+            for (SqlParser.TableRef table : statement.getTables()) {
+                starOrigins.add(new SqlParser.Origin(table, null));
+            }
+        }
+        Set<SqlParser.OutputColumn> used = new HashSet<>();
         List<QueryColumnInfo> columnInfoList = new ArrayList<>();
         for (int i = 1; i <= metaData.getColumnCount(); i++) {
             String columnLabel = metaData.getColumnLabel(i);
-            String comment = allColumnComments.get(columnLabel.toUpperCase());
-            columnInfoList.add(new QueryColumnInfo(columnLabel, comment));
+            List<SqlParser.Origin> origins = starOrigins;
+            for (SqlParser.OutputColumn output : statement.getColumns()) {
+                if (output.label != null && output.label.equalsIgnoreCase(columnLabel) && used.add(output)) {
+                    origins = output.origins;
+                    break;
+                }
+            }
+            ColumnMetadataCache.Column column = null;
+            for (SqlParser.Origin origin : origins) {
+                Map<String, ColumnMetadataCache.Column> columns = byTable.get(origin.table.qualifiedName());
+                column = columns != null ? columns.get((origin.column != null ? origin.column : columnLabel).toUpperCase()) : null;
+                if (column != null) {
+                    break;
+                }
+            }
+            String comment = column != null && column.comment != null && !column.comment.isEmpty() ? column.comment : null;
+            columnInfoList.add(new QueryColumnInfo(columnLabel, comment, column != null ? column.type : metaData.getColumnTypeName(i)));
         }
         return columnInfoList;
     }
 
+    private static List<String> tableNames(SqlParser.Statement statement) {
+        List<String> names = new ArrayList<>();
+        for (SqlParser.TableRef table : statement.getTables()) {
+            names.add(table.qualifiedName());
+        }
+        return names;
+    }
+
     public List<QueryLayout> getLayoutsForSql(String sqlHash) {
         synchronized (layouts) {
             List<QueryLayout> result = new ArrayList<>();
@@ -0,0 +1,73 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.DiagnosticBundleInfo;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/diagnostics")
+public class DiagnosticsController {
+
+    private final DiagnosticsService diagnosticsService;
+    private final TomcatService tomcatService;
+
+    DiagnosticsController(DiagnosticsService diagnosticsService, TomcatService tomcatService) {
+        this.diagnosticsService = diagnosticsService;
+        this.tomcatService = tomcatService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<DiagnosticBundleInfo>> listBundles() {
+        try {
+            return ResponseEntity.ok(diagnosticsService.listBundles());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping
+    public ResponseEntity<?> captureNow() {
+        DiagnosticBundleInfo bundle = tomcatService.captureDiagnostics("manual");
+        if (bundle == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Collections.singletonMap("message", "诊断采集失败：未找到运行中的 Tomcat 进程或采集出错。"));
+        }
+        return ResponseEntity.ok(bundle);
+    }
+
+    @GetMapping("/{bundleName:.+}")
+    public ResponseEntity<Resource> downloadBundle(@PathVariable String bundleName) {
+        try {
+            Path bundle = diagnosticsService.getBundlePath(bundleName);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + bundle.getFileName())
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .body(new FileSystemResource(bundle));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping(value = "/{bundleName}/entries/{entryName:.+}", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> readEntry(@PathVariable String bundleName, @PathVariable String entryName) {
+        try {
+            return ResponseEntity.ok(diagnosticsService.readBundleEntry(bundleName, entryName));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.DiagnosticBundleInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 在自动重启前采集被管 Tomcat JVM 的诊断信息（线程转储、GC/内存池状态、类直方图），
+ * 打包为带时间戳的 zip 文件。所有采集命令共享一个总的时间预算，超时的命令会被强制终止，
+ * 以保证重启流程不会被诊断采集拖住。
+ */
+@Service
+public class DiagnosticsService {
+
+    private static final DateTimeFormatter BUNDLE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Pattern BUNDLE_NAME_PATTERN = Pattern.compile("^diag-[\\w.-]+\\.zip$");
+
+    /**
+     * 按执行顺序排列的 jcmd 命令：线程转储最快也最有价值，类直方图会触发 Full GC，放在最后。
+     * GC.heap_info 仅 JDK 9+ 支持，PerfCounter.print 在 JDK 8 上提供内存池与 GC 计数。
+     */
+    private static final String[][] CAPTURE_COMMANDS = {
+            {"thread-dump.txt", "Thread.print", "-l"},
+            {"gc-heap-info.txt", "GC.heap_info"},
+            {"perf-counters.txt", "PerfCounter.print"},
+            {"class-histogram.txt", "GC.class_histogram"},
+    };
+
+    private final Path diagnosticsDir;
+    private final long timeBudgetMillis;
+    private final int maxBundles;
+    private final String jcmdPath;
+
+    public DiagnosticsService(@Value("${tomcat.diagnostics.dir:diagnostics}") String diagnosticsDir,
+                              @Value("${tomcat.diagnostics.time-budget-seconds:20}") int timeBudgetSeconds,
+                              @Value("${tomcat.diagnostics.max-bundles:20}") int maxBundles,
+                              @Value("${tomcat.diagnostics.jcmd-path:}") String jcmdPath) {
+        this.diagnosticsDir = Paths.get(diagnosticsDir);
+        this.timeBudgetMillis = TimeUnit.SECONDS.toMillis(timeBudgetSeconds);
+        this.maxBundles = maxBundles;
+        this.jcmdPath = jcmdPath.isEmpty() ? locateJcmd() : jcmdPath;
+    }
+
+    /**
+     * 对指定 PID 执行全部采集命令并写入压缩包。单个命令失败或超时只记录在 summary.txt 中，不会中断其余命令。
+     */
+    public DiagnosticBundleInfo capture(String pid, String reason) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        long deadline = startedAt + timeBudgetMillis;
+        LocalDateTime now = LocalDateTime.now();
+        String safeReason = reason == null ? "manual" : reason.replaceAll("[^\\w-]", "_");
+        String bundleName = "diag-" + now.format(BUNDLE_TIME_FORMAT) + "-" + safeReason + ".zip";
+
+        Files.createDirectories(diagnosticsDir);
+        Path target = diagnosticsDir.resolve(bundleName);
+        Path temp = diagnosticsDir.resolve(bundleName + ".part");
+        StringBuilder summary = new StringBuilder();
+        summary.append("reason: ").append(reason).append('\n')
+                .append("pid: ").append(pid).append('\n')
+                .append("startedAt: ").append(now).append('\n')
+                .append("jcmd: ").append(jcmdPath).append('\n')
+                .append("timeBudgetMs: ").append(timeBudgetMillis).append("\n\n");
+
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            zip.setComment("reason=" + reason + ";pid=" + pid);
+            for (String[] command : CAPTURE_COMMANDS) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    summary.append(command[1]).append(": skipped, time budget exhausted\n");
+                    continue;
+                }
+                long commandStart = System.currentTimeMillis();
+                CommandOutput output = runJcmd(pid, Arrays.copyOfRange(command, 1, command.length), remaining);
+                summary.append(command[1]).append(": ").append(output.status)
+                        .append(" (").append(System.currentTimeMillis() - commandStart).append(" ms, ")
+                        .append(output.bytes.length).append(" bytes)\n");
+                if (output.bytes.length > 0) {
+                    zip.putNextEntry(new ZipEntry(command[0]));
+                    zip.write(output.bytes);
+                    zip.closeEntry();
+                }
+            }
+            summary.append("\ntotalMs: ").append(System.currentTimeMillis() - startedAt).append('\n');
+            zip.putNextEntry(new ZipEntry("summary.txt"));
+            zip.write(summary.toString().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        pruneOldBundles();
+
+        DiagnosticBundleInfo info = readBundleInfo(target);
+        info.setDurationMs(System.currentTimeMillis() - startedAt);
+        return info;
+    }
+
+    /**
+     * 执行单条 jcmd 命令并返回输出文本，失败或超时时抛出 IOException。
+     */
+    public String runCommand(String pid, long timeoutMillis, String... args) throws IOException {
+        CommandOutput output = runJcmd(pid, args, timeoutMillis);
+        if (!"ok".equals(output.status)) {
+            throw new IOException("jcmd " + String.join(" ", args) + " " + output.status);
+        }
+        return new String(output.bytes, StandardCharsets.UTF_8);
+    }
+
+    public List<DiagnosticBundleInfo> listBundles() throws IOException {
+        if (!Files.isDirectory(diagnosticsDir)) {
+            return Collections.emptyList();
+        }
+        List<DiagnosticBundleInfo> result = new ArrayList<>();
+        for (Path bundle : findBundles()) {
+            result.add(readBundleInfo(bundle));
+        }
+        result.sort(Comparator.comparing(DiagnosticBundleInfo::getName).reversed());
+        return result;
+    }
+
+    public Path getBundlePath(String bundleName) {
+        if (bundleName == null || !BUNDLE_NAME_PATTERN.matcher(bundleName).matches()) {
+            throw new IllegalArgumentException("无效的诊断包名称: " + bundleName);
+        }
+        Path bundle = diagnosticsDir.resolve(bundleName);
+        if (!Files.isRegularFile(bundle)) {
+            throw new IllegalArgumentException("诊断包不存在: " + bundleName);
+        }
+        return bundle;
+    }
+
+    public String readBundleEntry(String bundleName, String entryName) throws IOException {
+        try (ZipFile zipFile = new ZipFile(getBundlePath(bundleName).toFile())) {
+            ZipEntry entry = zipFile.getEntry(entryName);
+            if (entry == null) {
+                throw new IllegalArgumentException("诊断包中不存在条目: " + entryName);
+            }
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    private CommandOutput runJcmd(String pid, String[] args, long timeoutMillis) {
+        List<String> command = new ArrayList<>();
+        command.add(jcmdPath);
+        command.add(pid);
+        command.addAll(Arrays.asList(args));
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            Thread reader = new Thread(() -> {
+                try (InputStream in = process.getInputStream()) {
+                    StreamUtils.copy(in, buffer);
+                } catch (IOException e) {
+                    // Process killed, keep what we have
+                }
+            }, "diagnostics-reader");
+            reader.setDaemon(true);
+            reader.start();
+
+            boolean finished = process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (!finished) {
+                process.destroyForcibly();
+            }
+            reader.join(1000);
+            byte[] bytes = buffer.toByteArray();
+            if (!finished) {
+                return new CommandOutput("timeout", bytes);
+            }
+            return new CommandOutput(process.exitValue() == 0 ? "ok" : "exit " + process.exitValue(), bytes);
+        } catch (IOException e) {
+            return new CommandOutput("failed: " + e.getMessage(), new byte[0]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new CommandOutput("interrupted", new byte[0]);
+        }
+    }
+
+    private DiagnosticBundleInfo readBundleInfo(Path bundle) throws IOException {
+        DiagnosticBundleInfo info = new DiagnosticBundleInfo();
+        info.setName(bundle.getFileName().toString());
+        info.setSizeBytes(Files.size(bundle));
+        info.setCreatedAt(LocalDateTime.ofInstant(Files.getLastModifiedTime(bundle).toInstant(), ZoneId.systemDefault()));
+        try (ZipFile zipFile = new ZipFile(bundle.toFile())) {
+            info.setEntries(zipFile.stream().map(ZipEntry::getName).collect(Collectors.toList()));
+            String comment = zipFile.getComment();
+            if (comment != null) {
+                for (String part : comment.split(";")) {
+                    int idx = part.indexOf('=');
+                    if (idx < 0) continue;
+                    String key = part.substring(0, idx);
+                    String value = part.substring(idx + 1);
+                    if ("reason".equals(key)) info.setReason(value);
+                    else if ("pid".equals(key)) info.setPid(value);
+                }
+            }
+        }
+        return info;
+    }
+
+    private List<Path> findBundles() throws IOException {
+        try (Stream<Path> files = Files.list(diagnosticsDir)) {
+            return files.filter(p -> BUNDLE_NAME_PATTERN.matcher(p.getFileName().toString()).matches())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void pruneOldBundles() throws IOException {
+        List<Path> bundles = findBundles();
+        for (int i = 0; i < bundles.size() - maxBundles; i++) {
+            Files.deleteIfExists(bundles.get(i));
+        }
+    }
+
+    private static String locateJcmd() {
+        String executable = System.getProperty("os.name").toLowerCase().contains("win") ? "jcmd.exe" : "jcmd";
+        File javaHome = new File(System.getProperty("java.home"));
+        File candidate = new File(javaHome, "bin/" + executable);
+        if (!candidate.exists() && "jre".equals(javaHome.getName())) {
+            // JDK 8 layout: java.home points at <jdk>/jre
+            candidate = new File(javaHome.getParentFile(), "bin/" + executable);
+        }
+        return candidate.exists() ? candidate.getAbsolutePath() : executable;
+    }
+
+    private static class CommandOutput {
+        private final String status;
+        private final byte[] bytes;
+
+        CommandOutput(String status, byte[] bytes) {
+            this.status = status;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.ExportJobStatus;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/db")
+public class ExportJobController {
+
+    private final ExportJobService exportJobService;
+
+    ExportJobController(ExportJobService exportJobService) {
+        this.exportJobService = exportJobService;
+    }
+
+    @PostMapping("/connections/{id}/export-jobs")
+    public ResponseEntity<?> createExportJob(@PathVariable String id, @RequestBody Map<String, String> payload,
+                                             HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(exportJobService.submit(id, payload.get("sql"), payload.get("format"),
+                    Boolean.parseBoolean(payload.get("parallel")), request.getRemoteAddr()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Collections.singletonMap("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/export-jobs")
+    public List<ExportJobStatus> getExportJobs(HttpServletRequest request) {
+        return exportJobService.getJobs(request.getRemoteAddr());
+    }
+
+    @GetMapping("/export-jobs/{jobId}")
+    public ResponseEntity<?> getExportJob(@PathVariable String jobId) {
+        ExportJobStatus status = exportJobService.getStatus(jobId);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("message", "导出任务不存在或已过期"));
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    @GetMapping(value = "/export-jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeExportJob(@PathVariable String jobId) {
+        return exportJobService.subscribe(jobId);
+    }
+
+    /**
+     * 下载导出文件。返回 Resource 时 Spring 会处理 Range 请求头（206 分段响应），中断的下载可以续传。
+     */
+    @GetMapping("/export-jobs/{jobId}/file")
+    public ResponseEntity<?> downloadExport(@PathVariable String jobId) {
+        Path file = exportJobService.getFile(jobId);
+        if (file == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("message", "导出文件不存在、未完成或已过期"));
+        }
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(exportJobService.getDownloadName(jobId), StandardCharsets.UTF_8).build();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .contentType(contentType(file))
+                .body(new FileSystemResource(file));
+    }
+
+    private static MediaType contentType(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".xlsx")) {
+            return MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        }
+        return name.endsWith(".gz") ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("application/x-ndjson");
+    }
+
+    @DeleteMapping("/export-jobs/{jobId}")
+    public ResponseEntity<?> cancelExportJob(@PathVariable String jobId) {
+        if (!exportJobService.cancel(jobId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("message", "导出任务不存在或已过期"));
+        }
+        return ResponseEntity.ok(Collections.singletonMap("message", "导出任务已取消。"));
+    }
+}
@@ -0,0 +1,468 @@
+package com.zhangjian.tomcatmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhangjian.tomcatmanager.dto.ExportJobStatus;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 后台导出任务。导出不再占用 HTTP 请求：任务进入队列，按全局并发数和每个连接的并发数依次执行，
+ * 结果先写到导出目录中的临时文件，完成后改名，供（支持 Range 断点续传的）下载接口读取。
+ *
+ * <p>进度（已写行数、字节数、剩余时间）每秒通过 SSE 推送；剩余时间按已用时间和估算的总行数推算。
+ * 每个用户同时进行的任务数和排队的任务总数受限；完成的任务及其文件超过 TTL 后删除。</p>
+ */
+@Component
+public class ExportJobService {
+
+    static final List<String> FORMATS = Arrays.asList("xlsx", "ndjson", DelimitedExportWriter.CSV, DelimitedExportWriter.TSV);
+    // <job id>.<extension> and <job id>.part, plus the range-<random>.gz segments parallel exports create via createTempFile
+    // <job id>.<extension>, <job id>.part and the range-*.gz segments of parallel exports
+    private static final Pattern LEFTOVER_FILE = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\\.[\\w.]+|range-\\d+\\.gz");
+
+    private final DatabaseService databaseService;
+    private final ParallelExportService parallelExportService;
+    private final StatementRegistry statementRegistry;
+    private final ObjectMapper objectMapper;
+    private final Path exportDir;
+    private final int maxConcurrent;
+    private final int maxPerConnection;
+    private final int maxQueued;
+    private final int maxJobsPerUser;
+    private final long ttlMillis;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Deque<Job> queue = new ArrayDeque<>();
+    private final Map<String, Integer> runningPerConnection = new HashMap<>();
+    private int running;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final String owner;
+        final String connectionId;
+        final String sql;
+        final String format;
+        final boolean parallel;
+        final long createdAt = System.currentTimeMillis();
+        final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+        volatile ExportJobStatus.Status status = ExportJobStatus.Status.QUEUED;
+        volatile boolean cancelled;
+        volatile long rows;
+        volatile long bytes;
+        volatile long estimatedRows = -1;
+        volatile long startedAt;
+        volatile long finishedAt;
+        volatile String error;
+        volatile String parallelNote;
+        volatile Path file;
+
+        Job(String owner, String connectionId, String sql, String format, boolean parallel) {
+            this.owner = owner;
+            this.connectionId = connectionId;
+            this.sql = sql;
+            this.format = format;
+            this.parallel = parallel;
+        }
+
+        boolean isFinished() {
+            return status != ExportJobStatus.Status.QUEUED && status != ExportJobStatus.Status.RUNNING;
+        }
+    }
+
+    /**
+     * 统计写入文件的字节数。
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final Job job;
+
+        CountingOutputStream(OutputStream out, Job job) {
+            super(out);
+            this.job = job;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            job.bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            job.bytes += len;
+        }
+    }
+
+    ExportJobService(DatabaseService databaseService, ParallelExportService parallelExportService,
+                     StatementRegistry statementRegistry, ObjectMapper objectMapper,
+                     @Value("${db.export.dir:exports}") String exportDir,
+                     @Value("${db.export.max-concurrent:2}") int maxConcurrent,
+                     @Value("${db.export.max-per-connection:1}") int maxPerConnection,
+                     @Value("${db.export.max-queued:20}") int maxQueued,
+                     @Value("${db.export.max-jobs-per-user:3}") int maxJobsPerUser,
+                     @Value("${db.export.ttl-minutes:60}") int ttlMinutes) {
+        this.databaseService = databaseService;
+        this.parallelExportService = parallelExportService;
+        this.statementRegistry = statementRegistry;
+        this.objectMapper = objectMapper;
+        this.exportDir = Paths.get(exportDir).toAbsolutePath();
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxPerConnection = Math.max(1, maxPerConnection);
+        this.maxQueued = maxQueued;
+        this.maxJobsPerUser = maxJobsPerUser;
+        this.ttlMillis = ttlMinutes * 60_000L;
+        this.workers = Executors.newFixedThreadPool(this.maxConcurrent);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(exportDir);
+        // Jobs live in memory only: files left by a previous run can no longer be downloaded.
+        // Only files this service writes are removed; anything else in the directory is left alone.
+        try (Stream<Path> files = Files.list(exportDir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                if (Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS) && LEFTOVER_FILE.matcher(file.getFileName().toString()).matches()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        ticker.scheduleWithFixedDelay(this::publishProgress, 1, 1, TimeUnit.SECONDS);
+        ticker.scheduleWithFixedDelay(this::sweep, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        for (Job job : jobs.values()) {
+            job.cancelled = true;
+            job.subscribers.forEach(SseEmitter::complete);
+        }
+        workers.shutdownNow();
+    }
+
+    /**
+     * 提交导出任务。parallel 为 true 时按范围切分后并行读取（只支持 csv/tsv，见 ParallelExportService）。
+     * 参数不合法时抛出 IllegalArgumentException，超过排队或每个用户的任务数限制时抛出 IllegalStateException。
+     */
+    synchronized ExportJobStatus submit(String connectionId, String sql, String format, boolean parallel, String owner) {
+        String normalizedFormat = format == null ? FORMATS.get(0) : format.toLowerCase();
+        if (!FORMATS.contains(normalizedFormat)) {
+            throw new IllegalArgumentException("不支持的导出格式: " + format + "，可选 " + FORMATS);
+        }
+        if (parallel && !isDelimited(normalizedFormat)) {
+            throw new IllegalArgumentException("并行导出只支持 csv 和 tsv 格式。");
+        }
+        if (sql == null || sql.trim().isEmpty()) {
+            throw new IllegalArgumentException("SQL 不能为空。");
+        }
+        if (!databaseService.hasConnection(connectionId)) {
+            throw new IllegalArgumentException("未找到ID为 " + connectionId + " 的连接配置。");
+        }
+        long active = jobs.values().stream().filter(j -> j.owner.equals(owner) && !j.isFinished()).count();
+        if (active >= maxJobsPerUser) {
+            throw new IllegalStateException("每个用户最多同时进行 " + maxJobsPerUser + " 个导出任务，请等待已有任务完成。");
+        }
+        if (queue.size() >= maxQueued) {
+            throw new IllegalStateException("导出队列已满（" + maxQueued + " 个任务），请稍后再试。");
+        }
+        Job job = new Job(owner, connectionId, sql, normalizedFormat, parallel);
+        jobs.put(job.id, job);
+        queue.addLast(job);
+        dispatch();
+        return toStatus(job);
+    }
+
+    /**
+     * 启动队列中可以运行的任务：全局和该连接的运行数都未达到上限时按提交顺序启动。
+     */
+    private synchronized void dispatch() {
+        Iterator<Job> it = queue.iterator();
+        while (running < maxConcurrent && it.hasNext()) {
+            Job job = it.next();
+            int perConnection = runningPerConnection.getOrDefault(job.connectionId, 0);
+            if (perConnection >= maxPerConnection) {
+                continue;
+            }
+            it.remove();
+            running++;
+            runningPerConnection.put(job.connectionId, perConnection + 1);
+            job.status = ExportJobStatus.Status.RUNNING;
+            job.startedAt = System.currentTimeMillis();
+            workers.execute(() -> run(job));
+        }
+    }
+
+    private void run(Job job) {
+        Path part = exportDir.resolve(job.id + ".part");
+        // Statements of the job are registered under the job id, so cancelling the job also cancels them
+        StatementRegistry.Scope scope = statementRegistry.withContext(job.owner, job.id);
+        try {
+            job.estimatedRows = databaseService.estimateRowCount(job.connectionId, job.sql);
+            LongConsumer progress = rows -> {
+                if (job.cancelled) {
+                    throw new CancellationException();
+                }
+                job.rows = rows;
+            };
+            try (OutputStream out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(part)), job)) {
+                if (job.parallel) {
+                    parallelExportService.export(job.connectionId, job.sql, job.format, out, exportDir, progress,
+                            note -> job.parallelNote = note);
+                } else if (isDelimited(job.format)) {
+                    databaseService.exportQueryToDelimited(job.connectionId, job.sql, job.format, out, progress);
+                } else if ("xlsx".equals(job.format)) {
+                    SXSSFWorkbook workbook = databaseService.exportQueryToExcel(job.connectionId, job.sql, progress);
+                    try {
+                        workbook.write(out);
+                    } finally {
+                        workbook.dispose();
+                    }
+                } else {
+                    databaseService.streamQuery(job.connectionId, job.sql, 0, out, progress);
+                }
+            }
+            Path target = exportDir.resolve(job.id + "." + extension(job.format));
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+            job.file = target;
+            job.status = ExportJobStatus.Status.DONE;
+        } catch (CancellationException e) {
+            job.status = ExportJobStatus.Status.CANCELLED;
+        } catch (Exception e) {
+            if (job.cancelled) {
+                // The statement was cancelled while the database was still working on it
+                job.status = ExportJobStatus.Status.CANCELLED;
+            } else {
+                e.printStackTrace();
+                job.error = e.getMessage();
+                job.status = ExportJobStatus.Status.FAILED;
+            }
+        } finally {
+            scope.close();
+            if (job.status != ExportJobStatus.Status.DONE) {
+                deleteQuietly(part);
+            }
+            job.finishedAt = System.currentTimeMillis();
+            synchronized (this) {
+                running--;
+                runningPerConnection.merge(job.connectionId, -1, (a, b) -> a + b <= 0 ? null : a + b);
+                dispatch();
+            }
+            notifySubscribers(job);
+        }
+    }
+
+    ExportJobStatus getStatus(String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null ? toStatus(job) : null;
+    }
+
+    List<ExportJobStatus> getJobs(String owner) {
+        return jobs.values().stream()
+                .filter(job -> job.owner.equals(owner))
+                .sorted(Comparator.comparingLong((Job job) -> job.createdAt).reversed())
+                .map(this::toStatus)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 已完成任务的导出文件，任务不存在、未完成或文件已删除时返回 null。
+     */
+    Path getFile(String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null && job.file != null && Files.isRegularFile(job.file) ? job.file : null;
+    }
+
+    /**
+     * 下载时使用的文件名，例如 query_result_20240101_120000.xlsx。
+     */
+    String getDownloadName(String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null ? downloadName(job) : null;
+    }
+
+    private static String downloadName(Job job) {
+        String time = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date(job.createdAt));
+        return "query_result_" + time + "." + extension(job.format);
+    }
+
+    /**
+     * CSV/TSV 导出为 gzip 压缩文件。
+     */
+    private static String extension(String format) {
+        return isDelimited(format) ? format + ".gz" : format;
+    }
+
+    private static boolean isDelimited(String format) {
+        return DelimitedExportWriter.CSV.equals(format) || DelimitedExportWriter.TSV.equals(format);
+    }
+
+    /**
+     * 取消排队或运行中的任务（运行中的任务的语句被取消，或在读完当前这批行后停止），已结束的任务连同文件一起删除。
+     * 任务不存在时返回 false。
+     */
+    boolean cancel(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (job.status == ExportJobStatus.Status.QUEUED && queue.remove(job)) {
+                job.status = ExportJobStatus.Status.CANCELLED;
+                job.finishedAt = System.currentTimeMillis();
+            }
+        }
+        if (job.isFinished()) {
+            jobs.remove(jobId);
+            if (job.file != null) {
+                deleteQuietly(job.file);
+            }
+            notifySubscribers(job);
+        } else {
+            job.cancelled = true;
+            statementRegistry.cancel(job.id);
+        }
+        return true;
+    }
+
+    /**
+     * 订阅任务进度：立即推送当前状态，之后每秒推送一次，任务结束时推送最终状态后结束。
+     */
+    SseEmitter subscribe(String jobId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            ExportJobStatus unknown = new ExportJobStatus();
+            unknown.setJobId(jobId);
+            unknown.setStatus(ExportJobStatus.Status.FAILED);
+            unknown.setError("导出任务不存在或已过期");
+            send(emitter, unknown, true);
+            return emitter;
+        }
+        synchronized (job) {
+            if (!job.isFinished()) {
+                job.subscribers.add(emitter);
+                emitter.onCompletion(() -> job.subscribers.remove(emitter));
+                emitter.onTimeout(() -> job.subscribers.remove(emitter));
+                send(emitter, toStatus(job), false);
+                return emitter;
+            }
+        }
+        send(emitter, toStatus(job), true);
+        return emitter;
+    }
+
+    private void publishProgress() {
+        for (Job job : jobs.values()) {
+            if (!job.isFinished() && !job.subscribers.isEmpty()) {
+                ExportJobStatus status = toStatus(job);
+                for (SseEmitter emitter : job.subscribers) {
+                    send(emitter, status, false);
+                }
+            }
+        }
+    }
+
+    private void notifySubscribers(Job job) {
+        ExportJobStatus status = toStatus(job);
+        synchronized (job) {
+            for (SseEmitter emitter : job.subscribers) {
+                send(emitter, status, true);
+            }
+            job.subscribers.clear();
+        }
+    }
+
+    private void send(SseEmitter emitter, ExportJobStatus status, boolean last) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(objectMapper.writeValueAsString(status)));
+            if (last) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client closed the progress stream; the job keeps running
+            emitter.completeWithError(e);
+        }
+    }
+
+    private synchronized ExportJobStatus toStatus(Job job) {
+        ExportJobStatus status = new ExportJobStatus();
+        status.setJobId(job.id);
+        status.setConnectionId(job.connectionId);
+        status.setFormat(job.format);
+        status.setParallel(job.parallel);
+        status.setParallelNote(job.parallelNote);
+        status.setStatus(job.status);
+        status.setRowsWritten(job.rows);
+        status.setBytesWritten(job.bytes);
+        status.setEstimatedRows(job.estimatedRows);
+        status.setCreatedAt(job.createdAt);
+        status.setStartedAt(job.startedAt);
+        status.setFinishedAt(job.finishedAt);
+        status.setError(job.error);
+        if (job.status == ExportJobStatus.Status.QUEUED) {
+            int position = 1;
+            for (Job queued : queue) {
+                if (queued == job) {
+                    break;
+                }
+                position++;
+            }
+            status.setQueuePosition(position);
+        }
+        long eta = -1;
+        if (job.status == ExportJobStatus.Status.RUNNING && job.rows > 0 && job.estimatedRows > 0) {
+            long elapsed = System.currentTimeMillis() - job.startedAt;
+            eta = Math.max(0, (job.estimatedRows - job.rows) * elapsed / job.rows / 1000);
+        }
+        status.setEtaSeconds(eta);
+        if (job.file != null) {
+            status.setFileName(downloadName(job));
+            try {
+                status.setFileSize(Files.size(job.file));
+            } catch (IOException e) {
+                // Removed by the sweeper in the meantime
+            }
+        }
+        return status;
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (Job job : new ArrayList<>(jobs.values())) {
+            if (job.isFinished() && now - job.finishedAt > ttlMillis) {
+                jobs.remove(job.id);
+                if (job.file != null) {
+                    deleteQuietly(job.file);
+                }
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete export file " + file + ": " + e.getMessage());
+        }
+    }
+}
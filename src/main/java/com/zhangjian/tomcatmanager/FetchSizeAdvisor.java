@@ -0,0 +1,231 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.FetchSizeDecision;
+import com.zhangjian.tomcatmanager.dto.FetchSizeStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+
+/**
+ * 查询的 JDBC fetch size 策略。Oracle 驱动默认每次往返只取 10 行，一页 100 行就要往返 10 次。
+ *
+ * <p>执行前按用途设置初始值：分页查询为页大小（一页一次往返），导出/流式查询为 export-initial-rows。
+ * 执行后按 ResultSetMetaData 的列数和声明宽度估算每行字节数，把后续每次往返的行数调整为
+ * target-kilobytes / 行字节数（分页查询不超过页大小），限制在 [min, max] 之间。
+ * 每次查询选择的值、往返次数和每次往返的耗时记录在统计中。</p>
+ */
+@Component
+public class FetchSizeAdvisor {
+
+    enum Mode { PAGE, EXPORT }
+
+    private static final int RECENT_DECISIONS = 50;
+
+    private final long targetBytes;
+    private final int minRows;
+    private final int maxRows;
+    private final int exportInitialRows;
+    private final LatencySamples roundTripMicros = new LatencySamples(1000);
+    private final Deque<FetchSizeDecision> recent = new ArrayDeque<>();
+    private long queries;
+    private long rows;
+    private long roundTrips;
+
+    FetchSizeAdvisor(@Value("${db.fetch-size.target-kilobytes:256}") int targetKilobytes,
+                     @Value("${db.fetch-size.min:10}") int minRows,
+                     @Value("${db.fetch-size.max:5000}") int maxRows,
+                     @Value("${db.fetch-size.export-initial-rows:100}") int exportInitialRows) {
+        this.targetBytes = targetKilobytes * 1024L;
+        this.minRows = minRows;
+        this.maxRows = maxRows;
+        this.exportInitialRows = exportInitialRows;
+    }
+
+    /**
+     * 一次查询的 fetch size 设置和往返计时。按 start -> adapt -> next... -> finish 的顺序使用。
+     */
+    final class Fetch {
+        private final String connectionId;
+        private final Mode mode;
+        private final int pageRows;
+        private final int initialFetchSize;
+        private int fetchSize;
+        private int columns;
+        private long rowBytes;
+        private long remaining;
+        private long fetched;
+        private long trips;
+        private long fetchNanos;
+        private boolean finished;
+
+        private Fetch(String connectionId, Mode mode, int pageRows, int initialFetchSize) {
+            this.connectionId = connectionId;
+            this.mode = mode;
+            this.pageRows = pageRows;
+            this.initialFetchSize = initialFetchSize;
+            this.fetchSize = initialFetchSize;
+        }
+
+        int getFetchSize() {
+            return fetchSize;
+        }
+
+        /**
+         * 语句执行后按列宽调整后续往返的行数（第一批已按初始值读取）。
+         */
+        void adapt(ResultSet rs) throws SQLException {
+            ResultSetMetaData metaData = rs.getMetaData();
+            columns = metaData.getColumnCount();
+            rowBytes = estimateRowBytes(metaData);
+            long advised = Math.max(minRows, Math.min(maxRows, targetBytes / rowBytes));
+            if (mode == Mode.PAGE && pageRows > 0) {
+                advised = Math.min(advised, pageRows);
+            }
+            fetchSize = (int) advised;
+            rs.setFetchSize(fetchSize);
+        }
+
+        /**
+         * 代替 rs.next()：每批的第一次调用会触发一次网络往返，只对这些调用计时。
+         */
+        boolean next(ResultSet rs) throws SQLException {
+            if (remaining > 0) {
+                remaining--;
+                if (rs.next()) {
+                    fetched++;
+                    return true;
+                }
+                return false;
+            }
+            long started = System.nanoTime();
+            boolean hasRow = rs.next();
+            long elapsed = System.nanoTime() - started;
+            fetchNanos += elapsed;
+            trips++;
+            roundTripMicros.record(elapsed / 1000);
+            remaining = (trips == 1 ? initialFetchSize : fetchSize) - 1;
+            if (hasRow) {
+                fetched++;
+            }
+            return hasRow;
+        }
+
+        /**
+         * 查询读完或游标关闭时记录本次查询的统计，重复调用只记录一次。
+         */
+        void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            FetchSizeDecision decision = new FetchSizeDecision();
+            decision.setTimestamp(System.currentTimeMillis());
+            decision.setConnectionId(connectionId);
+            decision.setMode(mode.name().toLowerCase());
+            decision.setColumns(columns);
+            decision.setEstimatedRowBytes(rowBytes);
+            decision.setInitialFetchSize(initialFetchSize);
+            decision.setFetchSize(fetchSize);
+            decision.setRows(fetched);
+            decision.setRoundTrips(trips);
+            decision.setAvgRoundTripMs(trips == 0 ? 0 : fetchNanos / 1e6 / trips);
+            record(decision);
+        }
+    }
+
+    /**
+     * 执行前设置初始 fetch size。pageRows 为分页查询要读取的行数，导出时忽略。
+     */
+    Fetch start(Statement stmt, String connectionId, Mode mode, int pageRows) throws SQLException {
+        int initial = mode == Mode.PAGE && pageRows > 0 ? pageRows : exportInitialRows;
+        initial = Math.max(minRows, Math.min(maxRows, initial));
+        stmt.setFetchSize(initial);
+        return new Fetch(connectionId, mode, pageRows, initial);
+    }
+
+    synchronized FetchSizeStats getStats() {
+        FetchSizeStats stats = new FetchSizeStats();
+        stats.setTargetBytes(targetBytes);
+        stats.setMinFetchSize(minRows);
+        stats.setMaxFetchSize(maxRows);
+        stats.setQueries(queries);
+        stats.setRows(rows);
+        stats.setRoundTrips(roundTrips);
+        stats.setRoundTripP50Micros(roundTripMicros.percentile(0.5));
+        stats.setRoundTripP90Micros(roundTripMicros.percentile(0.9));
+        stats.setRoundTripP99Micros(roundTripMicros.percentile(0.99));
+        stats.setRecent(new ArrayList<>(recent));
+        return stats;
+    }
+
+    private synchronized void record(FetchSizeDecision decision) {
+        queries++;
+        rows += decision.getRows();
+        roundTrips += decision.getRoundTrips();
+        recent.addFirst(decision);
+        if (recent.size() > RECENT_DECISIONS) {
+            recent.removeLast();
+        }
+    }
+
+    /**
+     * 按声明宽度估算一行在网络上的字节数。LOB 只计定位符，实际内容在读取时单独传输。
+     */
+    static long estimateRowBytes(ResultSetMetaData metaData) throws SQLException {
+        long bytes = 16;
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            int precision = metaData.getPrecision(i);
+            switch (metaData.getColumnType(i)) {
+                case Types.BIT:
+                case Types.BOOLEAN:
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    bytes += 8;
+                    break;
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    bytes += 22;
+                    break;
+                case Types.DATE:
+                case Types.TIME:
+                case Types.TIMESTAMP:
+                case Types.TIME_WITH_TIMEZONE:
+                case Types.TIMESTAMP_WITH_TIMEZONE:
+                    bytes += 13;
+                    break;
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                    bytes += 2L * width(precision, metaData.getColumnDisplaySize(i));
+                    break;
+                case Types.CLOB:
+                case Types.NCLOB:
+                case Types.BLOB:
+                case Types.SQLXML:
+                    bytes += 100;
+                    break;
+                default:
+                    bytes += width(precision, metaData.getColumnDisplaySize(i));
+            }
+        }
+        return bytes;
+    }
+
+    private static int width(int precision, int displaySize) {
+        int declared = precision > 0 ? precision : displaySize;
+        // Unbounded or very wide declarations (TEXT, LONG) are rarely filled; cap so they do not force tiny batches
+        return declared > 0 ? Math.min(declared, 4000) : 255;
+    }
+}
@@ -0,0 +1,35 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.GcPauseEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/gc")
+public class GcController {
+
+    private final GcLogService gcLogService;
+
+    GcController(GcLogService gcLogService) {
+        this.gcLogService = gcLogService;
+    }
+
+    @GetMapping
+    public Map<String, Object> getGcStats(@RequestParam(defaultValue = "20") int recent) {
+        Map<String, Object> body = new LinkedHashMap<>(gcLogService.getSummary());
+        body.put("windows", gcLogService.getWindows());
+        body.put("recentPauses", gcLogService.getRecentPauses(recent));
+        return body;
+    }
+
+    @GetMapping("/pauses")
+    public List<GcPauseEvent> getPauses(@RequestParam(defaultValue = "200") int limit) {
+        return gcLogService.getRecentPauses(limit);
+    }
+}
@@ -0,0 +1,300 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.GcPauseEvent;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 逐行解析 GC 日志中的停顿事件，覆盖 JDK 8 的 -Xloggc 格式（Serial/Parallel/CMS/G1，含 PrintGCDetails 的多行 G1 输出）
+ * 和 JDK 9+ 的统一日志 -Xlog:gc*。每个日志文件使用一个实例，跨行的状态（G1 明细、按 GC id 收集的分代信息）保存在实例中。
+ *
+ * <p>分配量按“本次 GC 前的堆占用 - 上次 GC 后的堆占用”计算；晋升量按“年轻代减少量 - 整堆减少量”计算，
+ * 只有日志中带有年轻代信息时才有值。</p>
+ */
+final class GcLogParser {
+
+    private static final String SIZE = "(\\d+(?:\\.\\d+)?[BKMG])";
+    private static final DateTimeFormatter DATE_STAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+
+    // JDK 8: "2024-01-01T10:00:00.123+0800: 12.345: [GC (Allocation Failure) ..."
+    private static final Pattern LEGACY_START = Pattern.compile(
+            "^(?:(\\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d{3}[+-]\\d{4}): )?(?:(\\d+\\.\\d+): )?\\[(Full GC|GC)\\b\\s*(.*)$");
+    private static final Pattern LEGACY_PAUSE = Pattern.compile(", (\\d+(?:\\.\\d+)?) secs\\]");
+    private static final Pattern LEGACY_HEAP = Pattern.compile("(?:[\\])]\\s+|^\\w+\\s+)" + SIZE + "->" + SIZE + "\\(" + SIZE + "\\)");
+    private static final Pattern LEGACY_YOUNG = Pattern.compile("\\[(?:PSYoungGen|DefNew|ParNew|ASParNew): (\\d+)K->(\\d+)K\\(");
+    private static final Pattern G1_DETAIL = Pattern.compile("\\[Eden: " + SIZE + "\\(" + SIZE + "\\)->" + SIZE + "\\(" + SIZE + "\\)"
+            + " Survivors: " + SIZE + "->" + SIZE + " Heap: " + SIZE + "\\(" + SIZE + "\\)->" + SIZE + "\\(" + SIZE + "\\)\\]");
+    // One level of nesting for causes such as "(System.gc())"
+    private static final String PAREN = "\\(((?:[^()]|\\([^()]*\\))*)\\)";
+    private static final Pattern FIRST_PAREN = Pattern.compile(PAREN);
+
+    // JDK 9+: "[2024-01-01T10:00:00.123+0800][0.123s][info][gc] GC(3) Pause Young (Normal) (G1 Evacuation Pause) 24M->3M(256M) 5.123ms"
+    private static final Pattern UNIFIED_LINE = Pattern.compile("^((?:\\[[^\\]]*\\])+)\\s*(.*)$");
+    private static final Pattern UNIFIED_DATE = Pattern.compile("\\[(\\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d{3}[+-]\\d{4})\\]");
+    private static final Pattern UNIFIED_UPTIME = Pattern.compile("\\[(\\d+(?:\\.\\d+)?)s\\]");
+    private static final Pattern UNIFIED_PAUSE = Pattern.compile(
+            "^GC\\((\\d+)\\) Pause ([A-Za-z ]+?)((?: " + PAREN + ")*)(?: " + SIZE + "->" + SIZE + "\\(" + SIZE + "\\))? (\\d+(?:\\.\\d+)?)ms$");
+    private static final Pattern UNIFIED_REGIONS = Pattern.compile("^GC\\((\\d+)\\) (Eden|Survivor) regions: (\\d+)->(\\d+)");
+    private static final Pattern UNIFIED_YOUNG = Pattern.compile("^GC\\((\\d+)\\) (?:PSYoungGen|DefNew|ParNew): (\\d+)K(?:\\(\\d+K\\))?->(\\d+)K");
+    private static final Pattern REGION_SIZE = Pattern.compile("Heap [Rr]egion [Ss]ize: (\\d+)([KMG])");
+
+    private final Consumer<GcPauseEvent> sink;
+    private final Map<Integer, long[]> youngByGcId = new LinkedHashMap<>();
+    private long regionSizeKb = 0;
+    private Long lastHeapAfterKb;
+    private GcPauseEvent pendingG1;
+    private int pendingBatches = 0;
+
+    GcLogParser(Consumer<GcPauseEvent> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * 解析一行。ingestTime 用于日志中没有日期戳时的事件时间。
+     */
+    void feed(String line, long ingestTime) {
+        if (line.isEmpty()) {
+            return;
+        }
+        if (line.charAt(0) == '[') {
+            Matcher unified = UNIFIED_LINE.matcher(line);
+            if (unified.matches() && !line.startsWith("[GC") && !line.startsWith("[Full GC")) {
+                parseUnified(unified.group(1), unified.group(2), ingestTime);
+                return;
+            }
+        }
+        Matcher g1 = G1_DETAIL.matcher(line);
+        if (g1.find()) {
+            completePendingG1(g1);
+            return;
+        }
+        Matcher legacy = LEGACY_START.matcher(line);
+        if (legacy.find()) {
+            parseLegacy(legacy, ingestTime);
+        }
+    }
+
+    /**
+     * 每批读取结束时调用。G1 明细行在下一批仍未出现时，不带堆信息地输出挂起的事件。
+     */
+    void endBatch() {
+        if (pendingG1 != null && ++pendingBatches > 1) {
+            emit(pendingG1);
+            pendingG1 = null;
+        }
+    }
+
+    private void parseLegacy(Matcher legacy, long ingestTime) {
+        String rest = legacy.group(4);
+        Matcher pause = LEGACY_PAUSE.matcher(rest);
+        Double pauseSecs = null;
+        while (pause.find()) {
+            pauseSecs = Double.parseDouble(pause.group(1));
+        }
+        if (pauseSecs == null) {
+            // Concurrent phases and lines split by concurrent output carry no pause time
+            return;
+        }
+        flushPendingG1();
+
+        GcPauseEvent event = new GcPauseEvent();
+        event.setTimestamp(parseDate(legacy.group(1), ingestTime));
+        event.setUptimeSeconds(legacy.group(2) != null ? Double.valueOf(legacy.group(2)) : null);
+        event.setPauseMs(pauseSecs * 1000);
+        event.setKind(legacyKind(legacy.group(3), rest));
+        Matcher cause = FIRST_PAREN.matcher(rest);
+        if (cause.find()) {
+            event.setCause(cause.group(1));
+        }
+        Matcher young = LEGACY_YOUNG.matcher(rest);
+        if (young.find()) {
+            event.setYoungBeforeKb(Long.parseLong(young.group(1)));
+            event.setYoungAfterKb(Long.parseLong(young.group(2)));
+        }
+        Matcher heap = LEGACY_HEAP.matcher(rest);
+        if (heap.find()) {
+            event.setHeapBeforeKb(sizeKb(heap.group(1)));
+            event.setHeapAfterKb(sizeKb(heap.group(2)));
+            event.setHeapTotalKb(sizeKb(heap.group(3)));
+        }
+        if (rest.startsWith("pause") && event.getHeapBeforeKb() == null) {
+            // G1 with PrintGCDetails prints Eden/Survivors/Heap on a following line
+            pendingG1 = event;
+            pendingBatches = 0;
+            return;
+        }
+        emit(event);
+    }
+
+    private void completePendingG1(Matcher g1) {
+        if (pendingG1 == null) {
+            return;
+        }
+        GcPauseEvent event = pendingG1;
+        pendingG1 = null;
+        event.setYoungBeforeKb(sizeKb(g1.group(1)) + sizeKb(g1.group(5)));
+        event.setYoungAfterKb(sizeKb(g1.group(3)) + sizeKb(g1.group(6)));
+        event.setHeapBeforeKb(sizeKb(g1.group(7)));
+        event.setHeapAfterKb(sizeKb(g1.group(9)));
+        event.setHeapTotalKb(sizeKb(g1.group(10)));
+        emit(event);
+    }
+
+    private void flushPendingG1() {
+        if (pendingG1 != null) {
+            emit(pendingG1);
+            pendingG1 = null;
+        }
+    }
+
+    private void parseUnified(String decorations, String message, long ingestTime) {
+        Matcher regionSize = REGION_SIZE.matcher(message);
+        if (regionSize.find()) {
+            regionSizeKb = sizeKb(regionSize.group(1) + regionSize.group(2));
+            return;
+        }
+        Matcher regions = UNIFIED_REGIONS.matcher(message);
+        if (regions.find()) {
+            if (regionSizeKb > 0) {
+                long[] young = youngFor(Integer.parseInt(regions.group(1)));
+                young[0] += Long.parseLong(regions.group(3)) * regionSizeKb;
+                young[1] += Long.parseLong(regions.group(4)) * regionSizeKb;
+            }
+            return;
+        }
+        Matcher youngGen = UNIFIED_YOUNG.matcher(message);
+        if (youngGen.find()) {
+            long[] young = youngFor(Integer.parseInt(youngGen.group(1)));
+            young[0] = Long.parseLong(youngGen.group(2));
+            young[1] = Long.parseLong(youngGen.group(3));
+            return;
+        }
+        Matcher pause = UNIFIED_PAUSE.matcher(message);
+        if (!pause.find()) {
+            return;
+        }
+        int gcId = Integer.parseInt(pause.group(1));
+        GcPauseEvent event = new GcPauseEvent();
+        Matcher date = UNIFIED_DATE.matcher(decorations);
+        event.setTimestamp(date.find() ? parseDate(date.group(1), ingestTime) : ingestTime);
+        Matcher uptime = UNIFIED_UPTIME.matcher(decorations);
+        event.setUptimeSeconds(uptime.find() ? Double.valueOf(uptime.group(1)) : null);
+        event.setGcId(gcId);
+        event.setPauseMs(Double.parseDouble(pause.group(8)));
+        String name = pause.group(2).trim();
+        String qualifiers = pause.group(3);
+        event.setKind(unifiedKind(name, qualifiers));
+        // Group 4 keeps the last qualifier, which is the cause
+        event.setCause(pause.group(4));
+        if (pause.group(5) != null) {
+            event.setHeapBeforeKb(sizeKb(pause.group(5)));
+            event.setHeapAfterKb(sizeKb(pause.group(6)));
+            event.setHeapTotalKb(sizeKb(pause.group(7)));
+        }
+        long[] young = youngByGcId.remove(gcId);
+        if (young != null && young[0] > 0) {
+            event.setYoungBeforeKb(young[0]);
+            event.setYoungAfterKb(young[1]);
+        }
+        emit(event);
+    }
+
+    private long[] youngFor(int gcId) {
+        long[] young = youngByGcId.get(gcId);
+        if (young == null) {
+            young = new long[2];
+            youngByGcId.put(gcId, young);
+            // Phases of a GC id that never reaches a pause line must not accumulate
+            while (youngByGcId.size() > 16) {
+                youngByGcId.remove(youngByGcId.keySet().iterator().next());
+            }
+        }
+        return young;
+    }
+
+    private void emit(GcPauseEvent event) {
+        if (event.getHeapBeforeKb() != null && lastHeapAfterKb != null) {
+            event.setAllocatedKb(Math.max(0, event.getHeapBeforeKb() - lastHeapAfterKb));
+        }
+        if (event.getYoungBeforeKb() != null && event.getHeapBeforeKb() != null && !"full".equals(event.getKind())) {
+            long youngFreed = event.getYoungBeforeKb() - event.getYoungAfterKb();
+            long heapFreed = event.getHeapBeforeKb() - event.getHeapAfterKb();
+            event.setPromotedKb(Math.max(0, youngFreed - heapFreed));
+        }
+        if (event.getHeapAfterKb() != null) {
+            lastHeapAfterKb = event.getHeapAfterKb();
+        }
+        sink.accept(event);
+    }
+
+    private static String legacyKind(String gc, String rest) {
+        if ("Full GC".equals(gc)) {
+            return "full";
+        }
+        if (rest.contains("(mixed)")) {
+            return "mixed";
+        }
+        if (rest.startsWith("remark") || rest.contains("Final Remark")) {
+            return "remark";
+        }
+        if (rest.startsWith("cleanup")) {
+            return "cleanup";
+        }
+        if (rest.contains("CMS Initial Mark")) {
+            return "initial-mark";
+        }
+        return "young";
+    }
+
+    private static String unifiedKind(String name, String qualifiers) {
+        switch (name) {
+            case "Young":
+                return qualifiers != null && qualifiers.contains("(Mixed)") ? "mixed" : "young";
+            case "Full":
+                return "full";
+            case "Remark":
+            case "Final Mark":
+                return "remark";
+            case "Cleanup":
+                return "cleanup";
+            case "Initial Mark":
+            case "Init Mark":
+            case "Mark Start":
+                return "initial-mark";
+            default:
+                return name.toLowerCase().replace(' ', '-');
+        }
+    }
+
+    private static long parseDate(String stamp, long fallback) {
+        if (stamp == null) {
+            return fallback;
+        }
+        try {
+            return OffsetDateTime.parse(stamp, DATE_STAMP).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * "24.0M"、"3072K"、"0.0B"、"1G" 转换为 KB。
+     */
+    static long sizeKb(String size) {
+        char unit = size.charAt(size.length() - 1);
+        double value = Double.parseDouble(size.substring(0, size.length() - 1));
+        switch (unit) {
+            case 'B': return (long) (value / 1024);
+            case 'M': return (long) (value * 1024);
+            case 'G': return (long) (value * 1024 * 1024);
+            default: return (long) value;
+        }
+    }
+}
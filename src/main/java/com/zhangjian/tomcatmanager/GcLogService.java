@@ -0,0 +1,380 @@
+package com.zhangjian.tomcatmanager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhangjian.tomcatmanager.dto.GcPauseEvent;
+import com.zhangjian.tomcatmanager.dto.GcWindowStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 增量读取被管 JVM 的 GC 日志，维护停顿时间直方图和按时间窗口汇总的分配/晋升速率，
+ * 并把超过阈值的长停顿推送到事件流。
+ *
+ * <p>日志文件按以下顺序确定：tomcat.gc.log-file 配置；bin/setenv 中的 -Xloggc 或 -Xlog:gc 输出文件
+ * （相对路径基于 bin 目录，即 catalina.bat 的工作目录）；logs 或 bin 下最新的 gc*.log。
+ * 文件名中的 %t、%p 占位符以及 JDK 8 滚动产生的 .N.current 文件都会匹配到最新的那个。</p>
+ */
+@Service
+public class GcLogService {
+
+    static final long[] PAUSE_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, Long.MAX_VALUE};
+    private static final long MAX_BACKLOG_BYTES = 8 * 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int RECENT_CAPACITY = 200;
+
+    private static final Pattern XLOGGC = Pattern.compile("-Xloggc:(\"?)([^\"\\s]+)\\1");
+    private static final Pattern XLOG_FILE = Pattern.compile("-Xlog:gc[^\\s:]*:(?:file=)?(\"?)((?:[A-Za-z]:)?[^\"\\s:]+)\\1");
+
+    private final AppConfig appConfig;
+    private final TomcatService tomcatService;
+    private final ObjectMapper objectMapper;
+    private final String logFileSetting;
+    private final long longPauseMs;
+    private final int windowSeconds;
+    private final int windowCount;
+    private final int pollSeconds;
+    private final ScheduledExecutorService tailExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    // Tail state, only touched by the tail thread
+    private Path currentFile;
+    private Object currentFileKey;
+    private long offset;
+    private boolean skipFirstLine;
+    private boolean catchingUp;
+    private boolean firstFile = true;
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+    private GcLogParser parser;
+
+    // Aggregates, guarded by this
+    private final long[] pauseHistogram = new long[PAUSE_BOUNDS_MS.length];
+    private long pauseCount;
+    private double totalPauseMs;
+    private double maxPauseMs;
+    private final Deque<GcPauseEvent> recentPauses = new ArrayDeque<>();
+    private final Deque<GcWindowStats> windows = new ArrayDeque<>();
+
+    GcLogService(AppConfig appConfig, TomcatService tomcatService, ObjectMapper objectMapper,
+                 @Value("${tomcat.gc.log-file:}") String logFileSetting,
+                 @Value("${tomcat.gc.long-pause-ms:500}") long longPauseMs,
+                 @Value("${tomcat.gc.window-seconds:60}") int windowSeconds,
+                 @Value("${tomcat.gc.window-count:60}") int windowCount,
+                 @Value("${tomcat.gc.poll-seconds:2}") int pollSeconds) {
+        this.appConfig = appConfig;
+        this.tomcatService = tomcatService;
+        this.objectMapper = objectMapper;
+        this.logFileSetting = logFileSetting;
+        this.longPauseMs = longPauseMs;
+        this.windowSeconds = windowSeconds;
+        this.windowCount = windowCount;
+        this.pollSeconds = pollSeconds;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (pollSeconds > 0) {
+            tailExecutor.scheduleWithFixedDelay(this::poll, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tailExecutor.shutdownNow();
+    }
+
+    public synchronized Map<String, Object> getSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        Path file = currentFile;
+        summary.put("logFile", file != null ? file.toAbsolutePath().toString() : null);
+        summary.put("offset", offset);
+        summary.put("pauseCount", pauseCount);
+        summary.put("totalPauseMs", totalPauseMs);
+        summary.put("maxPauseMs", maxPauseMs);
+        summary.put("p50Ms", percentileMs(0.5));
+        summary.put("p95Ms", percentileMs(0.95));
+        summary.put("p99Ms", percentileMs(0.99));
+        summary.put("longPauseMs", longPauseMs);
+        List<Map<String, Object>> histogram = new ArrayList<>();
+        for (int i = 0; i < PAUSE_BOUNDS_MS.length; i++) {
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("leMs", PAUSE_BOUNDS_MS[i] == Long.MAX_VALUE ? null : PAUSE_BOUNDS_MS[i]);
+            bucket.put("count", pauseHistogram[i]);
+            histogram.add(bucket);
+        }
+        summary.put("histogram", histogram);
+        return summary;
+    }
+
+    /**
+     * 最近的时间窗口汇总，按时间先后排列。未结束的当前窗口按已经过的时间计算速率。
+     */
+    public synchronized List<GcWindowStats> getWindows() {
+        List<GcWindowStats> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (GcWindowStats window : windows) {
+            GcWindowStats copy = new GcWindowStats(window.getWindowStart());
+            copy.setPauseCount(window.getPauseCount());
+            copy.setFullCount(window.getFullCount());
+            copy.setTotalPauseMs(window.getTotalPauseMs());
+            copy.setMaxPauseMs(window.getMaxPauseMs());
+            copy.setAllocatedKb(window.getAllocatedKb());
+            copy.setPromotedKb(window.getPromotedKb());
+            long elapsedMs = Math.min(windowSeconds * 1000L, Math.max(1000L, now - window.getWindowStart()));
+            copy.setAllocationRateKbPerSec(window.getAllocatedKb() * 1000.0 / elapsedMs);
+            copy.setPromotionRateKbPerSec(window.getPromotedKb() * 1000.0 / elapsedMs);
+            result.add(copy);
+        }
+        return result;
+    }
+
+    public synchronized List<GcPauseEvent> getRecentPauses(int limit) {
+        List<GcPauseEvent> all = new ArrayList<>(recentPauses);
+        return all.subList(Math.max(0, all.size() - limit), all.size());
+    }
+
+    private synchronized long percentileMs(double q) {
+        if (pauseCount == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(q * pauseCount);
+        long cumulative = 0;
+        for (int i = 0; i < pauseHistogram.length; i++) {
+            cumulative += pauseHistogram[i];
+            if (cumulative >= rank) {
+                return Math.min(PAUSE_BOUNDS_MS[i], (long) Math.ceil(maxPauseMs));
+            }
+        }
+        return (long) Math.ceil(maxPauseMs);
+    }
+
+    private void poll() {
+        try {
+            Path file = resolveLogFile();
+            if (file == null) {
+                return;
+            }
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            Object key = attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+            if (!file.equals(currentFile) || !key.equals(currentFileKey) || attrs.size() < offset) {
+                // New file, rotation or the JVM restarted and truncated the log
+                currentFile = file;
+                currentFileKey = key;
+                offset = Math.max(0, attrs.size() - MAX_BACKLOG_BYTES);
+                skipFirstLine = offset > 0;
+                partialLine.reset();
+                parser = new GcLogParser(this::accept);
+                // Pauses already in the log when the manager starts are counted but not alerted
+                catchingUp = firstFile;
+                firstFile = false;
+            }
+            if (attrs.size() > offset) {
+                readNewBytes(file, attrs.size());
+            }
+            parser.endBatch();
+            catchingUp = false;
+        } catch (Exception e) {
+            // The log may be rotated between listing and reading; try again on the next poll
+        }
+    }
+
+    private void readNewBytes(Path file, long size) throws IOException {
+        long ingestTime = System.currentTimeMillis();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (offset < size) {
+                ((Buffer) buffer).clear();
+                int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    break;
+                }
+                offset += read;
+                byte[] bytes = buffer.array();
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n') {
+                        partialLine.write(bytes, lineStart, i - lineStart);
+                        completeLine(ingestTime);
+                        lineStart = i + 1;
+                    }
+                }
+                partialLine.write(bytes, lineStart, read - lineStart);
+            }
+        }
+    }
+
+    private void completeLine(long ingestTime) {
+        String line = new String(partialLine.toByteArray(), StandardCharsets.ISO_8859_1);
+        partialLine.reset();
+        if (skipFirstLine) {
+            // Backlog started mid-line
+            skipFirstLine = false;
+            return;
+        }
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        parser.feed(line, ingestTime);
+    }
+
+    private void accept(GcPauseEvent event) {
+        synchronized (this) {
+            pauseCount++;
+            totalPauseMs += event.getPauseMs();
+            maxPauseMs = Math.max(maxPauseMs, event.getPauseMs());
+            pauseHistogram[bucketIndex(event.getPauseMs())]++;
+            recentPauses.addLast(event);
+            while (recentPauses.size() > RECENT_CAPACITY) {
+                recentPauses.removeFirst();
+            }
+            GcWindowStats window = windowFor(event.getTimestamp());
+            if (window != null) {
+                window.setPauseCount(window.getPauseCount() + 1);
+                if ("full".equals(event.getKind())) {
+                    window.setFullCount(window.getFullCount() + 1);
+                }
+                window.setTotalPauseMs(window.getTotalPauseMs() + event.getPauseMs());
+                window.setMaxPauseMs(Math.max(window.getMaxPauseMs(), event.getPauseMs()));
+                if (event.getAllocatedKb() != null) {
+                    window.setAllocatedKb(window.getAllocatedKb() + event.getAllocatedKb());
+                }
+                if (event.getPromotedKb() != null) {
+                    window.setPromotedKb(window.getPromotedKb() + event.getPromotedKb());
+                }
+            }
+        }
+        if (!catchingUp && longPauseMs > 0 && event.getPauseMs() >= longPauseMs) {
+            tomcatService.broadcastLog(String.format("[GC] 检测到长停顿 %.1f ms (%s%s)，堆 %s -> %s",
+                    event.getPauseMs(), event.getKind(), event.getCause() != null ? ", " + event.getCause() : "",
+                    formatKb(event.getHeapBeforeKb()), formatKb(event.getHeapAfterKb())), "error");
+            try {
+                tomcatService.broadcastEvent("gc-pause", objectMapper.writeValueAsString(event));
+            } catch (JsonProcessingException e) {
+                // The log line above already carries the alert
+            }
+        }
+    }
+
+    /**
+     * 返回事件所在的窗口，窗口不存在时按时间顺序创建；早于保留范围的事件只计入直方图。
+     */
+    private GcWindowStats windowFor(long timestamp) {
+        long windowMs = windowSeconds * 1000L;
+        long start = timestamp - timestamp % windowMs;
+        GcWindowStats last = windows.peekLast();
+        if (last != null && start < last.getWindowStart()) {
+            for (Iterator<GcWindowStats> it = windows.descendingIterator(); it.hasNext(); ) {
+                GcWindowStats window = it.next();
+                if (window.getWindowStart() == start) {
+                    return window;
+                }
+            }
+            return null;
+        }
+        if (last == null || start > last.getWindowStart()) {
+            last = new GcWindowStats(start);
+            windows.addLast(last);
+            while (windows.size() > windowCount) {
+                windows.removeFirst();
+            }
+        }
+        return last;
+    }
+
+    private static int bucketIndex(double pauseMs) {
+        for (int i = 0; i < PAUSE_BOUNDS_MS.length - 1; i++) {
+            if (pauseMs <= PAUSE_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return PAUSE_BOUNDS_MS.length - 1;
+    }
+
+    private static String formatKb(Long kb) {
+        if (kb == null) {
+            return "?";
+        }
+        return kb >= 10 * 1024 ? (kb / 1024) + "M" : kb + "K";
+    }
+
+    Path resolveLogFile() throws IOException {
+        File tomcatHome = new File(appConfig.getTomcatHomePath());
+        File binDir = new File(tomcatHome, "bin");
+        if (logFileSetting != null && !logFileSetting.trim().isEmpty()) {
+            return newestMatching(resolve(binDir, logFileSetting.trim()));
+        }
+        for (String script : new String[]{"setenv.bat", "setenv.sh"}) {
+            Path setenv = new File(binDir, script).toPath();
+            if (!Files.isRegularFile(setenv)) {
+                continue;
+            }
+            String content = new String(Files.readAllBytes(setenv), StandardCharsets.ISO_8859_1);
+            for (Pattern pattern : new Pattern[]{XLOGGC, XLOG_FILE}) {
+                Matcher m = pattern.matcher(content);
+                if (m.find() && !"stdout".equals(m.group(2)) && !"stderr".equals(m.group(2))) {
+                    return newestMatching(resolve(binDir, m.group(2)));
+                }
+            }
+        }
+        Path fromLogs = newestMatching(new File(tomcatHome, "logs/gc*.log").toPath());
+        return fromLogs != null ? fromLogs : newestMatching(new File(binDir, "gc*.log").toPath());
+    }
+
+    private static Path resolve(File binDir, String path) {
+        String normalized = path.replace("%CATALINA_HOME%", binDir.getParent()).replace("$CATALINA_HOME", binDir.getParent())
+                .replace("${CATALINA_HOME}", binDir.getParent());
+        File file = new File(normalized);
+        return (file.isAbsolute() ? file : new File(binDir, normalized)).toPath();
+    }
+
+    /**
+     * 把文件名中的 %t/%p 和 * 当作通配符，同时匹配 JDK 8 滚动产生的 name.N 和 name.N.current，返回最近修改的文件。
+     */
+    private static Path newestMatching(Path pattern) throws IOException {
+        Path dir = pattern.toAbsolutePath().getParent();
+        if (dir == null || !Files.isDirectory(dir)) {
+            return null;
+        }
+        String name = pattern.getFileName().toString();
+        StringBuilder regex = new StringBuilder();
+        for (String part : name.split("%t|%p|\\*", -1)) {
+            if (regex.length() > 0 || name.startsWith("%") || name.startsWith("*")) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        Pattern matcher = Pattern.compile(regex + "(\\.\\d+(\\.current)?)?");
+        Path newest = null;
+        long newestModified = Long.MIN_VALUE;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                if (!matcher.matcher(entry.getFileName().toString()).matches() || !Files.isRegularFile(entry)) {
+                    continue;
+                }
+                long modified = Files.getLastModifiedTime(entry).toMillis();
+                if (modified > newestModified) {
+                    newest = entry;
+                    newestModified = modified;
+                }
+            }
+        }
+        return newest;
+    }
+}
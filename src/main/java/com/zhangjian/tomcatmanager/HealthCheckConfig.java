@@ -0,0 +1,18 @@
+package com.zhangjian.tomcatmanager;
+
+class HealthCheckConfig {
+    private boolean enabled = false;
+    private String url = "";
+    private int intervalSeconds = 30;
+    private int failureThreshold = 3;
+
+    // Getters and Setters
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.setUrl(url); }
+    public int getIntervalSeconds() { return intervalSeconds; }
+    public void setIntervalSeconds(int intervalSeconds) { this.intervalSeconds = intervalSeconds; }
+    public int getFailureThreshold() { return failureThreshold; }
+    public void setFailureThreshold(int failureThreshold) { this.failureThreshold = failureThreshold; }
+}
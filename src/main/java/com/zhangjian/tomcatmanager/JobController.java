@@ -0,0 +1,60 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.ScheduledJob;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    private final JobSchedulerService jobSchedulerService;
+
+    JobController(JobSchedulerService jobSchedulerService) {
+        this.jobSchedulerService = jobSchedulerService;
+    }
+
+    @GetMapping
+    public List<ScheduledJob> getJobs() {
+        return jobSchedulerService.getJobs();
+    }
+
+    @PostMapping
+    public ResponseEntity<?> saveJob(@RequestBody ScheduledJob job) {
+        try {
+            return ResponseEntity.ok(jobSchedulerService.saveJob(job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteJob(@PathVariable String id) {
+        try {
+            jobSchedulerService.deleteJob(id);
+            return ResponseEntity.ok().build();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/{id}/run")
+    public ResponseEntity<Map<String, String>> runJob(@PathVariable String id) {
+        try {
+            jobSchedulerService.runNow(id);
+            return ResponseEntity.ok(Collections.singletonMap("message", "任务已开始执行。"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("message", e.getMessage()));
+        }
+    }
+}
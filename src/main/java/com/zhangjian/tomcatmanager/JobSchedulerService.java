@@ -0,0 +1,396 @@
+package com.zhangjian.tomcatmanager;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhangjian.tomcatmanager.dto.DiagnosticBundleInfo;
+import com.zhangjian.tomcatmanager.dto.ScheduledJob;
+import com.zhangjian.tomcatmanager.dto.ScheduledJob.JobType;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 基于 cron 表达式的定时任务调度（重启、预热、诊断采集、日志轮转）。
+ * 每个任务只在下一次触发时间上挂一个一次性定时器，触发后再计算并挂上下一次，不做轮询。
+ */
+@Service
+public class JobSchedulerService {
+
+    static final String LEGACY_RESTART_JOB_ID = "daily-restart";
+
+    private final TomcatService tomcatService;
+    private final AppConfig appConfig;
+    private final ObjectMapper objectMapper;
+    private final File jobsFile = new File("scheduled_jobs.json");
+    private final Path legacyScheduleFile = Paths.get("tomcat_schedule.json");
+    private final Map<String, ScheduledJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> timers = new ConcurrentHashMap<>();
+    // Slot each job last fired for, so an early timer wakeup is not armed for the same slot again
+    private final Map<String, ZonedDateTime> lastFiredSlots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timerExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService jobExecutor = Executors.newFixedThreadPool(2);
+    private volatile String pendingRestartReason;
+
+    JobSchedulerService(TomcatService tomcatService, AppConfig appConfig, ObjectMapper objectMapper) {
+        this.tomcatService = tomcatService;
+        this.appConfig = appConfig;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        loadJobs();
+        for (ScheduledJob job : jobs.values()) {
+            arm(job);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timerExecutor.shutdownNow();
+        jobExecutor.shutdownNow();
+    }
+
+    public List<ScheduledJob> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(ScheduledJob::getName, Comparator.nullsLast(String::compareTo)))
+                .collect(Collectors.toList());
+    }
+
+    public ScheduledJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public ScheduledJob saveJob(ScheduledJob job) throws IOException {
+        if (job.getType() == null) {
+            throw new IllegalArgumentException("任务类型不能为空。");
+        }
+        if (job.getCron() == null || !CronExpression.isValidExpression(normalizeCron(job.getCron()))) {
+            throw new IllegalArgumentException("无效的 cron 表达式: " + job.getCron());
+        }
+        if (job.getId() == null || job.getId().isEmpty()) {
+            job.setId(UUID.randomUUID().toString());
+        }
+        ScheduledJob existing = jobs.get(job.getId());
+        if (existing != null) {
+            job.setLastRunAt(existing.getLastRunAt());
+            job.setLastResult(existing.getLastResult());
+        }
+        jobs.put(job.getId(), job);
+        persistJobs();
+        arm(job);
+        return job;
+    }
+
+    public void deleteJob(String id) throws IOException {
+        cancelTimer(id);
+        jobs.remove(id);
+        lastFiredSlots.remove(id);
+        persistJobs();
+    }
+
+    public void runNow(String id) {
+        ScheduledJob job = jobs.get(id);
+        if (job == null) {
+            throw new IllegalArgumentException("未找到任务: " + id);
+        }
+        jobExecutor.submit(() -> execute(job));
+    }
+
+    /**
+     * 兼容旧的“每日重启时间”接口：HH:mm 被转换为名为 daily-restart 的 RESTART 任务。
+     */
+    public void saveDailyRestartTime(String time) throws IOException {
+        if (time == null || time.isEmpty()) {
+            deleteJob(LEGACY_RESTART_JOB_ID);
+            return;
+        }
+        LocalTime localTime = LocalTime.parse(time);
+        ScheduledJob job = new ScheduledJob();
+        job.setId(LEGACY_RESTART_JOB_ID);
+        job.setName("每日重启");
+        job.setType(JobType.RESTART);
+        job.setCron(String.format("0 %d %d * * *", localTime.getMinute(), localTime.getHour()));
+        saveJob(job);
+    }
+
+    public String getDailyRestartTime() {
+        ScheduledJob job = jobs.get(LEGACY_RESTART_JOB_ID);
+        if (job == null || !job.isEnabled()) {
+            return null;
+        }
+        String[] fields = normalizeCron(job.getCron()).split("\\s+");
+        try {
+            return String.format("%02d:%02d", Integer.parseInt(fields[2]), Integer.parseInt(fields[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 返回指定类型中最早的下一次触发时间，用于把维护操作推迟到最近的维护窗口。
+     */
+    public LocalDateTime getNextFireTime(JobType type) {
+        return jobs.values().stream()
+                .filter(j -> j.getType() == type && j.getNextFireAt() != null)
+                .map(ScheduledJob::getNextFireAt)
+                .min(Comparator.naturalOrder())
+                .orElse(null);
+    }
+
+    /**
+     * 请求在下一个维护窗口（最近的 RESTART 任务）重启 Tomcat。
+     * 带 onlyWhenRequested=true 参数的 RESTART 任务只在存在这样的请求时才会真正重启。
+     *
+     * @return 下一个维护窗口的时间，没有启用的 RESTART 任务时返回 null
+     */
+    public synchronized LocalDateTime requestRestartInWindow(String reason) {
+        String pending = pendingRestartReason;
+        if (pending == null) {
+            pendingRestartReason = reason;
+        } else if (!Arrays.asList(pending.split("；")).contains(reason)) {
+            pendingRestartReason = pending + "；" + reason;
+        }
+        return getNextFireTime(JobType.RESTART);
+    }
+
+    public String getPendingRestartReason() {
+        return pendingRestartReason;
+    }
+
+    /**
+     * 让修改过的 Tomcat 配置生效。mode: now 立即重启；window 登记重启请求（reason），等待下一次 RESTART 定时任务；
+     * none 不重启。只管理一个 Tomcat 实例，因此“滚动重启”即为一次受控重启。
+     */
+    public String applyRestart(String mode, String reason) {
+        if ("now".equalsIgnoreCase(mode)) {
+            if (!tomcatService.isTomcatRunning()) {
+                return "Tomcat 未运行，配置将在下次启动时生效。";
+            }
+            // This restart also applies whatever an earlier request was waiting for
+            pendingRestartReason = null;
+            tomcatService.restart();
+            return "已触发重启，新配置将在 Tomcat 重启后生效。";
+        }
+        if ("window".equalsIgnoreCase(mode)) {
+            LocalDateTime next = requestRestartInWindow(reason);
+            return next != null
+                    ? "新配置将在下一次定时重启 (" + next + ") 时生效。"
+                    : "未配置定时重启任务，新配置将在下次手动重启时生效。";
+        }
+        return "配置已保存，需重启 Tomcat 后生效。";
+    }
+
+    private void arm(ScheduledJob job) {
+        cancelTimer(job.getId());
+        job.setNextFireAt(null);
+        if (!job.isEnabled()) {
+            return;
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime next = nextFireTime(job.getCron(), now, lastFiredSlots.get(job.getId()));
+        if (next == null) {
+            return;
+        }
+        job.setNextFireAt(next.toLocalDateTime());
+        long delay = Duration.between(now, next).toMillis();
+        timers.put(job.getId(), timerExecutor.schedule(() -> fire(job.getId(), next), delay, TimeUnit.MILLISECONDS));
+    }
+
+    private void fire(String jobId, ZonedDateTime due) {
+        ScheduledJob job = jobs.get(jobId);
+        if (job == null) {
+            return;
+        }
+        if (ZonedDateTime.now().isBefore(due.minusSeconds(1))) {
+            // The wall clock moved backwards since the timer was armed
+            arm(job);
+            return;
+        }
+        lastFiredSlots.put(jobId, due);
+        jobExecutor.submit(() -> execute(job));
+        arm(job);
+    }
+
+    /**
+     * 下一次触发时间：从 now 和上次已触发的时间点中较晚的一个往后算。定时器可能略早于触发时间醒来，
+     * 只按 now 计算会再次得到刚触发过的时间点，任务就会执行两次。
+     */
+    static ZonedDateTime nextFireTime(String cron, ZonedDateTime now, ZonedDateTime lastFired) {
+        ZonedDateTime from = lastFired != null && lastFired.isAfter(now) ? lastFired : now;
+        return CronExpression.parse(normalizeCron(cron)).next(from);
+    }
+
+    private void execute(ScheduledJob job) {
+        tomcatService.broadcastLog("[System] 执行定时任务: " + job.getName() + " (" + job.getType() + ")", "system");
+        String result;
+        try {
+            switch (job.getType()) {
+                case RESTART:
+                    String reason = pendingRestartReason;
+                    if ("true".equalsIgnoreCase(job.getParams().get("onlyWhenRequested")) && reason == null) {
+                        result = "没有待处理的重启请求，跳过";
+                    } else if (tomcatService.isTomcatRunning()) {
+                        pendingRestartReason = null;
+                        tomcatService.restart();
+                        result = reason != null ? "已触发重启（" + reason + "）" : "已触发重启";
+                    } else {
+                        result = "Tomcat 未运行，跳过重启";
+                    }
+                    break;
+                case WARMUP:
+                    result = runWarmup(job.getParams());
+                    break;
+                case DIAGNOSTICS:
+                    DiagnosticBundleInfo bundle = tomcatService.captureDiagnostics("scheduled");
+                    result = bundle != null ? "诊断包: " + bundle.getName() : "诊断采集失败";
+                    break;
+                case LOG_ROTATION:
+                    result = rotateLogs(job.getParams());
+                    break;
+                default:
+                    result = "未知任务类型";
+            }
+        } catch (Exception e) {
+            result = "执行失败: " + e.getMessage();
+            tomcatService.broadcastLog("[System] 定时任务 " + job.getName() + " 执行失败: " + e.getMessage(), "error");
+        }
+        job.setLastRunAt(LocalDateTime.now());
+        job.setLastResult(result);
+        try {
+            persistJobs();
+        } catch (IOException e) {
+            tomcatService.broadcastLog("保存定时任务失败: " + e.getMessage(), "error");
+        }
+    }
+
+    private String runWarmup(Map<String, String> params) {
+        String urls = params.get("urls");
+        if (urls == null || urls.trim().isEmpty()) {
+            urls = tomcatService.getHealthCheckConfig().getUrl();
+        }
+        if (urls == null || urls.trim().isEmpty()) {
+            urls = "http://localhost:" + tomcatService.getTomcatPort() + "/";
+        }
+        int requests = Integer.parseInt(params.getOrDefault("requests", "5"));
+        int ok = 0;
+        int total = 0;
+        long totalMs = 0;
+        for (String url : urls.split("[,\\s]+")) {
+            if (url.isEmpty()) continue;
+            for (int i = 0; i < requests; i++) {
+                total++;
+                long start = System.currentTimeMillis();
+                HttpURLConnection connection = null;
+                try {
+                    connection = (HttpURLConnection) new URL(url).openConnection();
+                    connection.setConnectTimeout(5000);
+                    connection.setReadTimeout(30000);
+                    int code = connection.getResponseCode();
+                    try (InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                        if (in != null) StreamUtils.drain(in);
+                    }
+                    if (code < 400) ok++;
+                } catch (IOException e) {
+                    // Counted as a failed warmup request
+                } finally {
+                    totalMs += System.currentTimeMillis() - start;
+                    if (connection != null) connection.disconnect();
+                }
+            }
+        }
+        return String.format("预热请求 %d/%d 成功, 平均 %d ms", ok, total, total == 0 ? 0 : totalMs / total);
+    }
+
+    /**
+     * 压缩 Tomcat logs 目录下今天之前的日志文件，并删除超过保留天数的压缩包。
+     */
+    private String rotateLogs(Map<String, String> params) throws IOException {
+        Path logsDir = Paths.get(appConfig.getTomcatHomePath(), "logs");
+        if (!Files.isDirectory(logsDir)) {
+            return "日志目录不存在: " + logsDir;
+        }
+        int retentionDays = Integer.parseInt(params.getOrDefault("retentionDays", "30"));
+        Instant startOfToday = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant();
+        Instant expiry = Instant.now().minus(Duration.ofDays(retentionDays));
+        int compressed = 0;
+        int deleted = 0;
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(logsDir)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Instant modified = Files.getLastModifiedTime(file).toInstant();
+            if (name.endsWith(".gz")) {
+                if (modified.isBefore(expiry)) {
+                    Files.delete(file);
+                    deleted++;
+                }
+            } else if ((name.endsWith(".log") || name.endsWith(".txt")) && modified.isBefore(startOfToday)) {
+                Path gz = file.resolveSibling(name + ".gz");
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+                    Files.copy(file, out);
+                }
+                Files.setLastModifiedTime(gz, Files.getLastModifiedTime(file));
+                Files.delete(file);
+                compressed++;
+            }
+        }
+        return String.format("压缩 %d 个日志文件, 删除 %d 个过期压缩包", compressed, deleted);
+    }
+
+    private void cancelTimer(String jobId) {
+        ScheduledFuture<?> timer = timers.remove(jobId);
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    static String normalizeCron(String cron) {
+        String trimmed = cron.trim();
+        // Accept standard 5-field cron by prepending the seconds field
+        return trimmed.split("\\s+").length == 5 ? "0 " + trimmed : trimmed;
+    }
+
+    private void loadJobs() {
+        if (jobsFile.exists()) {
+            try {
+                List<ScheduledJob> loaded = objectMapper.readValue(jobsFile, new TypeReference<List<ScheduledJob>>() {});
+                for (ScheduledJob job : loaded) {
+                    jobs.put(job.getId(), job);
+                }
+            } catch (IOException e) {
+                tomcatService.broadcastLog("加载定时任务失败: " + e.getMessage(), "error");
+            }
+        } else if (Files.exists(legacyScheduleFile)) {
+            try {
+                Map<String, String> schedule = objectMapper.readValue(legacyScheduleFile.toFile(), new TypeReference<Map<String, String>>() {});
+                saveDailyRestartTime(schedule.get("restartTime"));
+                tomcatService.broadcastLog("[System] 已将旧的每日重启设置迁移为定时任务。", "system");
+            } catch (Exception e) {
+                tomcatService.broadcastLog("迁移旧定时任务失败: " + e.getMessage(), "error");
+            }
+        }
+    }
+
+    private synchronized void persistJobs() throws IOException {
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(jobsFile, new ArrayList<>(jobs.values()));
+    }
+}
@@ -0,0 +1,78 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.JvmOptionSet;
+import com.zhangjian.tomcatmanager.dto.StartupBenchmarkReport;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/jvm-benchmark")
+public class JvmBenchmarkController {
+
+    private final JvmBenchmarkService jvmBenchmarkService;
+
+    JvmBenchmarkController(JvmBenchmarkService jvmBenchmarkService) {
+        this.jvmBenchmarkService = jvmBenchmarkService;
+    }
+
+    @GetMapping("/option-sets")
+    public List<JvmOptionSet> getOptionSets() {
+        return jvmBenchmarkService.getOptionSets();
+    }
+
+    @PostMapping("/option-sets")
+    public ResponseEntity<?> saveOptionSet(@RequestBody JvmOptionSet set) {
+        try {
+            return ResponseEntity.ok(jvmBenchmarkService.saveOptionSet(set));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @DeleteMapping("/option-sets/{name}")
+    public ResponseEntity<Void> deleteOptionSet(@PathVariable String name) {
+        try {
+            jvmBenchmarkService.deleteOptionSet(name);
+            return ResponseEntity.ok().build();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/report")
+    public ResponseEntity<StartupBenchmarkReport> getReport() {
+        StartupBenchmarkReport report = jvmBenchmarkService.getReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 开始基准测试。sets 为逗号分隔的参数组名称，省略时对比全部参数组。
+     */
+    @PostMapping("/runs")
+    public ResponseEntity<?> start(@RequestParam(required = false) List<String> sets,
+                                   @RequestParam(defaultValue = "3") int iterations) {
+        try {
+            return ResponseEntity.ok(jvmBenchmarkService.start(sets, iterations));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("message", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/runs")
+    public Map<String, String> cancel() {
+        return Collections.singletonMap("message", jvmBenchmarkService.cancel()
+                ? "已请求取消，当前这次启动测量完成后停止。" : "没有正在进行的基准测试。");
+    }
+}
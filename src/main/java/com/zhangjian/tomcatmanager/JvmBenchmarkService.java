@@ -0,0 +1,465 @@
+package com.zhangjian.tomcatmanager;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhangjian.tomcatmanager.dto.JvmOptionSet;
+import com.zhangjian.tomcatmanager.dto.MetricDistribution;
+import com.zhangjian.tomcatmanager.dto.StartupBenchmarkReport;
+import com.zhangjian.tomcatmanager.dto.StartupBenchmarkReport.SetSummary;
+import com.zhangjian.tomcatmanager.dto.StartupBenchmarkReport.Status;
+import com.zhangjian.tomcatmanager.dto.StartupBenchmarkRun;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * JVM 参数 A/B 启动基准测试。保存命名的 JVM 参数组，按参数组轮流（交错）启动被管 Tomcat 若干次，
+ * 测量端口监听时间、首次健康探测成功时间、预热收敛时间和稳定后的 RSS，并按参数组汇总分布。
+ *
+ * <p>参数通过 CATALINA_OPTS 环境变量传入 catalina.bat；若 bin/setenv 直接覆盖了 CATALINA_OPTS，
+ * 参数组不会生效，报告中会给出提示。测试期间暂停健康检查，结束后按测试前的状态恢复 Tomcat。</p>
+ */
+@Service
+public class JvmBenchmarkService {
+
+    private static final long POLL_INTERVAL_MS = 100;
+    // setenv assigns CATALINA_OPTS without referencing its previous value
+    private static final Pattern OVERRIDES_CATALINA_OPTS = Pattern.compile(
+            "(?im)^\\s*(set\\s+\"?|export\\s+)?CATALINA_OPTS=(?!.*(%CATALINA_OPTS%|\\$CATALINA_OPTS|\\$\\{CATALINA_OPTS\\}))");
+
+    private final TomcatService tomcatService;
+    private final AppConfig appConfig;
+    private final ObjectMapper objectMapper;
+    private final File optionSetsFile = new File("jvm_option_sets.json");
+    private final File reportFile = new File("jvm_benchmark_report.json");
+    private final ExecutorService benchmarkExecutor = Executors.newSingleThreadExecutor();
+
+    private final int startupTimeoutSeconds;
+    private final int cooldownSeconds;
+    private final int warmupWindow;
+    private final int warmupMaxRequests;
+    private final double warmupTolerance;
+
+    private volatile StartupBenchmarkReport current;
+    private volatile boolean cancelRequested;
+
+    JvmBenchmarkService(TomcatService tomcatService, AppConfig appConfig, ObjectMapper objectMapper,
+                        @Value("${tomcat.benchmark.startup-timeout-seconds:180}") int startupTimeoutSeconds,
+                        @Value("${tomcat.benchmark.cooldown-seconds:5}") int cooldownSeconds,
+                        @Value("${tomcat.benchmark.warmup-window:10}") int warmupWindow,
+                        @Value("${tomcat.benchmark.warmup-max-requests:500}") int warmupMaxRequests,
+                        @Value("${tomcat.benchmark.warmup-tolerance-percent:10}") double warmupTolerancePercent) {
+        this.tomcatService = tomcatService;
+        this.appConfig = appConfig;
+        this.objectMapper = objectMapper;
+        this.startupTimeoutSeconds = startupTimeoutSeconds;
+        this.cooldownSeconds = cooldownSeconds;
+        this.warmupWindow = Math.max(3, warmupWindow);
+        this.warmupMaxRequests = warmupMaxRequests;
+        this.warmupTolerance = warmupTolerancePercent / 100d;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelRequested = true;
+        benchmarkExecutor.shutdownNow();
+    }
+
+    public synchronized List<JvmOptionSet> getOptionSets() {
+        if (!optionSetsFile.exists()) {
+            return new ArrayList<>();
+        }
+        try {
+            return objectMapper.readValue(optionSetsFile, new TypeReference<List<JvmOptionSet>>() {});
+        } catch (IOException e) {
+            tomcatService.broadcastLog("加载 JVM 参数组失败: " + e.getMessage(), "error");
+            return new ArrayList<>();
+        }
+    }
+
+    public synchronized JvmOptionSet saveOptionSet(JvmOptionSet set) throws IOException {
+        if (set.getName() == null || set.getName().trim().isEmpty()) {
+            throw new IllegalArgumentException("参数组名称不能为空。");
+        }
+        set.setName(set.getName().trim());
+        List<JvmOptionSet> sets = getOptionSets();
+        sets.removeIf(s -> s.getName().equals(set.getName()));
+        sets.add(set);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(optionSetsFile, sets);
+        return set;
+    }
+
+    public synchronized void deleteOptionSet(String name) throws IOException {
+        List<JvmOptionSet> sets = getOptionSets();
+        if (sets.removeIf(s -> s.getName().equals(name))) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(optionSetsFile, sets);
+        }
+    }
+
+    /**
+     * 返回正在进行或最近一次的基准测试报告，没有时返回 null。
+     */
+    public StartupBenchmarkReport getReport() {
+        if (current != null) {
+            return current;
+        }
+        if (reportFile.exists()) {
+            try {
+                return objectMapper.readValue(reportFile, StartupBenchmarkReport.class);
+            } catch (IOException e) {
+                tomcatService.broadcastLog("读取基准测试报告失败: " + e.getMessage(), "error");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 开始一次基准测试，在后台执行。
+     *
+     * @param setNames   参与对比的参数组名称，为空时使用全部参数组
+     * @param iterations 每个参数组的启动次数
+     */
+    public synchronized StartupBenchmarkReport start(List<String> setNames, int iterations) {
+        if (current != null && current.getStatus() == Status.RUNNING) {
+            throw new IllegalStateException("已有基准测试正在进行。");
+        }
+        if (iterations < 1) {
+            throw new IllegalArgumentException("启动次数至少为 1。");
+        }
+        Map<String, JvmOptionSet> byName = getOptionSets().stream()
+                .collect(Collectors.toMap(JvmOptionSet::getName, Function.identity(), (a, b) -> b, LinkedHashMap::new));
+        List<JvmOptionSet> selected = new ArrayList<>();
+        if (setNames == null || setNames.isEmpty()) {
+            selected.addAll(byName.values());
+        } else {
+            for (String name : setNames) {
+                JvmOptionSet set = byName.get(name);
+                if (set == null) {
+                    throw new IllegalArgumentException("未找到参数组: " + name);
+                }
+                selected.add(set);
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("没有可对比的 JVM 参数组。");
+        }
+
+        StartupBenchmarkReport report = new StartupBenchmarkReport();
+        report.setId(UUID.randomUUID().toString());
+        report.setStartedAt(LocalDateTime.now());
+        report.setIterations(iterations);
+        report.setProbeUrl(probeUrl());
+        report.setSets(selected);
+        // Read by the status endpoint while the benchmark thread appends
+        report.setRuns(new CopyOnWriteArrayList<>());
+        if (setenvOverridesCatalinaOpts()) {
+            report.setMessage("bin/setenv 直接覆盖了 CATALINA_OPTS，参数组可能不会生效，请改为追加 (%CATALINA_OPTS% / $CATALINA_OPTS)。");
+        }
+        cancelRequested = false;
+        current = report;
+        benchmarkExecutor.submit(() -> run(report));
+        return report;
+    }
+
+    public boolean cancel() {
+        StartupBenchmarkReport report = current;
+        if (report == null || report.getStatus() != Status.RUNNING) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    private void run(StartupBenchmarkReport report) {
+        boolean wasRunning = tomcatService.isTomcatRunning();
+        tomcatService.setHealthCheckSuspended(true);
+        tomcatService.broadcastLog(String.format("[Benchmark] 开始 JVM 参数基准测试: %d 组 x %d 次",
+                report.getSets().size(), report.getIterations()), "system");
+        try {
+            stopAndWait();
+            List<JvmOptionSet> sets = report.getSets();
+            outer:
+            for (int iteration = 1; iteration <= report.getIterations(); iteration++) {
+                // Rotate the starting set each round so no set always runs first (cold disk cache, etc.)
+                for (int k = 0; k < sets.size(); k++) {
+                    if (cancelRequested) {
+                        break outer;
+                    }
+                    JvmOptionSet set = sets.get((k + iteration - 1) % sets.size());
+                    StartupBenchmarkRun result = measure(set, iteration);
+                    report.getRuns().add(result);
+                    report.setSummaries(summarize(report));
+                    tomcatService.broadcastLog("[Benchmark] " + describe(result), result.getError() == null ? "system" : "error");
+                    stopAndWait();
+                    Thread.sleep(cooldownSeconds * 1000L);
+                }
+            }
+            report.setStatus(cancelRequested ? Status.CANCELLED : Status.COMPLETED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.setStatus(Status.CANCELLED);
+        } catch (Exception e) {
+            report.setStatus(Status.FAILED);
+            report.setMessage("基准测试失败: " + e.getMessage());
+            tomcatService.broadcastLog("[Benchmark] 基准测试失败: " + e.getMessage(), "error");
+        } finally {
+            report.setFinishedAt(LocalDateTime.now());
+            try {
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+            } catch (IOException e) {
+                tomcatService.broadcastLog("保存基准测试报告失败: " + e.getMessage(), "error");
+            }
+            if (wasRunning && !Thread.currentThread().isInterrupted()) {
+                tomcatService.broadcastLog("[Benchmark] 按原有配置重新启动 Tomcat。", "system");
+                tomcatService.start();
+            }
+            tomcatService.setHealthCheckSuspended(false);
+            tomcatService.broadcastLog("[Benchmark] 基准测试结束: " + report.getStatus(), "system");
+        }
+    }
+
+    private StartupBenchmarkRun measure(JvmOptionSet set, int iteration) throws InterruptedException {
+        StartupBenchmarkRun run = new StartupBenchmarkRun(set.getName(), iteration);
+        int port = tomcatService.getTomcatPort();
+        String url = probeUrl();
+        long deadline = System.nanoTime() + startupTimeoutSeconds * 1_000_000_000L;
+
+        long t0 = System.nanoTime();
+        tomcatService.start(Collections.singletonMap("CATALINA_OPTS", set.getOptions()));
+
+        while (!isPortBound(port)) {
+            if (System.nanoTime() > deadline) {
+                run.setError("端口 " + port + " 在 " + startupTimeoutSeconds + " 秒内未开始监听");
+                return run;
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        run.setPortBoundMs(elapsedMs(t0));
+
+        while (probe(url) < 0) {
+            if (System.nanoTime() > deadline) {
+                run.setError("健康探测在 " + startupTimeoutSeconds + " 秒内未成功");
+                return run;
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        run.setFirstHealthyMs(elapsedMs(t0));
+
+        warmUp(run, url);
+        run.setRssKb(readRssKb(tomcatService.findTomcatPid()));
+        return run;
+    }
+
+    /**
+     * 连续发送探测请求，每 warmupWindow 个请求取一次中位数，相邻两个窗口的中位数相差不超过容差
+     * （且至少 1 ms）时视为收敛。
+     */
+    private void warmUp(StartupBenchmarkRun run, String url) {
+        long start = System.nanoTime();
+        double[] window = new double[warmupWindow];
+        double previousMedian = -1;
+        int requests = 0;
+        int filled = 0;
+        while (requests < warmupMaxRequests && !cancelRequested) {
+            long latencyNanos = probe(url);
+            requests++;
+            if (latencyNanos < 0) {
+                continue;
+            }
+            window[filled++] = latencyNanos / 1_000_000d;
+            if (filled < window.length) {
+                continue;
+            }
+            filled = 0;
+            double[] sorted = window.clone();
+            Arrays.sort(sorted);
+            double median = sorted[sorted.length / 2];
+            run.setSteadyLatencyMs(median);
+            if (previousMedian >= 0 && Math.abs(median - previousMedian) <= Math.max(1d, previousMedian * warmupTolerance)) {
+                run.setWarmupConverged(true);
+                break;
+            }
+            previousMedian = median;
+        }
+        run.setWarmupRequests(requests);
+        run.setWarmupMs(elapsedMs(start));
+    }
+
+    /**
+     * 发送一次探测请求，返回耗时（纳秒），失败或返回错误码时返回 -1。
+     */
+    private static long probe(String url) {
+        long start = System.nanoTime();
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(1000);
+            connection.setReadTimeout(10000);
+            connection.setInstanceFollowRedirects(false);
+            int code = connection.getResponseCode();
+            try (InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) StreamUtils.drain(in);
+            }
+            return code >= 200 && code < 400 ? System.nanoTime() - start : -1;
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    private static boolean isPortBound(int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", port), 200);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void stopAndWait() throws InterruptedException {
+        if (!tomcatService.isTomcatRunning()) {
+            return;
+        }
+        tomcatService.stop();
+        for (int i = 0; i < 60 && tomcatService.isTomcatRunning(); i++) {
+            Thread.sleep(1000);
+        }
+        if (tomcatService.isTomcatRunning()) {
+            tomcatService.killProcessByPort();
+            for (int i = 0; i < 15 && tomcatService.isTomcatRunning(); i++) {
+                Thread.sleep(1000);
+            }
+        }
+        if (tomcatService.isTomcatRunning()) {
+            throw new IllegalStateException("无法停止 Tomcat");
+        }
+    }
+
+    private String probeUrl() {
+        String url = tomcatService.getHealthCheckConfig().getUrl();
+        return url != null && !url.trim().isEmpty() ? url.trim() : "http://localhost:" + tomcatService.getTomcatPort() + "/";
+    }
+
+    private boolean setenvOverridesCatalinaOpts() {
+        File binDir = new File(appConfig.getTomcatHomePath(), "bin");
+        for (String script : new String[]{"setenv.bat", "setenv.sh"}) {
+            File setenv = new File(binDir, script);
+            if (!setenv.isFile()) {
+                continue;
+            }
+            try {
+                String content = new String(Files.readAllBytes(setenv.toPath()), StandardCharsets.ISO_8859_1);
+                if (OVERRIDES_CATALINA_OPTS.matcher(content).find()) {
+                    return true;
+                }
+            } catch (IOException e) {
+                // Unreadable setenv; assume it does not interfere
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取进程的常驻内存（KB）：Linux 读 /proc/&lt;pid&gt;/status 的 VmRSS，Windows 读 tasklist 的内存使用（工作集）。
+     */
+    private static Long readRssKb(String pid) {
+        if (pid == null) {
+            return null;
+        }
+        try {
+            if (ProcFs.isAvailable()) {
+                for (String line : ProcFs.readStatusLines(pid)) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                    }
+                }
+                return null;
+            }
+            Process p = new ProcessBuilder("tasklist", "/fo", "csv", "/nh", "/fi", "PID eq " + pid).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                String line = reader.readLine();
+                if (line == null || !line.startsWith("\"")) {
+                    return null;
+                }
+                // "java.exe","1234","Console","1","123,456 K" - the last column is the working set
+                String[] columns = line.split("\",\"");
+                String digits = columns[columns.length - 1].replaceAll("[^0-9]", "");
+                return digits.isEmpty() ? null : Long.parseLong(digits);
+            } finally {
+                p.waitFor();
+            }
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static List<SetSummary> summarize(StartupBenchmarkReport report) {
+        List<SetSummary> summaries = new ArrayList<>();
+        for (JvmOptionSet set : report.getSets()) {
+            List<StartupBenchmarkRun> runs = report.getRuns().stream()
+                    .filter(r -> r.getSetName().equals(set.getName()))
+                    .collect(Collectors.toList());
+            List<StartupBenchmarkRun> ok = runs.stream().filter(r -> r.getError() == null).collect(Collectors.toList());
+            SetSummary summary = new SetSummary();
+            summary.setSetName(set.getName());
+            summary.setSuccessfulRuns(ok.size());
+            summary.setFailedRuns(runs.size() - ok.size());
+            summary.setConvergedRuns((int) ok.stream().filter(StartupBenchmarkRun::isWarmupConverged).count());
+            putDistribution(summary, "portBoundMs", runs, StartupBenchmarkRun::getPortBoundMs);
+            putDistribution(summary, "firstHealthyMs", ok, StartupBenchmarkRun::getFirstHealthyMs);
+            putDistribution(summary, "warmupMs", ok, StartupBenchmarkRun::getWarmupMs);
+            putDistribution(summary, "steadyLatencyMs", ok, StartupBenchmarkRun::getSteadyLatencyMs);
+            putDistribution(summary, "rssKb", ok, StartupBenchmarkRun::getRssKb);
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    private static void putDistribution(SetSummary summary, String metric, List<StartupBenchmarkRun> runs,
+                                        Function<StartupBenchmarkRun, ? extends Number> getter) {
+        List<Number> values = runs.stream().map(getter).filter(Objects::nonNull).collect(Collectors.toList());
+        MetricDistribution distribution = MetricDistribution.of(values);
+        if (distribution != null) {
+            summary.getMetrics().put(metric, distribution);
+        }
+    }
+
+    private static String describe(StartupBenchmarkRun run) {
+        if (run.getError() != null) {
+            return String.format("%s #%d 失败: %s", run.getSetName(), run.getIteration(), run.getError());
+        }
+        return String.format("%s #%d: 端口 %d ms, 健康 %d ms, 预热 %d ms/%d 次%s, RSS %s",
+                run.getSetName(), run.getIteration(), run.getPortBoundMs(), run.getFirstHealthyMs(),
+                run.getWarmupMs(), run.getWarmupRequests(), run.isWarmupConverged() ? "" : " (未收敛)",
+                run.getRssKb() != null ? run.getRssKb() / 1024 + " MB" : "未知");
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
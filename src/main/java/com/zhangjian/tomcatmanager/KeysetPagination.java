@@ -0,0 +1,438 @@
+package com.zhangjian.tomcatmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.DigestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * SQL 控制台的键集（seek）分页。OFFSET/ROWNUM 分页要先读出并丢弃前面所有页的行，越往后翻越慢；
+ * 键集分页按排序键记住上一页最后一行，下一页用 WHERE (k) > (:last) 直接定位，任意一页的代价都和第一页相同。
+ *
+ * <p>只有结果顺序确定时才能使用：查询必须是单表 SELECT，ORDER BY 只包含非空列，并且这些列覆盖主键或非空唯一索引；
+ * 没有 ORDER BY 或排序列不唯一时自动追加主键列作为排序键。分页位置编码在返回给前端的游标令牌中。</p>
+ */
+final class KeysetPagination {
+
+    // Top-level constructs after which row uniqueness or the row order can no longer be derived from the table's keys
+    private static final Set<String> UNSUPPORTED_WORDS = new HashSet<>(Arrays.asList(
+            "UNION", "INTERSECT", "MINUS", "EXCEPT", "JOIN", "GROUP", "HAVING", "DISTINCT", "LIMIT", "OFFSET",
+            "FETCH", "ROWNUM", "CONNECT", "START", "FOR", "INTO", "LOCK", "WITH"));
+
+    private KeysetPagination() {
+    }
+
+    static final class Key {
+        final String label;
+        final boolean descending;
+        final int jdbcType;
+
+        Key(String label, boolean descending, int jdbcType) {
+            this.label = label;
+            this.descending = descending;
+            this.jdbcType = jdbcType;
+        }
+    }
+
+    /**
+     * 一条 SQL 的键集分页方案；不满足条件时只包含原因。
+     */
+    static final class Plan {
+        private final String reason;
+        private final String baseSql;
+        private final List<Key> keys;
+        private final List<String> labels;
+        private final String fingerprint;
+        private final boolean oracle;
+        private final String quote;
+
+        private Plan(String reason, String baseSql, List<Key> keys, List<String> labels, String fingerprint,
+                     boolean oracle, String quote) {
+            this.reason = reason;
+            this.baseSql = baseSql;
+            this.keys = keys;
+            this.labels = labels;
+            this.fingerprint = fingerprint;
+            this.oracle = oracle;
+            this.quote = quote;
+        }
+
+        static Plan unsupported(String reason) {
+            return new Plan(reason, null, null, null, null, false, null);
+        }
+
+        boolean isSupported() {
+            return reason == null;
+        }
+
+        String getReason() {
+            return reason;
+        }
+
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * 不带游标时的查询：按排序键排序后用 OFFSET/ROWNUM 取第 page 页（第一页或直接跳页）。
+         */
+        String offsetQuery(int page, int size) {
+            String ordered = "SELECT * FROM (" + baseSql + ") kq" + orderBy();
+            if (!oracle) {
+                return ordered + " LIMIT " + size + " OFFSET " + ((long) page * size);
+            }
+            StringBuilder select = new StringBuilder();
+            for (String label : labels) {
+                select.append(select.length() == 0 ? "" : ", ").append("b.").append(quote(label));
+            }
+            return "SELECT " + select + " FROM (SELECT a.*, ROWNUM rnum FROM (" + ordered + ") a WHERE ROWNUM <= "
+                    + ((long) (page + 1) * size) + ") b WHERE rnum > " + ((long) page * size);
+        }
+
+        /**
+         * 带游标时的查询：从上一页最后一行之后直接定位，参数由 {@link #seekParameters(Object[])} 给出。
+         */
+        String seekQuery(int size) {
+            String filtered = "SELECT * FROM (" + baseSql + ") kq WHERE " + seekPredicate() + orderBy();
+            return oracle
+                    ? "SELECT * FROM (" + filtered + ") WHERE ROWNUM <= " + size
+                    : filtered + " LIMIT " + size;
+        }
+
+        /**
+         * (k1, k2, ...) > (v1, v2, ...) 按各列排序方向展开成 OR 形式；
+         * 前置的 k1 >= v1 让数据库可以直接对第一列做索引范围扫描。
+         */
+        private String seekPredicate() {
+            Key first = keys.get(0);
+            if (keys.size() == 1) {
+                return quote(first.label) + (first.descending ? " < ?" : " > ?");
+            }
+            StringBuilder sb = new StringBuilder(quote(first.label)).append(first.descending ? " <= ?" : " >= ?").append(" AND (");
+            for (int i = 0; i < keys.size(); i++) {
+                sb.append(i == 0 ? "" : " OR ").append('(');
+                for (int j = 0; j < i; j++) {
+                    sb.append(quote(keys.get(j).label)).append(" = ? AND ");
+                }
+                sb.append(quote(keys.get(i).label)).append(keys.get(i).descending ? " < ?" : " > ?").append(')');
+            }
+            return sb.append(')').toString();
+        }
+
+        List<Object> seekParameters(Object[] values) {
+            List<Object> params = new ArrayList<>();
+            if (keys.size() > 1) {
+                params.add(values[0]);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                params.addAll(Arrays.asList(values).subList(0, i + 1));
+            }
+            return params;
+        }
+
+        private String orderBy() {
+            StringBuilder sb = new StringBuilder(" ORDER BY ");
+            for (int i = 0; i < keys.size(); i++) {
+                sb.append(i == 0 ? "" : ", ").append(quote(keys.get(i).label)).append(keys.get(i).descending ? " DESC" : " ASC");
+            }
+            return sb.toString();
+        }
+
+        private String quote(String identifier) {
+            return quote + identifier.replace(quote, quote + quote) + quote;
+        }
+
+        /**
+         * 读取当前行的排序键值；任一键为 NULL 时返回 null（无法继续定位）。
+         */
+        Object[] readKey(ResultSet rs) throws SQLException {
+            Object[] values = new Object[keys.size()];
+            for (int i = 0; i < values.length; i++) {
+                Key key = keys.get(i);
+                switch (category(key.jdbcType)) {
+                    case 'n':
+                        values[i] = rs.getBigDecimal(key.label);
+                        break;
+                    case 't':
+                        values[i] = rs.getTimestamp(key.label);
+                        break;
+                    default:
+                        values[i] = rs.getString(key.label);
+                }
+                if (values[i] == null) {
+                    return null;
+                }
+            }
+            return values;
+        }
+    }
+
+    /**
+     * 游标令牌中携带的分页位置：上一页最后一行的排序键和第一页统计出的总行数（后续页不再执行 COUNT）。
+     */
+    static final class Cursor {
+        final Object[] values;
+        final long totalRows;
+
+        Cursor(Object[] values, long totalRows) {
+            this.values = values;
+            this.totalRows = totalRows;
+        }
+    }
+
+    /**
+     * 分析 SQL 并查询表的主键、唯一索引和列的可空性，得出键集分页方案。
+     */
+    static Plan plan(Connection conn, String sql) throws SQLException {
+        SqlParser.Statement statement = SqlParser.parse(sql);
+        if (statement.getType() != SqlParser.Statement.Type.SELECT || !statement.getKeywords().contains("SELECT")) {
+            return Plan.unsupported("只有 SELECT 查询支持键集分页");
+        }
+        for (String word : statement.getKeywords()) {
+            if (UNSUPPORTED_WORDS.contains(word)) {
+                return Plan.unsupported("查询包含 " + word + "，无法保证键集分页的结果顺序");
+            }
+        }
+        if (!statement.getKeywords().contains("FROM")) {
+            return Plan.unsupported("查询没有 FROM 子句");
+        }
+        SqlParser.TableRef table = statement.getSingleTable();
+        if (table == null) {
+            return Plan.unsupported("键集分页只支持单表查询");
+        }
+        String baseSql = statement.getOrderByOffset() >= 0 ? sql.substring(0, statement.getOrderByOffset()).trim() : sql;
+        List<String[]> orderItems = new ArrayList<>();
+        for (SqlParser.OrderItem item : statement.getOrderBy()) {
+            if (item.rawColumn == null) {
+                return Plan.unsupported("ORDER BY 只能包含列名: " + item.text);
+            }
+            orderItems.add(new String[]{item.rawColumn, item.descending ? "DESC" : null});
+        }
+
+        DatabaseMetaData md = conn.getMetaData();
+        boolean oracle = "Oracle".equalsIgnoreCase(md.getDatabaseProductName());
+        String tableName = normalize(table.rawName, md);
+        String owner = table.rawSchema != null ? normalize(table.rawSchema, md) : null;
+        String catalog = oracle ? null : (owner != null ? owner : conn.getCatalog());
+        String schema = oracle ? (owner != null ? owner : md.getUserName()) : null;
+
+        // Column name (upper case) -> actual name; only NOT NULL columns can be seek keys
+        Map<String, String> columns = new HashMap<>();
+        Set<String> notNull = new HashSet<>();
+        try (ResultSet rs = md.getColumns(catalog, schema, tableName, null)) {
+            while (rs.next()) {
+                String name = rs.getString("COLUMN_NAME");
+                columns.put(name.toUpperCase(Locale.ROOT), name);
+                if (rs.getInt("NULLABLE") == DatabaseMetaData.columnNoNulls) {
+                    notNull.add(name.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            return Plan.unsupported("未找到表 " + tableName + " 的元数据");
+        }
+        List<List<String>> uniqueKeys = uniqueKeys(md, catalog, schema, tableName, notNull);
+
+        List<String[]> keyColumns = new ArrayList<>();
+        Set<String> ordered = new HashSet<>();
+        for (String[] item : orderItems) {
+            String column = columns.get(normalize(item[0], md).toUpperCase(Locale.ROOT));
+            if (column == null) {
+                return Plan.unsupported("排序列 " + item[0] + " 不是表 " + tableName + " 的列");
+            }
+            if (!notNull.contains(column.toUpperCase(Locale.ROOT))) {
+                return Plan.unsupported("排序列 " + column + " 允许为空");
+            }
+            if (ordered.add(column.toUpperCase(Locale.ROOT))) {
+                keyColumns.add(new String[]{column, item[1]});
+            }
+        }
+        boolean unique = false;
+        for (List<String> key : uniqueKeys) {
+            unique |= ordered.containsAll(key);
+        }
+        if (!unique) {
+            if (uniqueKeys.isEmpty()) {
+                return Plan.unsupported("表 " + tableName + " 没有主键或非空唯一索引");
+            }
+            // Append the primary key (or the first NOT NULL unique index) as tie-breaker
+            for (String column : uniqueKeys.get(0)) {
+                if (ordered.add(column)) {
+                    keyColumns.add(new String[]{columns.get(column), null});
+                }
+            }
+        }
+
+        // Seek keys are read from the result rows, so every key column must be part of the select list
+        Map<String, String> labels = new LinkedHashMap<>();
+        Map<String, Integer> types = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM (" + baseSql + ") kq WHERE 1 = 0")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                String label = meta.getColumnLabel(i);
+                labels.putIfAbsent(label.toUpperCase(Locale.ROOT), label);
+                types.putIfAbsent(label.toUpperCase(Locale.ROOT), meta.getColumnType(i));
+            }
+        }
+        List<Key> keys = new ArrayList<>();
+        for (String[] column : keyColumns) {
+            String upper = column[0].toUpperCase(Locale.ROOT);
+            if (!labels.containsKey(upper)) {
+                return Plan.unsupported("排序键列 " + column[0] + " 必须出现在查询结果中");
+            }
+            if (category(types.get(upper)) == 0) {
+                return Plan.unsupported("排序键列 " + column[0] + " 的类型不支持键集分页");
+            }
+            keys.add(new Key(labels.get(upper), "DESC".equalsIgnoreCase(column[1]), types.get(upper)));
+        }
+        String quote = md.getIdentifierQuoteString();
+        return new Plan(null, baseSql, keys, new ArrayList<>(labels.values()), fingerprint(sql), oracle,
+                quote == null || quote.trim().isEmpty() ? "\"" : quote.trim());
+    }
+
+    /**
+     * 主键排在最前，其后是所有列都 NOT NULL 的唯一索引；列名为大写。
+     */
+    private static List<List<String>> uniqueKeys(DatabaseMetaData md, String catalog, String schema, String table,
+                                                 Set<String> notNull) throws SQLException {
+        List<List<String>> result = new ArrayList<>();
+        TreeMap<Short, String> primaryKey = new TreeMap<>();
+        try (ResultSet rs = md.getPrimaryKeys(catalog, schema, table)) {
+            while (rs.next()) {
+                primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME").toUpperCase(Locale.ROOT));
+            }
+        }
+        if (!primaryKey.isEmpty()) {
+            result.add(new ArrayList<>(primaryKey.values()));
+        }
+        Map<String, TreeMap<Short, String>> indexes = new LinkedHashMap<>();
+        try (ResultSet rs = md.getIndexInfo(catalog, schema, table, true, true)) {
+            while (rs.next()) {
+                String column = rs.getString("COLUMN_NAME");
+                if (column == null || rs.getBoolean("NON_UNIQUE")) {
+                    continue;
+                }
+                indexes.computeIfAbsent(rs.getString("INDEX_NAME"), k -> new TreeMap<>())
+                        .put(rs.getShort("ORDINAL_POSITION"), column.toUpperCase(Locale.ROOT));
+            }
+        }
+        for (TreeMap<Short, String> index : indexes.values()) {
+            List<String> columns = new ArrayList<>(index.values());
+            if (notNull.containsAll(columns) && !result.contains(columns)) {
+                result.add(columns);
+            }
+        }
+        return result;
+    }
+
+    static String fingerprint(String text) {
+        return DigestUtils.md5DigestAsHex(text.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    /**
+     * 把分页位置编码成 URL 安全的令牌，fingerprint 用来识别令牌属于哪条查询。
+     */
+    static String encodeCursor(ObjectMapper objectMapper, String fingerprint, Object[] values, long totalRows) {
+        List<List<String>> encoded = new ArrayList<>();
+        for (Object value : values) {
+            if (value instanceof Timestamp) {
+                Timestamp ts = (Timestamp) value;
+                encoded.add(Arrays.asList("t", String.valueOf(ts.getTime()), String.valueOf(ts.getNanos())));
+            } else if (value instanceof BigDecimal) {
+                encoded.add(Arrays.asList("n", ((BigDecimal) value).toPlainString()));
+            } else {
+                encoded.add(Arrays.asList("s", String.valueOf(value)));
+            }
+        }
+        Map<String, Object> token = new LinkedHashMap<>();
+        token.put("f", fingerprint);
+        token.put("t", totalRows);
+        token.put("v", encoded);
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(token));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 解析游标令牌；令牌无效或不属于当前查询时返回 null，调用方退回按页码分页。
+     */
+    static Cursor decodeCursor(ObjectMapper objectMapper, String fingerprint, String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            Map<?, ?> map = objectMapper.readValue(Base64.getUrlDecoder().decode(token), Map.class);
+            if (!fingerprint.equals(map.get("f"))) {
+                return null;
+            }
+            List<?> encoded = (List<?>) map.get("v");
+            Object[] values = new Object[encoded.size()];
+            for (int i = 0; i < values.length; i++) {
+                List<?> value = (List<?>) encoded.get(i);
+                String type = (String) value.get(0);
+                if ("t".equals(type)) {
+                    Timestamp ts = new Timestamp(Long.parseLong((String) value.get(1)));
+                    ts.setNanos(Integer.parseInt((String) value.get(2)));
+                    values[i] = ts;
+                } else if ("n".equals(type)) {
+                    values[i] = new BigDecimal((String) value.get(1));
+                } else {
+                    values[i] = value.get(1);
+                }
+            }
+            return new Cursor(values, ((Number) map.get("t")).longValue());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 's' 字符串、'n' 数值、't' 日期时间；其他类型返回 0（不能作为排序键）。
+     */
+    private static char category(Integer jdbcType) {
+        if (jdbcType == null) {
+            return 0;
+        }
+        switch (jdbcType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return 'n';
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                return 't';
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                return 's';
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 去掉标识符的引号；未加引号的标识符按数据库存储元数据的大小写规则转换。
+     */
+    static String normalize(String identifier, DatabaseMetaData md) throws SQLException {
+        if (identifier.startsWith("\"") || identifier.startsWith("`")) {
+            return identifier.substring(1, identifier.length() - 1);
+        }
+        if (md.storesUpperCaseIdentifiers()) {
+            return identifier.toUpperCase(Locale.ROOT);
+        }
+        return md.storesLowerCaseIdentifiers() ? identifier.toLowerCase(Locale.ROOT) : identifier;
+    }
+}
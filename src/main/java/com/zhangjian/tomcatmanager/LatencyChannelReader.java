@@ -0,0 +1,184 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.WebappSessionStats;
+import com.zhangjian.tomcatmanager.valve.LatencyChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 只读映射 Valve 写入的共享内存文件。每次读取前先用普通读取比对文件头，
+ * 文件被重建或 Tomcat 重启后重新映射。
+ */
+final class LatencyChannelReader {
+
+    private final Path file;
+    private MappedByteBuffer mapped;
+    private long mappedStartedAt;
+
+    LatencyChannelReader(Path file) {
+        this.file = file;
+    }
+
+    boolean isFor(Path other) {
+        return file.equals(other);
+    }
+
+    /**
+     * 读取所有已占用槽位的当前值；文件不存在或尚未初始化时返回 null。
+     */
+    synchronized Snapshot read() throws IOException {
+        if (!Files.isRegularFile(file)) {
+            mapped = null;
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(LatencyChannel.HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // keep reading until the header is complete
+            }
+            if (header.hasRemaining() || header.getInt(LatencyChannel.HEADER_MAGIC) != LatencyChannel.MAGIC) {
+                return null;
+            }
+            long startedAt = header.getLong(LatencyChannel.HEADER_STARTED_AT);
+            if (mapped == null || mappedStartedAt != startedAt) {
+                long size = channel.size();
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                mappedStartedAt = startedAt;
+            }
+        }
+        if (!LatencyChannel.isValidHeader(mapped)) {
+            mapped = null;
+            return null;
+        }
+
+        int slotCount = mapped.getInt(LatencyChannel.HEADER_SLOT_COUNT);
+        int bucketCount = LatencyChannel.BUCKET_BOUNDS_MS.length;
+        Snapshot snapshot = new Snapshot(System.currentTimeMillis(), mapped.getLong(LatencyChannel.HEADER_STARTED_AT));
+        for (int slot = 0; slot < slotCount; slot++) {
+            String name = LatencyChannel.readName(mapped, slot);
+            if (name == null) {
+                continue;
+            }
+            int offset = LatencyChannel.slotOffset(slot);
+            SlotValues values = new SlotValues();
+            values.count = mapped.getLong(offset + LatencyChannel.SLOT_COUNT);
+            values.totalMicros = mapped.getLong(offset + LatencyChannel.SLOT_TOTAL_MICROS);
+            values.maxMicros = mapped.getLong(offset + LatencyChannel.SLOT_MAX_MICROS);
+            values.errors = mapped.getLong(offset + LatencyChannel.SLOT_ERRORS);
+            values.inFlight = Math.max(0, mapped.getInt(offset + LatencyChannel.SLOT_IN_FLIGHT));
+            values.buckets = new long[bucketCount];
+            for (int b = 0; b < bucketCount; b++) {
+                values.buckets[b] = mapped.getLong(offset + LatencyChannel.SLOT_BUCKETS + b * 8);
+            }
+            snapshot.slots.put(name, values);
+        }
+
+        long sampledAt = mapped.getLong(LatencyChannel.HEADER_SESSION_SAMPLED_AT);
+        int sessionCount = Math.min(mapped.getInt(LatencyChannel.HEADER_SESSION_COUNT), LatencyChannel.SESSION_ENTRIES);
+        for (int entry = 0; entry < sessionCount; entry++) {
+            int offset = LatencyChannel.sessionOffset(slotCount, entry);
+            String name = LatencyChannel.readNameAt(mapped, offset);
+            int separator = name != null ? name.indexOf(LatencyChannel.NAME_SEPARATOR) : -1;
+            if (separator < 0) {
+                continue;
+            }
+            WebappSessionStats stats = new WebappSessionStats();
+            stats.setHost(name.substring(0, separator));
+            stats.setContext(name.substring(separator + 1));
+            stats.setActiveSessions(mapped.getInt(offset + LatencyChannel.SESSION_ACTIVE));
+            stats.setMaxActive(mapped.getInt(offset + LatencyChannel.SESSION_MAX_ACTIVE));
+            stats.setSessionCounter(mapped.getLong(offset + LatencyChannel.SESSION_COUNTER));
+            stats.setExpiredSessions(mapped.getLong(offset + LatencyChannel.SESSION_EXPIRED));
+            stats.setRejectedSessions(mapped.getLong(offset + LatencyChannel.SESSION_REJECTED));
+            stats.setEstimatedBytes(mapped.getLong(offset + LatencyChannel.SESSION_ESTIMATED_BYTES));
+            stats.setSampledSessions(mapped.getInt(offset + LatencyChannel.SESSION_SAMPLED));
+            stats.setSampledAt(sampledAt);
+            snapshot.sessions.add(stats);
+        }
+        return snapshot;
+    }
+
+    static final class Snapshot {
+        final long takenAt;
+        final long startedAt;
+        final Map<String, SlotValues> slots = new LinkedHashMap<>();
+        final List<WebappSessionStats> sessions = new ArrayList<>();
+
+        Snapshot(long takenAt, long startedAt) {
+            this.takenAt = takenAt;
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * 所有 context 汇总槽位的进行中请求数之和。
+         */
+        int totalInFlight() {
+            int total = 0;
+            for (Map.Entry<String, SlotValues> entry : slots.entrySet()) {
+                if (entry.getKey().endsWith(String.valueOf(LatencyChannel.NAME_SEPARATOR))) {
+                    total += entry.getValue().inFlight;
+                }
+            }
+            return total;
+        }
+    }
+
+    static final class SlotValues {
+        long count;
+        long totalMicros;
+        long maxMicros;
+        long errors;
+        int inFlight;
+        long[] buckets;
+
+        /**
+         * this 减去较早的 earlier，得到这段时间内的增量；maxMicros 和 inFlight 取当前值。
+         */
+        SlotValues minus(SlotValues earlier) {
+            SlotValues delta = new SlotValues();
+            delta.count = count - earlier.count;
+            delta.totalMicros = totalMicros - earlier.totalMicros;
+            delta.maxMicros = maxMicros;
+            delta.errors = errors - earlier.errors;
+            delta.inFlight = inFlight;
+            delta.buckets = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                delta.buckets[i] = buckets[i] - earlier.buckets[i];
+            }
+            return delta;
+        }
+
+        /**
+         * 按桶上界估算分位数，不超过观察到的最大值。无数据时返回 -1。
+         */
+        long percentileMs(double q) {
+            long total = 0;
+            for (long b : buckets) {
+                total += b;
+            }
+            if (total <= 0) {
+                return -1;
+            }
+            long maxMs = (maxMicros + 999) / 1000;
+            long rank = (long) Math.ceil(q * total);
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= rank) {
+                    return Math.min(LatencyChannel.BUCKET_BOUNDS_MS[i], maxMs);
+                }
+            }
+            return maxMs;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.zhangjian.tomcatmanager;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/latency")
+public class LatencyController {
+
+    private final LatencyValveService latencyValveService;
+    private final JobSchedulerService jobSchedulerService;
+
+    LatencyController(LatencyValveService latencyValveService, JobSchedulerService jobSchedulerService) {
+        this.latencyValveService = latencyValveService;
+        this.jobSchedulerService = jobSchedulerService;
+    }
+
+    @GetMapping
+    public Map<String, Object> getLatency(@RequestParam(required = false) String context,
+                                          @RequestParam(defaultValue = "true") boolean patterns) {
+        Map<String, Object> body = new LinkedHashMap<>(latencyValveService.getStatus());
+        body.put("stats", latencyValveService.getStats(context, patterns));
+        return body;
+    }
+
+    @PostMapping("/valve")
+    public ResponseEntity<?> installValve(@RequestParam(defaultValue = "none") String restart) {
+        try {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("channelFile", latencyValveService.install());
+            body.put("message", jobSchedulerService.applyRestart(restart, "安装请求耗时 Valve"));
+            return ResponseEntity.ok(body);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("message", "安装 Valve 失败: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/valve")
+    public ResponseEntity<?> uninstallValve(@RequestParam(defaultValue = "none") String restart) {
+        try {
+            latencyValveService.uninstall();
+            return ResponseEntity.ok(Collections.singletonMap("message", jobSchedulerService.applyRestart(restart, "移除请求耗时 Valve")));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("message", "移除 Valve 失败: " + e.getMessage()));
+        }
+    }
+}
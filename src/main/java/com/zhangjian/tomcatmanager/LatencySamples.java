@@ -0,0 +1,42 @@
+package com.zhangjian.tomcatmanager;
+
+import java.util.Arrays;
+
+/**
+ * 保存最近 N 次耗时（毫秒）的滑动窗口，用于计算分位数。
+ */
+final class LatencySamples {
+
+    private final long[] samples;
+    private int next = 0;
+    private int size = 0;
+
+    LatencySamples(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 返回给定分位（0-1）的耗时，窗口为空时返回 -1。
+     */
+    synchronized long percentile(double quantile) {
+        if (size == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(quantile * size) - 1;
+        return sorted[Math.max(0, Math.min(idx, size - 1))];
+    }
+}
@@ -0,0 +1,351 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.LatencyStats;
+import com.zhangjian.tomcatmanager.dto.WebappSessionStats;
+import com.zhangjian.tomcatmanager.valve.LatencyChannel;
+import com.zhangjian.tomcatmanager.valve.LatencyRecordingValve;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * 把请求耗时 Valve 安装到被管 Tomcat（lib 下的 JAR + server.xml 中 Engine 上的 Valve），
+ * 并定时读取 Valve 写入的共享内存文件，计算每个 webapp 的分位数并提供会话统计。读取过程不经过网络，也不需要 APM 代理。
+ */
+@Service
+public class LatencyValveService {
+
+    static final String JAR_NAME = "tomcat-manager-valve.jar";
+    // Everything in the valve package, including nested classes, is packaged for the managed Tomcat
+    private static final String VALVE_CLASS_PATTERN =
+            "classpath*:" + LatencyRecordingValve.class.getPackage().getName().replace('.', '/') + "/*.class";
+
+    private final AppConfig appConfig;
+    private final TomcatService tomcatService;
+    private final String channelFileSetting;
+    private final int slots;
+    private final int patternDepth;
+    private final int sessionSampleSeconds;
+    private final int windowSeconds;
+    private final int pollSeconds;
+    private final Deque<LatencyChannelReader.Snapshot> history = new ArrayDeque<>();
+    private final ScheduledExecutorService pollExecutor = Executors.newSingleThreadScheduledExecutor();
+    private LatencyChannelReader reader;
+
+    LatencyValveService(AppConfig appConfig, TomcatService tomcatService,
+                        @Value("${tomcat.latency.channel-file:}") String channelFileSetting,
+                        @Value("${tomcat.latency.slots:512}") int slots,
+                        @Value("${tomcat.latency.pattern-depth:1}") int patternDepth,
+                        @Value("${tomcat.latency.session-sample-seconds:30}") int sessionSampleSeconds,
+                        @Value("${tomcat.latency.window-seconds:60}") int windowSeconds,
+                        @Value("${tomcat.latency.poll-seconds:5}") int pollSeconds) {
+        this.appConfig = appConfig;
+        this.tomcatService = tomcatService;
+        this.channelFileSetting = channelFileSetting;
+        this.slots = slots;
+        this.patternDepth = patternDepth;
+        this.sessionSampleSeconds = sessionSampleSeconds;
+        this.windowSeconds = windowSeconds;
+        this.pollSeconds = pollSeconds;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (pollSeconds > 0) {
+            pollExecutor.scheduleAtFixedRate(this::poll, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pollExecutor.shutdownNow();
+    }
+
+    File channelFile() {
+        if (channelFileSetting != null && !channelFileSetting.trim().isEmpty()) {
+            return new File(channelFileSetting.trim());
+        }
+        return new File(appConfig.getTomcatHomePath(), "temp/tomcat-manager-latency.dat");
+    }
+
+    private File valveJar() {
+        return new File(appConfig.getTomcatHomePath(), "lib/" + JAR_NAME);
+    }
+
+    /**
+     * 写入 Valve JAR，并在 server.xml 的第一个 Engine 上添加（或更新）Valve，需要重启 Tomcat 后生效。
+     */
+    public String install() throws Exception {
+        writeValveJar(valveJar().toPath());
+
+        File serverXml = ServerXmlSupport.serverXml(appConfig);
+        ServerXmlSupport.Edit edit = ServerXmlSupport.Edit.open(serverXml);
+        NodeList engines = edit.getDocument().getElementsByTagName("Engine");
+        if (engines.getLength() == 0) {
+            throw new IllegalStateException("server.xml 中未找到 Engine 元素。");
+        }
+        // The Engine pipeline sees requests for every Host; requests are already mapped to a context there
+        Element engine = (Element) engines.item(0);
+        Element valve = findValve(engine);
+        String file = channelFile().getAbsolutePath().replace('\\', '/');
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("className", LatencyRecordingValve.class.getName());
+        attributes.put("file", file);
+        attributes.put("slots", String.valueOf(slots));
+        attributes.put("patternDepth", String.valueOf(patternDepth));
+        attributes.put("sessionSampleSeconds", String.valueOf(sessionSampleSeconds));
+        if (valve == null) {
+            // First in the pipeline so the time spent in other valves is included
+            edit.insertFirstChild(engine, "Valve", attributes);
+        } else {
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                edit.setAttribute(valve, attribute.getKey(), attribute.getValue());
+            }
+        }
+        Path backup = edit.writeAtomically();
+        tomcatService.broadcastLog("[System] 已安装请求耗时 Valve (" + JAR_NAME + ")，server.xml 原文件备份为 " + backup.getFileName(), "system");
+        return file;
+    }
+
+    /**
+     * 从 server.xml 中移除 Valve 并删除 JAR。Tomcat 运行时 Windows 会锁定 JAR，此时只移除配置。
+     */
+    public void uninstall() throws Exception {
+        File serverXml = ServerXmlSupport.serverXml(appConfig);
+        ServerXmlSupport.Edit edit = ServerXmlSupport.Edit.open(serverXml);
+        NodeList engines = edit.getDocument().getElementsByTagName("Engine");
+        boolean changed = false;
+        for (int i = 0; i < engines.getLength(); i++) {
+            Element valve;
+            while ((valve = findValve((Element) engines.item(i))) != null) {
+                edit.remove(valve);
+                changed = true;
+            }
+        }
+        if (changed) {
+            edit.writeAtomically();
+        }
+        try {
+            Files.deleteIfExists(valveJar().toPath());
+        } catch (IOException e) {
+            tomcatService.broadcastLog("[System] Valve JAR 正在被 Tomcat 使用，重启后可手动删除: " + valveJar(), "system");
+        }
+        tomcatService.broadcastLog("[System] 已移除请求耗时 Valve。", "system");
+    }
+
+    public boolean isInstalled() throws Exception {
+        if (!valveJar().isFile()) {
+            return false;
+        }
+        NodeList engines = ServerXmlSupport.parse(ServerXmlSupport.serverXml(appConfig)).getElementsByTagName("Engine");
+        for (int i = 0; i < engines.getLength(); i++) {
+            if (findValve((Element) engines.item(i)) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        try {
+            status.put("installed", isInstalled());
+        } catch (Exception e) {
+            status.put("installed", null);
+        }
+        status.put("channelFile", channelFile().getAbsolutePath());
+        LatencyChannelReader.Snapshot latest = history.peekLast();
+        status.put("active", latest != null);
+        status.put("startedAt", latest != null ? latest.startedAt : null);
+        status.put("windowSeconds", windowSeconds);
+        status.put("inFlight", latest != null ? latest.totalInFlight() : null);
+        status.put("windowPeakInFlight", getWindowPeakInFlight());
+        return status;
+    }
+
+    /**
+     * 每个 webapp 的统计；includePatterns 为 true 时附带各 URL 模式，context 不为空时只返回该 webapp。
+     */
+    public synchronized List<LatencyStats> getStats(String context, boolean includePatterns) {
+        List<LatencyStats> result = new ArrayList<>();
+        LatencyChannelReader.Snapshot latest = history.peekLast();
+        if (latest == null) {
+            return result;
+        }
+        LatencyChannelReader.Snapshot oldest = history.peekFirst();
+        for (Map.Entry<String, LatencyChannelReader.SlotValues> entry : latest.slots.entrySet()) {
+            String name = entry.getKey();
+            int hostEnd = name.indexOf(LatencyChannel.NAME_SEPARATOR);
+            int separator = hostEnd >= 0 ? name.indexOf(LatencyChannel.NAME_SEPARATOR, hostEnd + 1) : -1;
+            if (separator < 0) {
+                continue;
+            }
+            String slotContext = name.substring(hostEnd + 1, separator);
+            String pattern = name.substring(separator + 1);
+            if ((context != null && !context.isEmpty() && !context.equals(slotContext))
+                    || (!includePatterns && !pattern.isEmpty())) {
+                continue;
+            }
+            LatencyChannelReader.SlotValues values = entry.getValue();
+            LatencyChannelReader.SlotValues earlier = oldest != latest ? oldest.slots.get(name) : null;
+            LatencyChannelReader.SlotValues window = earlier != null ? values.minus(earlier) : values;
+
+            LatencyStats stats = new LatencyStats();
+            stats.setHost(name.substring(0, hostEnd));
+            stats.setContext(slotContext);
+            stats.setPattern(pattern.isEmpty() ? null : pattern);
+            stats.setCount(values.count);
+            stats.setErrors(values.errors);
+            stats.setInFlight(values.inFlight);
+            stats.setMeanMs(values.count > 0 ? values.totalMicros / 1000.0 / values.count : 0);
+            stats.setMaxMs(values.maxMicros / 1000);
+            stats.setP50Ms(values.percentileMs(0.5));
+            stats.setP95Ms(values.percentileMs(0.95));
+            stats.setP99Ms(values.percentileMs(0.99));
+            stats.setWindowCount(window.count);
+            stats.setWindowErrors(window.errors);
+            stats.setWindowP95Ms(window.percentileMs(0.95));
+            stats.setWindowP99Ms(window.percentileMs(0.99));
+            result.add(stats);
+        }
+        result.sort(Comparator.comparing(LatencyStats::getContext)
+                .thenComparing(LatencyStats::getHost)
+                .thenComparing(s -> s.getPattern() == null ? "" : s.getPattern()));
+        return result;
+    }
+
+    /**
+     * 最近一次采样的各 webapp 会话统计；Valve 未运行时返回 null。
+     */
+    public synchronized List<WebappSessionStats> getSessionStats() {
+        LatencyChannelReader.Snapshot latest = history.peekLast();
+        return latest != null ? latest.sessions : null;
+    }
+
+    /**
+     * 时间窗口内各次采样中进行中请求总数的最大值，可作为繁忙请求线程数；无数据时返回 null。
+     */
+    public synchronized Integer getWindowPeakInFlight() {
+        if (history.isEmpty()) {
+            return null;
+        }
+        int peak = 0;
+        for (LatencyChannelReader.Snapshot snapshot : history) {
+            peak = Math.max(peak, snapshot.totalInFlight());
+        }
+        return peak;
+    }
+
+    /**
+     * 时间窗口内各 webapp p99 的最大值，窗口内没有请求时返回 -1。
+     */
+    public long getWindowP99Ms() {
+        long p99 = -1;
+        for (LatencyStats stats : getStats(null, false)) {
+            if (stats.getWindowCount() > 0) {
+                p99 = Math.max(p99, stats.getWindowP99Ms());
+            }
+        }
+        return p99;
+    }
+
+    private void poll() {
+        try {
+            File file = channelFile();
+            synchronized (this) {
+                if (reader == null || !reader.isFor(file.toPath())) {
+                    reader = new LatencyChannelReader(file.toPath());
+                }
+            }
+            LatencyChannelReader.Snapshot snapshot = reader.read();
+            synchronized (this) {
+                if (snapshot == null) {
+                    history.clear();
+                    return;
+                }
+                LatencyChannelReader.Snapshot last = history.peekLast();
+                if (last != null && last.startedAt != snapshot.startedAt) {
+                    // Tomcat restarted and the valve reset its counters
+                    history.clear();
+                }
+                history.addLast(snapshot);
+                long cutoff = snapshot.takenAt - windowSeconds * 1000L;
+                while (history.size() > 1 && history.peekFirst().takenAt < cutoff) {
+                    history.removeFirst();
+                }
+            }
+        } catch (Exception e) {
+            // Keep polling; the file may be mid-creation while Tomcat starts
+        }
+    }
+
+    private static Element findValve(Element container) {
+        for (Node child = container.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && "Valve".equals(child.getNodeName())
+                    && LatencyRecordingValve.class.getName().equals(((Element) child).getAttribute("className"))) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从管理端自身的类路径中取出 Valve 包下的所有 class 文件（包括内部类）打包，先写临时文件再替换。
+     */
+    private static void writeValveJar(Path jar) throws IOException {
+        Files.createDirectories(jar.getParent());
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Created-By", "tomcat-manager");
+        Path temp = Files.createTempFile(jar.getParent(), JAR_NAME, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                 JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+                String packagePath = LatencyRecordingValve.class.getPackage().getName().replace('.', '/') + "/";
+                Resource[] classFiles = new PathMatchingResourcePatternResolver(LatencyValveService.class.getClassLoader())
+                        .getResources(VALVE_CLASS_PATTERN);
+                if (classFiles.length == 0) {
+                    throw new IOException("找不到 Valve 的类文件: " + VALVE_CLASS_PATTERN);
+                }
+                Set<String> entryNames = new HashSet<>();
+                for (Resource classFile : classFiles) {
+                    String entryName = packagePath + classFile.getFilename();
+                    if (!entryNames.add(entryName)) {
+                        // The same class seen through another classpath root
+                        continue;
+                    }
+                    try (InputStream in = classFile.getInputStream()) {
+                        jarOut.putNextEntry(new JarEntry(entryName));
+                        StreamUtils.copy(in, jarOut);
+                        jarOut.closeEntry();
+                    }
+                }
+            }
+            Files.move(temp, jar, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.zhangjian.tomcatmanager;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按字节容量限制的日志环形缓冲区。每条记录保存一段原始字节及其来源，写入时只做一次内存拷贝，
+ * 不做字符解码；空间不足时淘汰最旧的记录。
+ */
+final class LogRingBuffer {
+
+    static final byte SOURCE_PROCESS_OUT = 0;
+    static final byte SOURCE_PROCESS_ERR = 1;
+    static final byte SOURCE_MANAGER = 2;
+    static final byte SOURCE_MANAGER_ERROR = 3;
+
+    // 1 byte source + 4 bytes length
+    private static final int HEADER_SIZE = 5;
+
+    private final byte[] data;
+    private int head = 0;   // next write position
+    private int tail = 0;   // start of the oldest record
+    private int used = 0;
+
+    LogRingBuffer(int capacityBytes) {
+        this.data = new byte[capacityBytes];
+    }
+
+    /**
+     * 追加 src 中 position 到 limit 之间的字节，不改变 src 的 position。
+     */
+    synchronized void append(byte source, ByteBuffer src) {
+        int length = src.remaining();
+        int offset = src.position();
+        int maxPayload = data.length - HEADER_SIZE;
+        if (length > maxPayload) {
+            offset += length - maxPayload;
+            length = maxPayload;
+        }
+        while (data.length - used < HEADER_SIZE + length) {
+            evictOldest();
+        }
+        writeByte(source);
+        writeInt(length);
+        for (int copied = 0; copied < length; ) {
+            int chunk = Math.min(length - copied, data.length - head);
+            ByteBuffer view = src.duplicate();
+            ((Buffer) view).position(offset + copied);
+            view.get(data, head, chunk);
+            head = (head + chunk) % data.length;
+            copied += chunk;
+        }
+        used += HEADER_SIZE + length;
+    }
+
+    /**
+     * 按写入顺序复制出所有记录，仅在需要展示文本时调用。
+     */
+    synchronized List<Record> snapshot() {
+        List<Record> records = new ArrayList<>();
+        int pos = tail;
+        int remaining = used;
+        while (remaining > 0) {
+            byte source = data[pos];
+            int length = readInt((pos + 1) % data.length);
+            byte[] payload = new byte[length];
+            int start = (pos + HEADER_SIZE) % data.length;
+            int firstChunk = Math.min(length, data.length - start);
+            System.arraycopy(data, start, payload, 0, firstChunk);
+            System.arraycopy(data, 0, payload, firstChunk, length - firstChunk);
+            records.add(new Record(source, payload));
+            pos = (start + length) % data.length;
+            remaining -= HEADER_SIZE + length;
+        }
+        return records;
+    }
+
+    private void evictOldest() {
+        int length = readInt((tail + 1) % data.length);
+        tail = (tail + HEADER_SIZE + length) % data.length;
+        used -= HEADER_SIZE + length;
+    }
+
+    private void writeByte(byte b) {
+        data[head] = b;
+        head = (head + 1) % data.length;
+    }
+
+    private void writeInt(int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            writeByte((byte) (value >>> shift));
+        }
+    }
+
+    private int readInt(int pos) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (data[(pos + i) % data.length] & 0xFF);
+        }
+        return value;
+    }
+
+    static final class Record {
+        final byte source;
+        final byte[] payload;
+
+        Record(byte source, byte[] payload) {
+            this.source = source;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.zhangjian.tomcatmanager;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private final ProcessMetricsSampler processMetricsSampler;
+
+    MetricsController(ProcessMetricsSampler processMetricsSampler) {
+        this.processMetricsSampler = processMetricsSampler;
+    }
+
+    @GetMapping
+    public Map<String, Object> getMetrics(@RequestParam(defaultValue = "0") long since) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("jvm", getJvmMetrics());
+        metrics.put("tomcatProcess", getTomcatProcessMetrics(since));
+        return metrics;
+    }
+
+    @GetMapping("/tomcat-process")
+    public Map<String, Object> getTomcatProcessMetrics(@RequestParam(defaultValue = "0") long since) {
+        Map<String, Object> process = new LinkedHashMap<>();
+        process.put("supported", processMetricsSampler.isSupported());
+        process.put("pid", processMetricsSampler.getPid());
+        process.put("latest", processMetricsSampler.getLatestSample());
+        process.put("samples", processMetricsSampler.getSamples(since));
+        return process;
+    }
+
+    private Map<String, Object> getJvmMetrics() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Map<String, Object> jvm = new LinkedHashMap<>();
+        jvm.put("heapUsed", memory.getHeapMemoryUsage().getUsed());
+        jvm.put("heapCommitted", memory.getHeapMemoryUsage().getCommitted());
+        jvm.put("heapMax", memory.getHeapMemoryUsage().getMax());
+        jvm.put("nonHeapUsed", memory.getNonHeapMemoryUsage().getUsed());
+        jvm.put("threads", ManagementFactory.getThreadMXBean().getThreadCount());
+        jvm.put("uptimeMs", ManagementFactory.getRuntimeMXBean().getUptime());
+        return jvm;
+    }
+}
@@ -0,0 +1,222 @@
+package com.zhangjian.tomcatmanager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * 大表的并行导出。RangePartitioner 把单表查询切成若干段（Oracle 按 ROWID 区范围，MySQL 按整数主键范围），
+ * 多个工作线程各自借一个池连接，从队列中依次领取段读取；每段写成一个完整的 gzip 成员（临时文件），
+ * 读完后追加到输出。gzip 成员首尾相接仍是一个合法的 gzip 文件，解压后是表头加上各段的行，段按完成顺序排列。
+ *
+ * <p>同一个数据库连接配置上所有并行导出合计最多占用 maxExportParallelism 个连接（不超过连接池大小减 1，
+ * 留一个连接给 SQL 控制台），再受全局的 db.export.parallel.max-degree 限制；拿不到两个以上的名额，
+ * 或查询不能切分时按单个游标导出。各段在各自的事务中读取，导出期间表被修改时各段看到的不是同一时刻的数据。</p>
+ */
+@Component
+public class ParallelExportService {
+
+    private final DatabaseService databaseService;
+    private final FetchSizeAdvisor fetchSizeAdvisor;
+    private final StatementRegistry statementRegistry;
+    private final int maxDegree;
+    private final int rangesPerWorker;
+    // connectionId/limit -> connections still available to parallel exports
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+
+    ParallelExportService(DatabaseService databaseService, FetchSizeAdvisor fetchSizeAdvisor,
+                          StatementRegistry statementRegistry,
+                          @Value("${db.export.parallel.max-degree:4}") int maxDegree,
+                          @Value("${db.export.parallel.ranges-per-worker:4}") int rangesPerWorker) {
+        this.databaseService = databaseService;
+        this.fetchSizeAdvisor = fetchSizeAdvisor;
+        this.statementRegistry = statementRegistry;
+        this.maxDegree = Math.max(1, maxDegree);
+        this.rangesPerWorker = Math.max(1, rangesPerWorker);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * 把查询结果并行导出为 gzip 压缩的 CSV/TSV，返回写出的行数。段的临时文件写在 workDir 中；
+     * note 收到一次说明：实际的切分方式和并行度，或不能并行的原因。
+     */
+    public long export(String connectionId, String sql, String format, OutputStream out, Path workDir,
+                       LongConsumer progress, Consumer<String> note) throws SQLException, IOException {
+        DatabaseConnection dbConn = databaseService.getConnectionById(connectionId);
+        if (dbConn == null) {
+            throw new SQLException("未找到ID为 " + connectionId + " 的连接配置。");
+        }
+        if (sql == null || sql.trim().isEmpty()) {
+            throw new IllegalArgumentException("SQL query cannot be empty.");
+        }
+        String cleanedSql = sql.trim().replaceAll(";$", "");
+        int limit = Math.max(1, Math.min(maxDegree,
+                Math.min(dbConn.getPool().getMaxExportParallelism(), dbConn.getPool().getMaxPoolSize() - 1)));
+        Semaphore available = permits.computeIfAbsent(connectionId + "/" + limit, key -> new Semaphore(limit));
+        int acquired = 0;
+        while (acquired < limit && available.tryAcquire()) {
+            acquired++;
+        }
+        try {
+            if (acquired < 2) {
+                note.accept(limit < 2 ? "未并行：该连接的并行导出上限为 1" : "未并行：该连接的并行导出名额已被其他导出占用");
+                return databaseService.exportQueryToDelimited(connectionId, cleanedSql, format, out, progress);
+            }
+            RangePartitioner.Plan plan;
+            try (Connection conn = databaseService.getConnection(connectionId)) {
+                plan = RangePartitioner.plan(conn, cleanedSql, acquired * rangesPerWorker);
+                if (plan.isSupported() && plan.getRanges().size() >= 2) {
+                    writeHeader(conn, cleanedSql, format, out);
+                }
+            }
+            if (!plan.isSupported() || plan.getRanges().size() < 2) {
+                note.accept("未并行：" + (plan.isSupported() ? "数据量太小，只切出一段" : plan.getReason()));
+                return databaseService.exportQueryToDelimited(connectionId, cleanedSql, format, out, progress);
+            }
+            int degree = Math.min(acquired, plan.getRanges().size());
+            available.release(acquired - degree);
+            acquired = degree;
+            note.accept(plan.getDescription() + "，" + degree + " 个连接并行读取");
+            return exportRanges(dbConn, plan.getRanges(), format, out, workDir, degree, progress);
+        } finally {
+            available.release(acquired);
+        }
+    }
+
+    private static void writeHeader(Connection conn, String sql, String format, OutputStream out) throws SQLException, IOException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM (" + sql + ") pq WHERE 1 = 0")) {
+            DelimitedExportWriter writer = new DelimitedExportWriter(out, format);
+            writer.writeHeader(rs.getMetaData());
+            writer.close();
+        }
+    }
+
+    private long exportRanges(DatabaseConnection dbConn, List<RangePartitioner.Range> ranges, String format, OutputStream out,
+                              Path workDir, int degree, LongConsumer progress) throws SQLException, IOException {
+        Queue<RangePartitioner.Range> pending = new ConcurrentLinkedQueue<>(ranges);
+        // Range statements are listed and cancelled together with the export that started them
+        String[] context = statementRegistry.currentContext();
+        AtomicLong total = new AtomicLong();
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < degree; i++) {
+            futures.add(workers.submit(() -> {
+                StatementRegistry.Scope scope = statementRegistry.withContext(context[0], context[1]);
+                try {
+                    readRanges(dbConn, pending, format, out, workDir, total, failed, progress);
+                } catch (Exception | Error e) {
+                    // Stop the other workers after their current batch
+                    failed.set(true);
+                    throw e;
+                } finally {
+                    scope.close();
+                }
+                return null;
+            }));
+        }
+        Throwable error = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // Workers stopped by the failed flag report a cancellation; keep the error that started it
+                if (error == null || error instanceof CancellationException) {
+                    error = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                failed.set(true);
+                Thread.currentThread().interrupt();
+                error = error != null ? error : new CancellationException();
+            }
+        }
+        if (error instanceof SQLException) {
+            throw (SQLException) error;
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error != null) {
+            throw new IllegalStateException(error);
+        }
+        progress.accept(total.get());
+        return total.get();
+    }
+
+    /**
+     * 一个工作线程：用同一个连接依次读取队列中的段，每段写完后整体追加到输出并删除临时文件。
+     */
+    private void readRanges(DatabaseConnection dbConn, Queue<RangePartitioner.Range> pending, String format, OutputStream out,
+                            Path workDir, AtomicLong total, AtomicBoolean failed, LongConsumer progress)
+            throws SQLException, IOException {
+        try (Connection conn = databaseService.getConnection(dbConn.getId())) {
+            RangePartitioner.Range range;
+            while (!failed.get() && (range = pending.poll()) != null) {
+                Path part = Files.createTempFile(workDir, "range-", ".gz");
+                try {
+                    readRange(conn, dbConn, range, format, part, total, failed, progress);
+                    synchronized (out) {
+                        Files.copy(part, out);
+                    }
+                } finally {
+                    Files.deleteIfExists(part);
+                }
+            }
+        }
+    }
+
+    private void readRange(Connection conn, DatabaseConnection dbConn, RangePartitioner.Range range, String format, Path part,
+                           AtomicLong total, AtomicBoolean failed, LongConsumer progress) throws SQLException, IOException {
+        try (PreparedStatement stmt = conn.prepareStatement(range.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            for (int i = 0; i < range.params.size(); i++) {
+                stmt.setObject(i + 1, range.params.get(i));
+            }
+            FetchSizeAdvisor.Fetch fetch = fetchSizeAdvisor.start(stmt, dbConn.getId(), FetchSizeAdvisor.Mode.EXPORT, 0);
+            StatementRegistry.Handle running = statementRegistry.register(dbConn, stmt, range.sql, StatementRegistry.Kind.EXPORT);
+            try (ResultSet rs = stmt.executeQuery();
+                 OutputStream partOut = new BufferedOutputStream(Files.newOutputStream(part))) {
+                fetch.adapt(rs);
+                long[] reported = new long[1];
+                DelimitedExportWriter writer = new DelimitedExportWriter(partOut, format);
+                long rows = writer.writeRows(rs, fetch, written -> {
+                    if (failed.get()) {
+                        throw new CancellationException();
+                    }
+                    progress.accept(total.addAndGet(written - reported[0]));
+                    reported[0] = written;
+                }, DatabaseService.PROGRESS_INTERVAL_ROWS);
+                writer.close();
+                fetch.finish();
+                total.addAndGet(rows - reported[0]);
+            } catch (SQLException e) {
+                throw running.explain(e);
+            } finally {
+                running.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.zhangjian.tomcatmanager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Linux /proc 文件系统的读取工具，用于在不启动外部进程的情况下获取 Tomcat 进程信息。
+ */
+final class ProcFs {
+
+    private static final Path PROC = Paths.get("/proc");
+    private static final String TCP_LISTEN_STATE = "0A";
+
+    private ProcFs() {
+    }
+
+    static boolean isAvailable() {
+        return Files.isReadable(PROC.resolve("self/stat"));
+    }
+
+    static Path processDir(String pid) {
+        return PROC.resolve(pid);
+    }
+
+    /**
+     * 通过 /proc/net/tcp(6) 找到监听指定端口的 socket inode，再扫描 /proc/&lt;pid&gt;/fd 找到持有它的进程。
+     * candidate 为上次找到的 PID：它仍持有该 socket 时直接返回，不再扫描所有进程。
+     */
+    static String findPidListeningOn(int port, String candidate) {
+        String inode = findListeningInode(PROC.resolve("net/tcp"), port);
+        if (inode == null) {
+            inode = findListeningInode(PROC.resolve("net/tcp6"), port);
+        }
+        if (inode == null) {
+            return null;
+        }
+        String socketLink = "socket:[" + inode + "]";
+        if (candidate != null && holdsSocket(processDir(candidate), socketLink)) {
+            return candidate;
+        }
+        try (DirectoryStream<Path> processes = Files.newDirectoryStream(PROC, "[0-9]*")) {
+            for (Path processDir : processes) {
+                if (holdsSocket(processDir, socketLink)) {
+                    return processDir.getFileName().toString();
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static boolean holdsSocket(Path processDir, String socketLink) {
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(processDir.resolve("fd"))) {
+            for (Path fd : fds) {
+                if (socketLink.equals(Files.readSymbolicLink(fd).toString())) {
+                    return true;
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            // Process exited or belongs to another user
+        }
+        return false;
+    }
+
+    static boolean isJavaProcess(String pid) {
+        try {
+            String comm = new String(Files.readAllBytes(processDir(pid).resolve("comm")), StandardCharsets.UTF_8).trim();
+            return comm.startsWith("java");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 返回 /proc/&lt;pid&gt;/stat 中进程名之后的字段（下标 0 对应 man proc 中的第 3 个字段 state）。
+     */
+    static String[] readStatFields(String pid) throws IOException {
+        String stat = new String(Files.readAllBytes(processDir(pid).resolve("stat")), StandardCharsets.US_ASCII);
+        // The command name may contain spaces and parentheses, so split after the last ')'
+        return stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+    }
+
+    static List<String> readStatusLines(String pid) throws IOException {
+        return Files.readAllLines(processDir(pid).resolve("status"), StandardCharsets.US_ASCII);
+    }
+
+    static int countFileDescriptors(String pid) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(processDir(pid).resolve("fd"))) {
+            for (Path ignored : fds) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String findListeningInode(Path table, int port) {
+        if (!Files.isReadable(table)) {
+            return null;
+        }
+        String portHex = String.format(":%04X", port);
+        try {
+            List<String> lines = Files.readAllLines(table, StandardCharsets.US_ASCII);
+            for (int i = 1; i < lines.size(); i++) {
+                String[] parts = lines.get(i).trim().split("\\s+");
+                if (parts.length > 9 && parts[1].endsWith(portHex) && TCP_LISTEN_STATE.equals(parts[3])) {
+                    return parts[9];
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return null;
+    }
+}
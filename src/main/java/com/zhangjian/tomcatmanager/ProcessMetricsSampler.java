@@ -0,0 +1,154 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.ProcessSample;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时从 /proc 读取被管 Tomcat 进程的 CPU、RSS、文件描述符和线程数，仅在 Linux 上启用。
+ * 采样过程只读取 /proc 下的文件，不会启动任何外部进程。
+ */
+@Service
+public class ProcessMetricsSampler {
+
+    // USER_HZ, fixed at 100 on all mainstream Linux architectures
+    private static final int CLOCK_TICKS_PER_SECOND = 100;
+    private static final long PID_RESOLVE_INTERVAL_MS = 30_000;
+
+    // Field offsets within ProcFs.readStatFields (man proc field number minus 3)
+    private static final int STAT_UTIME = 11;
+    private static final int STAT_STIME = 12;
+    private static final int STAT_NUM_THREADS = 17;
+    private static final int STAT_STARTTIME = 19;
+
+    private final TomcatService tomcatService;
+    private final int intervalSeconds;
+    private final ProcessSampleSeries series;
+    private final ScheduledExecutorService samplerExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private volatile String pid;
+    private String pidStartTime;
+    private long lastResolveAttempt = 0;
+    private long lastCpuTicks = -1;
+    private long lastSampleNanos;
+
+    ProcessMetricsSampler(TomcatService tomcatService,
+                          @Value("${tomcat.metrics.sample-interval-seconds:5}") int intervalSeconds,
+                          @Value("${tomcat.metrics.capacity:720}") int capacity) {
+        this.tomcatService = tomcatService;
+        this.intervalSeconds = intervalSeconds;
+        this.series = new ProcessSampleSeries(capacity);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!ProcFs.isAvailable() || intervalSeconds <= 0) {
+            return;
+        }
+        samplerExecutor.scheduleAtFixedRate(this::sample, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        samplerExecutor.shutdownNow();
+    }
+
+    public boolean isSupported() {
+        return ProcFs.isAvailable();
+    }
+
+    public String getPid() {
+        return pid;
+    }
+
+    public ProcessSample getLatestSample() {
+        return series.latest();
+    }
+
+    public List<ProcessSample> getSamples(long sinceMillis) {
+        if (!ProcFs.isAvailable()) {
+            return Collections.emptyList();
+        }
+        return series.snapshot(sinceMillis);
+    }
+
+    private void sample() {
+        try {
+            String currentPid = resolvePid();
+            if (currentPid == null) {
+                return;
+            }
+            String[] stat = ProcFs.readStatFields(currentPid);
+            if (!stat[STAT_STARTTIME].equals(pidStartTime)) {
+                // PID was reused by a different process
+                resetPid();
+                return;
+            }
+
+            long now = System.nanoTime();
+            long cpuTicks = Long.parseLong(stat[STAT_UTIME]) + Long.parseLong(stat[STAT_STIME]);
+            float cpuPercent = 0f;
+            if (lastCpuTicks >= 0) {
+                double elapsedSeconds = (now - lastSampleNanos) / 1_000_000_000d;
+                cpuPercent = (float) ((cpuTicks - lastCpuTicks) * 100d / CLOCK_TICKS_PER_SECOND / elapsedSeconds);
+            }
+            lastCpuTicks = cpuTicks;
+            lastSampleNanos = now;
+
+            long rssKb = 0;
+            long peakRssKb = 0;
+            int threads = Integer.parseInt(stat[STAT_NUM_THREADS]);
+            for (String line : ProcFs.readStatusLines(currentPid)) {
+                if (line.startsWith("VmRSS:")) {
+                    rssKb = parseKb(line);
+                } else if (line.startsWith("VmHWM:")) {
+                    peakRssKb = parseKb(line);
+                }
+            }
+            int fdCount = ProcFs.countFileDescriptors(currentPid);
+            series.add(System.currentTimeMillis(), cpuPercent, rssKb, peakRssKb, fdCount, threads);
+        } catch (IOException | RuntimeException e) {
+            // Process exited between reads; resolve again on the next tick
+            resetPid();
+        }
+    }
+
+    private String resolvePid() throws IOException {
+        if (pid != null) {
+            return pid;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastResolveAttempt < PID_RESOLVE_INTERVAL_MS) {
+            return null;
+        }
+        lastResolveAttempt = now;
+        String found = tomcatService.findTomcatPid();
+        if (found != null) {
+            pidStartTime = ProcFs.readStatFields(found)[STAT_STARTTIME];
+            lastCpuTicks = -1;
+            pid = found;
+        }
+        return found;
+    }
+
+    private void resetPid() {
+        pid = null;
+        pidStartTime = null;
+        lastCpuTicks = -1;
+    }
+
+    private static long parseKb(String statusLine) {
+        String value = statusLine.substring(statusLine.indexOf(':') + 1).trim();
+        int space = value.indexOf(' ');
+        return Long.parseLong(space > 0 ? value.substring(0, space) : value);
+    }
+}
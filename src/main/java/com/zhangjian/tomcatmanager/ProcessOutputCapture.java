@@ -0,0 +1,246 @@
+package com.zhangjian.tomcatmanager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 以字节为单位捕获 Tomcat 进程的标准输出/错误输出。
+ * 读取线程复用一个直接缓冲区，把原始字节写入归档文件和环形缓冲区；只有存在订阅者时才按行解码并推送，
+ * 历史日志查询时再从环形缓冲区解码。
+ */
+final class ProcessOutputCapture {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private final Charset processCharset;
+    private final LogRingBuffer ringBuffer;
+    private final Path archivePath;
+    private final long archiveMaxBytes;
+    private final BooleanSupplier hasSubscribers;
+    private final BiConsumer<String, String> lineListener;
+    private FileChannel archive;
+
+    ProcessOutputCapture(Charset processCharset, int ringBufferBytes, Path archivePath, long archiveMaxBytes,
+                         BooleanSupplier hasSubscribers, BiConsumer<String, String> lineListener) {
+        this.processCharset = processCharset;
+        this.ringBuffer = new LogRingBuffer(ringBufferBytes);
+        this.archivePath = archivePath;
+        this.archiveMaxBytes = archiveMaxBytes;
+        this.hasSubscribers = hasSubscribers;
+        this.lineListener = lineListener;
+    }
+
+    /**
+     * 启动一个线程，把进程输出流持续搬运到归档文件和环形缓冲区。
+     */
+    void pump(InputStream inputStream, String type) {
+        byte source = "error".equals(type) ? LogRingBuffer.SOURCE_PROCESS_ERR : LogRingBuffer.SOURCE_PROCESS_OUT;
+        Thread thread = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            LineSplitter splitter = new LineSplitter(processCharset);
+            try (ReadableByteChannel channel = Channels.newChannel(inputStream)) {
+                while (channel.read(buffer) >= 0) {
+                    // Cast keeps the Java 8 Buffer signatures when compiled on a newer JDK
+                    ((Buffer) buffer).flip();
+                    if (buffer.hasRemaining()) {
+                        writeArchive(buffer);
+                        ringBuffer.append(source, buffer);
+                        if (hasSubscribers.getAsBoolean()) {
+                            splitter.feed(buffer, line -> lineListener.accept(type, line));
+                        } else {
+                            splitter.skip(buffer);
+                        }
+                    }
+                    ((Buffer) buffer).clear();
+                }
+            } catch (IOException e) {
+                // Stream closed
+            }
+        }, "tomcat-" + type + "-capture");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 记录管理端自身产生的消息（UTF-8），与进程输出按时间顺序共存于同一个环形缓冲区。
+     */
+    void appendManagerMessage(String message, boolean error) {
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        ringBuffer.append(error ? LogRingBuffer.SOURCE_MANAGER_ERROR : LogRingBuffer.SOURCE_MANAGER, ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * 从环形缓冲区解码最近的 maxLines 行，filter 不为空时只保留包含该文本的行。
+     */
+    List<TomcatService.LogEntry> recentLines(int maxLines, String filter) {
+        Deque<TomcatService.LogEntry> lines = new ArrayDeque<>();
+        ByteArrayOutputStream[] pending = new ByteArrayOutputStream[4];
+        for (LogRingBuffer.Record record : ringBuffer.snapshot()) {
+            ByteArrayOutputStream partial = pending[record.source];
+            if (partial == null) {
+                partial = pending[record.source] = new ByteArrayOutputStream();
+            }
+            int lineStart = 0;
+            for (int i = 0; i < record.payload.length; i++) {
+                if (record.payload[i] == '\n') {
+                    partial.write(record.payload, lineStart, i - lineStart);
+                    addLine(lines, record.source, partial, maxLines, filter);
+                    lineStart = i + 1;
+                }
+            }
+            partial.write(record.payload, lineStart, record.payload.length - lineStart);
+        }
+        for (byte source = 0; source < pending.length; source++) {
+            if (pending[source] != null && pending[source].size() > 0) {
+                addLine(lines, source, pending[source], maxLines, filter);
+            }
+        }
+        return new ArrayList<>(lines);
+    }
+
+    synchronized void close() {
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                // Ignore on shutdown
+            }
+            archive = null;
+        }
+    }
+
+    private void addLine(Deque<TomcatService.LogEntry> lines, byte source, ByteArrayOutputStream partial, int maxLines, String filter) {
+        boolean fromProcess = source == LogRingBuffer.SOURCE_PROCESS_OUT || source == LogRingBuffer.SOURCE_PROCESS_ERR;
+        String text = stripCarriageReturn(new String(partial.toByteArray(), fromProcess ? processCharset : StandardCharsets.UTF_8));
+        partial.reset();
+        if (filter != null && !filter.isEmpty() && !text.contains(filter)) {
+            return;
+        }
+        lines.addLast(new TomcatService.LogEntry(text, typeOf(source)));
+        if (lines.size() > maxLines) {
+            lines.removeFirst();
+        }
+    }
+
+    private static String typeOf(byte source) {
+        switch (source) {
+            case LogRingBuffer.SOURCE_PROCESS_OUT: return "log";
+            case LogRingBuffer.SOURCE_MANAGER: return "system";
+            default: return "error";
+        }
+    }
+
+    private static String stripCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    private synchronized void writeArchive(ByteBuffer buffer) {
+        try {
+            if (archive == null) {
+                Path parent = archivePath.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                archive = FileChannel.open(archivePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer view = buffer.duplicate();
+            while (view.hasRemaining()) {
+                archive.write(view);
+            }
+            if (archiveMaxBytes > 0 && archive.size() > archiveMaxBytes) {
+                archive.close();
+                archive = null;
+                Files.move(archivePath, archivePath.resolveSibling(archivePath.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // Archiving is best effort; the ring buffer still holds recent output
+            archive = null;
+        }
+    }
+
+    /**
+     * 把字节流切分为行。未完成的行保留在可复用的数组中，只有完整的行才会被解码为字符串。
+     */
+    private static final class LineSplitter {
+        private final Charset charset;
+        private byte[] pending = new byte[1024];
+        private int pendingLength = 0;
+
+        LineSplitter(Charset charset) {
+            this.charset = charset;
+        }
+
+        void feed(ByteBuffer buffer, Consumer<String> consumer) {
+            int limit = buffer.limit();
+            int lineStart = buffer.position();
+            for (int i = lineStart; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    appendPending(buffer, lineStart, i);
+                    consumer.accept(stripCarriageReturn(new String(pending, 0, pendingLength, charset)));
+                    pendingLength = 0;
+                    lineStart = i + 1;
+                }
+            }
+            appendPending(buffer, lineStart, limit);
+            if (pendingLength >= MAX_LINE_BYTES) {
+                consumer.accept(new String(pending, 0, pendingLength, charset));
+                pendingLength = 0;
+            }
+        }
+
+        /**
+         * 无订阅者时只保留最后一个换行符之后的字节，保证订阅者加入后推送的第一行是完整的。
+         */
+        void skip(ByteBuffer buffer) {
+            int limit = buffer.limit();
+            for (int i = limit - 1; i >= buffer.position(); i--) {
+                if (buffer.get(i) == '\n') {
+                    pendingLength = 0;
+                    appendPending(buffer, i + 1, limit);
+                    return;
+                }
+            }
+            appendPending(buffer, buffer.position(), limit);
+            if (pendingLength >= MAX_LINE_BYTES) {
+                pendingLength = 0;
+            }
+        }
+
+        private void appendPending(ByteBuffer buffer, int from, int to) {
+            int length = to - from;
+            if (length <= 0) {
+                return;
+            }
+            if (pendingLength + length > pending.length) {
+                byte[] grown = new byte[Math.max(pending.length * 2, pendingLength + length)];
+                System.arraycopy(pending, 0, grown, 0, pendingLength);
+                pending = grown;
+            }
+            ByteBuffer view = buffer.duplicate();
+            ((Buffer) view).limit(to);
+            ((Buffer) view).position(from);
+            view.get(pending, pendingLength, length);
+            pendingLength += length;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.ProcessSample;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 固定容量的进程采样环形缓冲区。每个指标使用一个基本类型数组保存，写入时不产生对象分配。
+ */
+final class ProcessSampleSeries {
+
+    private final long[] timestamps;
+    private final float[] cpuPercents;
+    private final long[] rssKbs;
+    private final long[] peakRssKbs;
+    private final int[] fdCounts;
+    private final int[] threadCounts;
+    private int next = 0;
+    private int size = 0;
+
+    ProcessSampleSeries(int capacity) {
+        this.timestamps = new long[capacity];
+        this.cpuPercents = new float[capacity];
+        this.rssKbs = new long[capacity];
+        this.peakRssKbs = new long[capacity];
+        this.fdCounts = new int[capacity];
+        this.threadCounts = new int[capacity];
+    }
+
+    synchronized void add(long timestamp, float cpuPercent, long rssKb, long peakRssKb, int fdCount, int threads) {
+        timestamps[next] = timestamp;
+        cpuPercents[next] = cpuPercent;
+        rssKbs[next] = rssKb;
+        peakRssKbs[next] = peakRssKb;
+        fdCounts[next] = fdCount;
+        threadCounts[next] = threads;
+        next = (next + 1) % timestamps.length;
+        if (size < timestamps.length) {
+            size++;
+        }
+    }
+
+    /**
+     * 按时间顺序返回不早于 sinceMillis 的采样。
+     */
+    synchronized List<ProcessSample> snapshot(long sinceMillis) {
+        List<ProcessSample> samples = new ArrayList<>(size);
+        int start = (next - size + timestamps.length) % timestamps.length;
+        for (int i = 0; i < size; i++) {
+            int idx = (start + i) % timestamps.length;
+            if (timestamps[idx] >= sinceMillis) {
+                samples.add(new ProcessSample(timestamps[idx], cpuPercents[idx], rssKbs[idx], peakRssKbs[idx], fdCounts[idx], threadCounts[idx]));
+            }
+        }
+        return samples;
+    }
+
+    synchronized ProcessSample latest() {
+        if (size == 0) {
+            return null;
+        }
+        int idx = (next - 1 + timestamps.length) % timestamps.length;
+        return new ProcessSample(timestamps[idx], cpuPercents[idx], rssKbs[idx], peakRssKbs[idx], fdCounts[idx], threadCounts[idx]);
+    }
+}
@@ -0,0 +1,199 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.PageCacheStats;
+import com.zhangjian.tomcatmanager.dto.QueryResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * SQL 控制台结果页的内存缓存，按 连接 + SQL 指纹 + 分页方式 + 页码/页大小 缓存整页结果。
+ * 在 Tabulator 中来回翻页、重新应用布局时直接返回缓存的页，不再访问数据库。
+ *
+ * <p>按最近最少使用淘汰，总大小受字节预算限制（按行和值估算），超过 TTL 的页视为过期。
+ * 只缓存只读查询；连接配置可以关闭缓存，或用正则排除经常变化的表；前端的“刷新”会丢弃该 SQL 的所有缓存页。</p>
+ */
+@Component
+public class QueryPageCache {
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static final class Entry {
+        final String connectionId;
+        final String sqlKey;
+        final QueryResult result;
+        final long bytes;
+        final long createdAt = System.currentTimeMillis();
+
+        Entry(String connectionId, String sqlKey, QueryResult result, long bytes) {
+            this.connectionId = connectionId;
+            this.sqlKey = sqlKey;
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+
+    QueryPageCache(@Value("${db.page-cache.enabled:true}") boolean enabled,
+                   @Value("${db.page-cache.max-megabytes:64}") int maxMegabytes,
+                   @Value("${db.page-cache.ttl-seconds:300}") int ttlSeconds) {
+        this.enabled = enabled;
+        this.maxBytes = maxMegabytes * 1024L * 1024L;
+        this.ttlMillis = ttlSeconds * 1000L;
+    }
+
+    /**
+     * 查询是否可以缓存：全局开关、连接配置的开关和排除规则，以及是否为只读语句。
+     */
+    boolean isCacheable(DatabaseConnection dbConn, String cleanedSql) {
+        // Reads that lock rows, write files/variables or advance sequences are not safe to replay from memory
+        if (!enabled || !dbConn.isPageCacheEnabled() || !SqlParser.parse(cleanedSql).isReadOnly()) {
+            return false;
+        }
+        String bypass = dbConn.getPageCacheBypass();
+        if (bypass == null || bypass.trim().isEmpty()) {
+            return true;
+        }
+        try {
+            return !Pattern.compile(bypass.trim(), Pattern.CASE_INSENSITIVE).matcher(cleanedSql).find();
+        } catch (PatternSyntaxException e) {
+            // An invalid rule should not silently start caching tables it was meant to exclude
+            return false;
+        }
+    }
+
+    /**
+     * 返回缓存页的副本，未命中或已过期时返回 null。
+     */
+    synchronized QueryResult get(String pageKey) {
+        Entry entry = entries.get(pageKey);
+        if (entry != null && System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+            remove(pageKey);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(entry.result);
+    }
+
+    /**
+     * 缓存一页结果（不含查询会话 id，会话属于发起查询的客户端）。单页超过预算的 1/8 时不缓存。
+     */
+    synchronized void put(String pageKey, String connectionId, String sqlKey, QueryResult result) {
+        long bytes = estimateBytes(result);
+        if (bytes > maxBytes / 8) {
+            return;
+        }
+        QueryResult stored = copy(result);
+        stored.setSessionId(null);
+        remove(pageKey);
+        entries.put(pageKey, new Entry(connectionId, sqlKey, stored, bytes));
+        totalBytes += bytes;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= it.next().getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * 丢弃一条 SQL 的所有缓存页（前端点击刷新时）。
+     */
+    synchronized void invalidateSql(String sqlKey) {
+        removeIf(entry -> entry.sqlKey.equals(sqlKey));
+    }
+
+    /**
+     * 连接配置被修改或删除时丢弃其所有缓存页。
+     */
+    synchronized void invalidate(String connectionId) {
+        removeIf(entry -> entry.connectionId.equals(connectionId));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    synchronized PageCacheStats getStats() {
+        PageCacheStats stats = new PageCacheStats();
+        stats.setEnabled(enabled);
+        stats.setEntries(entries.size());
+        stats.setBytes(totalBytes);
+        stats.setMaxBytes(maxBytes);
+        stats.setHits(hits);
+        stats.setMisses(misses);
+        stats.setEvictions(evictions);
+        stats.setHitRatio(hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        return stats;
+    }
+
+    private void remove(String pageKey) {
+        Entry removed = entries.remove(pageKey);
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+        }
+    }
+
+    private void removeIf(Predicate<Entry> predicate) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (predicate.test(entry)) {
+                totalBytes -= entry.bytes;
+                it.remove();
+            }
+        }
+    }
+
+    private static QueryResult copy(QueryResult source) {
+        QueryResult copy = QueryResult.ofValues(source.getColumnInfo(), source.getValues(), source.getCurrentPage(),
+                source.getTotalPages(), source.getTotalRows());
+        copy.setTotalRowsExact(source.isTotalRowsExact());
+        copy.setCountId(source.getCountId());
+        copy.setSessionId(source.getSessionId());
+        copy.setPaginationMode(source.getPaginationMode());
+        copy.setPaginationNote(source.getPaginationNote());
+        copy.setNextCursor(source.getNextCursor());
+        return copy;
+    }
+
+    /**
+     * 粗略估算一页结果在堆中的大小：每行一个 Object[]，每个值按类型估算。
+     */
+    static long estimateBytes(QueryResult result) {
+        long bytes = 256;
+        if (result.getValues() == null) {
+            return bytes;
+        }
+        for (Object[] row : result.getValues()) {
+            bytes += 16 + 8L * row.length;
+            for (Object value : row) {
+                if (value instanceof CharSequence) {
+                    bytes += 40 + 2L * ((CharSequence) value).length();
+                } else if (value instanceof byte[]) {
+                    bytes += 16 + ((byte[]) value).length;
+                } else if (value != null) {
+                    bytes += 32;
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,173 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.QueryColumnInfo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次 SQL 查询的服务端游标会话。SQL 只执行一次，翻页时从打开的 ResultSet 继续读取，
+ * 已读到的行缓存在内存中，往回翻页直接从缓存返回。
+ *
+ * <p>游标占用连接池中的一个连接，空闲一段时间或缓存行数达到上限后游标被释放、连接归还连接池，
+ * 已缓存的行仍然可用；超出缓存范围的页需要调用方重新执行分页 SQL。</p>
+ */
+final class QuerySession {
+
+    private final String id;
+    private final String owner;
+    private final String connectionId;
+    private final String sql;
+    private final List<QueryColumnInfo> columns;
+    private final String[] labels;
+    private final List<Object[]> rows = new ArrayList<>();
+    private final long createdAt = System.currentTimeMillis();
+    private volatile long lastAccess = createdAt;
+    private long totalRows = -1;
+
+    private Connection connection;
+    private Statement statement;
+    private ResultSet resultSet;
+    private final FetchSizeAdvisor.Fetch fetch;
+    private boolean exhausted;
+
+    QuerySession(String id, String owner, String connectionId, String sql, List<QueryColumnInfo> columns,
+                 Connection connection, Statement statement, ResultSet resultSet, FetchSizeAdvisor.Fetch fetch) throws SQLException {
+        this.id = id;
+        this.owner = owner;
+        this.connectionId = connectionId;
+        this.sql = sql;
+        this.columns = columns;
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.fetch = fetch;
+        int count = resultSet.getMetaData().getColumnCount();
+        this.labels = new String[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = resultSet.getMetaData().getColumnLabel(i + 1);
+        }
+    }
+
+    String getId() { return id; }
+    String getOwner() { return owner; }
+    String getConnectionId() { return connectionId; }
+    List<QueryColumnInfo> getColumns() { return columns; }
+    long getLastAccess() { return lastAccess; }
+    long getCreatedAt() { return createdAt; }
+
+    boolean matches(String connectionId, String sql) {
+        return this.connectionId.equals(connectionId) && this.sql.equals(sql);
+    }
+
+    void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    synchronized boolean isExhausted() {
+        return exhausted;
+    }
+
+    synchronized boolean hasLiveCursor() {
+        return resultSet != null;
+    }
+
+    synchronized int getSpooledRows() {
+        return rows.size();
+    }
+
+    /**
+     * 总行数：游标读完时为实际行数，否则为 COUNT 结果，尚未知道时为 -1。
+     */
+    synchronized long getTotalRows() {
+        return exhausted ? rows.size() : totalRows;
+    }
+
+    synchronized void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    /**
+     * 借用游标所在的连接执行附加查询（例如 COUNT），游标已释放时返回 null。
+     */
+    synchronized Connection getCursorConnection() {
+        return resultSet != null ? connection : null;
+    }
+
+    /**
+     * 游标所在的语句，游标已释放时返回 null。
+     */
+    synchronized Statement getStatement() {
+        return statement;
+    }
+
+    /**
+     * 从游标继续读取，直到缓存至少有 count 行、结果读完或缓存达到 maxSpooledRows。
+     * 缓存达到上限时释放游标，之后超出缓存的页无法再从本会话读取。
+     */
+    synchronized void fetchUntil(int count, int maxSpooledRows) throws SQLException {
+        while (rows.size() < count && resultSet != null) {
+            if (rows.size() >= maxSpooledRows) {
+                releaseCursor();
+                return;
+            }
+            if (!fetch.next(resultSet)) {
+                exhausted = true;
+                releaseCursor();
+                return;
+            }
+            Object[] row = new Object[labels.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = resultSet.getObject(i + 1);
+            }
+            rows.add(row);
+        }
+    }
+
+    /**
+     * 返回 [from, to) 范围内的行；所需行超出缓存且游标已释放时返回 null。
+     */
+    synchronized List<Object[]> page(int from, int to, int maxSpooledRows) throws SQLException {
+        touch();
+        fetchUntil(to, maxSpooledRows);
+        if (rows.size() < to && !exhausted) {
+            return null;
+        }
+        return new ArrayList<>(rows.subList(Math.min(from, rows.size()), Math.min(to, rows.size())));
+    }
+
+    /**
+     * 关闭 ResultSet 和 Statement 并把连接归还连接池，已缓存的行保留。
+     */
+    synchronized void releaseCursor() {
+        if (resultSet != null) {
+            fetch.finish();
+        }
+        closeQuietly(resultSet);
+        closeQuietly(statement);
+        closeQuietly(connection);
+        resultSet = null;
+        statement = null;
+        connection = null;
+    }
+
+    synchronized void close() {
+        releaseCursor();
+        rows.clear();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // The connection may already be broken; the pool discards it
+        }
+    }
+}
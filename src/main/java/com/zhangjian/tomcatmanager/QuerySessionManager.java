@@ -0,0 +1,120 @@
+package com.zhangjian.tomcatmanager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 保存 SQL 控制台的查询游标会话，负责空闲过期、每个用户的会话上限以及每个数据库连接上同时打开的游标数上限。
+ * 打开的游标各占用一个池化连接，因此游标空闲超过 cursor-hold-seconds 就释放，只保留已缓存的行。
+ */
+@Component
+public class QuerySessionManager {
+
+    private final Map<String, QuerySession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor();
+
+    private final long idleTtlMillis;
+    private final long cursorHoldMillis;
+    private final int maxPerUser;
+    private final int maxLiveCursorsPerConnection;
+    private final int maxSpooledRows;
+
+    QuerySessionManager(@Value("${db.query-session.idle-ttl-seconds:900}") int idleTtlSeconds,
+                        @Value("${db.query-session.cursor-hold-seconds:120}") int cursorHoldSeconds,
+                        @Value("${db.query-session.max-per-user:4}") int maxPerUser,
+                        @Value("${db.query-session.max-live-cursors-per-connection:2}") int maxLiveCursorsPerConnection,
+                        @Value("${db.query-session.max-spooled-rows:20000}") int maxSpooledRows) {
+        this.idleTtlMillis = idleTtlSeconds * 1000L;
+        this.cursorHoldMillis = cursorHoldSeconds * 1000L;
+        this.maxPerUser = Math.max(1, maxPerUser);
+        this.maxLiveCursorsPerConnection = Math.max(1, maxLiveCursorsPerConnection);
+        this.maxSpooledRows = maxSpooledRows;
+    }
+
+    @PostConstruct
+    public void init() {
+        sweeper.scheduleWithFixedDelay(this::sweep, 15, 15, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        for (QuerySession session : sessions.values()) {
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    int getMaxSpooledRows() {
+        return maxSpooledRows;
+    }
+
+    QuerySession get(String id) {
+        return id != null ? sessions.get(id) : null;
+    }
+
+    /**
+     * 登记新会话。超过该用户的会话上限时关闭其最久未使用的会话；
+     * 同一数据库连接上打开的游标过多时释放最久未使用的游标（保留其缓存）。
+     */
+    void register(QuerySession session) {
+        List<QuerySession> owned = sessions.values().stream()
+                .filter(s -> s.getOwner().equals(session.getOwner()))
+                .sorted(Comparator.comparingLong(QuerySession::getLastAccess))
+                .collect(Collectors.toList());
+        for (int i = 0; i <= owned.size() - maxPerUser; i++) {
+            close(owned.get(i).getId());
+        }
+        List<QuerySession> live = sessions.values().stream()
+                .filter(s -> s.getConnectionId().equals(session.getConnectionId()) && s.hasLiveCursor())
+                .sorted(Comparator.comparingLong(QuerySession::getLastAccess))
+                .collect(Collectors.toList());
+        for (int i = 0; i <= live.size() - maxLiveCursorsPerConnection; i++) {
+            live.get(i).releaseCursor();
+        }
+        sessions.put(session.getId(), session);
+    }
+
+    boolean close(String id) {
+        QuerySession session = sessions.remove(id);
+        if (session == null) {
+            return false;
+        }
+        session.close();
+        return true;
+    }
+
+    /**
+     * 关闭某个数据库连接配置下的全部会话（连接配置被删除或修改时）。
+     */
+    void closeAll(String connectionId) {
+        for (QuerySession session : sessions.values()) {
+            if (session.getConnectionId().equals(connectionId)) {
+                close(session.getId());
+            }
+        }
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (QuerySession session : sessions.values()) {
+            long idle = now - session.getLastAccess();
+            if (idle > idleTtlMillis) {
+                close(session.getId());
+            } else if (idle > cursorHoldMillis && session.hasLiveCursor()) {
+                session.releaseCursor();
+            }
+        }
+    }
+}
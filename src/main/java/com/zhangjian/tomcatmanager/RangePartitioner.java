@@ -0,0 +1,282 @@
+package com.zhangjian.tomcatmanager;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * 并行导出的范围切分。把单表查询按表的物理范围拆成若干段，每段在原查询的 WHERE 上追加范围条件，
+ * 各段可以在各自的连接上同时读取，合起来正好是原查询的结果（段之间的顺序除外）。
+ *
+ * <p>Oracle 按表段的区（extent）切分：从 DBA_EXTENTS（没有权限时用 USER_EXTENTS）读取各区的文件号和块号，
+ * 按块数把相邻的区合成大致等大的段，用 DBMS_ROWID.ROWID_CREATE 得到每段的起止 ROWID，
+ * 条件为 ROWID 范围，执行计划是 TABLE ACCESS BY ROWID RANGE，各段只扫描自己的区。
+ * MySQL 按单列整数主键切分：读取 MIN/MAX 后等宽分段，InnoDB 对每段做聚簇索引范围扫描。
+ * 第一段和最后一段不设外侧边界，切分之后插入的行也不会漏掉。</p>
+ */
+final class RangePartitioner {
+
+    // Top-level constructs whose result is not the union of the same query over disjoint row ranges.
+    // Aggregate and window functions are excluded by requiring a plain select list, see plan()
+    private static final Set<String> UNSUPPORTED_WORDS = new HashSet<>(Arrays.asList(
+            "UNION", "INTERSECT", "MINUS", "EXCEPT", "JOIN", "GROUP", "HAVING", "DISTINCT", "UNIQUE", "DISTINCTROW",
+            "LIMIT", "OFFSET", "FETCH", "ROWNUM", "CONNECT", "START", "FOR", "INTO", "LOCK", "WITH", "ORDER",
+            "WINDOW", "QUALIFY", "MODEL"));
+
+    private static final int ORACLE_TABLE_NOT_FOUND = 942;
+
+    private RangePartitioner() {
+    }
+
+    /**
+     * 一段：带范围条件的查询和它的参数。
+     */
+    static final class Range {
+        final String sql;
+        final List<Object> params;
+
+        Range(String sql, List<Object> params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    /**
+     * 一条 SQL 的切分方案；不能切分时只包含原因。
+     */
+    static final class Plan {
+        private final String reason;
+        private final String description;
+        private final List<Range> ranges;
+
+        private Plan(String reason, String description, List<Range> ranges) {
+            this.reason = reason;
+            this.description = description;
+            this.ranges = ranges;
+        }
+
+        static Plan unsupported(String reason) {
+            return new Plan(reason, null, Collections.<Range>emptyList());
+        }
+
+        boolean isSupported() {
+            return reason == null;
+        }
+
+        String getReason() {
+            return reason;
+        }
+
+        /** 切分方式的说明，例如“按主键 id 分为 16 段”。 */
+        String getDescription() {
+            return description;
+        }
+
+        List<Range> getRanges() {
+            return ranges;
+        }
+    }
+
+    /**
+     * 分析 SQL 并读取表的存储区（Oracle）或主键范围（MySQL），切成最多 maxRanges 段。
+     */
+    static Plan plan(Connection conn, String sql, int maxRanges) throws SQLException {
+        SqlParser.Statement statement = SqlParser.parse(sql);
+        String reason = unsupportedReason(statement);
+        if (reason != null) {
+            return Plan.unsupported(reason);
+        }
+        SqlParser.TableRef table = statement.getSingleTable();
+        DatabaseMetaData md = conn.getMetaData();
+        String tableName = KeysetPagination.normalize(table.rawName, md);
+        String owner = table.rawSchema != null ? KeysetPagination.normalize(table.rawSchema, md) : null;
+        if ("Oracle".equalsIgnoreCase(md.getDatabaseProductName())) {
+            return planRowidRanges(conn, statement, sql, owner != null ? owner : md.getUserName(), tableName, maxRanges);
+        }
+        return planKeyRanges(conn, statement, sql, table, owner != null ? owner : conn.getCatalog(), tableName, maxRanges);
+    }
+
+    /**
+     * 只看 SQL 本身判断能否按范围拆分，能拆分时返回 null，否则返回原因。
+     */
+    static String unsupportedReason(SqlParser.Statement statement) {
+        if (statement.getType() != SqlParser.Statement.Type.SELECT || !statement.getKeywords().contains("SELECT")) {
+            return "只有 SELECT 查询可以并行导出";
+        }
+        for (String word : statement.getKeywords()) {
+            if (UNSUPPORTED_WORDS.contains(word)) {
+                return "查询包含 " + word + "，不能按范围拆分";
+            }
+        }
+        if (!statement.isPlainSelectList()) {
+            // COALESCE(MAX(id), 0), ROUND(AVG(x), 2), LISTAGG(...) or a user-defined aggregate computed per range
+            // would yield one row per range instead of one overall; only plain columns are safe to split
+            return "并行导出只支持结果列为列名或 * 的查询（不能包含函数、表达式或子查询）";
+        }
+        if (statement.getSingleTable() == null || !statement.getKeywords().contains("FROM")) {
+            return "并行导出只支持单表查询";
+        }
+        return null;
+    }
+
+    private static Plan planRowidRanges(Connection conn, SqlParser.Statement statement, String sql, String owner,
+                                        String tableName, int maxRanges) throws SQLException {
+        List<Long> extents = new ArrayList<>();     // blocks of each extent
+        List<String[]> bounds = new ArrayList<>();  // first and last possible ROWID of each extent
+        try {
+            readExtents(conn, "SELECT e.blocks, "
+                    + extentBounds() + " FROM dba_extents e JOIN dba_objects o ON o.owner = e.owner"
+                    + " AND o.object_name = e.segment_name"
+                    + " AND (o.subobject_name = e.partition_name OR (o.subobject_name IS NULL AND e.partition_name IS NULL))"
+                    + " WHERE e.owner = ? AND e.segment_name = ? AND e.segment_type LIKE 'TABLE%'"
+                    + " AND o.object_type LIKE 'TABLE%' AND o.data_object_id IS NOT NULL"
+                    + " ORDER BY o.data_object_id, e.relative_fno, e.block_id", extents, bounds, owner, tableName);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ORACLE_TABLE_NOT_FOUND || !owner.equalsIgnoreCase(conn.getMetaData().getUserName())) {
+                throw e;
+            }
+            // No access to the DBA views: the USER_ views cover tables in the user's own schema
+            readExtents(conn, "SELECT e.blocks, "
+                    + extentBounds() + " FROM user_extents e JOIN user_objects o ON o.object_name = e.segment_name"
+                    + " AND (o.subobject_name = e.partition_name OR (o.subobject_name IS NULL AND e.partition_name IS NULL))"
+                    + " WHERE e.segment_name = ? AND e.segment_type LIKE 'TABLE%'"
+                    + " AND o.object_type LIKE 'TABLE%' AND o.data_object_id IS NOT NULL"
+                    + " ORDER BY o.data_object_id, e.relative_fno, e.block_id", extents, bounds, tableName);
+        }
+        if (extents.isEmpty()) {
+            return Plan.unsupported("未找到表 " + tableName + " 的存储区（视图、同义词或尚未分配空间的表）");
+        }
+        long totalBlocks = 0;
+        for (long extent : extents) {
+            totalBlocks += extent;
+        }
+        long target = Math.max(1, (totalBlocks + maxRanges - 1) / maxRanges);
+        List<Range> ranges = new ArrayList<>();
+        int first = 0;
+        long blocks = 0;
+        for (int i = 0; i < extents.size(); i++) {
+            blocks += extents.get(i);
+            if (blocks >= target || i == extents.size() - 1) {
+                // Extents are sorted in ROWID order, so the first and last extent bound every row in between
+                String low = first == 0 ? null : bounds.get(first)[0];
+                String high = i == extents.size() - 1 ? null : bounds.get(i)[1];
+                ranges.add(rowidRange(statement, sql, low, high));
+                first = i + 1;
+                blocks = 0;
+            }
+        }
+        return new Plan(null, "按 ROWID 区范围分为 " + ranges.size() + " 段（共 " + totalBlocks + " 块）", ranges);
+    }
+
+    private static String extentBounds() {
+        return "ROWIDTOCHAR(DBMS_ROWID.ROWID_CREATE(1, o.data_object_id, e.relative_fno, e.block_id, 0)), "
+                + "ROWIDTOCHAR(DBMS_ROWID.ROWID_CREATE(1, o.data_object_id, e.relative_fno, e.block_id + e.blocks - 1, 32767))";
+    }
+
+    private static void readExtents(Connection conn, String query, List<Long> extents, List<String[]> bounds,
+                                    String... params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    extents.add(rs.getLong(1));
+                    bounds.add(new String[]{rs.getString(2), rs.getString(3)});
+                }
+            }
+        }
+    }
+
+    private static Range rowidRange(SqlParser.Statement statement, String sql, String low, String high) {
+        List<Object> params = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (low != null) {
+            conditions.add("ROWID >= CHARTOROWID(?)");
+            params.add(low);
+        }
+        if (high != null) {
+            conditions.add("ROWID <= CHARTOROWID(?)");
+            params.add(high);
+        }
+        return new Range(restrict(statement, sql, String.join(" AND ", conditions)), params);
+    }
+
+    private static Plan planKeyRanges(Connection conn, SqlParser.Statement statement, String sql, SqlParser.TableRef table,
+                                      String catalog, String tableName, int maxRanges) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        List<String> primaryKey = new ArrayList<>();
+        try (ResultSet rs = md.getPrimaryKeys(catalog, null, tableName)) {
+            while (rs.next()) {
+                primaryKey.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (primaryKey.size() != 1) {
+            return Plan.unsupported(primaryKey.isEmpty() ? "表 " + tableName + " 没有主键" : "表 " + tableName + " 的主键不是单列");
+        }
+        String column = primaryKey.get(0);
+        int type = Types.OTHER;
+        try (ResultSet rs = md.getColumns(catalog, null, tableName, column)) {
+            if (rs.next()) {
+                type = rs.getInt("DATA_TYPE");
+            }
+        }
+        if (type != Types.TINYINT && type != Types.SMALLINT && type != Types.INTEGER && type != Types.BIGINT) {
+            return Plan.unsupported("主键 " + column + " 不是整数类型，不能按范围拆分");
+        }
+        String quote = md.getIdentifierQuoteString();
+        quote = quote == null || quote.trim().isEmpty() ? "\"" : quote.trim();
+        String key = quote + column.replace(quote, quote + quote) + quote;
+        String from = table.rawSchema != null ? table.rawSchema + "." + table.rawName : table.rawName;
+        long min;
+        long max;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + from)) {
+            rs.next();
+            min = rs.getLong(1);
+            if (rs.wasNull()) {
+                return Plan.unsupported("表 " + tableName + " 为空");
+            }
+            max = rs.getLong(2);
+        }
+        long span = max - min;
+        if (span < 0) {
+            // Unsigned BIGINT keys beyond Long.MAX_VALUE
+            return Plan.unsupported("主键 " + column + " 的取值范围超出 64 位整数");
+        }
+        long width = Math.max(1, span / maxRanges + 1);
+        List<Range> ranges = new ArrayList<>();
+        for (long low = min; low <= max && low >= min; low += width) {
+            boolean firstRange = low == min;
+            boolean lastRange = max - low < width;
+            List<Object> params = new ArrayList<>();
+            List<String> conditions = new ArrayList<>();
+            if (!firstRange) {
+                conditions.add(key + " >= ?");
+                params.add(low);
+            }
+            if (!lastRange) {
+                conditions.add(key + " < ?");
+                params.add(low + width);
+            }
+            if (conditions.isEmpty()) {
+                conditions.add("1 = 1");
+            }
+            ranges.add(new Range(restrict(statement, sql, String.join(" AND ", conditions)), params));
+            if (lastRange) {
+                break;
+            }
+        }
+        return new Plan(null, "按主键 " + column + " 范围分为 " + ranges.size() + " 段", ranges);
+    }
+
+    /**
+     * 在查询的 WHERE 上追加范围条件。查询已确认是没有 GROUP BY/ORDER BY 等子句的单表查询，WHERE 之后直到结尾都是条件。
+     */
+    private static String restrict(SqlParser.Statement statement, String sql, String condition) {
+        int where = statement.getWhereOffset();
+        if (where < 0) {
+            return sql + " WHERE " + condition;
+        }
+        return sql.substring(0, where) + "WHERE (" + sql.substring(where + "WHERE".length()).trim() + ") AND " + condition;
+    }
+}
@@ -0,0 +1,343 @@
+package com.zhangjian.tomcatmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhangjian.tomcatmanager.dto.RowCountStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * 查询结果的总行数。第一页不再等待精确 COUNT：先用表统计信息（简单单表查询）或优化器执行计划的基数给出估算值，
+ * 精确 COUNT 在后台线程中执行，完成后通过 SSE 推送给等待的前端，并按 SQL 指纹缓存一段时间，
+ * 同一条 SQL 再次执行或翻页时直接使用。
+ */
+@Component
+public class RowCountService {
+
+    // Top-level clauses that make the row count differ from the table's: only ORDER BY may follow FROM table
+    private static final Set<String> FILTERING_WORDS = new HashSet<>(Arrays.asList(
+            "WHERE", "GROUP", "HAVING", "DISTINCT", "UNIQUE", "DISTINCTROW", "LIMIT", "OFFSET", "FETCH",
+            "CONNECT", "START", "SAMPLE", "TABLESAMPLE", "PARTITION"));
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor();
+    private final int timeoutSeconds;
+    private final long cacheTtlMillis;
+    private final int maxEntries;
+
+    private static final class Entry {
+        final String connectionId;
+        final long startedAt = System.currentTimeMillis();
+        final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+        volatile RowCountStatus.Status status = RowCountStatus.Status.PENDING;
+        volatile long estimate;
+        volatile long exact;
+        volatile String error;
+        volatile long finishedAt;
+
+        Entry(String connectionId, long estimate) {
+            this.connectionId = connectionId;
+            this.estimate = estimate;
+        }
+    }
+
+    RowCountService(ObjectMapper objectMapper,
+                    @Value("${db.row-count.threads:2}") int threads,
+                    @Value("${db.row-count.queue-size:50}") int queueSize,
+                    @Value("${db.row-count.timeout-seconds:300}") int timeoutSeconds,
+                    @Value("${db.row-count.cache-ttl-seconds:600}") int cacheTtlSeconds,
+                    @Value("${db.row-count.max-entries:500}") int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)));
+        this.timeoutSeconds = timeoutSeconds;
+        this.cacheTtlMillis = cacheTtlSeconds * 1000L;
+        this.maxEntries = maxEntries;
+    }
+
+    @PostConstruct
+    public void init() {
+        sweeper.scheduleWithFixedDelay(this::sweep, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+        for (Entry entry : entries.values()) {
+            entry.subscribers.forEach(SseEmitter::complete);
+        }
+    }
+
+    int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    static String countId(String connectionId, String cleanedSql) {
+        return KeysetPagination.fingerprint(connectionId + "\u0000" + cleanedSql);
+    }
+
+    /**
+     * 缓存中的精确总行数，没有时返回 -1。
+     */
+    long exact(String countId) {
+        Entry entry = entries.get(countId);
+        return entry != null && entry.status == RowCountStatus.Status.DONE ? entry.exact : -1;
+    }
+
+    /**
+     * 直接记录已知的精确总行数（例如游标已读完全部结果）。
+     */
+    void recordExact(String countId, String connectionId, long totalRows) {
+        Entry entry = new Entry(connectionId, totalRows);
+        entry.exact = totalRows;
+        entry.status = RowCountStatus.Status.DONE;
+        entry.finishedAt = System.currentTimeMillis();
+        Entry previous = entries.put(countId, entry);
+        if (previous != null && previous.status == RowCountStatus.Status.PENDING) {
+            // A background count for the same SQL is still running; let its waiters have this result now
+            previous.exact = totalRows;
+            previous.status = RowCountStatus.Status.DONE;
+            notifySubscribers(countId, previous);
+        }
+    }
+
+    /**
+     * 在后台执行精确 COUNT；同一条 SQL 已有进行中或已完成的统计时不重复执行。
+     */
+    void countAsync(String countId, String connectionId, long estimate, Callable<Long> counter) {
+        Entry fresh = new Entry(connectionId, estimate);
+        Entry entry = entries.merge(countId, fresh,
+                (old, created) -> old.status == RowCountStatus.Status.FAILED ? created : old);
+        if (entry != fresh) {
+            return;
+        }
+        try {
+            executor.execute(() -> run(countId, entry, counter));
+        } catch (RejectedExecutionException e) {
+            entry.error = "后台统计任务过多，未能执行精确计数";
+            entry.status = RowCountStatus.Status.FAILED;
+            entry.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    private void run(String countId, Entry entry, Callable<Long> counter) {
+        if (entry.status != RowCountStatus.Status.PENDING) {
+            return;
+        }
+        try {
+            entry.exact = counter.call();
+            entry.status = RowCountStatus.Status.DONE;
+        } catch (Exception e) {
+            entry.error = e.getMessage();
+            entry.status = RowCountStatus.Status.FAILED;
+        }
+        entry.finishedAt = System.currentTimeMillis();
+        notifySubscribers(countId, entry);
+    }
+
+    RowCountStatus getStatus(String countId) {
+        Entry entry = entries.get(countId);
+        return entry != null ? toStatus(countId, entry) : null;
+    }
+
+    /**
+     * 订阅精确计数结果：统计完成（或失败）时推送一个 count 事件后结束；已完成时立即推送。
+     */
+    SseEmitter subscribe(String countId) {
+        SseEmitter emitter = new SseEmitter((timeoutSeconds + 30) * 1000L);
+        Entry entry = entries.get(countId);
+        if (entry == null) {
+            RowCountStatus unknown = new RowCountStatus(countId, RowCountStatus.Status.FAILED, -1, false);
+            unknown.setError("统计任务不存在或已过期");
+            send(emitter, unknown);
+            return emitter;
+        }
+        synchronized (entry) {
+            if (entry.status == RowCountStatus.Status.PENDING) {
+                entry.subscribers.add(emitter);
+                emitter.onCompletion(() -> entry.subscribers.remove(emitter));
+                emitter.onTimeout(() -> entry.subscribers.remove(emitter));
+                return emitter;
+            }
+        }
+        send(emitter, toStatus(countId, entry));
+        return emitter;
+    }
+
+    private void notifySubscribers(String countId, Entry entry) {
+        RowCountStatus status = toStatus(countId, entry);
+        synchronized (entry) {
+            for (SseEmitter emitter : entry.subscribers) {
+                send(emitter, status);
+            }
+            entry.subscribers.clear();
+        }
+    }
+
+    private void send(SseEmitter emitter, RowCountStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name("count").data(objectMapper.writeValueAsString(status)));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // Client went away before the count finished
+            emitter.completeWithError(e);
+        }
+    }
+
+    private RowCountStatus toStatus(String countId, Entry entry) {
+        boolean done = entry.status == RowCountStatus.Status.DONE;
+        RowCountStatus status = new RowCountStatus(countId, entry.status, done ? entry.exact : entry.estimate, done);
+        status.setError(entry.error);
+        status.setElapsedMs((entry.finishedAt > 0 ? entry.finishedAt : System.currentTimeMillis()) - entry.startedAt);
+        return status;
+    }
+
+    /**
+     * 连接配置被修改或删除时丢弃其缓存的计数。
+     */
+    void invalidate(String connectionId) {
+        entries.entrySet().removeIf(e -> e.getValue().connectionId.equals(connectionId)
+                && e.getValue().status != RowCountStatus.Status.PENDING);
+    }
+
+    /**
+     * 丢弃一条 SQL 已完成的计数（用户要求刷新数据时）。
+     */
+    void forget(String countId) {
+        entries.computeIfPresent(countId, (k, entry) -> entry.status == RowCountStatus.Status.PENDING ? entry : null);
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> e.getValue().finishedAt > 0 && now - e.getValue().finishedAt > cacheTtlMillis);
+        int excess = entries.size() - maxEntries;
+        if (excess > 0) {
+            List<String> oldest = entries.entrySet().stream()
+                    .filter(e -> e.getValue().finishedAt > 0)
+                    .sorted(Comparator.comparingLong(e -> e.getValue().finishedAt))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            oldest.forEach(entries::remove);
+        }
+    }
+
+    /**
+     * 估算查询的总行数，无法估算时返回 -1。简单单表查询优先使用表统计信息，其余使用执行计划的基数。
+     */
+    long estimate(Connection conn, String cleanedSql, String dbType) {
+        boolean oracle = "oracle".equalsIgnoreCase(dbType);
+        SqlParser.Statement statement = SqlParser.parse(cleanedSql);
+        if (isWholeTable(statement)) {
+            try {
+                DatabaseMetaData md = conn.getMetaData();
+                SqlParser.TableRef table = statement.getSingleTable();
+                String owner = table.rawSchema != null ? KeysetPagination.normalize(table.rawSchema, md) : null;
+                long rows = tableStatistics(conn, owner, KeysetPagination.normalize(table.rawName, md), oracle);
+                if (rows >= 0) {
+                    return rows;
+                }
+            } catch (SQLException e) {
+                // Fall through to the optimizer estimate
+            }
+        }
+        try {
+            return oracle ? oraclePlanCardinality(conn, cleanedSql) : mysqlPlanRows(conn, cleanedSql);
+        } catch (SQLException e) {
+            // No PLAN_TABLE / EXPLAIN privilege, or a statement EXPLAIN does not accept
+            return -1;
+        }
+    }
+
+    /**
+     * 最外层查询只从一张表读取列，且没有聚合、WHERE、GROUP BY、DISTINCT、行数限制等，结果行数就是表的行数。
+     */
+    private static boolean isWholeTable(SqlParser.Statement statement) {
+        if (statement.getType() != SqlParser.Statement.Type.SELECT || statement.getSingleTable() == null
+                || statement.getWhereOffset() >= 0 || !statement.isPlainSelectList()) {
+            return false;
+        }
+        for (String word : statement.getKeywords()) {
+            if (FILTERING_WORDS.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long tableStatistics(Connection conn, String owner, String table, boolean oracle) throws SQLException {
+        String sql = oracle
+                ? "SELECT num_rows FROM all_tables WHERE owner = NVL(?, USER) AND table_name = ?"
+                : "SELECT table_rows FROM information_schema.tables WHERE table_schema = COALESCE(?, DATABASE()) AND table_name = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, owner);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    long rows = rs.getLong(1);
+                    return rs.wasNull() ? -1 : rows;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * MySQL EXPLAIN：外层 SELECT（id = 1）各表 rows × filtered% 的乘积。
+     */
+    private static long mysqlPlanRows(Connection conn, String cleanedSql) throws SQLException {
+        double estimate = -1;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("EXPLAIN " + cleanedSql)) {
+            boolean hasFiltered = false;
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                hasFiltered |= "filtered".equalsIgnoreCase(meta.getColumnLabel(i));
+            }
+            while (rs.next()) {
+                if (!"1".equals(rs.getString("id"))) {
+                    continue;
+                }
+                long rows = rs.getLong("rows");
+                if (rs.wasNull()) {
+                    continue;
+                }
+                double filtered = hasFiltered ? rs.getDouble("filtered") : 100;
+                estimate = (estimate < 0 ? 1 : estimate) * rows * (filtered > 0 ? filtered / 100 : 1);
+            }
+        }
+        return estimate < 0 ? -1 : Math.round(estimate);
+    }
+
+    private static long oraclePlanCardinality(Connection conn, String cleanedSql) throws SQLException {
+        String statementId = "tm" + Long.toHexString(System.nanoTime());
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("EXPLAIN PLAN SET STATEMENT_ID = '" + statementId + "' FOR " + cleanedSql);
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT cardinality FROM plan_table WHERE statement_id = '" + statementId + "' AND id = 0")) {
+                if (rs.next()) {
+                    long rows = rs.getLong(1);
+                    return rs.wasNull() ? -1 : rows;
+                }
+                return -1;
+            } finally {
+                stmt.execute("DELETE FROM plan_table WHERE statement_id = '" + statementId + "'");
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.zhangjian.tomcatmanager;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tomcat conf/server.xml 的读取与原子写回。
+ */
+final class ServerXmlSupport {
+
+    private static final DateTimeFormatter BACKUP_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Pattern XML_ENCODING = Pattern.compile("^\\s*<\\?xml[^>]*encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private ServerXmlSupport() {
+    }
+
+    static File serverXml(AppConfig appConfig) {
+        return new File(appConfig.getTomcatHomePath(), "conf/server.xml");
+    }
+
+    static Document parse(File serverXml) throws Exception {
+        return parse(Files.readAllBytes(serverXml.toPath()));
+    }
+
+    private static Document parse(byte[] content) throws Exception {
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        dbFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        dbFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        dbFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        dbFactory.setXIncludeAware(false);
+        dbFactory.setExpandEntityReferences(false);
+        Document doc = dbFactory.newDocumentBuilder().parse(new ByteArrayInputStream(content));
+        doc.getDocumentElement().normalize();
+        return doc;
+    }
+
+    /**
+     * server.xml 的原文和解析出的 DOM。修改只替换原文中相关的那一段（属性值、插入或删除一个元素），
+     * 其余的缩进、注释和属性顺序原样保留；DOM 同步修改，供调用方读取修改后的配置。
+     */
+    static final class Edit {
+        private final File file;
+        private final Charset charset;
+        private final Document doc;
+        private String text;
+
+        private Edit(File file, Charset charset, Document doc, String text) {
+            this.file = file;
+            this.charset = charset;
+            this.doc = doc;
+            this.text = text;
+        }
+
+        static Edit open(File serverXml) throws Exception {
+            byte[] content = Files.readAllBytes(serverXml.toPath());
+            Charset charset = StandardCharsets.UTF_8;
+            Matcher declaration = XML_ENCODING.matcher(new String(content, StandardCharsets.ISO_8859_1));
+            if (declaration.find() && Charset.isSupported(declaration.group(1))) {
+                charset = Charset.forName(declaration.group(1));
+            }
+            return new Edit(serverXml, charset, parse(content), new String(content, charset));
+        }
+
+        Document getDocument() {
+            return doc;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        /**
+         * 修改或添加属性。已有属性只替换引号中的值；新属性追加在最后一个属性之后，多行书写的标签另起一行并沿用缩进。
+         */
+        void setAttribute(Element element, String name, String value) {
+            int[] tag = startTag(element);
+            String startTag = text.substring(tag[0], tag[1]);
+            Matcher existing = Pattern.compile("(\\s" + Pattern.quote(name) + "\\s*=\\s*)([\"'])(.*?)\\2", Pattern.DOTALL)
+                    .matcher(startTag);
+            if (existing.find()) {
+                char quote = existing.group(2).charAt(0);
+                replace(tag[0] + existing.start(3), tag[0] + existing.end(3), escape(value, quote));
+            } else {
+                int close = startTag.endsWith("/>") ? startTag.length() - 2 : startTag.length() - 1;
+                int insertAt = close;
+                while (insertAt > 0 && Character.isWhitespace(startTag.charAt(insertAt - 1))) {
+                    insertAt--;
+                }
+                String separator = startTag.indexOf('\n') >= 0 ? "\n" + indentation(tag[0] + startTag.lastIndexOf('\n') + 1) : " ";
+                replace(tag[0] + insertAt, tag[0] + insertAt, separator + name + "=\"" + escape(value, '"') + "\"");
+            }
+            element.setAttribute(name, value);
+        }
+
+        /**
+         * 在 parent 的开始标签之后插入一个空元素，缩进与 parent 后面的第一行内容一致。
+         */
+        Element insertFirstChild(Element parent, String tagName, Map<String, String> attributes) {
+            int[] tag = startTag(parent);
+            if (text.startsWith("/>", tag[1] - 2)) {
+                throw new IllegalStateException("server.xml 中的 " + parent.getTagName() + " 元素没有子元素，无法插入 " + tagName + "。");
+            }
+            int lineStart = text.indexOf('\n', tag[1]);
+            String indent = lineStart >= 0 && text.substring(tag[1], lineStart).trim().isEmpty()
+                    ? indentation(lineStart + 1) : indentation(lineStart(tag[0])) + "  ";
+            StringBuilder inserted = new StringBuilder("\n").append(indent).append('<').append(tagName);
+            Element child = doc.createElement(tagName);
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                inserted.append(' ').append(attribute.getKey()).append("=\"").append(escape(attribute.getValue(), '"')).append('"');
+                child.setAttribute(attribute.getKey(), attribute.getValue());
+            }
+            replace(tag[1], tag[1], inserted.append(" />").toString());
+            parent.insertBefore(child, parent.getFirstChild());
+            return child;
+        }
+
+        /**
+         * 删除元素；元素独占的行整行删除。
+         */
+        void remove(Element element) {
+            int[] tag = startTag(element);
+            int end = text.startsWith("/>", tag[1] - 2) ? tag[1] : endTag(element.getTagName(), tag[1]);
+            int start = tag[0];
+            int lineStart = lineStart(start);
+            int lineEnd = text.indexOf('\n', end);
+            lineEnd = lineEnd < 0 ? text.length() : lineEnd + 1;
+            if (text.substring(lineStart, start).trim().isEmpty() && text.substring(end, lineEnd).trim().isEmpty()) {
+                start = lineStart;
+                end = lineEnd;
+            }
+            replace(start, end, "");
+            element.getParentNode().removeChild(element);
+        }
+
+        /**
+         * 先备份原文件，再写入同目录下的临时文件并原子替换，避免 Tomcat 读到写了一半的配置。
+         *
+         * @return 备份文件路径
+         */
+        Path writeAtomically() throws Exception {
+            byte[] content = text.getBytes(charset);
+            // Never replace the file with something Tomcat cannot parse
+            parse(content);
+            Path target = file.toPath();
+            Path backup = target.resolveSibling("server.xml.bak-" + LocalDateTime.now().format(BACKUP_TIME_FORMAT));
+            Files.copy(target, backup, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+
+            Path temp = Files.createTempFile(target.getParent(), "server.xml", ".tmp");
+            try {
+                Files.write(temp, content);
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            return backup;
+        }
+
+        private void replace(int start, int end, String replacement) {
+            text = text.substring(0, start) + replacement + text.substring(end);
+        }
+
+        /**
+         * 元素开始标签在原文中的范围 {起点, 终点（不含）}。getElementsByTagName 按文档顺序返回元素，
+         * 原文中同名开始标签（跳过注释、CDATA 和处理指令）的顺序与之相同。
+         */
+        private int[] startTag(Element element) {
+            NodeList sameName = doc.getElementsByTagName(element.getTagName());
+            int index = -1;
+            for (int i = 0; i < sameName.getLength() && index < 0; i++) {
+                if (sameName.item(i) == element) {
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("元素不属于此 server.xml: " + element.getTagName());
+            }
+            int count = 0;
+            for (int pos = text.indexOf('<'); pos >= 0; pos = text.indexOf('<', pos + 1)) {
+                int skipTo = skipMarkup(pos);
+                if (skipTo > pos) {
+                    pos = skipTo - 1;
+                    continue;
+                }
+                if (isTagNamed(pos + 1, element.getTagName())) {
+                    int end = tagEnd(pos);
+                    if (count++ == index) {
+                        return new int[]{pos, end};
+                    }
+                    pos = end - 1;
+                }
+            }
+            throw new IllegalStateException("在 server.xml 原文中未找到 " + element.getTagName() + " 元素。");
+        }
+
+        private int endTag(String tagName, int from) {
+            int depth = 0;
+            for (int pos = text.indexOf('<', from); pos >= 0; pos = text.indexOf('<', pos + 1)) {
+                int skipTo = skipMarkup(pos);
+                if (skipTo > pos) {
+                    pos = skipTo - 1;
+                } else if (text.startsWith("/", pos + 1) && isTagNamed(pos + 2, tagName)) {
+                    if (depth-- == 0) {
+                        return tagEnd(pos);
+                    }
+                } else if (isTagNamed(pos + 1, tagName) && !text.startsWith("/>", tagEnd(pos) - 2)) {
+                    depth++;
+                }
+            }
+            throw new IllegalStateException("server.xml 中的 " + tagName + " 元素没有结束标签。");
+        }
+
+        /** 注释、CDATA 和处理指令之后的位置；pos 处不是这些结构时返回 pos。 */
+        private int skipMarkup(int pos) {
+            String[][] markup = {{"<!--", "-->"}, {"<![CDATA[", "]]>"}, {"<?", "?>"}};
+            for (String[] pair : markup) {
+                if (text.startsWith(pair[0], pos)) {
+                    int end = text.indexOf(pair[1], pos + pair[0].length());
+                    return end < 0 ? text.length() : end + pair[1].length();
+                }
+            }
+            return pos;
+        }
+
+        private boolean isTagNamed(int pos, String tagName) {
+            if (!text.startsWith(tagName, pos)) {
+                return false;
+            }
+            int after = pos + tagName.length();
+            return after < text.length() && (Character.isWhitespace(text.charAt(after)) || text.charAt(after) == '/' || text.charAt(after) == '>');
+        }
+
+        private int tagEnd(int pos) {
+            char quote = 0;
+            for (int i = pos + 1; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '>') {
+                    return i + 1;
+                }
+            }
+            throw new IllegalStateException("server.xml 中的标签没有结束。");
+        }
+
+        private int lineStart(int pos) {
+            return text.lastIndexOf('\n', pos - 1) + 1;
+        }
+
+        private String indentation(int lineStart) {
+            int end = lineStart;
+            while (end < text.length() && (text.charAt(end) == ' ' || text.charAt(end) == '\t')) {
+                end++;
+            }
+            return text.substring(lineStart, end);
+        }
+
+        private static String escape(String value, char quote) {
+            String escaped = value.replace("&", "&amp;").replace("<", "&lt;");
+            return quote == '"' ? escaped.replace("\"", "&quot;") : escaped.replace("'", "&apos;");
+        }
+    }
+}
@@ -0,0 +1,871 @@
+package com.zhangjian.tomcatmanager;
+
+import java.util.*;
+
+/**
+ * 轻量的 SQL 词法/语法分析，供结果列注释、结果页缓存的只读判断和键集分页共用。
+ *
+ * <p>词法分析跳过注释、字符串和带引号的标识符；语法分析只覆盖查询的结构：WITH、UNION 等集合运算、
+ * FROM 中的逗号连接、JOIN、派生表和各层子查询，得出语句类型、引用的表、别名和结果列的来源表/列（列血缘）。
+ * 不认识的语法当作普通表达式跳过，不会报错。分析结果按 SQL 文本缓存，同一条 SQL 翻页、导出时不再重复分析。</p>
+ */
+final class SqlParser {
+
+    private static final int CACHE_SIZE = 256;
+    private static final Map<String, Statement> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, Statement>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Statement> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private static final Set<String> SET_OPERATORS = new HashSet<>(Arrays.asList("UNION", "INTERSECT", "MINUS", "EXCEPT"));
+    // Words that end the select list or the FROM clause of a query block
+    private static final Set<String> CLAUSE_WORDS = new HashSet<>(Arrays.asList(
+            "FROM", "INTO", "WHERE", "GROUP", "HAVING", "ORDER", "CONNECT", "START", "WINDOW", "QUALIFY", "MODEL",
+            "LIMIT", "OFFSET", "FETCH", "FOR", "LOCK", "UNION", "INTERSECT", "MINUS", "EXCEPT"));
+    private static final Set<String> JOIN_WORDS = new HashSet<>(Arrays.asList(
+            "JOIN", "INNER", "LEFT", "RIGHT", "FULL", "CROSS", "NATURAL", "OUTER", "STRAIGHT_JOIN", "APPLY"));
+    private static final Set<String> SELECT_MODIFIERS = new HashSet<>(Arrays.asList(
+            "DISTINCT", "ALL", "UNIQUE", "DISTINCTROW", "HIGH_PRIORITY", "STRAIGHT_JOIN", "SQL_SMALL_RESULT",
+            "SQL_BIG_RESULT", "SQL_BUFFER_RESULT", "SQL_NO_CACHE", "SQL_CALC_FOUND_ROWS"));
+    private static final Set<String> NOT_ALIAS = new HashSet<>(Arrays.asList(
+            "ON", "USING", "AS", "PARTITION", "SAMPLE", "TABLESAMPLE", "USE", "FORCE", "IGNORE", "END", "NULL",
+            "TRUE", "FALSE", "AND", "OR", "NOT", "IS", "IN", "LIKE", "BETWEEN", "CASE", "WHEN", "THEN", "ELSE",
+            "SELECT", "WITH", "VALUES", "LATERAL", "SET"));
+    private static final Set<String> DDL_WORDS = new HashSet<>(Arrays.asList(
+            "CREATE", "ALTER", "DROP", "TRUNCATE", "RENAME", "COMMENT", "GRANT", "REVOKE"));
+
+    static {
+        NOT_ALIAS.addAll(CLAUSE_WORDS);
+        NOT_ALIAS.addAll(JOIN_WORDS);
+    }
+
+    /**
+     * 一条 SQL 的分析结果（不可变）。
+     */
+    static final class Statement {
+        enum Type { SELECT, INSERT, UPDATE, DELETE, MERGE, DDL, OTHER }
+
+        private final Type type;
+        private final boolean readOnly;
+        private final List<TableRef> tables;
+        private final Map<String, TableRef> aliases;
+        private final List<OutputColumn> columns;
+        private final boolean plainSelectList;
+        private final Set<String> keywords;
+        private final TableRef singleTable;
+        private final int whereOffset;
+        private final int orderByOffset;
+        private final List<OrderItem> orderBy;
+
+        private Statement(Type type, boolean readOnly, List<TableRef> tables, Map<String, TableRef> aliases,
+                          List<OutputColumn> columns, boolean plainSelectList, Set<String> keywords, TableRef singleTable,
+                          int whereOffset, int orderByOffset, List<OrderItem> orderBy) {
+            this.type = type;
+            this.readOnly = readOnly;
+            this.tables = Collections.unmodifiableList(tables);
+            this.aliases = Collections.unmodifiableMap(aliases);
+            this.columns = Collections.unmodifiableList(columns);
+            this.plainSelectList = plainSelectList;
+            this.keywords = Collections.unmodifiableSet(keywords);
+            this.singleTable = singleTable;
+            this.whereOffset = whereOffset;
+            this.orderByOffset = orderByOffset;
+            this.orderBy = Collections.unmodifiableList(orderBy);
+        }
+
+        Type getType() { return type; }
+
+        /** 不加锁、不写入、不推进序列的查询，重复执行结果只取决于数据本身。 */
+        boolean isReadOnly() { return readOnly; }
+
+        /** 语句各层引用的所有物理表（不含 WITH 定义的名称），按出现顺序去重。 */
+        List<TableRef> getTables() { return tables; }
+
+        /** 最外层查询 FROM 中的别名（大写；没有别名时为表名）到表的映射。 */
+        Map<String, TableRef> getAliases() { return aliases; }
+
+        /** 最外层查询的结果列及其来源；"*" 展开前按一项记录，label 为 null。 */
+        List<OutputColumn> getColumns() { return columns; }
+
+        /**
+         * 最外层查询的结果列都是列名（可带别名）或 "*"，不含任何函数、表达式或子查询。
+         * 聚合函数、窗口函数可能嵌套在表达式的任意深度（COALESCE(MAX(id), 0)），只有这种结果列能保证每行只取决于自身。
+         */
+        boolean isPlainSelectList() { return plainSelectList; }
+
+        /** 最外层查询括号外出现的单词（大写）。 */
+        Set<String> getKeywords() { return keywords; }
+
+        /** 最外层查询只从一张物理表读取（没有连接、集合运算、派生表）时返回该表，否则为 null。 */
+        TableRef getSingleTable() { return singleTable; }
+
+        /** 最外层 WHERE 在 SQL 中的起始位置，没有时为 -1。 */
+        int getWhereOffset() { return whereOffset; }
+
+        /** 最外层 ORDER BY 在 SQL 中的起始位置，没有时为 -1。 */
+        int getOrderByOffset() { return orderByOffset; }
+
+        List<OrderItem> getOrderBy() { return orderBy; }
+    }
+
+    static final class TableRef {
+        final String rawSchema; // as written, including quotes; null when unqualified
+        final String rawName;
+        final String schema;    // quotes removed
+        final String name;
+
+        TableRef(String rawSchema, String rawName, String schema, String name) {
+            this.rawSchema = rawSchema;
+            this.rawName = rawName;
+            this.schema = schema;
+            this.name = name;
+        }
+
+        String qualifiedName() {
+            return schema != null ? schema + "." + name : name;
+        }
+    }
+
+    /**
+     * 结果列可能的来源：表和列名；column 为 null 表示与结果列同名（来自 "*"）。
+     */
+    static final class Origin {
+        final TableRef table;
+        final String column;
+
+        Origin(TableRef table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+    }
+
+    static final class OutputColumn {
+        final String label;
+        final List<Origin> origins;
+
+        OutputColumn(String label, List<Origin> origins) {
+            this.label = label;
+            this.origins = origins;
+        }
+    }
+
+    static final class OrderItem {
+        final String text;
+        final String rawColumn; // last identifier part as written; null when the item is not a plain column
+        final boolean descending;
+
+        OrderItem(String text, String rawColumn, boolean descending) {
+            this.text = text;
+            this.rawColumn = rawColumn;
+            this.descending = descending;
+        }
+    }
+
+    static Statement parse(String sql) {
+        Statement statement = CACHE.get(sql);
+        if (statement == null) {
+            statement = new SqlParser(sql).parseStatement();
+            CACHE.put(sql, statement);
+        }
+        return statement;
+    }
+
+    // ---------------------------------------------------------------- lexer
+
+    private enum Kind { WORD, QUOTED, STRING, NUMBER, SYMBOL }
+
+    private static final class Token {
+        final Kind kind;
+        final String text;
+        final String upper;
+        final int start;
+        final int end;
+
+        Token(Kind kind, String sql, int start, int end) {
+            this.kind = kind;
+            this.text = sql.substring(start, end);
+            this.upper = kind == Kind.WORD ? text.toUpperCase(Locale.ROOT) : text;
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean is(String word) {
+            return kind == Kind.WORD && upper.equals(word);
+        }
+
+        boolean isSymbol(char c) {
+            return kind == Kind.SYMBOL && text.charAt(0) == c;
+        }
+
+        String identifier() {
+            if (kind != Kind.QUOTED) {
+                return text;
+            }
+            String quote = text.substring(0, 1);
+            return text.substring(1, Math.max(1, text.length() - 1)).replace(quote + quote, quote);
+        }
+    }
+
+    private static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '-' && sql.startsWith("--", i)) {
+                int eol = sql.indexOf('\n', i);
+                i = eol < 0 ? n : eol + 1;
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                int close = sql.indexOf("*/", i + 2);
+                i = close < 0 ? n : close + 2;
+            } else if (c == '\'') {
+                i = skipQuoted(sql, i, '\'');
+                tokens.add(new Token(Kind.STRING, sql, start, i));
+            } else if (c == '"' || c == '`') {
+                i = skipQuoted(sql, i, c);
+                tokens.add(new Token(Kind.QUOTED, sql, start, i));
+            } else if ((c == 'q' || c == 'Q') && i + 2 < n && sql.charAt(i + 1) == '\'') {
+                // Oracle alternative quoting: q'[...]', q'{...}', q'!...!'
+                char open = sql.charAt(i + 2);
+                int pos = "([{<".indexOf(open);
+                char close = pos >= 0 ? ")]}>".charAt(pos) : open;
+                int end = sql.indexOf(close + "'", i + 3);
+                i = end < 0 ? n : end + 2;
+                tokens.add(new Token(Kind.STRING, sql, start, i));
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || "_$#".indexOf(sql.charAt(i)) >= 0)) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.WORD, sql, start, i));
+            } else if (Character.isDigit(c)) {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.NUMBER, sql, start, i));
+            } else {
+                i++;
+                tokens.add(new Token(Kind.SYMBOL, sql, start, i));
+            }
+        }
+        return tokens;
+    }
+
+    private static int skipQuoted(String sql, int open, char quote) {
+        int i = open + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    // --------------------------------------------------------------- parser
+
+    private static final class Source {
+        final TableRef table;  // physical table, or null
+        final Block derived;   // subquery or WITH reference, or null
+        final String name;
+        String alias;
+
+        Source(TableRef table, Block derived, String name) {
+            this.table = table;
+            this.derived = derived;
+            this.name = name;
+        }
+
+        boolean matches(String qualifier) {
+            return qualifier.equalsIgnoreCase(alias) || qualifier.equalsIgnoreCase(name);
+        }
+    }
+
+    private static final class Block {
+        final List<Source> sources = new ArrayList<>();
+        final List<OutputColumn> columns = new ArrayList<>();
+        boolean computedColumns;
+        boolean join;
+        boolean setOperation;
+
+        List<Origin> originsOf(String label) {
+            for (OutputColumn column : columns) {
+                if (column.label != null && column.label.equalsIgnoreCase(label)) {
+                    return column.origins;
+                }
+            }
+            List<Origin> origins = new ArrayList<>();
+            for (OutputColumn column : columns) {
+                if (column.label == null) {
+                    for (Origin origin : column.origins) {
+                        origins.add(new Origin(origin.table, label));
+                    }
+                }
+            }
+            return origins;
+        }
+    }
+
+    private final String sql;
+    private final List<Token> tokens;
+    private final int[] match;
+    private final Map<String, TableRef> tables = new LinkedHashMap<>();
+
+    private SqlParser(String sql) {
+        this.sql = sql;
+        this.tokens = tokenize(sql);
+        this.match = new int[tokens.size()];
+        Deque<Integer> open = new ArrayDeque<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            match[i] = i;
+            if (tokens.get(i).isSymbol('(')) {
+                open.push(i);
+            } else if (tokens.get(i).isSymbol(')') && !open.isEmpty()) {
+                match[open.pop()] = i;
+            }
+        }
+        while (!open.isEmpty()) {
+            match[open.pop()] = tokens.size();
+        }
+    }
+
+    private Statement parseStatement() {
+        int end = tokens.size();
+        boolean multiple = false;
+        for (int i = 0; i < tokens.size(); i = next(i)) {
+            if (tokens.get(i).isSymbol(';')) {
+                end = i;
+                multiple = i + 1 < tokens.size();
+                break;
+            }
+        }
+        Statement.Type type = statementType(end);
+        Set<String> keywords = topLevelWords(0, end);
+        Block main = null;
+        if (type == Statement.Type.SELECT) {
+            main = parseQuery(0, end, Collections.<String, Block>emptyMap());
+        } else {
+            parseDml(end);
+        }
+
+        Map<String, TableRef> aliases = new LinkedHashMap<>();
+        List<OutputColumn> columns = new ArrayList<>();
+        boolean plainSelectList = false;
+        TableRef singleTable = null;
+        int whereOffset = -1;
+        int orderByOffset = -1;
+        List<OrderItem> orderBy = new ArrayList<>();
+        if (main != null) {
+            for (Source source : main.sources) {
+                if (source.table != null) {
+                    aliases.putIfAbsent((source.alias != null ? source.alias : source.name).toUpperCase(Locale.ROOT), source.table);
+                }
+            }
+            columns.addAll(main.columns);
+            plainSelectList = !main.columns.isEmpty() && !main.computedColumns;
+            if (main.sources.size() == 1 && !main.join && !main.setOperation && main.sources.get(0).table != null) {
+                singleTable = main.sources.get(0).table;
+            }
+            int where = firstWord(0, end, "WHERE");
+            if (where >= 0) {
+                whereOffset = tokens.get(where).start;
+            }
+            int order = lastOrderBy(0, end);
+            if (order >= 0) {
+                orderByOffset = tokens.get(order).start;
+                orderBy = orderItems(order + 2, end);
+            }
+        }
+        boolean readOnly = type == Statement.Type.SELECT && !multiple && !hasSideEffects();
+        return new Statement(type, readOnly, new ArrayList<>(tables.values()), aliases, columns, plainSelectList, keywords,
+                singleTable, whereOffset, orderByOffset, orderBy);
+    }
+
+    private Statement.Type statementType(int end) {
+        int i = 0;
+        if (isWord(i, end, "WITH")) {
+            i = skipWithClause(i, end);
+        }
+        if (i >= end) {
+            return Statement.Type.OTHER;
+        }
+        Token first = tokens.get(i);
+        if (first.is("SELECT") || first.isSymbol('(')) {
+            return Statement.Type.SELECT;
+        } else if (first.is("INSERT") || first.is("REPLACE") || first.is("UPSERT")) {
+            return Statement.Type.INSERT;
+        } else if (first.is("UPDATE")) {
+            return Statement.Type.UPDATE;
+        } else if (first.is("DELETE")) {
+            return Statement.Type.DELETE;
+        } else if (first.is("MERGE")) {
+            return Statement.Type.MERGE;
+        } else if (first.kind == Kind.WORD && DDL_WORDS.contains(first.upper)) {
+            return Statement.Type.DDL;
+        }
+        return Statement.Type.OTHER;
+    }
+
+    private int skipWithClause(int i, int to) {
+        i++;
+        if (isWord(i, to, "RECURSIVE")) {
+            i++;
+        }
+        while (isName(i, to)) {
+            i++;
+            if (isSymbol(i, to, '(')) {
+                i = match[i] + 1;
+            }
+            if (isWord(i, to, "AS")) {
+                i++;
+            }
+            while (isWord(i, to, "NOT") || isWord(i, to, "MATERIALIZED")) {
+                i++;
+            }
+            if (!isSymbol(i, to, '(')) {
+                break;
+            }
+            i = match[i] + 1;
+            if (!isSymbol(i, to, ',')) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * INSERT/UPDATE/DELETE/MERGE/DDL：只需要引用的表，不分析结构。
+     */
+    private void parseDml(int end) {
+        for (int i = 0; i < end; i = next(i)) {
+            Token t = tokens.get(i);
+            if (t.is("SELECT") && i > 0) {
+                // INSERT ... SELECT
+                parseQuery(i, end, Collections.<String, Block>emptyMap());
+                break;
+            }
+            boolean target = t.is("INTO") || t.is("FROM") || t.is("USING") || t.is("JOIN") || t.is("TABLE")
+                    || (i == 0 && (t.is("UPDATE") || t.is("DELETE")));
+            if (target && isName(i + 1, end) && !isWord(i + 1, end, "FROM")) {
+                int[] next = new int[1];
+                addTable(readName(i + 1, end, next));
+            }
+        }
+        scanSubqueries(0, end, Collections.<String, Block>emptyMap());
+    }
+
+    private Block parseQuery(int from, int to, Map<String, Block> ctes) {
+        int i = from;
+        if (isWord(i, to, "WITH")) {
+            ctes = new HashMap<>(ctes);
+            i++;
+            if (isWord(i, to, "RECURSIVE")) {
+                i++;
+            }
+            while (isName(i, to)) {
+                String name = tokens.get(i).identifier().toUpperCase(Locale.ROOT);
+                i++;
+                if (isSymbol(i, to, '(')) {
+                    i = match[i] + 1;
+                }
+                if (isWord(i, to, "AS")) {
+                    i++;
+                }
+                while (isWord(i, to, "NOT") || isWord(i, to, "MATERIALIZED")) {
+                    i++;
+                }
+                if (!isSymbol(i, to, '(')) {
+                    break;
+                }
+                // A recursive reference to the name inside its own body is not a table
+                ctes.put(name, new Block());
+                ctes.put(name, parseQuery(i + 1, match[i], ctes));
+                i = match[i] + 1;
+                if (!isSymbol(i, to, ',')) {
+                    break;
+                }
+                i++;
+            }
+        }
+        // The first branch of UNION/INTERSECT/MINUS/EXCEPT defines the result columns
+        Block result = null;
+        int start = i;
+        int j = i;
+        while (j < to) {
+            Token t = tokens.get(j);
+            if (t.kind == Kind.WORD && SET_OPERATORS.contains(t.upper)) {
+                Block branch = parseSelectCore(start, j, ctes);
+                if (result == null) {
+                    result = branch;
+                }
+                result.setOperation = true;
+                j++;
+                if (isWord(j, to, "ALL") || isWord(j, to, "DISTINCT")) {
+                    j++;
+                }
+                start = j;
+            } else {
+                j = next(j);
+            }
+        }
+        Block last = parseSelectCore(start, to, ctes);
+        return result != null ? result : last;
+    }
+
+    private Block parseSelectCore(int from, int to, Map<String, Block> ctes) {
+        if (isSymbol(from, to, '(')) {
+            int close = match[from];
+            Block inner = parseQuery(from + 1, close, ctes);
+            scanSubqueries(close + 1, to, ctes);
+            return inner;
+        }
+        Block block = new Block();
+        if (!isWord(from, to, "SELECT")) {
+            scanSubqueries(from, to, ctes);
+            return block;
+        }
+        int selectEnd = to;
+        int fromStart = -1;
+        int fromEnd = to;
+        for (int i = from + 1; i < to; i = next(i)) {
+            Token t = tokens.get(i);
+            if (t.kind != Kind.WORD || tokens.get(i - 1).isSymbol('.') || !CLAUSE_WORDS.contains(t.upper)) {
+                continue;
+            }
+            if (selectEnd == to) {
+                selectEnd = i;
+            }
+            if (fromStart < 0 && t.is("FROM")) {
+                fromStart = i + 1;
+            } else if (fromStart >= 0 && fromEnd == to) {
+                fromEnd = i;
+            }
+        }
+        if (fromStart >= 0) {
+            parseFrom(fromStart, fromEnd, ctes, block);
+        }
+        parseSelectList(from + 1, selectEnd, ctes, block);
+        scanSubqueries(fromStart >= 0 ? fromEnd : selectEnd, to, ctes);
+        return block;
+    }
+
+    private void parseFrom(int from, int to, Map<String, Block> ctes, Block block) {
+        int i = from;
+        while (i < to) {
+            if (isWord(i, to, "LATERAL") || isWord(i, to, "ONLY")) {
+                i++;
+            }
+            Source source = null;
+            if (isSymbol(i, to, '(')) {
+                int close = match[i];
+                if (isWord(i + 1, close, "SELECT") || isWord(i + 1, close, "WITH") || isSymbol(i + 1, close, '(')) {
+                    source = new Source(null, parseQuery(i + 1, close, ctes), null);
+                } else {
+                    // Parenthesized join: (a JOIN b ON ...)
+                    parseFrom(i + 1, close, ctes, block);
+                    block.join = true;
+                }
+                i = close + 1;
+            } else if (isName(i, to)) {
+                int[] next = new int[1];
+                TableRef ref = readName(i, to, next);
+                i = next[0];
+                if (isSymbol(i, to, '(')) {
+                    // Table function: TABLE(...), UNNEST(...), JSON_TABLE(...)
+                    scanSubqueries(i, match[i] + 1, ctes);
+                    i = match[i] + 1;
+                    source = new Source(null, new Block(), null);
+                } else if (ref.schema == null && ctes.containsKey(ref.name.toUpperCase(Locale.ROOT))) {
+                    source = new Source(null, ctes.get(ref.name.toUpperCase(Locale.ROOT)), ref.name);
+                } else {
+                    addTable(ref);
+                    source = new Source(ref, null, ref.name);
+                }
+            }
+            if (source != null) {
+                if (isWord(i, to, "AS")) {
+                    i++;
+                }
+                if (isAlias(i, to)) {
+                    source.alias = tokens.get(i).identifier();
+                    i++;
+                }
+                block.sources.add(source);
+            }
+            // Skip ON/USING conditions, index hints and partitions up to the next FROM item
+            boolean separated = false;
+            while (i < to && !separated) {
+                Token t = tokens.get(i);
+                if (t.isSymbol(',')) {
+                    separated = true;
+                    i++;
+                } else if (t.kind == Kind.WORD && JOIN_WORDS.contains(t.upper)) {
+                    while (i < to && tokens.get(i).kind == Kind.WORD && JOIN_WORDS.contains(tokens.get(i).upper)) {
+                        i++;
+                    }
+                    separated = true;
+                } else if (t.isSymbol('(')) {
+                    scanSubqueries(i, match[i] + 1, ctes);
+                    i = match[i] + 1;
+                } else {
+                    i++;
+                }
+            }
+            block.join |= separated;
+        }
+    }
+
+    private void parseSelectList(int from, int to, Map<String, Block> ctes, Block block) {
+        int i = from;
+        while (i < to && tokens.get(i).kind == Kind.WORD && SELECT_MODIFIERS.contains(tokens.get(i).upper)) {
+            i++;
+        }
+        int start = i;
+        while (i < to) {
+            if (tokens.get(i).isSymbol(',')) {
+                selectItem(start, i, ctes, block);
+                start = i + 1;
+                i++;
+            } else {
+                i = next(i);
+            }
+        }
+        if (start < to) {
+            selectItem(start, to, ctes, block);
+        }
+    }
+
+    private void selectItem(int from, int to, Map<String, Block> ctes, Block block) {
+        if (from >= to) {
+            return;
+        }
+        if (to - from == 1 && tokens.get(from).isSymbol('*')) {
+            addStar(block, block.sources);
+            return;
+        }
+        if (to - from >= 3 && tokens.get(to - 1).isSymbol('*') && tokens.get(to - 2).isSymbol('.') && isName(to - 3, to)) {
+            String qualifier = tokens.get(to - 3).identifier();
+            List<Source> matched = new ArrayList<>();
+            for (Source source : block.sources) {
+                if (source.matches(qualifier)) {
+                    matched.add(source);
+                }
+            }
+            addStar(block, matched);
+            return;
+        }
+        int end = to;
+        String alias = null;
+        if (to - from >= 2 && isAlias(to - 1, to)) {
+            Token before = tokens.get(to - 2);
+            if (before.is("AS")) {
+                alias = tokens.get(to - 1).identifier();
+                end = to - 2;
+            } else if (before.kind == Kind.WORD || before.kind == Kind.QUOTED || before.kind == Kind.NUMBER
+                    || before.kind == Kind.STRING || before.isSymbol(')')) {
+                alias = tokens.get(to - 1).identifier();
+                end = to - 1;
+            }
+        }
+        List<Token> chain = identifierChain(from, end);
+        if (chain != null) {
+            String column = chain.get(chain.size() - 1).identifier();
+            String qualifier = chain.size() > 1 ? chain.get(chain.size() - 2).identifier() : null;
+            List<Origin> origins = new ArrayList<>();
+            for (Source source : block.sources) {
+                if (qualifier != null && !source.matches(qualifier)) {
+                    continue;
+                }
+                if (source.table != null) {
+                    origins.add(new Origin(source.table, column));
+                } else if (source.derived != null) {
+                    origins.addAll(source.derived.originsOf(column));
+                }
+            }
+            block.columns.add(new OutputColumn(alias != null ? alias : column, origins));
+        } else if (end - from > 2 && tokens.get(from).isSymbol('(') && match[from] == end - 1 && isWord(from + 1, end, "SELECT")) {
+            // Scalar subquery: the column comes from its single result column
+            Block scalar = parseQuery(from + 1, end - 1, ctes);
+            block.computedColumns = true;
+            List<Origin> origins = scalar.columns.size() == 1 ? scalar.columns.get(0).origins : Collections.<Origin>emptyList();
+            block.columns.add(new OutputColumn(alias != null ? alias : sql.substring(tokens.get(from).start, tokens.get(end - 1).end), origins));
+        } else {
+            scanSubqueries(from, end, ctes);
+            block.computedColumns = true;
+            String label = alias != null ? alias : sql.substring(tokens.get(from).start, tokens.get(Math.max(from, end - 1)).end);
+            block.columns.add(new OutputColumn(label, Collections.<Origin>emptyList()));
+        }
+    }
+
+    private static void addStar(Block block, List<Source> sources) {
+        for (Source source : sources) {
+            if (source.table != null) {
+                block.columns.add(new OutputColumn(null, Collections.singletonList(new Origin(source.table, null))));
+            } else if (source.derived != null) {
+                block.columns.addAll(source.derived.columns);
+            }
+        }
+    }
+
+    /**
+     * 在一段表达式中找出所有子查询并分析（只为收集引用的表）。
+     */
+    private void scanSubqueries(int from, int to, Map<String, Block> ctes) {
+        for (int i = from; i < to; i++) {
+            if (tokens.get(i).isSymbol('(') && (isWord(i + 1, match[i], "SELECT") || isWord(i + 1, match[i], "WITH"))) {
+                parseQuery(i + 1, match[i], ctes);
+                i = match[i];
+            }
+        }
+    }
+
+    private int lastOrderBy(int from, int to) {
+        int order = -1;
+        for (int i = from; i < to; i = next(i)) {
+            if (isWord(i, to, "ORDER") && isWord(i + 1, to, "BY") && (i == 0 || !tokens.get(i - 1).isSymbol('.'))) {
+                order = i;
+            } else if (tokens.get(i).kind == Kind.WORD && SET_OPERATORS.contains(tokens.get(i).upper)) {
+                order = -1;
+            }
+        }
+        return order;
+    }
+
+    private int firstWord(int from, int to, String word) {
+        for (int i = from; i < to; i = next(i)) {
+            if (isWord(i, to, word) && (i == 0 || !tokens.get(i - 1).isSymbol('.'))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private List<OrderItem> orderItems(int from, int to) {
+        int end = from;
+        while (end < to && !(tokens.get(end).kind == Kind.WORD
+                && Arrays.asList("LIMIT", "OFFSET", "FETCH", "FOR", "LOCK").contains(tokens.get(end).upper))) {
+            end = next(end);
+        }
+        end = Math.min(end, to);
+        List<OrderItem> items = new ArrayList<>();
+        int start = from;
+        for (int i = from; i <= end; i = i < end ? next(i) : end + 1) {
+            if (i == end || tokens.get(i).isSymbol(',')) {
+                if (start < i) {
+                    int itemEnd = i;
+                    boolean descending = false;
+                    if (isWord(itemEnd - 1, i, "DESC") || isWord(itemEnd - 1, i, "ASC")) {
+                        descending = tokens.get(itemEnd - 1).is("DESC");
+                        itemEnd--;
+                    }
+                    List<Token> chain = identifierChain(start, itemEnd);
+                    String text = sql.substring(tokens.get(start).start, tokens.get(i - 1).end);
+                    items.add(new OrderItem(text, chain != null ? chain.get(chain.size() - 1).text : null, descending));
+                }
+                start = i + 1;
+            }
+        }
+        return items;
+    }
+
+    private boolean hasSideEffects() {
+        for (int i = 0; i < tokens.size(); i++) {
+            Token t = tokens.get(i);
+            if (t.is("NEXTVAL") || t.is("INTO")
+                    || (t.is("FOR") && (isWord(i + 1, tokens.size(), "UPDATE") || isWord(i + 1, tokens.size(), "SHARE")
+                    || isWord(i + 1, tokens.size(), "NO") || isWord(i + 1, tokens.size(), "KEY")))
+                    || (t.is("LOCK") && isWord(i + 1, tokens.size(), "IN"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<String> topLevelWords(int from, int to) {
+        Set<String> words = new LinkedHashSet<>();
+        for (int i = from; i < to; i = next(i)) {
+            if (tokens.get(i).kind == Kind.WORD && (i == 0 || !tokens.get(i - 1).isSymbol('.'))) {
+                words.add(tokens.get(i).upper);
+            }
+        }
+        return words;
+    }
+
+    // -------------------------------------------------------------- helpers
+
+    private int next(int i) {
+        return tokens.get(i).isSymbol('(') ? match[i] + 1 : i + 1;
+    }
+
+    private boolean isWord(int i, int to, String word) {
+        return i < to && i < tokens.size() && tokens.get(i).is(word);
+    }
+
+    private boolean isSymbol(int i, int to, char c) {
+        return i < to && i < tokens.size() && tokens.get(i).isSymbol(c);
+    }
+
+    private boolean isName(int i, int to) {
+        if (i >= to || i >= tokens.size()) {
+            return false;
+        }
+        Token t = tokens.get(i);
+        return t.kind == Kind.QUOTED || (t.kind == Kind.WORD && !t.is("SELECT") && !t.is("WITH") && !t.is("VALUES"));
+    }
+
+    private boolean isAlias(int i, int to) {
+        if (i >= to || i >= tokens.size()) {
+            return false;
+        }
+        Token t = tokens.get(i);
+        return t.kind == Kind.QUOTED || (t.kind == Kind.WORD && !NOT_ALIAS.contains(t.upper));
+    }
+
+    /**
+     * a、t.a、s.t.a 形式的标识符链；不是纯标识符链时返回 null。
+     */
+    private List<Token> identifierChain(int from, int to) {
+        if (from >= to || (to - from) % 2 == 0 || to - from > 5) {
+            return null;
+        }
+        List<Token> parts = new ArrayList<>();
+        for (int i = from; i < to; i += 2) {
+            if (!isName(i, to) || (i + 1 < to && !tokens.get(i + 1).isSymbol('.'))) {
+                return null;
+            }
+            parts.add(tokens.get(i));
+        }
+        return parts;
+    }
+
+    private TableRef readName(int i, int to, int[] next) {
+        List<Token> parts = new ArrayList<>();
+        parts.add(tokens.get(i++));
+        while (isSymbol(i, to, '.') && isName(i + 1, to)) {
+            parts.add(tokens.get(i + 1));
+            i += 2;
+        }
+        if (isSymbol(i, to, '@') && isName(i + 1, to)) {
+            i += 2; // Oracle database link
+        }
+        next[0] = i;
+        Token name = parts.get(parts.size() - 1);
+        Token schema = parts.size() > 1 ? parts.get(parts.size() - 2) : null;
+        return new TableRef(schema != null ? schema.text : null, name.text,
+                schema != null ? schema.identifier() : null, name.identifier());
+    }
+
+    private void addTable(TableRef ref) {
+        tables.putIfAbsent(ref.qualifiedName().toUpperCase(Locale.ROOT), ref);
+    }
+}
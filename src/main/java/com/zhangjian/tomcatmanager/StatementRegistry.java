@@ -0,0 +1,240 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.RunningStatement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 正在执行的语句登记表。控制台查询、COUNT 和导出在执行期间登记语句，可以按 id 或请求 id 调用 Statement.cancel() 取消。
+ *
+ * <p>登记时设置 JDBC 查询超时（连接配置中的值优先，为空时使用全局默认值）。Oracle 的超时按每次调用计算，
+ * MySQL 的游标读取不受超时控制，所以另有一个每 5 秒运行的看门狗，总执行时间超过超时的语句也会被取消。</p>
+ *
+ * <p>请求 id 由前端在 X-Query-Id 请求头中发送（导出任务为任务 id）。客户端断开时（关闭或刷新页面）
+ * 前端通过 sendBeacon 调用取消接口，服务端随即取消该请求仍在执行的语句。</p>
+ */
+@Component
+public class StatementRegistry {
+
+    static final String QUERY_ID_HEADER = "X-Query-Id";
+    private static final int MAX_SQL_LENGTH = 500;
+
+    /** FETCH 为继续读取已打开的会话游标，超时在打开游标时已经设置。 */
+    enum Kind { QUERY, FETCH, COUNT, EXPORT }
+
+    private final int queryTimeoutSeconds;
+    private final int exportTimeoutSeconds;
+    private final Map<String, Handle> running = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+    // User and request id for statements registered off the request thread (export jobs, background COUNT)
+    private static final ThreadLocal<String[]> CONTEXT = new ThreadLocal<>();
+
+    StatementRegistry(@Value("${db.query.timeout-seconds:300}") int queryTimeoutSeconds,
+                      @Value("${db.query.export-timeout-seconds:3600}") int exportTimeoutSeconds) {
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+        this.exportTimeoutSeconds = exportTimeoutSeconds;
+    }
+
+    @PostConstruct
+    public void init() {
+        watchdog.scheduleWithFixedDelay(this::cancelOverdue, 5, 5, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 一条登记中的语句。执行结束后 close() 注销（不关闭语句本身）。
+     */
+    final class Handle implements AutoCloseable {
+        private final String id = UUID.randomUUID().toString();
+        private final String requestId;
+        private final String connectionId;
+        private final Kind kind;
+        private final String user;
+        private final String sql;
+        private final Statement statement;
+        private final int timeoutSeconds;
+        private final long startedAt = System.currentTimeMillis();
+        private volatile String cancelReason;
+
+        private Handle(String requestId, String connectionId, Kind kind, String user, String sql, Statement statement,
+                       int timeoutSeconds) {
+            this.requestId = requestId;
+            this.connectionId = connectionId;
+            this.kind = kind;
+            this.user = user;
+            this.sql = sql;
+            this.statement = statement;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        private void cancel(String reason) {
+            if (cancelReason == null) {
+                cancelReason = reason;
+            }
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                System.err.println("Could not cancel statement " + id + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * 语句因取消或超时失败时换成说明原因的异常，其他异常原样返回。
+         */
+        SQLException explain(SQLException e) {
+            String reason = cancelReason;
+            if (reason == null && timeoutSeconds > 0 && System.currentTimeMillis() - startedAt >= timeoutSeconds * 1000L) {
+                reason = timeoutMessage();
+            }
+            return reason == null ? e : new SQLException(reason + "（" + e.getMessage() + "）", e.getSQLState(), e.getErrorCode(), e);
+        }
+
+        private String timeoutMessage() {
+            return "执行超过 " + timeoutSeconds + " 秒的超时限制，已取消";
+        }
+
+        @Override
+        public void close() {
+            running.remove(id, this);
+        }
+    }
+
+    /**
+     * 登记语句并按连接配置或全局默认值设置查询超时。请在 executeQuery 之前调用。
+     */
+    Handle register(DatabaseConnection dbConn, Statement statement, String sql, Kind kind) throws SQLException {
+        return register(dbConn, statement, sql, kind, timeoutSeconds(dbConn, kind));
+    }
+
+    /**
+     * 同上，使用指定的超时（秒，0 表示不限制）。
+     */
+    Handle register(DatabaseConnection dbConn, Statement statement, String sql, Kind kind, int timeout) throws SQLException {
+        if (timeout > 0 && kind != Kind.FETCH) {
+            statement.setQueryTimeout(timeout);
+        }
+        String[] context = CONTEXT.get();
+        HttpServletRequest request = currentRequest();
+        String user = context != null ? context[0] : request != null ? request.getRemoteAddr() : "system";
+        String requestId = context != null ? context[1] : request != null ? request.getHeader(QUERY_ID_HEADER) : null;
+        Handle handle = new Handle(requestId, dbConn.getId(), kind, user, sql, statement, timeout);
+        running.put(handle.id, handle);
+        return handle;
+    }
+
+    /**
+     * withContext 的作用范围，关闭时恢复线程原来的上下文。
+     */
+    interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * 在当前线程上以指定用户和请求 id 登记语句，直到返回的对象被关闭；用于不在请求线程中执行的导出和 COUNT。
+     */
+    Scope withContext(String user, String requestId) {
+        String[] previous = CONTEXT.get();
+        CONTEXT.set(new String[]{user, requestId});
+        return () -> {
+            if (previous != null) {
+                CONTEXT.set(previous);
+            } else {
+                CONTEXT.remove();
+            }
+        };
+    }
+
+    /**
+     * 当前线程登记语句时使用的用户和请求 id，交给工作线程的 withContext 沿用。
+     */
+    String[] currentContext() {
+        String[] context = CONTEXT.get();
+        if (context != null) {
+            return context.clone();
+        }
+        HttpServletRequest request = currentRequest();
+        return request != null ? new String[]{request.getRemoteAddr(), request.getHeader(QUERY_ID_HEADER)} : new String[]{"system", null};
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getRequest() : null;
+    }
+
+    private int timeoutSeconds(DatabaseConnection dbConn, Kind kind) {
+        Integer configured = kind == Kind.EXPORT ? dbConn.getExportTimeoutSeconds() : dbConn.getQueryTimeoutSeconds();
+        int timeout = configured != null ? configured : kind == Kind.EXPORT ? exportTimeoutSeconds : queryTimeoutSeconds;
+        return Math.max(0, timeout);
+    }
+
+    /**
+     * 取消 id 或请求 id 为 id 的所有语句，返回取消的条数。
+     */
+    int cancel(String id) {
+        int cancelled = 0;
+        for (Handle handle : running.values()) {
+            if (handle.id.equals(id) || id.equals(handle.requestId)) {
+                handle.cancel("已被取消");
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    List<RunningStatement> list() {
+        long now = System.currentTimeMillis();
+        return running.values().stream()
+                .sorted(Comparator.comparingLong(handle -> handle.startedAt))
+                .map(handle -> {
+                    RunningStatement statement = new RunningStatement();
+                    statement.setId(handle.id);
+                    statement.setRequestId(handle.requestId);
+                    statement.setConnectionId(handle.connectionId);
+                    statement.setKind(handle.kind.name().toLowerCase());
+                    statement.setUser(handle.user);
+                    statement.setSqlFingerprint(RowCountService.countId(handle.connectionId, handle.sql));
+                    statement.setSql(handle.sql.length() > MAX_SQL_LENGTH ? handle.sql.substring(0, MAX_SQL_LENGTH) + "..." : handle.sql);
+                    statement.setStartedAt(handle.startedAt);
+                    statement.setElapsedMs(now - handle.startedAt);
+                    statement.setTimeoutSeconds(handle.timeoutSeconds);
+                    statement.setCancelRequested(handle.cancelReason != null);
+                    return statement;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private void cancelOverdue() {
+        long now = System.currentTimeMillis();
+        for (Handle handle : running.values()) {
+            if (handle.cancelReason != null) {
+                // cancel() only interrupts a call in progress; repeat it until the caller stops fetching
+                handle.cancel(handle.cancelReason);
+            } else if (handle.timeoutSeconds > 0 && now - handle.startedAt > handle.timeoutSeconds * 1000L) {
+                handle.cancel(handle.timeoutMessage());
+            }
+        }
+    }
+}
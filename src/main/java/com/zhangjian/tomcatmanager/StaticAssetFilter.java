@@ -0,0 +1,270 @@
+package com.zhangjian.tomcatmanager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 管理界面静态资源的指纹化与预压缩。启动时扫描 classpath:/static，为每个资源计算内容摘要并生成
+ * 带摘要的文件名（tabulator.min.js -> tabulator.min.&lt;hash&gt;.js）和 gzip 版本，HTML 页面中
+ * 引用的本地资源地址被改写为带摘要的地址。
+ *
+ * <p>带摘要的地址以 Cache-Control: immutable 长期缓存；HTML 和原始地址（例如 ES 模块内部的相对 import）
+ * 使用 no-cache + ETag，浏览器每次只需一次 304 校验。type="module" 的脚本不改写：模块之间按原始地址 import，
+ * 入口换成带摘要的地址会让同一个模块以两个 URL 各加载一次，各有一份状态。JDK 不带 brotli 编码器，如果 static 目录中已有构建时
+ * 生成的 .br 文件，则优先返回给支持 br 的浏览器。</p>
+ */
+@Component
+public class StaticAssetFilter extends OncePerRequestFilter {
+
+    private static final String STATIC_ROOT = "classpath:/static/";
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+    private static final Set<String> COMPRESSIBLE = new HashSet<>(Arrays.asList(
+            "html", "js", "mjs", "css", "json", "svg", "txt", "map", "xml"));
+    private static final Pattern LOCAL_REFERENCE = Pattern.compile("(\\s(?:src|href)=)([\"'])(/[^\"'?#]+)\\2");
+    private static final Pattern MODULE_TAG = Pattern.compile(
+            "^<(?:script\\b[^>]*\\stype\\s*=\\s*[\"']?module|link\\b[^>]*\\srel\\s*=\\s*[\"']?modulepreload)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final boolean enabled;
+    private final int minCompressBytes;
+    // Request path -> asset; both the original and the fingerprinted path are present
+    private final Map<String, Asset> assets = new HashMap<>();
+
+    StaticAssetFilter(@Value("${ui.assets.fingerprint-enabled:true}") boolean enabled,
+                      @Value("${ui.assets.min-compress-bytes:1024}") int minCompressBytes) {
+        this.enabled = enabled;
+        this.minCompressBytes = minCompressBytes;
+    }
+
+    private static final class Asset {
+        final String contentType;
+        final String etag;
+        final byte[] identity;
+        final byte[] gzip;
+        final byte[] brotli;
+        final boolean immutable;
+
+        Asset(String contentType, String etag, byte[] identity, byte[] gzip, byte[] brotli, boolean immutable) {
+            this.contentType = contentType;
+            this.etag = etag;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.brotli = brotli;
+            this.immutable = immutable;
+        }
+
+        Asset asImmutable() {
+            return new Asset(contentType, etag, identity, gzip, brotli, true);
+        }
+    }
+
+    @Override
+    protected void initFilterBean() throws ServletException {
+        if (!enabled) {
+            return;
+        }
+        try {
+            buildCatalog();
+        } catch (IOException e) {
+            throw new ServletException("静态资源预处理失败: " + e.getMessage(), e);
+        }
+    }
+
+    private void buildCatalog() throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        String rootUrl = resolver.getResource(STATIC_ROOT).getURL().toString();
+        Map<String, Resource> files = new TreeMap<>();
+        for (Resource resource : resolver.getResources(STATIC_ROOT + "**/*")) {
+            if (resource.isReadable() && resource.getFilename() != null && !resource.getFilename().isEmpty()) {
+                files.put("/" + resource.getURL().toString().substring(rootUrl.length()), resource);
+            }
+        }
+
+        Map<String, String> fingerprinted = new HashMap<>();
+        List<String> pages = new ArrayList<>();
+        for (Map.Entry<String, Resource> file : files.entrySet()) {
+            String path = file.getKey();
+            if (path.endsWith(".br") || path.endsWith(".gz")) {
+                continue;
+            }
+            if (path.endsWith(".html")) {
+                pages.add(path);
+                continue;
+            }
+            byte[] content = read(file.getValue());
+            String hash = DigestUtils.md5DigestAsHex(content).substring(0, 12);
+            Asset asset = buildAsset(path, content, hash, files.get(path + ".br"));
+            String hashedPath = fingerprint(path, hash);
+            assets.put(path, asset);
+            assets.put(hashedPath, asset.asImmutable());
+            fingerprinted.put(path, hashedPath);
+        }
+        for (String page : pages) {
+            String html = new String(read(files.get(page)), StandardCharsets.UTF_8);
+            byte[] content = rewriteReferences(html, fingerprinted).getBytes(StandardCharsets.UTF_8);
+            String hash = DigestUtils.md5DigestAsHex(content).substring(0, 12);
+            assets.put(page, buildAsset(page, content, hash, null));
+        }
+        if (assets.containsKey("/index.html")) {
+            assets.put("/", assets.get("/index.html"));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return assets.isEmpty() || !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Asset asset = assets.get(path);
+        if (asset == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, asset.immutable ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ETAG, asset.etag);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(asset.etag) || "*".equals(ifNoneMatch.trim()))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        byte[] body = asset.identity;
+        if (asset.brotli != null && accepts(acceptEncoding, "br")) {
+            body = asset.brotli;
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "br");
+        } else if (asset.gzip != null && accepts(acceptEncoding, "gzip")) {
+            body = asset.gzip;
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentType(asset.contentType);
+        response.setContentLength(body.length);
+        if ("GET".equals(request.getMethod())) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    private Asset buildAsset(String path, byte[] content, String hash, Resource brotliResource) throws IOException {
+        String contentType = MediaTypeFactory.getMediaType(path)
+                .map(Object::toString)
+                .orElse("application/octet-stream");
+        if (contentType.startsWith("text/") || contentType.contains("javascript") || contentType.contains("json")) {
+            contentType += ";charset=UTF-8";
+        }
+        byte[] gzip = null;
+        byte[] brotli = null;
+        if (COMPRESSIBLE.contains(extension(path)) && content.length >= minCompressBytes) {
+            gzip = gzip(content);
+            if (gzip.length >= content.length) {
+                gzip = null;
+            }
+            if (brotliResource != null) {
+                brotli = read(brotliResource);
+            }
+        }
+        return new Asset(contentType, "\"" + hash + "\"", content, gzip, brotli, false);
+    }
+
+    static String rewriteReferences(String html, Map<String, String> fingerprinted) {
+        Matcher m = LOCAL_REFERENCE.matcher(html);
+        StringBuffer out = new StringBuffer();
+        while (m.find()) {
+            String hashed = isModuleTag(html, m.start()) ? null : fingerprinted.get(m.group(3));
+            String replacement = hashed != null ? m.group(1) + m.group(2) + hashed + m.group(2) : m.group();
+            m.appendReplacement(out, Matcher.quoteReplacement(replacement));
+        }
+        m.appendTail(out);
+        return out.toString();
+    }
+
+    /**
+     * pos 所在的标签是否为 ES 模块脚本（type="module" 或 rel="modulepreload"）。
+     */
+    private static boolean isModuleTag(String html, int pos) {
+        int start = html.lastIndexOf('<', pos);
+        int end = html.indexOf('>', pos);
+        return start >= 0 && end >= 0 && MODULE_TAG.matcher(html.substring(start, end + 1)).find();
+    }
+
+    static String fingerprint(String path, String hash) {
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        return dot > slash ? path.substring(0, dot) + "." + hash + path.substring(dot) : path + "." + hash;
+    }
+
+    /**
+     * 判断 Accept-Encoding 是否接受指定编码（忽略 q=0 的项）。
+     */
+    static boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (tokens[0].trim().equalsIgnoreCase(encoding)) {
+                for (int i = 1; i < tokens.length; i++) {
+                    String param = tokens[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String extension(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot >= 0 ? path.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static byte[] read(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 3);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,143 @@
+package com.zhangjian.tomcatmanager;
+
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+@RestController
+@RequestMapping("/api")
+class TomcatController {
+    private final TomcatService tomcatService;
+    private final JobSchedulerService jobSchedulerService;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    public TomcatController(TomcatService tomcatService, JobSchedulerService jobSchedulerService) {
+        this.tomcatService = tomcatService;
+        this.jobSchedulerService = jobSchedulerService;
+        this.tomcatService.setController(this);
+    }
+
+    @PostMapping("/start")
+    public Map<String, String> start() {
+        tomcatService.start();
+        return Collections.singletonMap("message", "启动命令已发送。");
+    }
+
+    @PostMapping("/stop")
+    public Map<String, String> stop() {
+        tomcatService.stop();
+        return Collections.singletonMap("message", "停止命令已发送。");
+    }
+
+    @PostMapping("/restart")
+    public Map<String, String> restart() {
+        tomcatService.restart();
+        return Collections.singletonMap("message", "重启流程已启动。");
+    }
+
+    @PostMapping("/kill")
+    public Map<String, String> kill() {
+        tomcatService.killProcessByPort();
+        return Collections.singletonMap("message", "Kill 命令已发送。");
+    }
+
+    @GetMapping("/status")
+    public Map<String, Object> getStatus() {
+        return Collections.singletonMap("running", tomcatService.isTomcatRunning());
+    }
+
+    @GetMapping("/config")
+    public Map<String, Object> getConfig() {
+        return Collections.singletonMap("port", tomcatService.getTomcatPort());
+    }
+
+    @GetMapping("/webapps")
+    public List<String> getWebapps() {
+        return tomcatService.getDeployedWebapps();
+    }
+
+    @GetMapping("/subscribe")
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(Long.MAX_VALUE);
+
+        // Send history first
+        for (TomcatService.LogEntry entry : tomcatService.getRecentLogs(TomcatService.HISTORY_LINES, null)) {
+            try {
+                emitter.send(SseEmitter.event().name(entry.getType()).data(entry.getMessage()));
+            } catch (IOException e) {
+                // Ignore, client probably disconnected
+            }
+        }
+
+        emitters.add(emitter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+
+        return emitter;
+    }
+
+    @GetMapping("/logs")
+    public List<TomcatService.LogEntry> getLogs(@RequestParam(defaultValue = "200") int lines,
+                                                @RequestParam(required = false) String filter) {
+        return tomcatService.getRecentLogs(lines, filter);
+    }
+
+    @PostMapping("/schedule")
+    public Map<String, String> saveSchedule(@RequestBody Map<String, String> payload) {
+        try {
+            jobSchedulerService.saveDailyRestartTime(payload.get("restartTime"));
+            return Collections.singletonMap("message", "定时任务已保存。");
+        } catch (Exception e) {
+            return Collections.singletonMap("message", "保存定时任务失败: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/schedule")
+    public Map<String, String> getSchedule() {
+        return Collections.singletonMap("restartTime", jobSchedulerService.getDailyRestartTime());
+    }
+
+    @PostMapping("/health-check/config")
+    public Map<String, String> updateHealthCheckConfig(@RequestBody HealthCheckConfig config) {
+        tomcatService.updateHealthCheckConfig(config);
+        return Collections.singletonMap("message", "健康检查配置已更新。");
+    }
+
+    @GetMapping("/health-check/config")
+    public HealthCheckConfig getHealthCheckConfig() {
+        return tomcatService.getHealthCheckConfig();
+    }
+
+    @PostMapping("/upload-webapp")
+    public Map<String, String> uploadWebapp(@RequestParam("file") MultipartFile file) {
+        String message = tomcatService.deployWebapp(file);
+        return Collections.singletonMap("message", message);
+    }
+
+    @PostMapping("/uninstall-webapp")
+    public Map<String, String> uninstallWebapp(@RequestBody Map<String, String> payload) {
+        String appName = payload.get("appName");
+        String password = payload.get("password");
+        String message = tomcatService.undeployWebapp(appName, password);
+        return Collections.singletonMap("message", message);
+    }
+
+
+    public boolean hasSubscribers() {
+        return !emitters.isEmpty();
+    }
+
+    public void broadcast(String event, String data) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data));
+            } catch (IOException e) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+}
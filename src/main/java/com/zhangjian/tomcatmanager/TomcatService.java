@@ -0,0 +1,666 @@
+package com.zhangjian.tomcatmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhangjian.tomcatmanager.dto.DiagnosticBundleInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Service
+class TomcatService {
+    private final AppConfig appConfig;
+    private final ObjectMapper objectMapper;
+    private final DiagnosticsService diagnosticsService;
+    private TomcatController controller;
+    private Process tomcatProcess;
+    private Integer tomcatPort;
+    // Last PID found listening on tomcatPort, checked first so metric samples do not scan every process
+    private volatile String portPid;
+    private final Path healthCheckConfigPath = Paths.get("health_check_config.json");
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    static final int HISTORY_LINES = 200;
+    private ProcessOutputCapture outputCapture;
+
+    private ScheduledExecutorService healthCheckExecutor;
+    private HealthCheckConfig healthCheckConfig = new HealthCheckConfig();
+    private int consecutiveFailures = 0;
+    private volatile boolean healthCheckSuspended = false;
+    private final LatencySamples healthProbeLatencies = new LatencySamples(120);
+    private final List<Consumer<String>> deploymentListeners = new CopyOnWriteArrayList<>();
+
+    @Value("${tomcat.uninstall.password}")
+    private String uninstallPassword;
+
+    @Value("${tomcat.output.charset:GBK}")
+    private String outputCharset;
+
+    @Value("${tomcat.output.archive:logs/tomcat-console.log}")
+    private String outputArchive;
+
+    @Value("${tomcat.output.archive-max-mb:100}")
+    private long outputArchiveMaxMb;
+
+    @Value("${tomcat.output.ring-buffer-kb:1024}")
+    private int outputRingBufferKb;
+
+
+    public TomcatService(AppConfig appConfig, ObjectMapper objectMapper, DiagnosticsService diagnosticsService) {
+        this.appConfig = appConfig;
+        this.objectMapper = objectMapper;
+        this.diagnosticsService = diagnosticsService;
+    }
+
+    static class LogEntry {
+        private final String message;
+        private final String type;
+
+        LogEntry(String message, String type) {
+            this.message = message;
+            this.type = type;
+        }
+
+        public String getMessage() { return message; }
+        public String getType() { return type; }
+    }
+
+    public void setController(TomcatController controller) {
+        this.controller = controller;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.outputCapture = new ProcessOutputCapture(Charset.forName(outputCharset), outputRingBufferKb * 1024,
+                Paths.get(outputArchive), outputArchiveMaxMb * 1024 * 1024,
+                () -> controller != null && controller.hasSubscribers(),
+                (type, line) -> controller.broadcast(type, line));
+        this.tomcatPort = parsePortFromConfig();
+        if (this.tomcatPort == null) {
+            this.tomcatPort = 8080; // Fallback
+            broadcastLog("无法从 server.xml 自动读取端口，将使用默认端口 8080。", "error");
+        }
+        loadHealthCheckConfig();
+        heartbeatExecutor.scheduleAtFixedRate(() -> {
+            if (controller != null) {
+                controller.broadcast("ping", "keep-alive");
+            }
+        }, 0, 15, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatExecutor.shutdown();
+        outputCapture.close();
+        if (healthCheckExecutor != null) {
+            healthCheckExecutor.shutdown();
+        }
+    }
+
+    public void start() {
+        start(Collections.emptyMap());
+    }
+
+    /**
+     * 以附加的环境变量启动 Tomcat，例如用 CATALINA_OPTS 覆盖 JVM 参数。
+     */
+    public void start(Map<String, String> environment) {
+        if (isTomcatRunning()) {
+            broadcastLog("Tomcat 已经在运行中。", "error");
+            return;
+        }
+        try {
+            String os = System.getProperty("os.name").toLowerCase();
+            if (!os.contains("win")) {
+                broadcastLog("此脚本仅支持 Windows。", "error");
+                return;
+            }
+
+            File binDir = new File(appConfig.getTomcatHomePath(), "bin");
+            ProcessBuilder pb = new ProcessBuilder(new File(binDir, "catalina.bat").getAbsolutePath(), "run");
+            pb.directory(binDir);
+            pb.environment().putAll(environment);
+            tomcatProcess = pb.start();
+
+            outputCapture.pump(tomcatProcess.getInputStream(), "log");
+            outputCapture.pump(tomcatProcess.getErrorStream(), "error");
+
+            new Thread(() -> {
+                try {
+                    tomcatProcess.waitFor();
+                    broadcastLog("[System] Tomcat 进程已停止。", "system");
+                    broadcastStatusUpdate(false);
+                    tomcatProcess = null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    broadcastLog("[System] 等待 Tomcat 进程退出时被中断。", "error");
+                }
+            }).start();
+
+            broadcastStatusUpdate(true);
+
+        } catch (IOException e) {
+            broadcastLog("启动 Tomcat 失败: " + e.getMessage(), "error");
+        }
+    }
+
+    public void stop() {
+        boolean wasRunning = isTomcatRunning();
+        if (!wasRunning) {
+            broadcastLog("[System] Tomcat 已经处于停止状态。", "system");
+            broadcastStatusUpdate(false);
+            return;
+        }
+
+        if (tomcatProcess != null && tomcatProcess.isAlive()) {
+            try {
+                broadcastLog("[System] 正在尝试优雅地停止 Tomcat...", "system");
+                File binDir = new File(appConfig.getTomcatHomePath(), "bin");
+                ProcessBuilder pb = new ProcessBuilder(new File(binDir, "catalina.bat").getAbsolutePath(), "stop");
+                pb.start().waitFor();
+
+                boolean stoppedGracefully = tomcatProcess.waitFor(30, TimeUnit.SECONDS);
+                if (!stoppedGracefully) {
+                    broadcastLog("[System] 优雅停止超时，将强制终止进程。", "error");
+                }
+            } catch (Exception e) {
+                broadcastLog("执行优雅停止时出错: " + e.getMessage(), "error");
+            } finally {
+                tomcatProcess = null;
+            }
+        }
+
+        if (isTomcatRunning()) {
+            broadcastLog("[System] 进程仍在运行，执行强制 Kill。", "system");
+            killProcessByPort();
+        } else {
+            scheduleStatusUpdate();
+        }
+    }
+
+    public void restart() {
+        broadcastLog("[System] 开始重启 Tomcat...", "system");
+        if (isTomcatRunning()) {
+            stop();
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < 15; i++) { // Max wait 15 seconds
+                        if (!isTomcatRunning()) {
+                            break;
+                        }
+                        Thread.sleep(1000);
+                    }
+                    if (isTomcatRunning()) {
+                        broadcastLog("[System] 重启失败：无法停止旧的 Tomcat 进程。", "error");
+                    } else {
+                        broadcastLog("[System] 旧进程已停止，准备启动新进程...", "system");
+                        start();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }).start();
+        } else {
+            start();
+        }
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name").toLowerCase().contains("win");
+    }
+
+    /**
+     * 通过 netstat 查找监听 HTTP 端口的进程。启动、停止和强制 Kill 都只支持 Windows，
+     * 因此其他系统上返回 null，运行状态只跟随本进程启动的 Tomcat。
+     */
+    private String getPidForPort() {
+        try {
+            if (!isWindows()) {
+                return null;
+            }
+            String command = "netstat -ano | findstr \":" + tomcatPort + "\"";
+            Process p = new ProcessBuilder("cmd.exe", "/c", command).start();
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                String listeningLine = reader.lines()
+                        .filter(line -> line.trim().contains("LISTENING"))
+                        .findFirst()
+                        .orElse(null);
+
+                if (listeningLine != null) {
+                    String[] parts = listeningLine.trim().split("\\s+");
+                    if (parts.length > 0) {
+                        return parts[parts.length - 1];
+                    }
+                }
+            }
+            p.waitFor();
+        } catch (Exception e) {
+            broadcastLog("[System] 检查端口进程时出错: " + e.getMessage(), "error");
+        }
+        return null;
+    }
+
+    private boolean isJavaProcess(String pid) {
+        if (pid == null || pid.isEmpty()) {
+            return false;
+        }
+        if (ProcFs.isAvailable()) {
+            return ProcFs.isJavaProcess(pid);
+        }
+        try {
+            String command = "tasklist /fi \"PID eq " + pid + "\"";
+            Process p = new ProcessBuilder("cmd.exe", "/c", command).start();
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                return reader.lines().anyMatch(line -> {
+                    String lowerLine = line.toLowerCase();
+                    return lowerLine.startsWith("java.exe") || lowerLine.startsWith("javaw.exe");
+                });
+            }
+        } catch (Exception e) {
+            broadcastLog("[System] 检查Java进程时出错: " + e.getMessage(), "error");
+        }
+        return false;
+    }
+
+    /**
+     * 返回当前 Tomcat JVM 的 PID（监听 HTTP 端口的 Java 进程），找不到时返回 null。
+     */
+    public String findTomcatPid() {
+        if (!isWindows()) {
+            // Metrics and diagnostics only read /proc, so they also work for a Tomcat this manager cannot stop
+            if (!ProcFs.isAvailable()) {
+                return null;
+            }
+            String pid = ProcFs.findPidListeningOn(tomcatPort, portPid);
+            portPid = pid;
+            return isJavaProcess(pid) ? pid : null;
+        }
+        String pid = getPidForPort();
+        return isJavaProcess(pid) ? pid : null;
+    }
+
+    public boolean isTomcatRunning() {
+        if (tomcatProcess != null && tomcatProcess.isAlive()) {
+            return true;
+        }
+        String pidListeningOnPort = getPidForPort();
+        return pidListeningOnPort != null && isJavaProcess(pidListeningOnPort);
+    }
+
+    public void killProcessByPort() {
+        try {
+            String pid = getPidForPort();
+            if (pid != null && !pid.isEmpty()) {
+                new ProcessBuilder("taskkill", "/F", "/PID", pid).start().waitFor();
+                broadcastLog("[System] 已发送 Kill 命令到 PID: " + pid, "system");
+            } else {
+                broadcastLog("[System] 未找到监听端口 " + tomcatPort + " 的进程。", "system");
+            }
+        } catch (Exception e) {
+            broadcastLog("Kill 进程失败: " + e.getMessage(), "error");
+        }
+        scheduleStatusUpdate();
+    }
+
+    private Integer parsePortFromConfig() {
+        File serverXml = ServerXmlSupport.serverXml(appConfig);
+        if (!serverXml.exists()) {
+            broadcastLog("错误: 在 " + serverXml.getAbsolutePath() + " 未找到 server.xml 文件。", "error");
+            return null;
+        }
+        try {
+            Document doc = ServerXmlSupport.parse(serverXml);
+            NodeList connectors = doc.getElementsByTagName("Connector");
+            for (int i = 0; i < connectors.getLength(); i++) {
+                Element connector = (Element) connectors.item(i);
+
+                if (connector.hasAttribute("port")) {
+                    String protocol = connector.getAttribute("protocol");
+                    if (protocol != null && protocol.toUpperCase().contains("AJP")) {
+                        continue;
+                    }
+                    return Integer.parseInt(connector.getAttribute("port"));
+                }
+            }
+        } catch (Exception e) {
+            broadcastLog("解析 server.xml 失败: " + e.getMessage(), "error");
+            return null;
+        }
+        broadcastLog("在 server.xml 中未找到有效的 HTTP Connector 端口。", "error");
+        return null;
+    }
+
+    public Integer getTomcatPort(){
+        return this.tomcatPort;
+    }
+
+    public List<String> getDeployedWebapps() {
+        File webappsDir = new File(appConfig.getTomcatHomePath(), "webapps");
+        if (webappsDir.exists() && webappsDir.isDirectory()) {
+            File[] files = webappsDir.listFiles();
+            if (files == null) {
+                return Collections.emptyList();
+            }
+            return Arrays.stream(files)
+                    .filter(file -> file.isDirectory() && !file.getName().equals("ROOT"))
+                    .map(File::getName)
+                    .collect(Collectors.toList());
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * 被管 Tomcat 中部署的所有 context（含 ROOT）：webapps 下的目录和 WAR，以及 conf/Catalina/&lt;host&gt; 下的 context 描述文件。
+     * 只统计文件，不区分是否已经启动成功。
+     */
+    public Set<String> getDeployedContexts() {
+        Set<String> contexts = new TreeSet<>();
+        File[] webapps = new File(appConfig.getTomcatHomePath(), "webapps").listFiles();
+        if (webapps != null) {
+            for (File file : webapps) {
+                if (file.isDirectory()) {
+                    contexts.add(file.getName());
+                } else if (file.getName().endsWith(".war")) {
+                    contexts.add(file.getName().substring(0, file.getName().length() - 4));
+                }
+            }
+        }
+        File[] hosts = new File(appConfig.getTomcatHomePath(), "conf/Catalina").listFiles(File::isDirectory);
+        if (hosts != null) {
+            for (File host : hosts) {
+                File[] descriptors = host.listFiles((dir, name) -> name.endsWith(".xml"));
+                if (descriptors != null) {
+                    for (File descriptor : descriptors) {
+                        contexts.add(descriptor.getName().substring(0, descriptor.getName().length() - 4));
+                    }
+                }
+            }
+        }
+        return contexts;
+    }
+
+    public HealthCheckConfig getHealthCheckConfig() {
+        return this.healthCheckConfig;
+    }
+
+    public void updateHealthCheckConfig(HealthCheckConfig newConfig) {
+        this.healthCheckConfig = newConfig;
+        saveHealthCheckConfig();
+
+        if (healthCheckExecutor != null) {
+            healthCheckExecutor.shutdownNow();
+        }
+
+        if (healthCheckConfig.isEnabled()) {
+            startHealthChecker();
+        }
+    }
+
+    private void saveHealthCheckConfig() {
+        try {
+            Files.write(healthCheckConfigPath, objectMapper.writeValueAsBytes(healthCheckConfig));
+        } catch (IOException e) {
+            broadcastLog("保存健康检查配置失败: " + e.getMessage(), "error");
+        }
+    }
+
+    private void loadHealthCheckConfig() {
+        if (Files.exists(healthCheckConfigPath)) {
+            try {
+                this.healthCheckConfig = objectMapper.readValue(healthCheckConfigPath.toFile(), HealthCheckConfig.class);
+                if (this.healthCheckConfig.isEnabled()) {
+                    startHealthChecker();
+                }
+            } catch (IOException e) {
+                broadcastLog("加载健康检查配置失败: " + e.getMessage(), "error");
+                this.healthCheckConfig = new HealthCheckConfig();
+            }
+        }
+    }
+
+    private void startHealthChecker() {
+        if (healthCheckConfig.getIntervalSeconds() <= 0) return;
+        healthCheckExecutor = Executors.newSingleThreadScheduledExecutor();
+        healthCheckExecutor.scheduleAtFixedRate(this::performHealthCheck, 10, healthCheckConfig.getIntervalSeconds(), TimeUnit.SECONDS);
+        broadcastLog("[System] 健康检查任务已启动。频率: " + healthCheckConfig.getIntervalSeconds() + "秒/次。", "system");
+    }
+
+    private void performHealthCheck() {
+        if (!healthCheckConfig.isEnabled() || healthCheckSuspended || !isTomcatRunning()) {
+            consecutiveFailures = 0;
+            return;
+        }
+
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(healthCheckConfig.getUrl());
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(5000);
+
+            long probeStart = System.currentTimeMillis();
+            int responseCode = connection.getResponseCode();
+            healthProbeLatencies.record(System.currentTimeMillis() - probeStart);
+            if (responseCode >= 200 && responseCode < 400) {
+                if (consecutiveFailures > 0) {
+                    broadcastLog("[System] 健康检查恢复正常。", "system");
+                }
+                consecutiveFailures = 0;
+            } else {
+                handleHealthCheckFailure("服务器返回错误码: " + responseCode);
+            }
+        } catch (IOException e) {
+            handleHealthCheckFailure("连接失败: " + e.getMessage());
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * 暂停健康检查（例如基准测试反复启停 Tomcat 期间），避免探测失败触发自动重启。
+     */
+    void setHealthCheckSuspended(boolean suspended) {
+        this.healthCheckSuspended = suspended;
+        this.consecutiveFailures = 0;
+    }
+
+    LatencySamples getHealthProbeLatencies() {
+        return healthProbeLatencies;
+    }
+
+    private void handleHealthCheckFailure(String reason) {
+        consecutiveFailures++;
+        int threshold = healthCheckConfig.getFailureThreshold();
+        broadcastLog(String.format("[System] 健康检查失败 (%d/%d): %s", consecutiveFailures, threshold, reason), "error");
+        if (consecutiveFailures >= threshold) {
+            broadcastLog(String.format("[System] 健康检查连续失败 %d 次，触发自动重启...", threshold), "system");
+            captureDiagnostics("health-check");
+            restart();
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * 采集被管 Tomcat 的诊断包。采集失败不会抛出异常，以免阻断后续的重启流程。
+     */
+    public DiagnosticBundleInfo captureDiagnostics(String reason) {
+        String pid = findTomcatPid();
+        if (pid == null) {
+            broadcastLog("[System] 未找到 Tomcat 进程，跳过诊断信息采集。", "system");
+            return null;
+        }
+        broadcastLog("[System] 正在采集诊断信息 (PID: " + pid + ")...", "system");
+        try {
+            DiagnosticBundleInfo bundle = diagnosticsService.capture(pid, reason);
+            broadcastLog(String.format("[System] 诊断包已保存: %s (%d KB, 耗时 %d ms)",
+                    bundle.getName(), bundle.getSizeBytes() / 1024, bundle.getDurationMs()), "system");
+            return bundle;
+        } catch (IOException e) {
+            broadcastLog("采集诊断信息失败: " + e.getMessage(), "error");
+            return null;
+        }
+    }
+
+    /**
+     * 最近的日志行（包括 Tomcat 输出和管理端消息），按需从环形缓冲区解码。
+     */
+    public List<LogEntry> getRecentLogs(int maxLines, String filter) {
+        return outputCapture.recentLines(maxLines, filter);
+    }
+
+    /**
+     * 注册部署/卸载完成后的回调，参数为应用名称。
+     */
+    void addDeploymentListener(Consumer<String> listener) {
+        deploymentListeners.add(listener);
+    }
+
+    private void notifyDeploymentChanged(String appName) {
+        for (Consumer<String> listener : deploymentListeners) {
+            listener.accept(appName);
+        }
+    }
+
+    public String deployWebapp(MultipartFile file) {
+        if (file.isEmpty()) {
+            return "部署失败：上传的文件为空。";
+        }
+
+        String fileName = file.getOriginalFilename();
+        if (fileName == null || !fileName.toLowerCase().endsWith(".war")) {
+            return "部署失败：请上传一个 .war 文件。";
+        }
+
+        Path webappsDir = Paths.get(appConfig.getTomcatHomePath(), "webapps");
+        if (!Files.isDirectory(webappsDir)) {
+            broadcastLog("错误: Tomcat webapps 目录不存在: " + webappsDir, "error");
+            return "部署失败：找不到 Tomcat webapps 目录。";
+        }
+
+        try {
+            Path destinationFile = webappsDir.resolve(fileName);
+            file.transferTo(destinationFile.toFile());
+            broadcastLog("[System] 文件 " + fileName + " 已成功上传到 webapps 目录。", "system");
+
+            scheduleStatusUpdate();
+            notifyDeploymentChanged(fileName.substring(0, fileName.length() - 4));
+
+            return "文件 " + fileName + " 部署成功。Tomcat 将会自动解压并加载应用。";
+        } catch (IOException e) {
+            broadcastLog("部署 " + fileName + " 失败: " + e.getMessage(), "error");
+            return "部署失败：" + e.getMessage();
+        }
+    }
+
+    public String undeployWebapp(String appName, String password) {
+        if (appName == null || appName.isEmpty()) {
+            return "卸载失败：应用名称不能为空。";
+        }
+
+        if (!uninstallPassword.equals(password)) {
+            broadcastLog("[System] 尝试卸载 " + appName + " 失败：密码错误。", "error");
+            return "卸载失败：密码错误。";
+        }
+
+        Path webappsDir = Paths.get(appConfig.getTomcatHomePath(), "webapps");
+        Path appDir = webappsDir.resolve(appName);
+        Path warFile = webappsDir.resolve(appName + ".war");
+
+        boolean deletedSomething = false;
+
+        try {
+            if (Files.isDirectory(appDir)) {
+                broadcastLog("[System] 正在删除目录: " + appDir, "system");
+                deleteDirectory(appDir.toFile());
+                deletedSomething = true;
+            }
+            if (Files.exists(warFile)) {
+                broadcastLog("[System] 正在删除文件: " + warFile, "system");
+                Files.delete(warFile);
+                deletedSomething = true;
+            }
+
+            if (deletedSomething) {
+                String successMsg = "应用 " + appName + " 已成功卸载。";
+                broadcastLog("[System] " + successMsg, "system");
+                scheduleStatusUpdate();
+                notifyDeploymentChanged(appName);
+                return successMsg;
+            } else {
+                return "卸载失败：未找到与 " + appName + " 相关的文件或目录。";
+            }
+        } catch (IOException e) {
+            String errorMsg = "卸载 " + appName + " 过程中发生错误: " + e.getMessage();
+            broadcastLog(errorMsg, "error");
+            return errorMsg;
+        }
+    }
+
+    private void deleteDirectory(File directory) {
+        File[] allContents = directory.listFiles();
+        if (allContents != null) {
+            for (File file : allContents) {
+                deleteDirectory(file);
+            }
+        }
+        directory.delete();
+    }
+
+    void broadcastLog(String message, String type) {
+        if (outputCapture != null) {
+            outputCapture.appendManagerMessage(message, "error".equals(type));
+        }
+
+        if (controller != null) {
+            controller.broadcast(type, message);
+        }
+        System.out.println("[" + type.toUpperCase() + "] " + message);
+    }
+
+    /**
+     * 向事件流推送一个自定义事件，data 通常是 JSON。
+     */
+    void broadcastEvent(String event, String data) {
+        if (controller != null) {
+            controller.broadcast(event, data);
+        }
+    }
+
+    private void broadcastStatusUpdate(boolean running) {
+        if (controller != null) {
+            controller.broadcast("status", "{\"running\":" + running + "}");
+        }
+    }
+
+    private void scheduleStatusUpdate() {
+        new Thread(() -> {
+            try {
+                Thread.sleep(5000);
+                broadcastStatusUpdate(isTomcatRunning());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).start();
+    }
+}
@@ -0,0 +1,51 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.LeakCheckResult;
+import com.zhangjian.tomcatmanager.dto.WebappSessionStats;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/webapps")
+public class WebappMonitorController {
+
+    private final LatencyValveService latencyValveService;
+    private final ClassLoaderLeakMonitor classLoaderLeakMonitor;
+    private final JobSchedulerService jobSchedulerService;
+
+    WebappMonitorController(LatencyValveService latencyValveService, ClassLoaderLeakMonitor classLoaderLeakMonitor,
+                            JobSchedulerService jobSchedulerService) {
+        this.latencyValveService = latencyValveService;
+        this.classLoaderLeakMonitor = classLoaderLeakMonitor;
+        this.jobSchedulerService = jobSchedulerService;
+    }
+
+    @GetMapping("/sessions")
+    public ResponseEntity<?> getSessions() {
+        List<WebappSessionStats> sessions = latencyValveService.getSessionStats();
+        if (sessions == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Collections.singletonMap("message", "会话统计需要安装请求耗时 Valve 并重启 Tomcat。"));
+        }
+        return ResponseEntity.ok(sessions);
+    }
+
+    @GetMapping("/leak-check")
+    public Map<String, Object> getLeakChecks() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("pendingRestartReason", jobSchedulerService.getPendingRestartReason());
+        body.put("history", classLoaderLeakMonitor.getHistory());
+        return body;
+    }
+
+    @PostMapping("/leak-check")
+    public LeakCheckResult runLeakCheck() {
+        return classLoaderLeakMonitor.check("manual");
+    }
+}
@@ -0,0 +1,47 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 单个数据库连接配置的连接池参数。默认不保留空闲连接，避免在 Oracle 上长期占用服务器进程。
+ */
+public class ConnectionPoolSettings {
+    private int maxPoolSize = 5;
+    private int minIdle = 0;
+    private int connectionTimeoutSeconds = 10;
+    private int idleTimeoutSeconds = 600;
+    private int maxLifetimeSeconds = 1800;
+    private int validationTimeoutSeconds = 5;
+    /**
+     * 校验连接的 SQL，为空时使用 JDBC4 的 Connection.isValid()。
+     */
+    private String validationQuery;
+    /**
+     * 连接借出超过该时间未归还时在日志中报告疑似泄漏，0 表示关闭（默认）。查询会话的游标和导出会长时间正常占用连接，
+     * 开启时应大于其中最长的占用时间，否则正常使用也会打印泄漏堆栈。
+     */
+    private int leakDetectionSeconds = 0;
+    /**
+     * 并行导出时最多同时读取的连接数（另外保留一个连接给 SQL 控制台），1 表示不并行。
+     */
+    private int maxExportParallelism = 2;
+
+    // Getters and Setters
+    public int getMaxPoolSize() { return maxPoolSize; }
+    public void setMaxPoolSize(int maxPoolSize) { this.maxPoolSize = maxPoolSize; }
+    public int getMinIdle() { return minIdle; }
+    public void setMinIdle(int minIdle) { this.minIdle = minIdle; }
+    public int getConnectionTimeoutSeconds() { return connectionTimeoutSeconds; }
+    public void setConnectionTimeoutSeconds(int connectionTimeoutSeconds) { this.connectionTimeoutSeconds = connectionTimeoutSeconds; }
+    public int getIdleTimeoutSeconds() { return idleTimeoutSeconds; }
+    public void setIdleTimeoutSeconds(int idleTimeoutSeconds) { this.idleTimeoutSeconds = idleTimeoutSeconds; }
+    public int getMaxLifetimeSeconds() { return maxLifetimeSeconds; }
+    public void setMaxLifetimeSeconds(int maxLifetimeSeconds) { this.maxLifetimeSeconds = maxLifetimeSeconds; }
+    public int getValidationTimeoutSeconds() { return validationTimeoutSeconds; }
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) { this.validationTimeoutSeconds = validationTimeoutSeconds; }
+    public String getValidationQuery() { return validationQuery; }
+    public void setValidationQuery(String validationQuery) { this.validationQuery = validationQuery; }
+    public int getLeakDetectionSeconds() { return leakDetectionSeconds; }
+    public void setLeakDetectionSeconds(int leakDetectionSeconds) { this.leakDetectionSeconds = leakDetectionSeconds; }
+    public int getMaxExportParallelism() { return maxExportParallelism; }
+    public void setMaxExportParallelism(int maxExportParallelism) { this.maxExportParallelism = maxExportParallelism; }
+
+}
@@ -0,0 +1,54 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 一个数据库连接池的实时状态以及自创建以来的借用统计。
+ */
+public class ConnectionPoolStats {
+    private String connectionId;
+    private String connectionName;
+    private int active;
+    private int idle;
+    private int total;
+    private int threadsAwaiting;
+    private int maxPoolSize;
+    private long acquireCount;
+    private double avgWaitMs;
+    private double maxWaitMs;
+    private long timeouts;
+    private long connectionsCreated;
+    private double avgCreateMs;
+    private double avgUsageMs;
+    private long createdAt;
+
+    // Getters and Setters
+    public String getConnectionId() { return connectionId; }
+    public void setConnectionId(String connectionId) { this.connectionId = connectionId; }
+    public String getConnectionName() { return connectionName; }
+    public void setConnectionName(String connectionName) { this.connectionName = connectionName; }
+    public int getActive() { return active; }
+    public void setActive(int active) { this.active = active; }
+    public int getIdle() { return idle; }
+    public void setIdle(int idle) { this.idle = idle; }
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+    public int getThreadsAwaiting() { return threadsAwaiting; }
+    public void setThreadsAwaiting(int threadsAwaiting) { this.threadsAwaiting = threadsAwaiting; }
+    public int getMaxPoolSize() { return maxPoolSize; }
+    public void setMaxPoolSize(int maxPoolSize) { this.maxPoolSize = maxPoolSize; }
+    public long getAcquireCount() { return acquireCount; }
+    public void setAcquireCount(long acquireCount) { this.acquireCount = acquireCount; }
+    public double getAvgWaitMs() { return avgWaitMs; }
+    public void setAvgWaitMs(double avgWaitMs) { this.avgWaitMs = avgWaitMs; }
+    public double getMaxWaitMs() { return maxWaitMs; }
+    public void setMaxWaitMs(double maxWaitMs) { this.maxWaitMs = maxWaitMs; }
+    public long getTimeouts() { return timeouts; }
+    public void setTimeouts(long timeouts) { this.timeouts = timeouts; }
+    public long getConnectionsCreated() { return connectionsCreated; }
+    public void setConnectionsCreated(long connectionsCreated) { this.connectionsCreated = connectionsCreated; }
+    public double getAvgCreateMs() { return avgCreateMs; }
+    public void setAvgCreateMs(double avgCreateMs) { this.avgCreateMs = avgCreateMs; }
+    public double getAvgUsageMs() { return avgUsageMs; }
+    public void setAvgUsageMs(double avgUsageMs) { this.avgUsageMs = avgUsageMs; }
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,29 @@
+package com.zhangjian.tomcatmanager.dto;
+
+public class ConnectorAdvice {
+    private int port;
+    private String attribute;
+    private String currentValue;
+    private String suggestedValue;
+    private String reason;
+
+    public ConnectorAdvice(int port, String attribute, String currentValue, String suggestedValue, String reason) {
+        this.port = port;
+        this.attribute = attribute;
+        this.currentValue = currentValue;
+        this.suggestedValue = suggestedValue;
+        this.reason = reason;
+    }
+
+    // Getters and Setters
+    public int getPort() { return port; }
+    public void setPort(int port) { this.port = port; }
+    public String getAttribute() { return attribute; }
+    public void setAttribute(String attribute) { this.attribute = attribute; }
+    public String getCurrentValue() { return currentValue; }
+    public void setCurrentValue(String currentValue) { this.currentValue = currentValue; }
+    public String getSuggestedValue() { return suggestedValue; }
+    public void setSuggestedValue(String suggestedValue) { this.suggestedValue = suggestedValue; }
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+}
@@ -0,0 +1,36 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * server.xml 中一个 &lt;Connector&gt; 的可调参数。值为 null 表示未配置，使用 Tomcat 默认值。
+ */
+public class ConnectorConfig {
+    private Integer port;
+    private String protocol;
+    private String protocolType; // BIO, NIO, NIO2, APR, AJP or DEFAULT
+    private String executor;
+    private Integer maxThreads;
+    private Integer acceptCount;
+    private Integer maxConnections;
+    private Integer connectionTimeout;
+    private String compression;
+
+    // Getters and Setters
+    public Integer getPort() { return port; }
+    public void setPort(Integer port) { this.port = port; }
+    public String getProtocol() { return protocol; }
+    public void setProtocol(String protocol) { this.protocol = protocol; }
+    public String getProtocolType() { return protocolType; }
+    public void setProtocolType(String protocolType) { this.protocolType = protocolType; }
+    public String getExecutor() { return executor; }
+    public void setExecutor(String executor) { this.executor = executor; }
+    public Integer getMaxThreads() { return maxThreads; }
+    public void setMaxThreads(Integer maxThreads) { this.maxThreads = maxThreads; }
+    public Integer getAcceptCount() { return acceptCount; }
+    public void setAcceptCount(Integer acceptCount) { this.acceptCount = acceptCount; }
+    public Integer getMaxConnections() { return maxConnections; }
+    public void setMaxConnections(Integer maxConnections) { this.maxConnections = maxConnections; }
+    public Integer getConnectionTimeout() { return connectionTimeout; }
+    public void setConnectionTimeout(Integer connectionTimeout) { this.connectionTimeout = connectionTimeout; }
+    public String getCompression() { return compression; }
+    public void setCompression(String compression) { this.compression = compression; }
+}
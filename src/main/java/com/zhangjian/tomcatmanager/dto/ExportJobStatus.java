@@ -0,0 +1,65 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 后台导出任务的状态和进度。estimatedRows 为 -1 时无法估算剩余时间，etaSeconds 也为 -1。
+ */
+public class ExportJobStatus {
+    public enum Status { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    private String jobId;
+    private String connectionId;
+    private String format;
+    private boolean parallel;
+    /**
+     * 并行导出的切分方式和并行度，或没有并行的原因。
+     */
+    private String parallelNote;
+    private Status status;
+    private int queuePosition;
+    private long rowsWritten;
+    private long bytesWritten;
+    private long estimatedRows;
+    private long etaSeconds;
+    private long createdAt;
+    private long startedAt;
+    private long finishedAt;
+    private String fileName;
+    private long fileSize;
+    private String error;
+
+    // Getters and Setters
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+    public String getConnectionId() { return connectionId; }
+    public void setConnectionId(String connectionId) { this.connectionId = connectionId; }
+    public String getFormat() { return format; }
+    public void setFormat(String format) { this.format = format; }
+    public boolean isParallel() { return parallel; }
+    public void setParallel(boolean parallel) { this.parallel = parallel; }
+    public String getParallelNote() { return parallelNote; }
+    public void setParallelNote(String parallelNote) { this.parallelNote = parallelNote; }
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    public int getQueuePosition() { return queuePosition; }
+    public void setQueuePosition(int queuePosition) { this.queuePosition = queuePosition; }
+    public long getRowsWritten() { return rowsWritten; }
+    public void setRowsWritten(long rowsWritten) { this.rowsWritten = rowsWritten; }
+    public long getBytesWritten() { return bytesWritten; }
+    public void setBytesWritten(long bytesWritten) { this.bytesWritten = bytesWritten; }
+    public long getEstimatedRows() { return estimatedRows; }
+    public void setEstimatedRows(long estimatedRows) { this.estimatedRows = estimatedRows; }
+    public long getEtaSeconds() { return etaSeconds; }
+    public void setEtaSeconds(long etaSeconds) { this.etaSeconds = etaSeconds; }
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+    public long getStartedAt() { return startedAt; }
+    public void setStartedAt(long startedAt) { this.startedAt = startedAt; }
+    public long getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(long finishedAt) { this.finishedAt = finishedAt; }
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+    public long getFileSize() { return fileSize; }
+    public void setFileSize(long fileSize) { this.fileSize = fileSize; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -0,0 +1,39 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 一次查询选择的 fetch size、估算的行宽以及实际的往返次数和平均往返耗时。
+ */
+public class FetchSizeDecision {
+    private long timestamp;
+    private String connectionId;
+    private String mode;
+    private int columns;
+    private long estimatedRowBytes;
+    private int initialFetchSize;
+    private int fetchSize;
+    private long rows;
+    private long roundTrips;
+    private double avgRoundTripMs;
+
+    // Getters and Setters
+    public long getTimestamp() { return timestamp; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+    public String getConnectionId() { return connectionId; }
+    public void setConnectionId(String connectionId) { this.connectionId = connectionId; }
+    public String getMode() { return mode; }
+    public void setMode(String mode) { this.mode = mode; }
+    public int getColumns() { return columns; }
+    public void setColumns(int columns) { this.columns = columns; }
+    public long getEstimatedRowBytes() { return estimatedRowBytes; }
+    public void setEstimatedRowBytes(long estimatedRowBytes) { this.estimatedRowBytes = estimatedRowBytes; }
+    public int getInitialFetchSize() { return initialFetchSize; }
+    public void setInitialFetchSize(int initialFetchSize) { this.initialFetchSize = initialFetchSize; }
+    public int getFetchSize() { return fetchSize; }
+    public void setFetchSize(int fetchSize) { this.fetchSize = fetchSize; }
+    public long getRows() { return rows; }
+    public void setRows(long rows) { this.rows = rows; }
+    public long getRoundTrips() { return roundTrips; }
+    public void setRoundTrips(long roundTrips) { this.roundTrips = roundTrips; }
+    public double getAvgRoundTripMs() { return avgRoundTripMs; }
+    public void setAvgRoundTripMs(double avgRoundTripMs) { this.avgRoundTripMs = avgRoundTripMs; }
+}
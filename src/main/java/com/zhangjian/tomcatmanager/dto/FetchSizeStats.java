@@ -0,0 +1,41 @@
+package com.zhangjian.tomcatmanager.dto;
+
+import java.util.List;
+
+/**
+ * 查询 fetch size 策略的配置、累计往返次数和往返耗时分位数（微秒，没有样本时为 -1），以及最近的选择记录。
+ */
+public class FetchSizeStats {
+    private long targetBytes;
+    private int minFetchSize;
+    private int maxFetchSize;
+    private long queries;
+    private long rows;
+    private long roundTrips;
+    private long roundTripP50Micros;
+    private long roundTripP90Micros;
+    private long roundTripP99Micros;
+    private List<FetchSizeDecision> recent;
+
+    // Getters and Setters
+    public long getTargetBytes() { return targetBytes; }
+    public void setTargetBytes(long targetBytes) { this.targetBytes = targetBytes; }
+    public int getMinFetchSize() { return minFetchSize; }
+    public void setMinFetchSize(int minFetchSize) { this.minFetchSize = minFetchSize; }
+    public int getMaxFetchSize() { return maxFetchSize; }
+    public void setMaxFetchSize(int maxFetchSize) { this.maxFetchSize = maxFetchSize; }
+    public long getQueries() { return queries; }
+    public void setQueries(long queries) { this.queries = queries; }
+    public long getRows() { return rows; }
+    public void setRows(long rows) { this.rows = rows; }
+    public long getRoundTrips() { return roundTrips; }
+    public void setRoundTrips(long roundTrips) { this.roundTrips = roundTrips; }
+    public long getRoundTripP50Micros() { return roundTripP50Micros; }
+    public void setRoundTripP50Micros(long roundTripP50Micros) { this.roundTripP50Micros = roundTripP50Micros; }
+    public long getRoundTripP90Micros() { return roundTripP90Micros; }
+    public void setRoundTripP90Micros(long roundTripP90Micros) { this.roundTripP90Micros = roundTripP90Micros; }
+    public long getRoundTripP99Micros() { return roundTripP99Micros; }
+    public void setRoundTripP99Micros(long roundTripP99Micros) { this.roundTripP99Micros = roundTripP99Micros; }
+    public List<FetchSizeDecision> getRecent() { return recent; }
+    public void setRecent(List<FetchSizeDecision> recent) { this.recent = recent; }
+}
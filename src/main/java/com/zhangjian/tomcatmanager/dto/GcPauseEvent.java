@@ -0,0 +1,48 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 从 GC 日志中解析出的一次停顿。大小单位为 KB，日志中没有的字段为 null。
+ */
+public class GcPauseEvent {
+    private long timestamp;
+    private Double uptimeSeconds;
+    private Integer gcId;
+    private String kind;
+    private String cause;
+    private double pauseMs;
+    private Long heapBeforeKb;
+    private Long heapAfterKb;
+    private Long heapTotalKb;
+    private Long youngBeforeKb;
+    private Long youngAfterKb;
+    private Long allocatedKb;
+    private Long promotedKb;
+
+    // Getters and Setters
+    public long getTimestamp() { return timestamp; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+    public Double getUptimeSeconds() { return uptimeSeconds; }
+    public void setUptimeSeconds(Double uptimeSeconds) { this.uptimeSeconds = uptimeSeconds; }
+    public Integer getGcId() { return gcId; }
+    public void setGcId(Integer gcId) { this.gcId = gcId; }
+    public String getKind() { return kind; }
+    public void setKind(String kind) { this.kind = kind; }
+    public String getCause() { return cause; }
+    public void setCause(String cause) { this.cause = cause; }
+    public double getPauseMs() { return pauseMs; }
+    public void setPauseMs(double pauseMs) { this.pauseMs = pauseMs; }
+    public Long getHeapBeforeKb() { return heapBeforeKb; }
+    public void setHeapBeforeKb(Long heapBeforeKb) { this.heapBeforeKb = heapBeforeKb; }
+    public Long getHeapAfterKb() { return heapAfterKb; }
+    public void setHeapAfterKb(Long heapAfterKb) { this.heapAfterKb = heapAfterKb; }
+    public Long getHeapTotalKb() { return heapTotalKb; }
+    public void setHeapTotalKb(Long heapTotalKb) { this.heapTotalKb = heapTotalKb; }
+    public Long getYoungBeforeKb() { return youngBeforeKb; }
+    public void setYoungBeforeKb(Long youngBeforeKb) { this.youngBeforeKb = youngBeforeKb; }
+    public Long getYoungAfterKb() { return youngAfterKb; }
+    public void setYoungAfterKb(Long youngAfterKb) { this.youngAfterKb = youngAfterKb; }
+    public Long getAllocatedKb() { return allocatedKb; }
+    public void setAllocatedKb(Long allocatedKb) { this.allocatedKb = allocatedKb; }
+    public Long getPromotedKb() { return promotedKb; }
+    public void setPromotedKb(Long promotedKb) { this.promotedKb = promotedKb; }
+}
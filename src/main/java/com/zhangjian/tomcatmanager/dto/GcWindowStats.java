@@ -0,0 +1,43 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 一个固定时间窗口内的 GC 汇总：停顿次数与时长、分配量和晋升量及对应速率。
+ */
+public class GcWindowStats {
+    private long windowStart;
+    private int pauseCount;
+    private int fullCount;
+    private double totalPauseMs;
+    private double maxPauseMs;
+    private long allocatedKb;
+    private long promotedKb;
+    private double allocationRateKbPerSec;
+    private double promotionRateKbPerSec;
+
+    public GcWindowStats() {
+    }
+
+    public GcWindowStats(long windowStart) {
+        this.windowStart = windowStart;
+    }
+
+    // Getters and Setters
+    public long getWindowStart() { return windowStart; }
+    public void setWindowStart(long windowStart) { this.windowStart = windowStart; }
+    public int getPauseCount() { return pauseCount; }
+    public void setPauseCount(int pauseCount) { this.pauseCount = pauseCount; }
+    public int getFullCount() { return fullCount; }
+    public void setFullCount(int fullCount) { this.fullCount = fullCount; }
+    public double getTotalPauseMs() { return totalPauseMs; }
+    public void setTotalPauseMs(double totalPauseMs) { this.totalPauseMs = totalPauseMs; }
+    public double getMaxPauseMs() { return maxPauseMs; }
+    public void setMaxPauseMs(double maxPauseMs) { this.maxPauseMs = maxPauseMs; }
+    public long getAllocatedKb() { return allocatedKb; }
+    public void setAllocatedKb(long allocatedKb) { this.allocatedKb = allocatedKb; }
+    public long getPromotedKb() { return promotedKb; }
+    public void setPromotedKb(long promotedKb) { this.promotedKb = promotedKb; }
+    public double getAllocationRateKbPerSec() { return allocationRateKbPerSec; }
+    public void setAllocationRateKbPerSec(double allocationRateKbPerSec) { this.allocationRateKbPerSec = allocationRateKbPerSec; }
+    public double getPromotionRateKbPerSec() { return promotionRateKbPerSec; }
+    public void setPromotionRateKbPerSec(double promotionRateKbPerSec) { this.promotionRateKbPerSec = promotionRateKbPerSec; }
+}
@@ -0,0 +1,21 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 一组命名的 JVM 参数，基准测试时通过 CATALINA_OPTS 传给被管 Tomcat。
+ */
+public class JvmOptionSet {
+    private String name;
+    /**
+     * 以空格分隔的 JVM 参数，例如 "-Xms512m -Xmx512m -XX:+UseG1GC -XX:TieredStopAtLevel=1"。
+     */
+    private String options = "";
+    private String description;
+
+    // Getters and Setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public String getOptions() { return options; }
+    public void setOptions(String options) { this.options = options != null ? options : ""; }
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+}
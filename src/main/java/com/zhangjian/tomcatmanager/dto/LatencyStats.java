@@ -0,0 +1,55 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 某个 webapp（按虚拟主机和 context 路径区分，pattern 为空）或其 URL 模式的请求耗时统计。
+ * 累计值从 Tomcat 启动开始计算，window 开头的字段只统计最近的时间窗口。
+ */
+public class LatencyStats {
+    private String host;
+    private String context;
+    private String pattern;
+    private long count;
+    private long errors;
+    private int inFlight;
+    private double meanMs;
+    private long maxMs;
+    private long p50Ms;
+    private long p95Ms;
+    private long p99Ms;
+    private long windowCount;
+    private long windowErrors;
+    private long windowP95Ms;
+    private long windowP99Ms;
+
+    // Getters and Setters
+    public String getHost() { return host; }
+    public void setHost(String host) { this.host = host; }
+    public String getContext() { return context; }
+    public void setContext(String context) { this.context = context; }
+    public String getPattern() { return pattern; }
+    public void setPattern(String pattern) { this.pattern = pattern; }
+    public long getCount() { return count; }
+    public void setCount(long count) { this.count = count; }
+    public long getErrors() { return errors; }
+    public void setErrors(long errors) { this.errors = errors; }
+    public int getInFlight() { return inFlight; }
+    public void setInFlight(int inFlight) { this.inFlight = inFlight; }
+    public double getMeanMs() { return meanMs; }
+    public void setMeanMs(double meanMs) { this.meanMs = meanMs; }
+    public long getMaxMs() { return maxMs; }
+    public void setMaxMs(long maxMs) { this.maxMs = maxMs; }
+    public long getP50Ms() { return p50Ms; }
+    public void setP50Ms(long p50Ms) { this.p50Ms = p50Ms; }
+    public long getP95Ms() { return p95Ms; }
+    public void setP95Ms(long p95Ms) { this.p95Ms = p95Ms; }
+    public long getP99Ms() { return p99Ms; }
+    public void setP99Ms(long p99Ms) { this.p99Ms = p99Ms; }
+    public long getWindowCount() { return windowCount; }
+    public void setWindowCount(long windowCount) { this.windowCount = windowCount; }
+    public long getWindowErrors() { return windowErrors; }
+    public void setWindowErrors(long windowErrors) { this.windowErrors = windowErrors; }
+    public long getWindowP95Ms() { return windowP95Ms; }
+    public void setWindowP95Ms(long windowP95Ms) { this.windowP95Ms = windowP95Ms; }
+    public long getWindowP99Ms() { return windowP99Ms; }
+    public void setWindowP99Ms(long windowP99Ms) { this.windowP99Ms = windowP99Ms; }
+}
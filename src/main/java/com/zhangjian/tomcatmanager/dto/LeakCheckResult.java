@@ -0,0 +1,38 @@
+package com.zhangjian.tomcatmanager.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次类加载器泄漏检查的结果。survivingLoaders 为 Full GC 后仍存活、且超出当前已部署 context 数量的 webapp 类加载器。
+ */
+public class LeakCheckResult {
+    private LocalDateTime checkedAt;
+    private String trigger;
+    private String pid;
+    private int webappClassLoaders;
+    private int expectedContexts;
+    private int survivingLoaders;
+    private Long metaspaceUsedKb;
+    private boolean warning;
+    private String message;
+
+    // Getters and Setters
+    public LocalDateTime getCheckedAt() { return checkedAt; }
+    public void setCheckedAt(LocalDateTime checkedAt) { this.checkedAt = checkedAt; }
+    public String getTrigger() { return trigger; }
+    public void setTrigger(String trigger) { this.trigger = trigger; }
+    public String getPid() { return pid; }
+    public void setPid(String pid) { this.pid = pid; }
+    public int getWebappClassLoaders() { return webappClassLoaders; }
+    public void setWebappClassLoaders(int webappClassLoaders) { this.webappClassLoaders = webappClassLoaders; }
+    public int getExpectedContexts() { return expectedContexts; }
+    public void setExpectedContexts(int expectedContexts) { this.expectedContexts = expectedContexts; }
+    public int getSurvivingLoaders() { return survivingLoaders; }
+    public void setSurvivingLoaders(int survivingLoaders) { this.survivingLoaders = survivingLoaders; }
+    public Long getMetaspaceUsedKb() { return metaspaceUsedKb; }
+    public void setMetaspaceUsedKb(Long metaspaceUsedKb) { this.metaspaceUsedKb = metaspaceUsedKb; }
+    public boolean isWarning() { return warning; }
+    public void setWarning(boolean warning) { this.warning = warning; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
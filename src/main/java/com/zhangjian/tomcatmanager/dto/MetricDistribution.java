@@ -0,0 +1,70 @@
+package com.zhangjian.tomcatmanager.dto;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一组测量值的分布：最小、中位数、p90、最大、均值和标准差。
+ */
+public class MetricDistribution {
+    private int count;
+    private double min;
+    private double p50;
+    private double p90;
+    private double max;
+    private double mean;
+    private double stddev;
+
+    /**
+     * 由测量值计算分布，没有测量值时返回 null。
+     */
+    public static MetricDistribution of(List<? extends Number> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        double[] sorted = new double[values.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = values.get(i).doubleValue();
+        }
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (double v : sorted) {
+            sum += v;
+        }
+        double mean = sum / sorted.length;
+        double squares = 0;
+        for (double v : sorted) {
+            squares += (v - mean) * (v - mean);
+        }
+        MetricDistribution d = new MetricDistribution();
+        d.count = sorted.length;
+        d.min = sorted[0];
+        d.p50 = percentile(sorted, 0.5);
+        d.p90 = percentile(sorted, 0.9);
+        d.max = sorted[sorted.length - 1];
+        d.mean = mean;
+        d.stddev = sorted.length > 1 ? Math.sqrt(squares / (sorted.length - 1)) : 0;
+        return d;
+    }
+
+    private static double percentile(double[] sorted, double quantile) {
+        int idx = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    // Getters and Setters
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+    public double getMin() { return min; }
+    public void setMin(double min) { this.min = min; }
+    public double getP50() { return p50; }
+    public void setP50(double p50) { this.p50 = p50; }
+    public double getP90() { return p90; }
+    public void setP90(double p90) { this.p90 = p90; }
+    public double getMax() { return max; }
+    public void setMax(double max) { this.max = max; }
+    public double getMean() { return mean; }
+    public void setMean(double mean) { this.mean = mean; }
+    public double getStddev() { return stddev; }
+    public void setStddev(double stddev) { this.stddev = stddev; }
+}
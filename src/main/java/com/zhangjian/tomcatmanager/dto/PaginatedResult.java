@@ -7,6 +7,7 @@ public class PaginatedResult<T> {
     private int totalPages;
     private long totalElements;
     private int currentPage;
+    private String nextCursor;
 
     public PaginatedResult(List<T> content, int totalPages, long totalElements, int currentPage) {
         this.content = content;
@@ -24,4 +25,6 @@ public class PaginatedResult<T> {
     public void setTotalElements(long totalElements) { this.totalElements = totalElements; }
     public int getCurrentPage() { return currentPage; }
     public void setCurrentPage(int currentPage) { this.currentPage = currentPage; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
 }
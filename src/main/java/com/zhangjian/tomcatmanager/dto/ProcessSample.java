@@ -0,0 +1,33 @@
+package com.zhangjian.tomcatmanager.dto;
+
+public class ProcessSample {
+    private long timestamp;
+    private float cpuPercent;
+    private long rssKb;
+    private long peakRssKb;
+    private int fdCount;
+    private int threads;
+
+    public ProcessSample(long timestamp, float cpuPercent, long rssKb, long peakRssKb, int fdCount, int threads) {
+        this.timestamp = timestamp;
+        this.cpuPercent = cpuPercent;
+        this.rssKb = rssKb;
+        this.peakRssKb = peakRssKb;
+        this.fdCount = fdCount;
+        this.threads = threads;
+    }
+
+    // Getters and Setters
+    public long getTimestamp() { return timestamp; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+    public float getCpuPercent() { return cpuPercent; }
+    public void setCpuPercent(float cpuPercent) { this.cpuPercent = cpuPercent; }
+    public long getRssKb() { return rssKb; }
+    public void setRssKb(long rssKb) { this.rssKb = rssKb; }
+    public long getPeakRssKb() { return peakRssKb; }
+    public void setPeakRssKb(long peakRssKb) { this.peakRssKb = peakRssKb; }
+    public int getFdCount() { return fdCount; }
+    public void setFdCount(int fdCount) { this.fdCount = fdCount; }
+    public int getThreads() { return threads; }
+    public void setThreads(int threads) { this.threads = threads; }
+}
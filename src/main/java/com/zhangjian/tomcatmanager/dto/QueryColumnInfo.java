@@ -3,12 +3,18 @@ package com.zhangjian.tomcatmanager.dto;
 public class QueryColumnInfo {
     private String name;
     private String comment;
+    private String type;
 
     public QueryColumnInfo(String name, String comment) {
         this.name = name;
         this.comment = comment;
     }
 
+    public QueryColumnInfo(String name, String comment, String type) {
+        this(name, comment);
+        this.type = type;
+    }
+
     // Getters and Setters
     public String getName() {
         return name;
@@ -25,4 +31,12 @@ public class QueryColumnInfo {
     public void setComment(String comment) {
         this.comment = comment;
     }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
 }
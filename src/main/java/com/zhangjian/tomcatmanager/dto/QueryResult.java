@@ -1,15 +1,38 @@
 package com.zhangjian.tomcatmanager.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class QueryResult {
+    /** rows 为对象数组，每行重复列名（默认，兼容旧前端） */
+    public static final String FORMAT_OBJECTS = "objects";
+    /** rows 为值数组，顺序与 columnInfo 一致 */
+    public static final String FORMAT_ARRAYS = "arrays";
+    /** 没有 rows，columns 中每列一个值数组，顺序与 columnInfo 一致 */
+    public static final String FORMAT_COLUMNS = "columns";
+
     private List<QueryColumnInfo> columnInfo;
     private List<Map<String, Object>> rows;
+    // Row values in columnInfo order; the response shape is produced from these only when serializing
+    private List<Object[]> values;
+    private String format;
     private String error;
     private int currentPage;
     private int totalPages;
     private long totalRows;
+    // false while totalRows is an estimate; the exact count is pushed on /api/db/row-counts/{countId}/events
+    private boolean totalRowsExact;
+    private String countId;
+    private boolean fromCache;
+    private String sessionId;
+    private String paginationMode;
+    private String nextCursor;
+    private String paginationNote;
 
     public static QueryResult success(List<QueryColumnInfo> columnInfo, List<Map<String, Object>> rows, int currentPage, int totalPages, long totalRows) {
         QueryResult result = new QueryResult();
@@ -21,6 +44,17 @@ public class QueryResult {
         return result;
     }
 
+    public static QueryResult ofValues(List<QueryColumnInfo> columnInfo, List<Object[]> values, int currentPage, int totalPages, long totalRows) {
+        QueryResult result = success(columnInfo, null, currentPage, totalPages, totalRows);
+        result.values = values;
+        return result;
+    }
+
+    public static String normalizeFormat(String format) {
+        return FORMAT_ARRAYS.equalsIgnoreCase(format) ? FORMAT_ARRAYS
+                : FORMAT_COLUMNS.equalsIgnoreCase(format) ? FORMAT_COLUMNS : FORMAT_OBJECTS;
+    }
+
     public static QueryResult error(String error) {
         QueryResult result = new QueryResult();
         result.error = error;
@@ -30,7 +64,60 @@ public class QueryResult {
     // Getters and Setters
     public List<QueryColumnInfo> getColumnInfo() { return columnInfo; }
     public void setColumnInfo(List<QueryColumnInfo> columnInfo) { this.columnInfo = columnInfo; }
-    public List<Map<String, Object>> getRows() { return rows; }
+    /**
+     * 按 format 输出行：objects 时逐行临时生成 Map（不在内存中同时保留整页的 Map），arrays 时直接输出值数组，columns 时为 null。
+     */
+    public List<?> getRows() {
+        if (values == null) {
+            return rows;
+        }
+        if (FORMAT_ARRAYS.equals(format)) {
+            return values;
+        }
+        if (FORMAT_COLUMNS.equals(format)) {
+            return null;
+        }
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int index) {
+                Object[] row = values.get(index);
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < Math.min(row.length, columnInfo.size()); i++) {
+                    map.put(columnInfo.get(i).getName(), row[i]);
+                }
+                return map;
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+        };
+    }
+
+    /**
+     * columns 格式下每列一个值数组，其他格式为 null。
+     */
+    public List<Object[]> getColumns() {
+        if (values == null || !FORMAT_COLUMNS.equals(format)) {
+            return null;
+        }
+        List<Object[]> columns = new ArrayList<>();
+        for (int c = 0; c < columnInfo.size(); c++) {
+            Object[] column = new Object[values.size()];
+            for (int r = 0; r < column.length; r++) {
+                column[r] = values.get(r)[c];
+            }
+            columns.add(column);
+        }
+        return columns;
+    }
+
+    @JsonIgnore
+    public List<Object[]> getValues() { return values; }
+    public void setValues(List<Object[]> values) { this.values = values; }
+    public String getFormat() { return values != null ? (format != null ? format : FORMAT_OBJECTS) : null; }
+    public void setFormat(String format) { this.format = format; }
     public void setRows(List<Map<String, Object>> rows) { this.rows = rows; }
     public String getError() { return error; }
     public void setError(String error) { this.error = error; }
@@ -40,4 +127,18 @@ public class QueryResult {
     public void setTotalPages(int totalPages) { this.totalPages = totalPages; }
     public long getTotalRows() { return totalRows; }
     public void setTotalRows(long totalRows) { this.totalRows = totalRows; }
+    public boolean isTotalRowsExact() { return totalRowsExact; }
+    public void setTotalRowsExact(boolean totalRowsExact) { this.totalRowsExact = totalRowsExact; }
+    public String getCountId() { return countId; }
+    public void setCountId(String countId) { this.countId = countId; }
+    public boolean isFromCache() { return fromCache; }
+    public void setFromCache(boolean fromCache) { this.fromCache = fromCache; }
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    public String getPaginationMode() { return paginationMode; }
+    public void setPaginationMode(String paginationMode) { this.paginationMode = paginationMode; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+    public String getPaginationNote() { return paginationNote; }
+    public void setPaginationNote(String paginationNote) { this.paginationNote = paginationNote; }
 }
@@ -0,0 +1,39 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 一条查询总行数的统计状态：估算值立即可用，精确 COUNT 在后台完成后 exact 变为 true。
+ */
+public class RowCountStatus {
+    public enum Status { PENDING, DONE, FAILED }
+
+    private String countId;
+    private Status status;
+    private long totalRows;
+    private boolean exact;
+    private String error;
+    private long elapsedMs;
+
+    public RowCountStatus() {
+    }
+
+    public RowCountStatus(String countId, Status status, long totalRows, boolean exact) {
+        this.countId = countId;
+        this.status = status;
+        this.totalRows = totalRows;
+        this.exact = exact;
+    }
+
+    // Getters and Setters
+    public String getCountId() { return countId; }
+    public void setCountId(String countId) { this.countId = countId; }
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    public long getTotalRows() { return totalRows; }
+    public void setTotalRows(long totalRows) { this.totalRows = totalRows; }
+    public boolean isExact() { return exact; }
+    public void setExact(boolean exact) { this.exact = exact; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+}
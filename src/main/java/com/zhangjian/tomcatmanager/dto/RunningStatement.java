@@ -0,0 +1,42 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 正在执行的一条语句。requestId 为前端随请求发送的查询 id 或导出任务 id，同一请求的多条语句（例如并行导出）共用。
+ */
+public class RunningStatement {
+    private String id;
+    private String requestId;
+    private String connectionId;
+    private String kind;
+    private String user;
+    private String sqlFingerprint;
+    private String sql;
+    private long startedAt;
+    private long elapsedMs;
+    private int timeoutSeconds;
+    private boolean cancelRequested;
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getRequestId() { return requestId; }
+    public void setRequestId(String requestId) { this.requestId = requestId; }
+    public String getConnectionId() { return connectionId; }
+    public void setConnectionId(String connectionId) { this.connectionId = connectionId; }
+    public String getKind() { return kind; }
+    public void setKind(String kind) { this.kind = kind; }
+    public String getUser() { return user; }
+    public void setUser(String user) { this.user = user; }
+    public String getSqlFingerprint() { return sqlFingerprint; }
+    public void setSqlFingerprint(String sqlFingerprint) { this.sqlFingerprint = sqlFingerprint; }
+    public String getSql() { return sql; }
+    public void setSql(String sql) { this.sql = sql; }
+    public long getStartedAt() { return startedAt; }
+    public void setStartedAt(long startedAt) { this.startedAt = startedAt; }
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+    public int getTimeoutSeconds() { return timeoutSeconds; }
+    public void setTimeoutSeconds(int timeoutSeconds) { this.timeoutSeconds = timeoutSeconds; }
+    public boolean isCancelRequested() { return cancelRequested; }
+    public void setCancelRequested(boolean cancelRequested) { this.cancelRequested = cancelRequested; }
+}
@@ -0,0 +1,55 @@
+package com.zhangjian.tomcatmanager.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一个可持久化的定时任务，按 cron 表达式触发。
+ */
+public class ScheduledJob {
+
+    public enum JobType { RESTART, WARMUP, DIAGNOSTICS, LOG_ROTATION }
+
+    private String id;
+    private String name;
+    private JobType type;
+    /**
+     * Spring 格式的 6 段 cron 表达式（秒 分 时 日 月 周），也接受省略秒的 5 段标准格式。
+     */
+    private String cron;
+    private boolean enabled = true;
+    /**
+     * 任务类型相关的参数，例如 WARMUP 的 urls、LOG_ROTATION 的 retentionDays。
+     */
+    private Map<String, String> params = new LinkedHashMap<>();
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastRunAt;
+    private String lastResult;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private LocalDateTime nextFireAt;
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public JobType getType() { return type; }
+    public void setType(JobType type) { this.type = type; }
+    public String getCron() { return cron; }
+    public void setCron(String cron) { this.cron = cron; }
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public Map<String, String> getParams() { return params; }
+    public void setParams(Map<String, String> params) { this.params = params != null ? params : new LinkedHashMap<>(); }
+    public LocalDateTime getLastRunAt() { return lastRunAt; }
+    public void setLastRunAt(LocalDateTime lastRunAt) { this.lastRunAt = lastRunAt; }
+    public String getLastResult() { return lastResult; }
+    public void setLastResult(String lastResult) { this.lastResult = lastResult; }
+    public LocalDateTime getNextFireAt() { return nextFireAt; }
+    public void setNextFireAt(LocalDateTime nextFireAt) { this.nextFireAt = nextFireAt; }
+}
@@ -0,0 +1,75 @@
+package com.zhangjian.tomcatmanager.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次 JVM 参数对比基准测试：各参数组的每次启动结果，以及按参数组汇总的分布。
+ */
+public class StartupBenchmarkReport {
+
+    public enum Status { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    private String id;
+    private Status status = Status.RUNNING;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime startedAt;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime finishedAt;
+    private int iterations;
+    private String probeUrl;
+    private String message;
+    private List<JvmOptionSet> sets = new ArrayList<>();
+    private List<StartupBenchmarkRun> runs = new ArrayList<>();
+    private List<SetSummary> summaries = new ArrayList<>();
+
+    /**
+     * 一个参数组的汇总，metrics 的键为 StartupBenchmarkRun 中的字段名（portBoundMs、firstHealthyMs 等）。
+     */
+    public static class SetSummary {
+        private String setName;
+        private int successfulRuns;
+        private int failedRuns;
+        private int convergedRuns;
+        private Map<String, MetricDistribution> metrics = new LinkedHashMap<>();
+
+        // Getters and Setters
+        public String getSetName() { return setName; }
+        public void setSetName(String setName) { this.setName = setName; }
+        public int getSuccessfulRuns() { return successfulRuns; }
+        public void setSuccessfulRuns(int successfulRuns) { this.successfulRuns = successfulRuns; }
+        public int getFailedRuns() { return failedRuns; }
+        public void setFailedRuns(int failedRuns) { this.failedRuns = failedRuns; }
+        public int getConvergedRuns() { return convergedRuns; }
+        public void setConvergedRuns(int convergedRuns) { this.convergedRuns = convergedRuns; }
+        public Map<String, MetricDistribution> getMetrics() { return metrics; }
+        public void setMetrics(Map<String, MetricDistribution> metrics) { this.metrics = metrics; }
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+    public int getIterations() { return iterations; }
+    public void setIterations(int iterations) { this.iterations = iterations; }
+    public String getProbeUrl() { return probeUrl; }
+    public void setProbeUrl(String probeUrl) { this.probeUrl = probeUrl; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    public List<JvmOptionSet> getSets() { return sets; }
+    public void setSets(List<JvmOptionSet> sets) { this.sets = sets; }
+    public List<StartupBenchmarkRun> getRuns() { return runs; }
+    public void setRuns(List<StartupBenchmarkRun> runs) { this.runs = runs; }
+    public List<SetSummary> getSummaries() { return summaries; }
+    public void setSummaries(List<SetSummary> summaries) { this.summaries = summaries; }
+}
@@ -0,0 +1,50 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 基准测试中的一次启动。时间均从启动 Tomcat 的时刻算起，未测到的字段为 null。
+ */
+public class StartupBenchmarkRun {
+    private String setName;
+    private int iteration;
+    private Long portBoundMs;
+    private Long firstHealthyMs;
+    /**
+     * 从首次探测成功到响应时间稳定所用的时间。
+     */
+    private Long warmupMs;
+    private int warmupRequests;
+    private boolean warmupConverged;
+    private Double steadyLatencyMs;
+    private Long rssKb;
+    private String error;
+
+    public StartupBenchmarkRun() {
+    }
+
+    public StartupBenchmarkRun(String setName, int iteration) {
+        this.setName = setName;
+        this.iteration = iteration;
+    }
+
+    // Getters and Setters
+    public String getSetName() { return setName; }
+    public void setSetName(String setName) { this.setName = setName; }
+    public int getIteration() { return iteration; }
+    public void setIteration(int iteration) { this.iteration = iteration; }
+    public Long getPortBoundMs() { return portBoundMs; }
+    public void setPortBoundMs(Long portBoundMs) { this.portBoundMs = portBoundMs; }
+    public Long getFirstHealthyMs() { return firstHealthyMs; }
+    public void setFirstHealthyMs(Long firstHealthyMs) { this.firstHealthyMs = firstHealthyMs; }
+    public Long getWarmupMs() { return warmupMs; }
+    public void setWarmupMs(Long warmupMs) { this.warmupMs = warmupMs; }
+    public int getWarmupRequests() { return warmupRequests; }
+    public void setWarmupRequests(int warmupRequests) { this.warmupRequests = warmupRequests; }
+    public boolean isWarmupConverged() { return warmupConverged; }
+    public void setWarmupConverged(boolean warmupConverged) { this.warmupConverged = warmupConverged; }
+    public Double getSteadyLatencyMs() { return steadyLatencyMs; }
+    public void setSteadyLatencyMs(Double steadyLatencyMs) { this.steadyLatencyMs = steadyLatencyMs; }
+    public Long getRssKb() { return rssKb; }
+    public void setRssKb(Long rssKb) { this.rssKb = rssKb; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
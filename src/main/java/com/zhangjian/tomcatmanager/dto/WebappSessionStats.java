@@ -0,0 +1,39 @@
+package com.zhangjian.tomcatmanager.dto;
+
+/**
+ * 某个 webapp（按虚拟主机和 context 路径区分）的会话统计，来自被管 Tomcat 内 Manager MBean 的采样。无法获取的数值为 -1。
+ */
+public class WebappSessionStats {
+    private String host;
+    private String context;
+    private int activeSessions;
+    private int maxActive;
+    private long sessionCounter;
+    private long expiredSessions;
+    private long rejectedSessions;
+    private long estimatedBytes;
+    private int sampledSessions;
+    private long sampledAt;
+
+    // Getters and Setters
+    public String getHost() { return host; }
+    public void setHost(String host) { this.host = host; }
+    public String getContext() { return context; }
+    public void setContext(String context) { this.context = context; }
+    public int getActiveSessions() { return activeSessions; }
+    public void setActiveSessions(int activeSessions) { this.activeSessions = activeSessions; }
+    public int getMaxActive() { return maxActive; }
+    public void setMaxActive(int maxActive) { this.maxActive = maxActive; }
+    public long getSessionCounter() { return sessionCounter; }
+    public void setSessionCounter(long sessionCounter) { this.sessionCounter = sessionCounter; }
+    public long getExpiredSessions() { return expiredSessions; }
+    public void setExpiredSessions(long expiredSessions) { this.expiredSessions = expiredSessions; }
+    public long getRejectedSessions() { return rejectedSessions; }
+    public void setRejectedSessions(long rejectedSessions) { this.rejectedSessions = rejectedSessions; }
+    public long getEstimatedBytes() { return estimatedBytes; }
+    public void setEstimatedBytes(long estimatedBytes) { this.estimatedBytes = estimatedBytes; }
+    public int getSampledSessions() { return sampledSessions; }
+    public void setSampledSessions(int sampledSessions) { this.sampledSessions = sampledSessions; }
+    public long getSampledAt() { return sampledAt; }
+    public void setSampledAt(long sampledAt) { this.sampledAt = sampledAt; }
+}
@@ -0,0 +1,132 @@
+package com.zhangjian.tomcatmanager.valve;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * 延迟直方图和会话统计共享内存文件的布局，由 Tomcat 内的 {@link LatencyRecordingValve} 写入、管理端只读映射。
+ * 这个类会被打进 Valve JAR 在被管 Tomcat 中加载，因此只能依赖 JDK。
+ *
+ * <pre>
+ * 头部 (64 字节): magic(4) version(4) slotCount(4) bucketCount(4) slotSize(4) 保留(4) startedAt(8)
+ *               sessionOffset(4) sessionCount(4) sessionSampledAt(8) 保留
+ * 槽位 (SLOT_SIZE 字节): nameLength(2) name(126, UTF-8 "host\tcontext\tpattern")
+ *                      count(8) totalMicros(8) maxMicros(8) errors(8) inFlight(4) 保留(4) buckets(8 x N)
+ * 会话 (SESSION_SIZE 字节，位于所有槽位之后): nameLength(2) name(126, UTF-8 "host\tcontext")
+ *                      activeSessions(4) maxActive(4) sessionCounter(8) expired(8) rejected(8)
+ *                      estimatedBytes(8) sampledSessions(4) 保留(4)
+ * </pre>
+ *
+ * pattern 为空字符串的槽位是该主机上整个 context 的汇总。所有数值按大端序存放。
+ */
+public final class LatencyChannel {
+
+    public static final int MAGIC = 0x544D4C56; // "TMLV"
+    public static final int VERSION = 4;
+    public static final int HEADER_SIZE = 64;
+
+    public static final int HEADER_MAGIC = 0;
+    public static final int HEADER_VERSION = 4;
+    public static final int HEADER_SLOT_COUNT = 8;
+    public static final int HEADER_BUCKET_COUNT = 12;
+    public static final int HEADER_SLOT_SIZE = 16;
+    public static final int HEADER_STARTED_AT = 24;
+    public static final int HEADER_SESSION_OFFSET = 32;
+    public static final int HEADER_SESSION_COUNT = 36;
+    public static final int HEADER_SESSION_SAMPLED_AT = 40;
+
+    /** 各桶的上界（毫秒，含），最后一个桶收容所有更慢的请求 */
+    public static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, Long.MAX_VALUE};
+
+    public static final int NAME_BYTES = 126;
+    public static final int SLOT_NAME_LENGTH = 0;
+    public static final int SLOT_NAME = 2;
+    public static final int SLOT_COUNT = 128;
+    public static final int SLOT_TOTAL_MICROS = 136;
+    public static final int SLOT_MAX_MICROS = 144;
+    public static final int SLOT_ERRORS = 152;
+    public static final int SLOT_IN_FLIGHT = 160;
+    public static final int SLOT_BUCKETS = 168;
+    public static final int SLOT_SIZE = SLOT_BUCKETS + BUCKET_BOUNDS_MS.length * 8;
+
+    public static final int SESSION_ACTIVE = 128;
+    public static final int SESSION_MAX_ACTIVE = 132;
+    public static final int SESSION_COUNTER = 136;
+    public static final int SESSION_EXPIRED = 144;
+    public static final int SESSION_REJECTED = 152;
+    public static final int SESSION_ESTIMATED_BYTES = 160;
+    public static final int SESSION_SAMPLED = 168;
+    public static final int SESSION_SIZE = 176;
+    public static final int SESSION_ENTRIES = 64;
+
+    public static final char NAME_SEPARATOR = '\t';
+    public static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+
+    private LatencyChannel() {
+    }
+
+    public static long fileSize(int slotCount) {
+        return HEADER_SIZE + (long) slotCount * SLOT_SIZE + (long) SESSION_ENTRIES * SESSION_SIZE;
+    }
+
+    public static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    public static int sessionOffset(int slotCount, int entry) {
+        return HEADER_SIZE + slotCount * SLOT_SIZE + entry * SESSION_SIZE;
+    }
+
+    public static int bucketIndex(long micros) {
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length - 1; i++) {
+            if (micros <= BUCKET_BOUNDS_MS[i] * 1000) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MS.length - 1;
+    }
+
+    /**
+     * 头部是否属于当前版本的布局。
+     */
+    public static boolean isValidHeader(ByteBuffer buffer) {
+        return buffer.capacity() >= HEADER_SIZE
+                && buffer.getInt(HEADER_MAGIC) == MAGIC
+                && buffer.getInt(HEADER_VERSION) == VERSION
+                && buffer.getInt(HEADER_BUCKET_COUNT) == BUCKET_BOUNDS_MS.length
+                && buffer.getInt(HEADER_SLOT_SIZE) == SLOT_SIZE
+                && buffer.capacity() >= fileSize(buffer.getInt(HEADER_SLOT_COUNT));
+    }
+
+    /**
+     * 读取槽位名称，未被占用的槽位返回 null。
+     */
+    public static String readName(ByteBuffer buffer, int slot) {
+        return readNameAt(buffer, slotOffset(slot));
+    }
+
+    /**
+     * 读取 offset 处（槽位或会话条目开头）的名称，长度为 0 时返回 null。
+     */
+    public static String readNameAt(ByteBuffer buffer, int offset) {
+        int length = buffer.getShort(offset + SLOT_NAME_LENGTH);
+        if (length <= 0 || length > NAME_BYTES) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + SLOT_NAME + i);
+        }
+        return new String(bytes, NAME_CHARSET);
+    }
+
+    /**
+     * 在 offset 处写入名称，长度最后写入，读者不会看到写了一半的名称。
+     */
+    public static void writeNameAt(ByteBuffer buffer, int offset, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            buffer.put(offset + SLOT_NAME + i, name[i]);
+        }
+        buffer.putShort(offset + SLOT_NAME_LENGTH, (short) name.length);
+    }
+}
@@ -0,0 +1,397 @@
+package com.zhangjian.tomcatmanager.valve;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 安装在被管 Tomcat 的 Engine 上，按虚拟主机、context 和 URL 模式记录请求耗时直方图，写入内存映射文件供管理端直接读取。
+ * 同时启动 {@link SessionSampler} 定时写入各 webapp 的会话统计。
+ *
+ * <p>只使用 Tomcat 6 到 9 都存在的 API：无参构造、惰性初始化（Tomcat 6 没有 startInternal），
+ * 通过覆盖 isAsyncSupported 支持异步请求。异步请求在 AsyncListener 收到完成事件时才记录耗时并减少进行中计数；
+ * Servlet 3.0 之前的容器（Tomcat 6）没有异步 API，按同步请求处理。Tomcat 7 起停止时调用 stopInternal 结束会话采样线程。
+ * 编译目标为 Java 8，被管 Tomcat 需运行在 Java 8 及以上；Tomcat 10 改用 jakarta.servlet，不能加载本 Valve。</p>
+ *
+ * <pre>
+ * &lt;Valve className="com.zhangjian.tomcatmanager.valve.LatencyRecordingValve" file="..." slots="512" patternDepth="1"
+ *        sessionSampleSeconds="30"/&gt;
+ * </pre>
+ */
+public class LatencyRecordingValve extends ValveBase {
+
+    private static final boolean ASYNC_API = hasAsyncApi();
+    // Request note marking a request whose completion is recorded by an AsyncListener
+    private static final String ASYNC_NOTE = LatencyRecordingValve.class.getName() + ".async";
+
+    private String file;
+    private int slots = 512;
+    private int patternDepth = 1;
+    private int sessionSampleSeconds = 30;
+
+    private volatile MappedByteBuffer buffer;
+    private volatile boolean disabled = false;
+    private volatile boolean full = false;
+    private final ConcurrentHashMap<String, Integer> slotIndex = new ConcurrentHashMap<String, Integer>();
+    private Object[] locks;
+    private Thread sampler;
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public void setSlots(int slots) {
+        this.slots = slots;
+    }
+
+    public int getPatternDepth() {
+        return patternDepth;
+    }
+
+    public void setPatternDepth(int patternDepth) {
+        this.patternDepth = patternDepth;
+    }
+
+    public int getSessionSampleSeconds() {
+        return sessionSampleSeconds;
+    }
+
+    public void setSessionSampleSeconds(int sessionSampleSeconds) {
+        this.sessionSampleSeconds = sessionSampleSeconds;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return true;
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        MappedByteBuffer buf = ensureOpen();
+        if (buf == null) {
+            getNext().invoke(request, response);
+            return;
+        }
+        if (request.getNote(ASYNC_NOTE) != null) {
+            // AsyncContext.dispatch() runs the pipeline again; the listener records the whole request
+            getNext().invoke(request, response);
+            return;
+        }
+        String context = request.getContextPath();
+        if (context == null || context.isEmpty()) {
+            context = "/";
+        }
+        // Different hosts may deploy the same context path
+        String host = request.getHost() != null ? request.getHost().getName() : "localhost";
+        int contextSlot = slotFor(buf, host, context, "");
+        int patternSlot = slotFor(buf, host, context, patternOf(request.getRequestURI(), request.getContextPath()));
+
+        adjustInFlight(buf, contextSlot, 1);
+        adjustInFlight(buf, patternSlot, 1);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            getNext().invoke(request, response);
+            failed = false;
+        } finally {
+            if (failed || !completeLater(request, buf, contextSlot, patternSlot, start)) {
+                complete(buf, contextSlot, patternSlot, start, failed || response.getStatus() >= 500);
+            }
+        }
+    }
+
+    /**
+     * 请求进入异步模式时注册监听器，在异步处理结束时再记录；返回 false 表示请求已经结束，应立即记录。
+     */
+    private boolean completeLater(Request request, MappedByteBuffer buf, int contextSlot, int patternSlot, long start) {
+        if (!ASYNC_API || !request.isAsync()) {
+            return false;
+        }
+        try {
+            request.getAsyncContext().addListener(new AsyncCompletion(buf, contextSlot, patternSlot, start));
+            request.setNote(ASYNC_NOTE, Boolean.TRUE);
+            return true;
+        } catch (IllegalStateException e) {
+            // The async cycle already completed during this dispatch
+            return false;
+        }
+    }
+
+    private void complete(MappedByteBuffer buf, int contextSlot, int patternSlot, long start, boolean error) {
+        long micros = (System.nanoTime() - start) / 1000;
+        adjustInFlight(buf, contextSlot, -1);
+        adjustInFlight(buf, patternSlot, -1);
+        record(buf, contextSlot, micros, error);
+        record(buf, patternSlot, micros, error);
+    }
+
+    /**
+     * 异步请求结束（完成、超时或出错）时记录耗时。onComplete 总在最后调用一次。
+     */
+    private final class AsyncCompletion implements AsyncListener {
+        private final MappedByteBuffer buf;
+        private final int contextSlot;
+        private final int patternSlot;
+        private final long start;
+        private volatile boolean error;
+
+        AsyncCompletion(MappedByteBuffer buf, int contextSlot, int patternSlot, long start) {
+            this.buf = buf;
+            this.contextSlot = contextSlot;
+            this.patternSlot = patternSlot;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            ServletResponse response = event.getSuppliedResponse();
+            boolean serverError = response instanceof HttpServletResponse && ((HttpServletResponse) response).getStatus() >= 500;
+            complete(buf, contextSlot, patternSlot, start, error || serverError);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            error = true;
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            error = true;
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // AsyncContext.startAsync() again drops the listeners; keep this one registered
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private static boolean hasAsyncApi() {
+        try {
+            Class.forName("javax.servlet.AsyncListener", false, LatencyRecordingValve.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tomcat 7 起在 Valve 停止时调用（Tomcat 6 不会调用），结束会话采样线程。
+     */
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        Thread running = sampler;
+        if (running != null) {
+            running.interrupt();
+            sampler = null;
+        }
+        super.stopInternal();
+    }
+
+    /**
+     * 把 URI 归并为低基数的模式：静态资源按扩展名，其余保留前 patternDepth 段，纯数字段替换为 {id}。
+     */
+    String patternOf(String uri, String contextPath) {
+        if (uri == null) {
+            return "/";
+        }
+        String path = contextPath != null && uri.startsWith(contextPath) ? uri.substring(contextPath.length()) : uri;
+        int semicolon = path.indexOf(';');
+        if (semicolon >= 0) {
+            path = path.substring(0, semicolon);
+        }
+        if (path.isEmpty() || "/".equals(path)) {
+            return "/";
+        }
+        int lastSlash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        if (dot > lastSlash && dot < path.length() - 1) {
+            return "*" + path.substring(dot);
+        }
+        StringBuilder pattern = new StringBuilder();
+        int segments = 0;
+        int pos = path.startsWith("/") ? 1 : 0;
+        while (pos < path.length()) {
+            int next = path.indexOf('/', pos);
+            if (next < 0) {
+                next = path.length();
+            }
+            if (segments == patternDepth) {
+                pattern.append("/*");
+                break;
+            }
+            String segment = path.substring(pos, next);
+            pattern.append('/').append(isNumeric(segment) ? "{id}" : segment);
+            segments++;
+            pos = next + 1;
+        }
+        return pattern.length() == 0 ? "/" : pattern.toString();
+    }
+
+    private static boolean isNumeric(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MappedByteBuffer ensureOpen() {
+        MappedByteBuffer buf = buffer;
+        if (buf != null || disabled) {
+            return buf;
+        }
+        synchronized (this) {
+            if (buffer == null && !disabled) {
+                try {
+                    buffer = open();
+                } catch (Exception e) {
+                    disabled = true;
+                    System.err.println("LatencyRecordingValve: 无法打开共享内存文件 " + file + ": " + e);
+                }
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * 每次 Tomcat 启动都清空数据并写入新的启动时间。文件长度只在不一致时调整，
+     * 避免在管理端仍映射着文件时改变其大小（Windows 下不允许）。
+     */
+    private MappedByteBuffer open() throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IOException("未配置 file 属性");
+        }
+        File target = new File(file);
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        long size = LatencyChannel.fileSize(slots);
+        RandomAccessFile raf = new RandomAccessFile(target, "rw");
+        try {
+            if (raf.length() != size) {
+                raf.setLength(size);
+            }
+            MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buf.putInt(LatencyChannel.HEADER_MAGIC, 0);
+            for (int pos = 8; pos + 8 <= size; pos += 8) {
+                buf.putLong(pos, 0L);
+            }
+            buf.putInt(LatencyChannel.HEADER_VERSION, LatencyChannel.VERSION);
+            buf.putInt(LatencyChannel.HEADER_SLOT_COUNT, slots);
+            buf.putInt(LatencyChannel.HEADER_BUCKET_COUNT, LatencyChannel.BUCKET_BOUNDS_MS.length);
+            buf.putInt(LatencyChannel.HEADER_SLOT_SIZE, LatencyChannel.SLOT_SIZE);
+            buf.putLong(LatencyChannel.HEADER_STARTED_AT, System.currentTimeMillis());
+            buf.putInt(LatencyChannel.HEADER_MAGIC, LatencyChannel.MAGIC);
+            Object[] slotLocks = new Object[slots];
+            for (int i = 0; i < slots; i++) {
+                slotLocks[i] = new Object();
+            }
+            locks = slotLocks;
+            if (sessionSampleSeconds > 0) {
+                sampler = new Thread(new SessionSampler(buf, slots, getContainer(), sessionSampleSeconds * 1000L),
+                        "tomcat-manager-session-sampler");
+                sampler.setDaemon(true);
+                sampler.start();
+            }
+            return buf;
+        } finally {
+            // The mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * 查找或占用名称对应的槽位；槽位用尽后新的名称不再记录，返回 -1。
+     */
+    private int slotFor(MappedByteBuffer buf, String host, String context, String pattern) {
+        String name = host + LatencyChannel.NAME_SEPARATOR + context + LatencyChannel.NAME_SEPARATOR + pattern;
+        Integer cached = slotIndex.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        if (full) {
+            return -1;
+        }
+        synchronized (this) {
+            cached = slotIndex.get(name);
+            if (cached != null) {
+                return cached;
+            }
+            byte[] bytes = name.getBytes(LatencyChannel.NAME_CHARSET);
+            if (bytes.length > LatencyChannel.NAME_BYTES) {
+                return -1;
+            }
+            int start = (name.hashCode() & 0x7fffffff) % slots;
+            for (int i = 0; i < slots; i++) {
+                int slot = (start + i) % slots;
+                int offset = LatencyChannel.slotOffset(slot);
+                if (buf.getShort(offset + LatencyChannel.SLOT_NAME_LENGTH) == 0) {
+                    LatencyChannel.writeNameAt(buf, offset, bytes);
+                    slotIndex.put(name, slot);
+                    return slot;
+                }
+            }
+            full = true;
+            return -1;
+        }
+    }
+
+    private void adjustInFlight(MappedByteBuffer buf, int slot, int delta) {
+        if (slot < 0) {
+            return;
+        }
+        int offset = LatencyChannel.slotOffset(slot) + LatencyChannel.SLOT_IN_FLIGHT;
+        synchronized (locks[slot]) {
+            buf.putInt(offset, buf.getInt(offset) + delta);
+        }
+    }
+
+    /**
+     * 读者不加锁，监控用途可以容忍计数之间偶发的不一致。
+     */
+    private void record(MappedByteBuffer buf, int slot, long micros, boolean error) {
+        if (slot < 0) {
+            return;
+        }
+        int offset = LatencyChannel.slotOffset(slot);
+        int bucket = offset + LatencyChannel.SLOT_BUCKETS + LatencyChannel.bucketIndex(micros) * 8;
+        synchronized (locks[slot]) {
+            buf.putLong(offset + LatencyChannel.SLOT_COUNT, buf.getLong(offset + LatencyChannel.SLOT_COUNT) + 1);
+            buf.putLong(offset + LatencyChannel.SLOT_TOTAL_MICROS, buf.getLong(offset + LatencyChannel.SLOT_TOTAL_MICROS) + micros);
+            if (micros > buf.getLong(offset + LatencyChannel.SLOT_MAX_MICROS)) {
+                buf.putLong(offset + LatencyChannel.SLOT_MAX_MICROS, micros);
+            }
+            if (error) {
+                buf.putLong(offset + LatencyChannel.SLOT_ERRORS, buf.getLong(offset + LatencyChannel.SLOT_ERRORS) + 1);
+            }
+            buf.putLong(bucket, buf.getLong(bucket) + 1);
+        }
+    }
+}
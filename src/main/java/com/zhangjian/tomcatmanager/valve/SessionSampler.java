@@ -0,0 +1,182 @@
+package com.zhangjian.tomcatmanager.valve;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.Context;
+import org.apache.catalina.Manager;
+import org.apache.catalina.Session;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 在被管 Tomcat 内定时读取各 webapp 的 Manager MBean（活动会话数、累计创建数、过期数等），
+ * 抽样序列化少量会话估算会话占用的内存，写入共享内存文件的会话区。
+ *
+ * <p>计数通过 MBean 属性读取而不直接调用 Manager 的 getter，因为这些 getter 的返回类型在 Tomcat 6 和 7+ 之间
+ * 由 int 改为了 long，直接调用会在旧版本上出现 NoSuchMethodError。</p>
+ */
+final class SessionSampler implements Runnable {
+
+    private static final int MAX_SAMPLED_SESSIONS = 10;
+
+    private final ByteBuffer buffer;
+    private final int slotCount;
+    private final Container engine;
+    private final long intervalMillis;
+
+    SessionSampler(ByteBuffer buffer, int slotCount, Container container, long intervalMillis) {
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        Container root = container;
+        while (root != null && root.getParent() != null) {
+            root = root.getParent();
+        }
+        this.engine = root;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                sample();
+            } catch (Throwable t) {
+                // Webapps may be redeploying; try again on the next round
+            }
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    void sample() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Map<String, ObjectName> managers = new TreeMap<String, ObjectName>();
+        for (ObjectName name : server.queryNames(new ObjectName("*:type=Manager,*"), null)) {
+            // Tomcat 7+ uses the "context" key, Tomcat 6 uses "path"
+            String context = name.getKeyProperty("context") != null ? name.getKeyProperty("context") : name.getKeyProperty("path");
+            if (context == null) {
+                continue;
+            }
+            // Different hosts may deploy the same context path
+            String host = name.getKeyProperty("host") != null ? name.getKeyProperty("host") : "localhost";
+            managers.put(host + LatencyChannel.NAME_SEPARATOR + (context.isEmpty() ? "/" : context), name);
+        }
+
+        int entry = 0;
+        for (Map.Entry<String, ObjectName> manager : managers.entrySet()) {
+            if (entry >= LatencyChannel.SESSION_ENTRIES) {
+                break;
+            }
+            byte[] nameBytes = manager.getKey().getBytes(LatencyChannel.NAME_CHARSET);
+            if (nameBytes.length > LatencyChannel.NAME_BYTES) {
+                continue;
+            }
+            ObjectName name = manager.getValue();
+            int offset = LatencyChannel.sessionOffset(slotCount, entry);
+            long active = number(server, name, "activeSessions");
+            buffer.putInt(offset + LatencyChannel.SESSION_ACTIVE, (int) active);
+            buffer.putInt(offset + LatencyChannel.SESSION_MAX_ACTIVE, (int) number(server, name, "maxActive"));
+            buffer.putLong(offset + LatencyChannel.SESSION_COUNTER, number(server, name, "sessionCounter"));
+            buffer.putLong(offset + LatencyChannel.SESSION_EXPIRED, number(server, name, "expiredSessions"));
+            buffer.putLong(offset + LatencyChannel.SESSION_REJECTED, number(server, name, "rejectedSessions"));
+            String key = manager.getKey();
+            int separator = key.indexOf(LatencyChannel.NAME_SEPARATOR);
+            long[] estimate = estimateSessionBytes(key.substring(0, separator), key.substring(separator + 1), active);
+            buffer.putLong(offset + LatencyChannel.SESSION_ESTIMATED_BYTES, estimate[0]);
+            buffer.putInt(offset + LatencyChannel.SESSION_SAMPLED, (int) estimate[1]);
+            LatencyChannel.writeNameAt(buffer, offset, nameBytes);
+            entry++;
+        }
+        for (int i = entry; i < LatencyChannel.SESSION_ENTRIES; i++) {
+            buffer.putShort(LatencyChannel.sessionOffset(slotCount, i) + LatencyChannel.SLOT_NAME_LENGTH, (short) 0);
+        }
+        buffer.putInt(LatencyChannel.HEADER_SESSION_COUNT, entry);
+        buffer.putLong(LatencyChannel.HEADER_SESSION_SAMPLED_AT, System.currentTimeMillis());
+    }
+
+    private static long number(MBeanServer server, ObjectName name, String attribute) {
+        try {
+            Object value = server.getAttribute(name, attribute);
+            return value instanceof Number ? ((Number) value).longValue() : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 序列化最多 MAX_SAMPLED_SESSIONS 个会话的属性，按平均大小乘以活动会话数估算总量。
+     *
+     * @return {估算字节数, 抽样会话数}
+     */
+    private long[] estimateSessionBytes(String hostName, String contextPath, long active) {
+        if (engine == null || active <= 0) {
+            return new long[]{0, 0};
+        }
+        Container host = engine.findChild(hostName);
+        if (host == null) {
+            return new long[]{-1, 0};
+        }
+        Container context = host.findChild("/".equals(contextPath) ? "" : contextPath);
+        if (!(context instanceof Context)) {
+            return new long[]{-1, 0};
+        }
+        Manager manager = ((Context) context).getManager();
+        if (manager == null) {
+            return new long[]{-1, 0};
+        }
+        Session[] sessions = manager.findSessions();
+        long total = 0;
+        int sampled = 0;
+        for (int i = 0; i < sessions.length && sampled < MAX_SAMPLED_SESSIONS; i++) {
+            try {
+                total += sizeOf(sessions[i].getSession());
+                sampled++;
+            } catch (IllegalStateException e) {
+                // Invalidated while sampling
+            }
+        }
+        return sampled == 0 ? new long[]{0, 0} : new long[]{total / sampled * active, sampled};
+    }
+
+    private static long sizeOf(HttpSession session) {
+        CountingOutputStream counter = new CountingOutputStream();
+        Enumeration<?> names = session.getAttributeNames();
+        while (names.hasMoreElements()) {
+            String name = String.valueOf(names.nextElement());
+            counter.count += name.length() * 2L;
+            try {
+                ObjectOutputStream out = new ObjectOutputStream(counter);
+                out.writeObject(session.getAttribute(name));
+                out.close();
+            } catch (IOException e) {
+                // Not serializable; only the attribute name is counted
+            }
+        }
+        return counter.count;
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -100,8 +100,13 @@ async function handleSave() {
         ui.showAlert("请填写所有必填字段。");
         return;
     }
+    const id = D('connectionId').value || null;
+    // 编辑时保留表单之外的配置（连接池、同步开关等）
+    const existing = id ? connectionsCache.find(c => c.id === id) : null;
     const connection = {
-        id: D('connectionId').value || null,
+        syncEnabled: true, // 新建连接默认开启同步
+        ...existing,
+        id,
         name: D('connectionName').value,
         type: D('dbType').value,
         host: D('dbHost').value,
@@ -109,7 +114,10 @@ async function handleSave() {
         databaseName: D('dbName').value,
         username: D('dbUsername').value,
         password: D('dbPassword').value,
-        syncEnabled: true // 新建连接默认开启同步
+        pageCacheEnabled: D('dbPageCacheEnabled').checked,
+        pageCacheBypass: D('dbPageCacheBypass').value.trim() || null,
+        queryTimeoutSeconds: D('dbQueryTimeout').value === '' ? null : Number(D('dbQueryTimeout').value),
+        exportTimeoutSeconds: D('dbExportTimeout').value === '' ? null : Number(D('dbExportTimeout').value)
     };
     try {
         await api.saveConnection(connection);
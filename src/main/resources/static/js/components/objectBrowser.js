@@ -4,6 +4,8 @@ const objectBrowser = {
     container: null,
     connId: null,
     callbacks: null,
+    // 键集分页游标：pageCursors[n] 用于读取第 n 页，翻页时不再用 OFFSET 跳过前面的对象
+    pageCursors: {},
 
     init(containerElement, connId, callbacks) {
         this.container = containerElement;
@@ -72,8 +74,10 @@ const objectBrowser = {
     },
 
     async loadPaginatedObjects(type, displayName, page, filter) {
+        if (page === 0) this.pageCursors = {};
         try {
-            const result = await api.getObjects(this.connId, type, page, filter);
+            const result = await api.getObjects(this.connId, type, page, filter, this.pageCursors[page]);
+            if (result.nextCursor) this.pageCursors[page + 1] = result.nextCursor;
             this.renderObjectCards(type, displayName, result);
             this.renderPagination(type, displayName, result);
         } catch (e) {
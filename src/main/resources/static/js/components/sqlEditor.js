@@ -6,6 +6,17 @@ const sqlEditor = {
     sqlTable: null,
     currentSql: '',
     currentConnectionId: null,
+    // 服务端查询会话：首次执行后翻页直接从会话读取，不再重新执行 SQL
+    querySessionId: null,
+    // 键集分页（可选）：pageCursors[n] 为读取第 n 页的游标，由上一页的结果给出
+    keysetPaging: false,
+    pageCursors: {},
+    refreshPending: false,
+    // 总行数先返回估算值，精确计数在服务端后台完成后通过 SSE 推送
+    rowCountSource: null,
+    // 正在执行的查询 id（X-Query-Id），用于“取消”按钮和关闭页面时取消服务端语句
+    runningQueryIds: new Set(),
+    unloadListener: null,
     elements: {},
     layoutsCache: [],
 
@@ -14,10 +25,17 @@ const sqlEditor = {
         this.currentConnectionId = connId;
         this.render();
         this.loadLayoutsForCurrentSql();
+        if (!this.unloadListener) {
+            // 服务端察觉不到浏览器断开，关闭或刷新页面时主动取消仍在执行的查询
+            this.unloadListener = () => this.runningQueryIds.forEach(id => api.cancelStatementOnUnload(id));
+            window.addEventListener('pagehide', this.unloadListener);
+        }
     },
 
     // 【修复点 1】: 添加 destroy 方法，用于在切换连接时彻底清理
     destroy() {
+        this.cancelRunningQueries();
+        this.resetQuerySession();
         if (this.sqlTable) {
             this.sqlTable.destroy();
             this.sqlTable = null;
@@ -28,21 +46,132 @@ const sqlEditor = {
         }
     },
 
+    // 关闭当前的服务端查询会话（SQL 变化或重新执行时），释放其占用的数据库游标
+    resetQuerySession() {
+        this.pageCursors = {};
+        this.closeRowCountSource();
+        if (this.querySessionId) {
+            api.closeQuerySession(this.querySessionId).catch(() => {});
+            this.querySessionId = null;
+        }
+    },
+
+    // page 从 1 开始
+    queryOptions(page) {
+        return {
+            queryId: this.newQueryId(),
+            sessionId: this.querySessionId,
+            keyset: this.keysetPaging,
+            cursor: this.keysetPaging ? this.pageCursors[page] : null,
+            refresh: this.consumeRefresh(),
+            // 行以值数组返回，列名不在每一行里重复
+            format: 'arrays',
+        };
+    },
+
+    newQueryId() {
+        return window.crypto && crypto.randomUUID ? crypto.randomUUID()
+            : `q-${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+    },
+
+    // 执行一次查询请求，执行期间显示“取消”按钮
+    async runQuery(page, size, options) {
+        this.runningQueryIds.add(options.queryId);
+        this.elements.cancelSqlBtn.style.display = '';
+        try {
+            return await api.executeQuery(this.currentConnectionId, this.currentSql, page - 1, size, options);
+        } finally {
+            this.runningQueryIds.delete(options.queryId);
+            if (this.runningQueryIds.size === 0 && this.elements.cancelSqlBtn) {
+                this.elements.cancelSqlBtn.style.display = 'none';
+            }
+        }
+    },
+
+    cancelRunningQueries() {
+        this.runningQueryIds.forEach(id => {
+            // 语句可能刚好执行完，找不到时忽略
+            api.cancelStatement(id).catch(() => {});
+        });
+    },
+
+    // 把 arrays 格式的行按 columnInfo 转成 Tabulator 使用的行对象
+    rowObjects(result) {
+        if (result.format !== 'arrays' || !result.rows) return result.rows || [];
+        const names = (result.columnInfo || []).map(col => col.name);
+        return result.rows.map(values => {
+            const row = {};
+            for (let i = 0; i < names.length; i++) row[names[i]] = values[i];
+            return row;
+        });
+    },
+
+    // “刷新”只作用于紧接着的一次请求：服务端丢弃这条 SQL 的缓存页后重新执行
+    consumeRefresh() {
+        const refresh = this.refreshPending;
+        this.refreshPending = false;
+        return refresh;
+    },
+
+    rememberPageCursor(page, result) {
+        if (result.sessionId) this.querySessionId = result.sessionId;
+        if (result.nextCursor) this.pageCursors[page + 1] = result.nextCursor;
+    },
+
+    describeTotal(totalRows, exact) {
+        return exact ? `总计 ${totalRows} 行` : `约 ${totalRows} 行 (精确计数中...)`;
+    },
+
+    // 总行数为估算值时订阅精确计数，收到后更新行数和最大页数
+    watchRowCount(result) {
+        if (result.totalRowsExact || !result.countId) {
+            this.closeRowCountSource();
+            return;
+        }
+        if (this.rowCountSource && this.rowCountSource.countId === result.countId) return;
+        this.closeRowCountSource();
+        const source = new EventSource(`/api/db/row-counts/${result.countId}/events`);
+        source.countId = result.countId;
+        source.addEventListener('count', (event) => {
+            const status = JSON.parse(event.data);
+            this.closeRowCountSource();
+            if (status.status !== 'DONE' || !this.sqlTable) return;
+            const totalPages = Math.max(1, Math.ceil(status.totalRows / 100));
+            this.sqlTable.setMaxPage(totalPages);
+            this.elements.queryInfoEl.textContent = `${this.describeTotal(status.totalRows, true)} (第 ${this.sqlTable.getPage()} 页 / ${totalPages} 页)`;
+        });
+        // 服务端推送后即结束连接，不让 EventSource 自动重连
+        source.onerror = () => this.closeRowCountSource();
+        this.rowCountSource = source;
+    },
+
+    closeRowCountSource() {
+        if (this.rowCountSource) {
+            this.rowCountSource.close();
+            this.rowCountSource = null;
+        }
+    },
+
     render() {
         this.container.innerHTML = this.getHtmlTemplate();
         this.elements = {
             sqlEditorEl: this.container.querySelector('#sqlEditor'),
             toggleEditorBtn: this.container.querySelector('#toggleEditorBtn'),
             executeSqlBtn: this.container.querySelector('#executeSqlBtn'),
+            cancelSqlBtn: this.container.querySelector('#cancelSqlBtn'),
+            refreshSqlBtn: this.container.querySelector('#refreshSqlBtn'),
             saveSqlBtn: this.container.querySelector('#saveSqlBtn'),
             loadSqlBtn: this.container.querySelector('#loadSqlBtn'),
             exportExcelBtn: this.container.querySelector('#exportExcelBtn'),
+            exportFormatSelect: this.container.querySelector('#exportFormatSelect'),
+            parallelExportToggle: this.container.querySelector('#parallelExportToggle'),
             queryInfoEl: this.container.querySelector('#queryInfo'),
             layoutSelectEl: this.container.querySelector('#layoutSelect'),
             saveLayoutBtn: this.container.querySelector('#saveLayoutBtn'),
             deleteLayoutBtn: this.container.querySelector('#deleteLayoutBtn'),
             columnFilterInput: this.container.querySelector('#columnFilterInput'),
             columnVisibilityList: this.container.querySelector('#columnVisibilityList'),
+            keysetPagingToggle: this.container.querySelector('#keysetPagingToggle'),
             // 修正：这里应该是表格的直接容器
             sqlResultContainer: this.container.querySelector('#sqlResult')
         };
@@ -54,6 +183,8 @@ const sqlEditor = {
             <div class="sql-editor-area">
                 <div class="editor-toolbar">
                     <button id="executeSqlBtn" class="btn btn-primary" style="width: auto; margin-top:0;"><i class="fas fa-play"></i> 执行</button>
+                    <button id="cancelSqlBtn" class="btn btn-danger" style="width: auto; margin-top:0; display:none;" title="取消服务端正在执行的查询"><i class="fas fa-stop"></i> 取消</button>
+                    <button id="refreshSqlBtn" class="btn btn-secondary" style="width: auto; margin-top:0;" title="忽略缓存的结果页，重新查询最新数据"><i class="fas fa-sync-alt"></i> 刷新</button>
                     <button id="saveSqlBtn" class="btn btn-secondary" style="width: auto; margin-top:0;"><i class="fas fa-save"></i> 保存SQL</button>
                     <button id="loadSqlBtn" class="btn btn-secondary" style="width: auto; margin-top:0;"><i class="fas fa-folder-open"></i> 加载SQL</button>
                     <button class="btn btn-secondary" style="width: auto; margin-top:0;" onclick="alert('此功能正在开发中')"><i class="fas fa-file-code"></i> 从D5视图加载</button>
@@ -72,7 +203,14 @@ const sqlEditor = {
                             </div>
                          </div>
                          <button id="saveLayoutBtn" class="btn btn-secondary" style="width:auto; margin-top:0;"><i class="fas fa-save"></i> 另存为布局...</button>
-                         <button id="exportExcelBtn" class="btn btn-success" style="width:auto; margin-top:0;"><i class="fas fa-file-excel"></i> 导出Excel</button>
+                         <select id="exportFormatSelect" style="width:auto;" title="导出格式（CSV/TSV 为 gzip 压缩文件，速度最快）">
+                             <option value="xlsx">Excel</option>
+                             <option value="csv">CSV (.gz)</option>
+                             <option value="tsv">TSV (.gz)</option>
+                         </select>
+                         <label style="font-size:0.9em; white-space:nowrap;" title="把单表查询按 ROWID 区（Oracle）或整数主键（MySQL）范围拆分，用多个连接同时读取。只支持 CSV/TSV，行的顺序与原表不同"><input type="checkbox" id="parallelExportToggle" disabled> 并行</label>
+                         <button id="exportExcelBtn" class="btn btn-success" style="width:auto; margin-top:0;"><i class="fas fa-file-export"></i> 导出</button>
+                         <label style="font-size:0.9em; white-space:nowrap;" title="按排序键定位下一页，深分页与第一页一样快。需要单表查询且排序列唯一（或能推断出主键）"><input type="checkbox" id="keysetPagingToggle"> 键集分页</label>
                          <select id="layoutSelect" style="margin-left:auto;"></select>
                          <button id="deleteLayoutBtn" class="btn btn-danger" style="width:auto; margin-top:0; display:none;"><i class="fas fa-trash"></i></button>
                          <span id="queryInfo" style="font-size:0.9em; color:#718096; white-space:nowrap;"></span>
@@ -93,6 +231,11 @@ const sqlEditor = {
             icon.classList.toggle('fa-compress-arrows-alt');
         });
         this.elements.executeSqlBtn.addEventListener('click', () => this.executeSql(1));
+        this.elements.cancelSqlBtn.addEventListener('click', () => this.cancelRunningQueries());
+        this.elements.refreshSqlBtn.addEventListener('click', () => {
+            this.refreshPending = true;
+            this.executeSql(1);
+        });
         this.elements.saveSqlBtn.addEventListener('click', this.saveSqlToFile.bind(this));
         this.elements.loadSqlBtn.addEventListener('click', () => {
             const fileInput = document.createElement('input');
@@ -112,6 +255,15 @@ const sqlEditor = {
         });
         this.elements.sqlEditorEl.addEventListener('input', debounce(() => this.loadLayoutsForCurrentSql(), 500));
         this.elements.columnFilterInput.addEventListener('input', this.filterColumnVisibilityList.bind(this));
+        this.elements.exportFormatSelect.addEventListener('change', () => {
+            const delimited = this.elements.exportFormatSelect.value !== 'xlsx';
+            this.elements.parallelExportToggle.disabled = !delimited;
+            if (!delimited) this.elements.parallelExportToggle.checked = false;
+        });
+        this.elements.keysetPagingToggle.addEventListener('change', () => {
+            this.keysetPaging = this.elements.keysetPagingToggle.checked;
+            if (this.currentSql) this.executeSql(1);
+        });
     },
 
     async loadLayoutsForCurrentSql() {
@@ -251,12 +403,16 @@ const sqlEditor = {
 
         if (sql !== this.currentSql) {
             console.log('[executeSql] SQL changed, destroying existing table', { previousSql: this.currentSql });
+            this.resetQuerySession();
             if (this.sqlTable) {
                 this.sqlTable.destroy();
                 this.sqlTable = null;
             }
             this.currentSql = sql;
             page = 1; // 重置为第一页
+        } else if (page === 1) {
+            // 相同 SQL 再次执行：丢弃旧会话，重新查询最新数据
+            this.resetQuerySession();
         }
 
         this.elements.executeSqlBtn.disabled = true;
@@ -282,7 +438,10 @@ const sqlEditor = {
                     page: 0,
                     pageSize: 100,
                 });
-                const initialResult = await api.executeQuery(this.currentConnectionId, this.currentSql, 0, 100);
+                const initialResult = await this.runQuery(1, 100, this.queryOptions(1));
+                this.querySessionId = initialResult.sessionId || null;
+                initialResult.rows = this.rowObjects(initialResult);
+                if (initialResult.paginationNote) console.log('[executeSql] Keyset paging unavailable', initialResult.paginationNote);
                 console.log('[executeSql] Initial query result for columnInfo', {
                     rows: initialResult.rows?.length,
                     totalPages: initialResult.totalPages,
@@ -395,8 +554,14 @@ const sqlEditor = {
             ajaxRequestFunc: (url, config, params) => {
                 console.log('[initializeSqlTable] Ajax request triggered', { url, params });
                 return new Promise((resolve, reject) => {
-                    api.executeQuery(this.currentConnectionId, this.currentSql, params.page - 1, params.size)
+                    this.runQuery(params.page, params.size, this.queryOptions(params.page))
                         .then(result => {
+                            // 会话过期时服务端会打开新会话；键集分页时记下下一页的游标
+                            this.rememberPageCursor(params.page, result);
+                            if (!result.error) {
+                                result.rows = this.rowObjects(result);
+                                this.watchRowCount(result);
+                            }
                             console.log('[initializeSqlTable] Ajax request result', {
                                 rows: result.rows?.length,
                                 totalPages: result.totalPages,
@@ -419,7 +584,10 @@ const sqlEditor = {
             ajaxResponse: (url, params, response) => {
                 console.log('[initializeSqlTable] Ajax response processed', { params, response });
                 // 更新查询信息
-                this.elements.queryInfoEl.textContent = `总计 ${response.totalRows} 行 (第 ${params.page} 页 / ${response.totalPages} 页)`;
+                this.elements.queryInfoEl.textContent = `${this.describeTotal(response.totalRows, response.totalRowsExact)} (第 ${params.page} 页 / ${response.totalPages} 页)`
+                    + (response.paginationMode === 'keyset' ? ' · 键集分页' : '')
+                    + (response.paginationNote ? ` · 未使用键集分页：${response.paginationNote}` : '')
+                    + (response.fromCache ? ' · 来自缓存' : '');
                 // 更新列可见性（如果需要）
                 this.updateColumnVisibilityCheckboxes();
                 return {
@@ -607,23 +775,55 @@ const sqlEditor = {
         if (!this.currentSql) {
             return ui.showAlert("没有可导出的查询。");
         }
-        this.elements.exportExcelBtn.disabled = true;
-        this.elements.exportExcelBtn.innerHTML = '<i class="fas fa-spinner fa-spin"></i> 导出中...';
+        const btn = this.elements.exportExcelBtn;
+        btn.disabled = true;
+        btn.innerHTML = '<i class="fas fa-spinner fa-spin"></i> 导出中...';
+        let job;
         try {
-            const blob = await api.exportToExcel(this.currentConnectionId, this.currentSql);
-            const url = window.URL.createObjectURL(blob);
-            const a = document.createElement('a');
-            a.style.display = 'none';
-            a.href = url;
-            a.download = `query_result_${new Date().getTime()}.xlsx`;
-            document.body.appendChild(a);
-            a.click();
-            window.URL.revokeObjectURL(url);
-            a.remove();
-        } finally {
-            this.elements.exportExcelBtn.disabled = false;
-            this.elements.exportExcelBtn.innerHTML = '<i class="fas fa-file-excel"></i> 导出Excel';
+            job = await api.createExportJob(this.currentConnectionId, this.currentSql,
+                this.elements.exportFormatSelect.value, this.elements.parallelExportToggle.checked);
+        } catch (error) {
+            this.resetExportButton();
+            return ui.showAlert(`导出失败: ${error.message}`);
         }
+        // 导出在服务端后台执行，进度通过 SSE 推送；完成后由浏览器直接下载文件（支持断点续传）
+        const source = new EventSource(`/api/db/export-jobs/${job.jobId}/events`);
+        source.addEventListener('progress', (event) => {
+            const status = JSON.parse(event.data);
+            if (status.status === 'QUEUED') {
+                btn.innerHTML = `<i class="fas fa-spinner fa-spin"></i> 排队中 (${status.queuePosition})`;
+                return;
+            }
+            if (status.status === 'RUNNING') {
+                const eta = status.etaSeconds >= 0 ? ` · 约 ${status.etaSeconds} 秒` : '';
+                btn.innerHTML = `<i class="fas fa-spinner fa-spin"></i> 已导出 ${status.rowsWritten.toLocaleString()} 行${eta}`;
+                if (status.parallelNote) btn.title = status.parallelNote;
+                return;
+            }
+            source.close();
+            this.resetExportButton();
+            if (status.status === 'DONE') {
+                const a = document.createElement('a');
+                a.style.display = 'none';
+                a.href = `/api/db/export-jobs/${status.jobId}/file`;
+                a.download = status.fileName;
+                document.body.appendChild(a);
+                a.click();
+                a.remove();
+            } else if (status.status === 'FAILED') {
+                ui.showAlert(`导出失败: ${status.error || '未知错误'}`);
+            }
+        });
+        source.onerror = () => {
+            source.close();
+            this.resetExportButton();
+        };
+    },
+
+    resetExportButton() {
+        this.elements.exportExcelBtn.disabled = false;
+        this.elements.exportExcelBtn.innerHTML = '<i class="fas fa-file-export"></i> 导出';
+        this.elements.exportExcelBtn.title = '';
     },
 
     saveSqlToFile() {
@@ -79,23 +79,41 @@ const api = {
 
     // --- Object Browser ---
     getObjectTypes: (connId) => api.apiCall(`db/connections/${connId}/object-types`, { method: 'GET' }),
-    getObjects: (connId, type, page, filter) => {
-        const url = `db/connections/${connId}/objects/${type}?page=${page}&size=50` + (filter ? `&filter=${encodeURIComponent(filter)}` : '');
+    getObjects: (connId, type, page, filter, cursor) => {
+        const url = `db/connections/${connId}/objects/${type}?page=${page}&size=50` + (filter ? `&filter=${encodeURIComponent(filter)}` : '')
+            + (cursor ? `&cursor=${encodeURIComponent(cursor)}` : '');
         return api.apiCall(url, { method: 'GET' });
     },
     getObjectDetails: (connId, type, name) => api.apiCall(`db/connections/${connId}/objects/${type}/${name}/details`, { method: 'GET' }),
 
     // --- SQL Editor ---
-    executeQuery: (connId, sql, page, size) => api.apiCall(`db/connections/${connId}/query?page=${page}&size=${size}`, {
+    // options: { sessionId, keyset, cursor }
+    executeQuery: (connId, sql, page, size, options = {}) => api.apiCall(`db/connections/${connId}/query?page=${page}&size=${size}`
+        + (options.sessionId ? `&sessionId=${encodeURIComponent(options.sessionId)}` : '')
+        + (options.keyset ? '&pagination=keyset' : '')
+        + (options.cursor ? `&cursor=${encodeURIComponent(options.cursor)}` : '')
+        + (options.refresh ? '&refresh=true' : '')
+        + (options.format ? `&format=${options.format}` : ''), {
         method: 'POST',
-        headers: { 'Content-Type': 'application/json' },
+        // 查询 id 用于取消正在执行的语句（见 cancelStatement）
+        headers: options.queryId ? { 'Content-Type': 'application/json', 'X-Query-Id': options.queryId } : { 'Content-Type': 'application/json' },
         body: JSON.stringify({ sql })
     }),
+    cancelStatement: (id) => api.apiCall(`db/statements/${encodeURIComponent(id)}/cancel`, { method: 'POST' }),
+    // 页面关闭时 fetch 可能被中止，sendBeacon 保证取消请求能发出
+    cancelStatementOnUnload: (id) => navigator.sendBeacon(`/api/db/statements/${encodeURIComponent(id)}/cancel`),
+    closeQuerySession: (sessionId) => api.apiCall(`db/query-sessions/${sessionId}`, { method: 'DELETE' }),
     exportToExcel: (connId, sql) => api.apiCall(`db/connections/${connId}/export`, {
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify({ sql })
     }, true),
+    createExportJob: (connId, sql, format, parallel) => api.apiCall(`db/connections/${connId}/export-jobs`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify({ sql, format, parallel: String(!!parallel) })
+    }),
+    cancelExportJob: (jobId) => api.apiCall(`db/export-jobs/${jobId}`, { method: 'DELETE' }),
 
     // --- Layout Management ---
     getLayoutsForSql: (sqlHash) => api.apiCall(`db/layouts/${sqlHash}`, { method: 'GET' }),
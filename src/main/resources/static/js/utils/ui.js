@@ -138,6 +138,10 @@ const ui = {
             modal.querySelector('#dbName').value = connData.databaseName;
             modal.querySelector('#dbUsername').value = connData.username;
             modal.querySelector('#dbPassword').value = connData.password;
+            modal.querySelector('#dbPageCacheEnabled').checked = connData.pageCacheEnabled !== false;
+            modal.querySelector('#dbPageCacheBypass').value = connData.pageCacheBypass || '';
+            modal.querySelector('#dbQueryTimeout').value = connData.queryTimeoutSeconds != null ? connData.queryTimeoutSeconds : '';
+            modal.querySelector('#dbExportTimeout').value = connData.exportTimeoutSeconds != null ? connData.exportTimeoutSeconds : '';
         } else {
             title.textContent = '添加新连接';
             modal.querySelector('form').reset();
@@ -0,0 +1,119 @@
+package com.zhangjian.tomcatmanager;
+
+import com.zhangjian.tomcatmanager.dto.GcPauseEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GcLogParserTest {
+
+    private final List<GcPauseEvent> events = new ArrayList<>();
+    private final GcLogParser parser = new GcLogParser(events::add);
+
+    private void feed(String... lines) {
+        for (String line : lines) {
+            parser.feed(line, 0);
+        }
+    }
+
+    @Test
+    void parsesJdk8ParallelYoungAndFullCollections() {
+        feed("2024-01-01T10:00:00.123+0800: 12.345: [GC (Allocation Failure) [PSYoungGen: 65536K->10720K(76288K)] "
+                        + "65536K->10728K(251392K), 0.0123456 secs] [Times: user=0.03 sys=0.01, real=0.01 secs]",
+                "2024-01-01T10:00:05.000+0800: 17.000: [Full GC (Ergonomics) [PSYoungGen: 10720K->0K(76288K)] "
+                        + "[ParOldGen: 8K->10000K(175104K)] 20000K->10000K(251392K), [Metaspace: 3000K->3000K(1056768K)], "
+                        + "0.0500000 secs] [Times: user=0.10 sys=0.00, real=0.05 secs]");
+
+        assertEquals(2, events.size());
+        GcPauseEvent young = events.get(0);
+        assertEquals(OffsetDateTime.parse("2024-01-01T10:00:00.123+08:00").toInstant().toEpochMilli(), young.getTimestamp());
+        assertEquals(12.345, young.getUptimeSeconds(), 1e-9);
+        assertEquals("young", young.getKind());
+        assertEquals("Allocation Failure", young.getCause());
+        assertEquals(12.3456, young.getPauseMs(), 1e-9);
+        assertEquals(65536L, young.getHeapBeforeKb());
+        assertEquals(10728L, young.getHeapAfterKb());
+        assertEquals(251392L, young.getHeapTotalKb());
+        // Young gen freed 54816K but the heap only 54808K: 8K moved to the old generation
+        assertEquals(8L, young.getPromotedKb());
+
+        GcPauseEvent full = events.get(1);
+        assertEquals("full", full.getKind());
+        assertEquals("Ergonomics", full.getCause());
+        assertEquals(50.0, full.getPauseMs(), 1e-9);
+        assertEquals(20000L, full.getHeapBeforeKb());
+        assertEquals(20000L - 10728L, full.getAllocatedKb());
+        assertNull(full.getPromotedKb());
+    }
+
+    @Test
+    void joinsJdk8G1PauseWithItsDetailLine() {
+        feed("2024-01-01T10:00:00.000+0800: 1.000: [GC pause (G1 Evacuation Pause) (young), 0.0050000 secs]",
+                "   [Parallel Time: 4.1 ms, GC Workers: 8]",
+                "   [Eden: 24.0M(24.0M)->0.0B(20.0M) Survivors: 0.0B->4096.0K Heap: 24.0M(256.0M)->3072.0K(256.0M)]");
+
+        assertEquals(1, events.size());
+        GcPauseEvent event = events.get(0);
+        assertEquals("young", event.getKind());
+        assertEquals("G1 Evacuation Pause", event.getCause());
+        assertEquals(5.0, event.getPauseMs(), 1e-9);
+        assertEquals(24576L, event.getYoungBeforeKb());
+        assertEquals(4096L, event.getYoungAfterKb());
+        assertEquals(24576L, event.getHeapBeforeKb());
+        assertEquals(3072L, event.getHeapAfterKb());
+        assertEquals(262144L, event.getHeapTotalKb());
+    }
+
+    @Test
+    void emitsG1PauseWithoutDetailAfterTheNextBatch() {
+        feed("1.000: [GC pause (G1 Humongous Allocation) (young) (initial-mark), 0.0020000 secs]");
+        parser.endBatch();
+        assertTrue(events.isEmpty());
+        parser.endBatch();
+        assertEquals(1, events.size());
+        assertNull(events.get(0).getHeapBeforeKb());
+    }
+
+    @Test
+    void parsesUnifiedLoggingWithRegionBasedYoungSizes() {
+        feed("[2024-01-01T10:00:00.000+0800][0.010s][info][gc,init] Heap Region Size: 1M",
+                "[2024-01-01T10:00:00.123+0800][0.123s][info][gc,start    ] GC(3) Pause Young (Normal) (G1 Evacuation Pause)",
+                "[2024-01-01T10:00:00.127+0800][0.127s][info][gc,heap     ] GC(3) Eden regions: 24->0(20)",
+                "[2024-01-01T10:00:00.127+0800][0.127s][info][gc,heap     ] GC(3) Survivor regions: 0->3(4)",
+                "[2024-01-01T10:00:00.128+0800][0.128s][info][gc          ] GC(3) Pause Young (Normal) (G1 Evacuation Pause) 24M->3M(256M) 5.123ms",
+                "[2024-01-01T10:00:01.000+0800][1.000s][info][gc          ] GC(4) Pause Young (Mixed) (G1 Evacuation Pause) 30M->10M(256M) 3.000ms",
+                "[2024-01-01T10:00:02.000+0800][2.000s][info][gc          ] GC(5) Pause Remark 40M->40M(256M) 1.500ms");
+
+        assertEquals(3, events.size());
+        GcPauseEvent young = events.get(0);
+        assertEquals(Integer.valueOf(3), young.getGcId());
+        assertEquals(0.128, young.getUptimeSeconds(), 1e-9);
+        assertEquals("young", young.getKind());
+        assertEquals("G1 Evacuation Pause", young.getCause());
+        assertEquals(5.123, young.getPauseMs(), 1e-9);
+        assertEquals(24576L, young.getYoungBeforeKb());
+        assertEquals(3072L, young.getYoungAfterKb());
+        assertEquals(3072L, young.getHeapAfterKb());
+        assertEquals(0L, young.getPromotedKb());
+
+        GcPauseEvent mixed = events.get(1);
+        assertEquals("mixed", mixed.getKind());
+        assertEquals(30720L - 3072L, mixed.getAllocatedKb());
+        assertNull(mixed.getYoungBeforeKb());
+
+        assertEquals("remark", events.get(2).getKind());
+        assertNull(events.get(2).getCause());
+    }
+
+    @Test
+    void convertsSizesToKilobytes() {
+        assertEquals(0L, GcLogParser.sizeKb("0.0B"));
+        assertEquals(3072L, GcLogParser.sizeKb("3072K"));
+        assertEquals(24576L, GcLogParser.sizeKb("24.0M"));
+        assertEquals(1048576L, GcLogParser.sizeKb("1G"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.zhangjian.tomcatmanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobSchedulerServiceTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    private static ZonedDateTime at(int hour, int minute, int second, int nanos) {
+        return ZonedDateTime.of(2024, 3, 1, hour, minute, second, nanos, ZONE);
+    }
+
+    @Test
+    void acceptsFiveFieldCron() {
+        assertEquals("0 30 2 * * *", JobSchedulerService.normalizeCron(" 30 2 * * * "));
+        assertEquals("15 30 2 * * *", JobSchedulerService.normalizeCron("15 30 2 * * *"));
+        assertEquals(at(10, 5, 0, 0), JobSchedulerService.nextFireTime("*/5 * * * *", at(10, 3, 20, 0), null));
+    }
+
+    @Test
+    void timerWakingEarlyDoesNotFireTheSameSlotTwice() {
+        ZonedDateTime fired = at(10, 5, 0, 0);
+        // The timer for 10:05 ran a couple of milliseconds early; re-arming must skip to 10:10
+        ZonedDateTime early = at(10, 4, 59, 998_000_000);
+        assertEquals(at(10, 5, 0, 0), JobSchedulerService.nextFireTime("*/5 * * * *", early, null));
+        assertEquals(at(10, 10, 0, 0), JobSchedulerService.nextFireTime("*/5 * * * *", early, fired));
+    }
+
+    @Test
+    void olderLastFiredTimeIsIgnored() {
+        assertEquals(at(10, 10, 0, 0), JobSchedulerService.nextFireTime("*/5 * * * *", at(10, 7, 0, 0), at(10, 5, 0, 0)));
+    }
+
+    @Test
+    void followsDayOfWeekFields() {
+        // 2024-03-01 is a Friday
+        assertEquals(ZonedDateTime.of(2024, 3, 4, 3, 0, 0, 0, ZONE),
+                JobSchedulerService.nextFireTime("0 3 * * MON", at(10, 0, 0, 0), null));
+    }
+}
@@ -0,0 +1,117 @@
+package com.zhangjian.tomcatmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetPaginationTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Connection conn;
+
+    @BeforeEach
+    void createTable() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:keyset");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE item (id INT PRIMARY KEY, grp VARCHAR(10) NOT NULL, note VARCHAR(20))");
+            for (int i = 1; i <= 25; i++) {
+                // Few distinct groups, so most seeks have to continue on the id tie-breaker
+                stmt.execute("INSERT INTO item VALUES (" + i + ", 'g" + (i % 4) + "', NULL)");
+            }
+        }
+    }
+
+    @AfterEach
+    void dropTable() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE item");
+        }
+        conn.close();
+    }
+
+    @Test
+    void cursorRoundTripsTypedValues() {
+        Timestamp ts = Timestamp.valueOf("2024-01-02 03:04:05.123456789");
+        Object[] values = {ts, new BigDecimal("12345678901234567890.001"), "héllo, \"world\""};
+        String token = KeysetPagination.encodeCursor(objectMapper, "abc", values, 42);
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), "token must be URL safe: " + token);
+        KeysetPagination.Cursor cursor = KeysetPagination.decodeCursor(objectMapper, "abc", token);
+        assertNotNull(cursor);
+        assertEquals(42, cursor.totalRows);
+        assertEquals(ts, cursor.values[0]);
+        assertEquals(ts.getNanos(), ((Timestamp) cursor.values[0]).getNanos());
+        assertEquals(new BigDecimal("12345678901234567890.001"), cursor.values[1]);
+        assertEquals("héllo, \"world\"", cursor.values[2]);
+    }
+
+    @Test
+    void cursorOfAnotherQueryOrGarbageIsIgnored() {
+        String token = KeysetPagination.encodeCursor(objectMapper, "abc", new Object[]{"x"}, 1);
+        assertNull(KeysetPagination.decodeCursor(objectMapper, "other", token));
+        assertNull(KeysetPagination.decodeCursor(objectMapper, "abc", "not-a-token"));
+        assertNull(KeysetPagination.decodeCursor(objectMapper, "abc", ""));
+        assertNull(KeysetPagination.decodeCursor(objectMapper, "abc", null));
+    }
+
+    @Test
+    void seekPagesMatchTheFullOrdering() throws SQLException {
+        String sql = "SELECT id, grp FROM item ORDER BY grp DESC";
+        KeysetPagination.Plan plan = KeysetPagination.plan(conn, sql);
+        assertTrue(plan.isSupported(), plan.getReason());
+        // The primary key is appended as tie-breaker after the non-unique sort column
+        assertTrue(plan.seekQuery(5).contains("\"GRP\" <= ? AND ((\"GRP\" < ?) OR (\"GRP\" = ? AND \"ID\" > ?))"),
+                plan.seekQuery(5));
+
+        List<Integer> expected = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT id FROM item ORDER BY grp DESC, id")) {
+            while (rs.next()) {
+                expected.add(rs.getInt(1));
+            }
+        }
+
+        List<Integer> seen = new ArrayList<>();
+        Object[] last = null;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(plan.offsetQuery(0, 5))) {
+            while (rs.next()) {
+                seen.add(rs.getInt("ID"));
+                last = plan.readKey(rs);
+            }
+        }
+        while (last != null) {
+            // Pass the key through a token, as the next request would
+            Object[] values = KeysetPagination.decodeCursor(objectMapper, plan.getFingerprint(),
+                    KeysetPagination.encodeCursor(objectMapper, plan.getFingerprint(), last, 25)).values;
+            last = null;
+            try (PreparedStatement ps = conn.prepareStatement(plan.seekQuery(5))) {
+                List<Object> params = plan.seekParameters(values);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        seen.add(rs.getInt("ID"));
+                        last = plan.readKey(rs);
+                    }
+                }
+            }
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void rejectsQueriesWhoseOrderCannotBeSeeked() throws SQLException {
+        assertFalse(KeysetPagination.plan(conn, "SELECT id, note FROM item ORDER BY note").isSupported());
+        assertFalse(KeysetPagination.plan(conn, "SELECT grp FROM item ORDER BY grp").isSupported());
+        assertFalse(KeysetPagination.plan(conn, "SELECT grp, COUNT(*) FROM item GROUP BY grp").isSupported());
+        assertFalse(KeysetPagination.plan(conn, "SELECT id FROM item ORDER BY UPPER(grp)").isSupported());
+    }
+}
@@ -0,0 +1,103 @@
+package com.zhangjian.tomcatmanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogRingBufferTest {
+
+    private static final int HEADER_SIZE = 5;
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> texts(LogRingBuffer buffer) {
+        List<String> texts = new ArrayList<>();
+        for (LogRingBuffer.Record record : buffer.snapshot()) {
+            texts.add(new String(record.payload, StandardCharsets.UTF_8));
+        }
+        return texts;
+    }
+
+    @Test
+    void keepsRecordsAndSourcesInOrder() {
+        LogRingBuffer buffer = new LogRingBuffer(64);
+        buffer.append(LogRingBuffer.SOURCE_PROCESS_OUT, bytes("hello"));
+        buffer.append(LogRingBuffer.SOURCE_PROCESS_ERR, bytes("world"));
+
+        List<LogRingBuffer.Record> records = buffer.snapshot();
+        assertEquals(2, records.size());
+        assertEquals(LogRingBuffer.SOURCE_PROCESS_OUT, records.get(0).source);
+        assertEquals(LogRingBuffer.SOURCE_PROCESS_ERR, records.get(1).source);
+        assertEquals("hello", new String(records.get(0).payload, StandardCharsets.UTF_8));
+        assertEquals("world", new String(records.get(1).payload, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void copiesOnlyTheRemainingBytesAndLeavesThePositionAlone() {
+        LogRingBuffer buffer = new LogRingBuffer(64);
+        ByteBuffer src = bytes("--line--");
+        ((Buffer) src).position(2);
+        ((Buffer) src).limit(6);
+        buffer.append(LogRingBuffer.SOURCE_MANAGER, src);
+
+        assertEquals(2, src.position());
+        assertEquals(6, src.limit());
+        assertEquals(Collections.singletonList("line"), texts(buffer));
+    }
+
+    @Test
+    void evictsOldestRecordsWhenFull() {
+        LogRingBuffer buffer = new LogRingBuffer(3 * (HEADER_SIZE + 10) - 1);
+        buffer.append(LogRingBuffer.SOURCE_MANAGER, bytes("first-0000"));
+        buffer.append(LogRingBuffer.SOURCE_MANAGER, bytes("second-000"));
+        buffer.append(LogRingBuffer.SOURCE_MANAGER, bytes("third-0000"));
+
+        assertEquals(Arrays.asList("second-000", "third-0000"), texts(buffer));
+    }
+
+    @Test
+    void keepsTheTailOfARecordLargerThanTheBuffer() {
+        LogRingBuffer buffer = new LogRingBuffer(HEADER_SIZE + 4);
+        buffer.append(LogRingBuffer.SOURCE_MANAGER, bytes("old"));
+        buffer.append(LogRingBuffer.SOURCE_MANAGER_ERROR, bytes("0123456789"));
+
+        List<LogRingBuffer.Record> records = buffer.snapshot();
+        assertEquals(1, records.size());
+        assertEquals(LogRingBuffer.SOURCE_MANAGER_ERROR, records.get(0).source);
+        assertEquals("6789", new String(records.get(0).payload, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void retainsTheNewestRecordsThatFitAcrossWrapArounds() {
+        int capacity = 100;
+        LogRingBuffer buffer = new LogRingBuffer(capacity);
+        List<String> appended = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // Varying lengths so records and headers straddle the end of the array
+            StringBuilder text = new StringBuilder("r").append(i);
+            for (int j = 0; j < i % 13; j++) {
+                text.append((char) ('a' + j));
+            }
+            appended.add(text.toString());
+            buffer.append(LogRingBuffer.SOURCE_PROCESS_OUT, bytes(text.toString()));
+
+            List<String> expected = new ArrayList<>();
+            int used = 0;
+            for (int k = appended.size() - 1; k >= 0 && used + HEADER_SIZE + appended.get(k).length() <= capacity; k--) {
+                used += HEADER_SIZE + appended.get(k).length();
+                expected.add(0, appended.get(k));
+            }
+            assertEquals(expected, texts(buffer), "after record " + i);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.zhangjian.tomcatmanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangePartitionerTest {
+
+    private static String reason(String sql) {
+        return RangePartitioner.unsupportedReason(SqlParser.parse(sql));
+    }
+
+    @Test
+    void plainSingleTableQueriesCanBeSplit() {
+        assertNull(reason("SELECT * FROM t"));
+        assertNull(reason("SELECT id, t.name AS n FROM app.t t WHERE t.status = 'A'"));
+    }
+
+    @Test
+    void aggregatesAreRejectedAtAnyDepth() {
+        assertNotNull(reason("SELECT COUNT(*) FROM t"));
+        assertNotNull(reason("SELECT MAX(id) m FROM t"));
+        assertNotNull(reason("SELECT COALESCE(MAX(id), 0) FROM t"));
+        assertNotNull(reason("SELECT ROUND(AVG(x), 2) FROM t"));
+        assertNotNull(reason("SELECT GROUP_CONCAT(name) FROM t"));
+        assertNotNull(reason("SELECT LISTAGG(name, ',') WITHIN GROUP (ORDER BY name) FROM t"));
+        assertNotNull(reason("SELECT id, SUM(x) OVER (PARTITION BY g) FROM t"));
+        // A user-defined aggregate looks like any other function
+        assertNotNull(reason("SELECT my_median(x) FROM t"));
+    }
+
+    @Test
+    void multiRowConstructsAreRejected() {
+        assertNotNull(reason("SELECT DISTINCT a FROM t"));
+        assertNotNull(reason("SELECT a FROM t GROUP BY a"));
+        assertNotNull(reason("SELECT a FROM t ORDER BY a"));
+        assertNotNull(reason("SELECT a FROM t LIMIT 10"));
+        assertNotNull(reason("SELECT a FROM t UNION SELECT a FROM u"));
+        assertNotNull(reason("SELECT t.a FROM t JOIN u ON u.id = t.id"));
+        assertNotNull(reason("SELECT a FROM (SELECT a FROM t) x"));
+        assertNotNull(reason("UPDATE t SET a = 1"));
+    }
+
+    @Test
+    void keyRangesCoverEveryRowExactlyOnce() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:ranges")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE t (id BIGINT PRIMARY KEY, flag INT)");
+                for (int i = 3; i <= 1000; i += 7) {
+                    stmt.execute("INSERT INTO t VALUES (" + i + ", " + (i % 2) + ")");
+                }
+            }
+            String sql = "SELECT id FROM t WHERE flag = 1 OR id < 50";
+            RangePartitioner.Plan plan = RangePartitioner.plan(conn, sql, 4);
+            assertTrue(plan.isSupported(), plan.getReason());
+            assertEquals(4, plan.getRanges().size());
+
+            List<Long> expected = ids(conn, sql, Collections.emptyList());
+            List<Long> combined = new ArrayList<>();
+            for (RangePartitioner.Range range : plan.getRanges()) {
+                combined.addAll(ids(conn, range.sql, range.params));
+            }
+            Collections.sort(expected);
+            Collections.sort(combined);
+            assertEquals(expected, combined);
+        }
+    }
+
+    private static List<Long> ids(Connection conn, String sql, List<Object> params) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,124 @@
+package com.zhangjian.tomcatmanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlParserTest {
+
+    private static List<String> tableNames(SqlParser.Statement statement) {
+        List<String> names = new ArrayList<>();
+        for (SqlParser.TableRef table : statement.getTables()) {
+            names.add(table.qualifiedName());
+        }
+        return names;
+    }
+
+    @Test
+    void classifiesStatements() {
+        assertEquals(SqlParser.Statement.Type.SELECT, SqlParser.parse("select * from t").getType());
+        assertEquals(SqlParser.Statement.Type.SELECT, SqlParser.parse("WITH x AS (SELECT 1 FROM dual) SELECT * FROM x").getType());
+        assertEquals(SqlParser.Statement.Type.UPDATE, SqlParser.parse("UPDATE t SET a = 1").getType());
+        assertEquals(SqlParser.Statement.Type.DELETE, SqlParser.parse("DELETE FROM t").getType());
+        assertEquals(SqlParser.Statement.Type.DDL, SqlParser.parse("ALTER TABLE t ADD c INT").getType());
+    }
+
+    @Test
+    void onlyPlainQueriesAreReadOnly() {
+        assertTrue(SqlParser.parse("SELECT * FROM t WHERE a = 1").isReadOnly());
+        assertFalse(SqlParser.parse("SELECT * FROM t FOR UPDATE").isReadOnly());
+        assertFalse(SqlParser.parse("SELECT seq.NEXTVAL FROM dual").isReadOnly());
+        assertFalse(SqlParser.parse("SELECT 1 FROM dual; DELETE FROM t").isReadOnly());
+        assertFalse(SqlParser.parse("INSERT INTO t SELECT * FROM s").isReadOnly());
+    }
+
+    @Test
+    void collectsTablesFromAllLevelsButNotCteNames() {
+        SqlParser.Statement statement = SqlParser.parse(
+                "WITH recent AS (SELECT * FROM orders WHERE d > SYSDATE - 1) "
+                        + "SELECT c.name FROM customers c JOIN hr.regions r ON r.id = c.region_id "
+                        + "WHERE c.id IN (SELECT customer_id FROM recent) AND EXISTS (SELECT 1 FROM flags f WHERE f.id = c.id)");
+        assertEquals(Arrays.asList("orders", "customers", "hr.regions", "flags"), tableNames(statement));
+        assertNull(statement.getSingleTable());
+    }
+
+    @Test
+    void ignoresCommentsAndStrings() {
+        SqlParser.Statement statement = SqlParser.parse(
+                "SELECT 'x FROM fake JOIN y' AS s, q'[ UNION ]' /* FROM other */ FROM t -- JOIN z");
+        assertEquals(Collections.singletonList("t"), tableNames(statement));
+        assertFalse(statement.getKeywords().contains("JOIN"));
+        assertFalse(statement.getKeywords().contains("UNION"));
+        assertNotNull(statement.getSingleTable());
+    }
+
+    @Test
+    void tracesColumnsThroughAliasesAndDerivedTables() {
+        SqlParser.Statement statement = SqlParser.parse(
+                "SELECT x.n, d.title AS dept FROM (SELECT e.name n FROM emp e) x, dept d");
+        List<SqlParser.OutputColumn> columns = statement.getColumns();
+        assertEquals(2, columns.size());
+        assertEquals("n", columns.get(0).label);
+        assertEquals("emp", columns.get(0).origins.get(0).table.name);
+        assertEquals("name", columns.get(0).origins.get(0).column);
+        assertEquals("dept", columns.get(1).label);
+        assertEquals("dept", columns.get(1).origins.get(0).table.name);
+        assertEquals("title", columns.get(1).origins.get(0).column);
+    }
+
+    @Test
+    void keepsStarAsOneColumnWithoutLabel() {
+        List<SqlParser.OutputColumn> columns = SqlParser.parse("SELECT * FROM s.t").getColumns();
+        assertEquals(1, columns.size());
+        assertNull(columns.get(0).label);
+        assertNull(columns.get(0).origins.get(0).column);
+        assertEquals("s.t", columns.get(0).origins.get(0).table.qualifiedName());
+    }
+
+    @Test
+    void findsSingleTableWhereAndOrderBy() {
+        String sql = "SELECT id, name FROM \"App\".\"Users\" u WHERE u.active = 1 ORDER BY name DESC, u.id";
+        SqlParser.Statement statement = SqlParser.parse(sql);
+        SqlParser.TableRef table = statement.getSingleTable();
+        assertEquals("\"App\"", table.rawSchema);
+        assertEquals("Users", table.name);
+        assertEquals(sql.indexOf("WHERE"), statement.getWhereOffset());
+        assertEquals(sql.indexOf("ORDER BY"), statement.getOrderByOffset());
+        List<SqlParser.OrderItem> orderBy = statement.getOrderBy();
+        assertEquals(2, orderBy.size());
+        assertEquals("name", orderBy.get(0).rawColumn);
+        assertTrue(orderBy.get(0).descending);
+        assertEquals("id", orderBy.get(1).rawColumn);
+        assertFalse(orderBy.get(1).descending);
+        assertSame(table, statement.getAliases().get("U"));
+    }
+
+    @Test
+    void orderByInsideSubqueryIsNotTopLevel() {
+        SqlParser.Statement statement = SqlParser.parse("SELECT * FROM (SELECT * FROM t ORDER BY a) x WHERE ROWNUM <= 10");
+        assertEquals(-1, statement.getOrderByOffset());
+        assertFalse(statement.getKeywords().contains("ORDER"));
+    }
+
+    @Test
+    void plainSelectListRejectsFunctionsAtAnyDepth() {
+        assertTrue(SqlParser.parse("SELECT * FROM t").isPlainSelectList());
+        assertTrue(SqlParser.parse("SELECT t.*, id, t.name AS n, \"Mixed Case\" FROM t").isPlainSelectList());
+        assertFalse(SqlParser.parse("SELECT COALESCE(MAX(id), 0) FROM t").isPlainSelectList());
+        assertFalse(SqlParser.parse("SELECT id, ROUND(AVG(x), 2) avg_x FROM t").isPlainSelectList());
+        assertFalse(SqlParser.parse("SELECT id, ROW_NUMBER() OVER (ORDER BY id) FROM t").isPlainSelectList());
+        assertFalse(SqlParser.parse("SELECT id, (SELECT MAX(x) FROM u) FROM t").isPlainSelectList());
+        assertFalse(SqlParser.parse("SELECT id + 1 FROM t").isPlainSelectList());
+    }
+
+    @Test
+    void cachesParsedStatements() {
+        String sql = "SELECT a FROM cached_table";
+        assertSame(SqlParser.parse(sql), SqlParser.parse(sql));
+    }
+}